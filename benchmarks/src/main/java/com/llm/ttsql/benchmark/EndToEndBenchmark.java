@@ -0,0 +1,50 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.exception.SqlGenerationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generateSQL端到端吞吐基准，模型服务由内嵌桩服务替代
+ * <p>覆盖提示词构建、HTTP往返、响应解析与SQL提取；可用 -t 指定并发线程数</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class EndToEndBenchmark {
+    @Param({"100"})
+    public int tableCount;
+
+    @Param({"0"})
+    public long serverLatencyMillis;
+
+    private StubChatServer server;
+    private GenerateSQLWithLLM generator;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StubChatServer(serverLatencyMillis);
+        LLMInfo llm = new LLMInfo();
+        llm.setApiKey("Bearer benchmark");
+        llm.setModel("stub");
+        llm.setChatEndpoint(server.getEndpoint());
+        generator = new GenerateSQLWithLLM(llm, SchemaFixtures.tables(tableCount, 20));
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String generateSQL() throws SqlGenerationException {
+        return generator.generateSQL("本月系统登录人数和登录人次分别有多少？");
+    }
+}
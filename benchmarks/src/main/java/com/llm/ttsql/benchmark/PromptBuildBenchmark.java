@@ -0,0 +1,52 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * buildPrompt基准：10/100/1k/10k张表，每表20列
+ * <p>建议配合 -prof gc 观察每次调用的分配量</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBuildBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int tableCount;
+
+    private PromptGenerator generator;
+    private List<TableMeta> tables;
+
+    @Setup
+    public void setup() {
+        tables = SchemaFixtures.tables(tableCount, 20);
+        generator = new PromptGenerator(tables);
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return generator.prompt("本月系统登录人数和登录人次分别有多少？", tables);
+    }
+
+    /**
+     * 暴露protected的buildPrompt
+     */
+    static class PromptGenerator extends GenerateSQLWithLLM {
+        PromptGenerator(List<TableMeta> tables) {
+            super(new LLMInfo(), new ArrayList<>(tables));
+        }
+
+        String prompt(String question, List<TableMeta> tables) {
+            return buildPrompt(question, tables);
+        }
+    }
+}
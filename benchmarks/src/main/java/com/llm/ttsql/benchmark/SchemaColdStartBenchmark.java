@@ -0,0 +1,93 @@
+package com.llm.ttsql.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.exception.SqlGenerationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷启动基准：空进程中首次填充表结构缓存（启用BM25检索）的耗时
+ * <p>对比逐表缓存、从JSON解析后缓存与加载表结构快照文件，以及加载后完成第一次generateSQL（内嵌桩服务）的耗时。
+ * 每个fork只执行一次，不预热；快照文件在setup中写入，位于操作系统页缓存中</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class SchemaColdStartBenchmark {
+    private static final String QUESTION = "本月系统登录人数和登录人次分别有多少？";
+
+    @Param({"10000"})
+    public int tableCount;
+
+    private List<TableMeta> tables;
+    private String json;
+    private Path snapshotFile;
+    private StubChatServer server;
+    private LLMInfo llm;
+
+    @Setup
+    public void setup() throws IOException {
+        tables = SchemaFixtures.tables(tableCount, 20);
+        json = JSONUtil.toJsonStr(tables);
+        snapshotFile = Files.createTempFile("schema", ".snapshot");
+        new GenerateSQLWithLLM(new LLMInfo(), tables, config()).saveSchemaSnapshot(snapshotFile);
+        server = new StubChatServer(0);
+        llm = new LLMInfo();
+        llm.setApiKey("Bearer benchmark");
+        llm.setModel("stub");
+        llm.setChatEndpoint(server.getEndpoint());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    @Benchmark
+    public GenerateSQLWithLLM cacheAllTableMeta() {
+        GenerateSQLWithLLM generator = new GenerateSQLWithLLM(llm, null, config());
+        generator.cacheAllTableMeta(tables);
+        return generator;
+    }
+
+    @Benchmark
+    public GenerateSQLWithLLM parseJsonAndCache() {
+        GenerateSQLWithLLM generator = new GenerateSQLWithLLM(llm, null, config());
+        generator.cacheAllTableMeta(JSONUtil.toList(json, TableMeta.class));
+        return generator;
+    }
+
+    @Benchmark
+    public GenerateSQLWithLLM loadSchemaSnapshot() throws IOException {
+        GenerateSQLWithLLM generator = new GenerateSQLWithLLM(llm, null, config());
+        generator.loadSchemaSnapshot(snapshotFile);
+        return generator;
+    }
+
+    @Benchmark
+    public String cacheAllAndFirstRequest() throws SqlGenerationException {
+        return cacheAllTableMeta().generateSQL(QUESTION);
+    }
+
+    @Benchmark
+    public String loadSnapshotAndFirstRequest() throws IOException, SqlGenerationException {
+        return loadSchemaSnapshot().generateSQL(QUESTION);
+    }
+
+    private static Config config() {
+        return new Config().retrievalTopK(8);
+    }
+}
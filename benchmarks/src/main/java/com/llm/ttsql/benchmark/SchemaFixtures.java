@@ -0,0 +1,115 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 基准测试用的合成表结构（固定随机种子，多次运行结果可比）
+ * @Version: 1.0
+ **/
+public final class SchemaFixtures {
+    private static final String[] SUBJECTS = {"用户", "订单", "商品", "库存", "部门", "登录", "支付", "物流", "客户", "合同"};
+    private static final String[] TYPES = {"varchar", "int", "datetime", "decimal", "bigint"};
+    private static final String[][] ENTITIES = {
+            {"user", "用户"}, {"order", "订单"}, {"goods", "商品"}, {"stock", "库存"}, {"dept", "部门"},
+            {"login_log", "登录日志"}, {"payment", "支付流水"}, {"shipment", "物流单"}, {"customer", "客户"},
+            {"contract", "合同"}};
+    private static final String[][] BUSINESS_COLUMNS = {
+            {"name", "varchar(64)", "名称"},
+            {"code", "varchar(32)", "编码，全局唯一，由业务系统生成，规则为前缀+日期+流水号"},
+            {"status", "tinyint", "状态：0-草稿，1-待审核，2-已审核，3-已作废，4-已归档"},
+            {"amount", "decimal(18,2)", "金额（元），含税"},
+            {"contact_name", "varchar(32)", "联系人姓名"},
+            {"contact_phone", "varchar(20)", "联系人手机号"},
+            {"contact_email", "varchar(64)", "联系人邮箱"},
+            {"addr_province", "varchar(32)", "所在省份"},
+            {"addr_city", "varchar(32)", "所在城市"},
+            {"addr_district", "varchar(32)", "所在区县"},
+            {"addr_detail", "varchar(255)", "详细地址"},
+            {"remark", "varchar(500)", "备注"},
+            {"create_by", "bigint", "创建人id"},
+            {"create_time", "datetime", "创建时间"},
+            {"update_by", "bigint", "最后修改人id"},
+            {"update_time", "datetime", "最后修改时间"},
+            {"is_deleted", "tinyint", "逻辑删除标记：0-正常，1-已删除"}};
+
+    private SchemaFixtures() {
+    }
+
+    /**
+     * 生成表结构
+     *
+     * @param tableCount   表数量
+     * @param columnsEach  每张表的列数
+     * @return 表结构列表
+     */
+    public static List<TableMeta> tables(int tableCount, int columnsEach) {
+        Random random = new Random(42);
+        List<TableMeta> tables = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            String subject = SUBJECTS[i % SUBJECTS.length];
+            TableMeta table = new TableMeta();
+            table.setTableName("t_" + subject.hashCode() % 97 + "_" + i);
+            table.setDescription(subject + "业务表" + i);
+            List<ColumnMeta> columns = new ArrayList<>(columnsEach);
+            ColumnMeta id = new ColumnMeta();
+            id.setName("id");
+            id.setType("varchar");
+            id.setDescription("主键id");
+            columns.add(id);
+            for (int j = 1; j < columnsEach; j++) {
+                ColumnMeta col = new ColumnMeta();
+                col.setName("col_" + j);
+                col.setType(TYPES[random.nextInt(TYPES.length)]);
+                col.setDescription(SUBJECTS[random.nextInt(SUBJECTS.length)] + "字段" + j);
+                columns.add(col);
+            }
+            table.setColumns(columns);
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    /**
+     * 生成贴近实际业务库命名习惯的表结构：主键、关联id、联系人/地址等同前缀列组、审计字段与较长的枚举描述
+     *
+     * @param tableCount 表数量
+     * @return 表结构列表
+     */
+    public static List<TableMeta> businessTables(int tableCount) {
+        Random random = new Random(42);
+        List<TableMeta> tables = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            String[] entity = ENTITIES[i % ENTITIES.length];
+            String[] related = ENTITIES[(i + 1 + random.nextInt(ENTITIES.length - 1)) % ENTITIES.length];
+            int shard = i / ENTITIES.length;
+            TableMeta table = new TableMeta();
+            table.setTableName("t_" + entity[0] + (shard == 0 ? "" : "_" + shard));
+            table.setDescription(entity[1] + "表" + (shard == 0 ? "" : "（分区" + shard + "）") + "，记录" + entity[1] + "的基础信息");
+            List<ColumnMeta> columns = new ArrayList<>();
+            columns.add(column("id", "bigint", "主键id"));
+            columns.add(column(related[0] + "_id", "bigint", "关联" + related[1] + "id"));
+            for (String[] c : BUSINESS_COLUMNS) {
+                if (random.nextInt(10) < 8) {
+                    columns.add(column(c[0], c[1], entity[1] + c[2]));
+                }
+            }
+            table.setColumns(columns);
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    private static ColumnMeta column(String name, String type, String description) {
+        ColumnMeta column = new ColumnMeta();
+        column.setName(name);
+        column.setType(type);
+        column.setDescription(description);
+        return column;
+    }
+}
@@ -0,0 +1,77 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.TokenEstimator;
+import com.llm.ttsql.prompt.impl.CompactSchemaRenderer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 不同表结构格式与token预算下单次提示词的估算token数（非JMH基准，直接运行main）
+ * <pre>
+ * java -cp target/benchmarks.jar com.llm.ttsql.benchmark.SchemaTokenReport
+ * </pre>
+ * @Version: 1.0
+ **/
+public final class SchemaTokenReport {
+    private static final String QUESTION = "统计上个月每个城市已审核订单的金额合计";
+    private static final int BUDGET = 4000;
+
+    private SchemaTokenReport() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, List<TableMeta>> schemas = new LinkedHashMap<>();
+        schemas.put("业务库 20表", SchemaFixtures.businessTables(20));
+        schemas.put("业务库 100表", SchemaFixtures.businessTables(100));
+        schemas.put("合成库 100表x20列", SchemaFixtures.tables(100, 20));
+
+        Map<String, Config> configs = new LinkedHashMap<>();
+        configs.put("默认格式", new Config());
+        configs.put("紧凑格式", new Config().schemaRenderer(new CompactSchemaRenderer()));
+        configs.put("紧凑格式+描述截断12字", new Config().schemaRenderer(new CompactSchemaRenderer(12)));
+        configs.put("默认格式+预算" + BUDGET, new Config().promptTokenBudget(BUDGET));
+        configs.put("紧凑格式+截断+预算" + BUDGET,
+                new Config().schemaRenderer(new CompactSchemaRenderer(12)).promptTokenBudget(BUDGET));
+
+        System.out.printf("问题：%s%n", QUESTION);
+        System.out.printf("%-24s", "");
+        for (String schema : schemas.keySet()) {
+            System.out.printf("%-22s", schema);
+        }
+        System.out.println();
+        for (Map.Entry<String, Config> config : configs.entrySet()) {
+            System.out.printf("%-24s", config.getKey());
+            for (List<TableMeta> tables : schemas.values()) {
+                String prompt = new PromptGenerator(tables, config.getValue()).prompt(QUESTION, tables);
+                System.out.printf("%-22s", TokenEstimator.estimate(prompt) + " tokens");
+            }
+            System.out.println();
+        }
+        List<TableMeta> sample = SchemaFixtures.businessTables(2);
+        System.out.println();
+        System.out.println("紧凑格式示例：");
+        System.out.print(new PromptGenerator(sample, configs.get("紧凑格式")).prompt(QUESTION, sample));
+        System.out.println();
+    }
+
+    /**
+     * 暴露protected的buildPrompt
+     */
+    static class PromptGenerator extends GenerateSQLWithLLM {
+        PromptGenerator(List<TableMeta> tables, Config config) {
+            super(new LLMInfo(), new ArrayList<>(tables), config);
+        }
+
+        String prompt(String question, List<TableMeta> tables) {
+            return buildPrompt(question, tables);
+        }
+    }
+}
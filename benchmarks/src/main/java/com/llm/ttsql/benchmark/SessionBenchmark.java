@@ -0,0 +1,83 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.session.ConversationSession;
+import com.llm.ttsql.session.SessionStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话追问的单轮开销：无状态调用与会话内追问对比，模型服务由内嵌桩服务替代（无延迟）
+ * <p>启用检索（top8），预先建立sessions个会话，每个已有3轮历史；sessionContext只测查找会话、拼接历史与记录本轮</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionBenchmark {
+    private static final String QUESTION = "本月各部门的登录人数和登录人次分别有多少？";
+    private static final String FOLLOW_UP = "只看技术部，按天统计呢？";
+    private static final String SQL = "SELECT d.name, COUNT(DISTINCT l.user_id), COUNT(*) FROM sys_log l "
+            + "JOIN sys_user u ON l.user_id = u.id JOIN sys_dept d ON u.dept_id = d.id "
+            + "WHERE l.op_type = 3 AND l.created_at >= DATE_FORMAT(NOW(), '%Y-%m-01') GROUP BY d.name";
+
+    @Param({"1000"})
+    public int tableCount;
+
+    @Param({"10000"})
+    public int sessions;
+
+    private StubChatServer server;
+    private GenerateSQLWithLLM generator;
+    private SessionStore store;
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException, SqlGenerationException {
+        server = new StubChatServer(0);
+        LLMInfo llm = new LLMInfo();
+        llm.setApiKey("Bearer benchmark");
+        llm.setModel("stub");
+        llm.setChatEndpoint(server.getEndpoint());
+        store = new SessionStore(sessions * 2, 0);
+        generator = new GenerateSQLWithLLM(llm, SchemaFixtures.tables(tableCount, 20),
+                new Config().retrievalTopK(8).sessionStore(store));
+        for (int i = 0; i < sessions; i++) {
+            String id = "session-" + i;
+            generator.generateSQLInSession(id, QUESTION);
+            ConversationSession session = store.getOrCreate(id);
+            session.addTurn(FOLLOW_UP, SQL);
+            session.addTurn(FOLLOW_UP, SQL);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String stateless() throws SqlGenerationException {
+        return generator.generateSQL(QUESTION);
+    }
+
+    @Benchmark
+    public String followUp() throws SqlGenerationException {
+        return generator.generateSQLInSession("session-" + (cursor++ % sessions), FOLLOW_UP);
+    }
+
+    @Benchmark
+    public String sessionContext() {
+        ConversationSession session = store.getOrCreate("session-" + (cursor++ % sessions));
+        String history = session.renderHistory();
+        session.addTurn(FOLLOW_UP, SQL);
+        return history;
+    }
+}
@@ -0,0 +1,66 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.session.ConversationSession;
+import com.llm.ttsql.session.SessionStore;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 会话存储的堆占用（非JMH基准，直接运行main）
+ * <p>每个会话选定8张表，每轮的问题与SQL都是独立的字符串（约30字的问题、约250字符的SQL），
+ * 分别写入1、3、10、50轮，观察单会话占用随轮数的变化是否被上限截住。</p>
+ * <pre>
+ * java -cp target/benchmarks.jar com.llm.ttsql.benchmark.SessionHeapFootprint [会话数]
+ * </pre>
+ * @Version: 1.0
+ **/
+public final class SessionHeapFootprint {
+    private static final String SQL = "SELECT d.name, COUNT(DISTINCT l.user_id), COUNT(*) FROM sys_log l "
+            + "JOIN sys_user u ON l.user_id = u.id JOIN sys_dept d ON u.dept_id = d.id "
+            + "WHERE l.op_type = %d AND l.created_at >= DATE_FORMAT(NOW(), '%%Y-%%m-01') GROUP BY d.name "
+            + "ORDER BY 2 DESC LIMIT %d";
+
+    private SessionHeapFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int sessionCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        List<String> tableNames = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tableNames.add("t_table_" + i);
+        }
+        System.out.printf("%d 个会话，保留3轮原文，摘要上限500字符，单会话上限4000字符%n", sessionCount);
+        SessionStore store = null;
+        for (int turns : new int[]{1, 3, 10, 50}) {
+            store = null;
+            long before = usedHeap();
+            store = new SessionStore(sessionCount, 0);
+            long retained = 0;
+            for (int s = 0; s < sessionCount; s++) {
+                ConversationSession session = store.getOrCreate("analyst-" + s);
+                session.setTableNames(tableNames);
+                for (int t = 0; t < turns; t++) {
+                    session.addTurn("第" + t + "轮：上个月各部门的登录人数，只看操作类型" + (s % 7) + "的记录",
+                            String.format(SQL, s % 7, t + 10));
+                }
+                retained += session.getRetainedChars();
+            }
+            long bytes = usedHeap() - before;
+            System.out.printf("每个会话 %2d 轮：共 %7.1f MB，每会话 %6.2f KB，保留历史 %5d 字符%n", turns,
+                    bytes / 1048576.0, bytes / 1024.0 / sessionCount, retained / sessionCount);
+            if (store.size() != sessionCount) {
+                throw new IllegalStateException("会话数不符：" + store.size());
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,80 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.extractor.SqlExtractor;
+import com.llm.ttsql.extractor.impl.DefaultSqlExtractor;
+import com.llm.ttsql.extractor.impl.ScanningSqlExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SqlExtractor基准
+ * <ul>
+ *   <li>small：常规短响应</li>
+ *   <li>huge：约200KB的&lt;think&gt;推理内容后跟代码块</li>
+ *   <li>adversarial：大量未闭合的代码块标记与花括号，最后才出现有效代码块</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlExtractorBenchmark {
+    @Param({"default", "scanning"})
+    public String extractor;
+
+    @Param({"small", "huge", "adversarial"})
+    public String input;
+
+    private SqlExtractor sqlExtractor;
+    private String response;
+
+    @Setup
+    public void setup() {
+        sqlExtractor = createExtractor(extractor);
+        response = createInput(input);
+    }
+
+    @Benchmark
+    public String extract() throws SqlGenerationException {
+        return sqlExtractor.extract(response);
+    }
+
+    static SqlExtractor createExtractor(String name) {
+        if ("default".equals(name)) {
+            return new DefaultSqlExtractor();
+        }
+        if ("scanning".equals(name)) {
+            return new ScanningSqlExtractor();
+        }
+        throw new IllegalArgumentException("未知的extractor: " + name);
+    }
+
+    static String createInput(String name) {
+        String block = "```json\n{\"sql\": \"SELECT COUNT(DISTINCT user_id) AS login_users, COUNT(*) AS login_times "
+                + "FROM sys_log WHERE op_type = 3 AND op_time >= DATE_FORMAT(NOW(), '%Y-%m-01')\"}\n```";
+        switch (name) {
+            case "small":
+                return "好的，以下是生成的SQL：\n" + block;
+            case "huge": {
+                StringBuilder sb = new StringBuilder("<think>\n");
+                while (sb.length() < 200_000) {
+                    sb.append("用户想统计本月的登录人数，需要从sys_log表中筛选op_type为3的记录，再按user_id去重。");
+                }
+                return sb.append("\n</think>\n").append(block).toString();
+            }
+            case "adversarial": {
+                StringBuilder sb = new StringBuilder();
+                while (sb.length() < 200_000) {
+                    sb.append("``` { \"sql\": \"DROPPED ` {{{ ```js ");
+                }
+                return sb.append('\n').append(block).toString();
+            }
+            default:
+                throw new IllegalArgumentException("未知的输入: " + name);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.validation.SchemaIndex;
+import com.llm.ttsql.validation.impl.LocalSqlValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地SQL校验基准：1万张表的索引上校验单表查询与多表关联查询
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlValidatorBenchmark {
+    @Param({"simple", "join"})
+    public String query;
+
+    private LocalSqlValidator validator;
+    private SchemaIndex schema;
+    private String sql;
+
+    @Setup
+    public void setup() {
+        List<TableMeta> tables = SchemaFixtures.tables(10000, 20);
+        schema = new SchemaIndex();
+        tables.forEach(schema::put);
+        validator = new LocalSqlValidator();
+        String a = tables.get(1).getTableName();
+        String b = tables.get(2).getTableName();
+        sql = "simple".equals(query)
+                ? "SELECT COUNT(DISTINCT col_1) AS users, COUNT(*) AS times FROM " + a
+                + " WHERE col_2 = 3 AND col_3 >= DATE_FORMAT(NOW(), '%Y-%m-01')"
+                : "SELECT x.col_1, y.col_4, COUNT(*) cnt FROM " + a + " x LEFT JOIN " + b
+                + " y ON x.id = y.col_2 WHERE x.col_5 > DATE_SUB(CURDATE(), INTERVAL 7 DAY)"
+                + " AND y.id IN (SELECT id FROM " + b + " WHERE col_6 LIKE '%abc%')"
+                + " GROUP BY x.col_1, y.col_4 ORDER BY cnt DESC LIMIT 10";
+        String error = validator.validate(sql, schema, "MySql");
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    @Benchmark
+    public String validate() {
+        return validator.validate(sql, schema, "MySql");
+    }
+}
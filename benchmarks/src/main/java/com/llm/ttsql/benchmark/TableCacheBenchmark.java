@@ -0,0 +1,63 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.cache.SchemaChangeEvent;
+import com.llm.ttsql.cache.SchemaDelta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表结构缓存操作基准：单表热更新、增量变更、批量缓存与全量刷新
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableCacheBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int tableCount;
+
+    private GenerateSQLWithLLM generator;
+    private List<TableMeta> tables;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        tables = SchemaFixtures.tables(tableCount, 20);
+        generator = new GenerateSQLWithLLM(new LLMInfo(), tables);
+    }
+
+    @Benchmark
+    public void cacheTableMeta() {
+        generator.cacheTableMeta(tables.get(cursor++ % tables.size()));
+    }
+
+    /**
+     * 每次都是真实的结构变化（表描述交替变化），反映DDL事件逐条回放的开销
+     */
+    @Benchmark
+    public SchemaChangeEvent applySchemaDelta() {
+        TableMeta table = tables.get(cursor % tables.size());
+        TableMeta changed = new TableMeta();
+        changed.setTableName(table.getTableName());
+        changed.setDescription(table.getDescription() + (cursor++ & 1));
+        changed.setColumns(table.getColumns());
+        return generator.applySchemaDelta(new SchemaDelta().upsert(changed));
+    }
+
+    @Benchmark
+    public void cacheAllTableMeta() {
+        generator.cacheAllTableMeta(tables);
+    }
+
+    @Benchmark
+    public void refreshCache() {
+        generator.refreshCache(tables);
+    }
+}
@@ -0,0 +1,122 @@
+package com.llm.ttsql.benchmark;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.tenant.TenantRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 多租户表结构的堆占用对比（非JMH基准，直接运行main）
+ * <p>每个租户的表结构都是从各自数据库读出的独立副本（字符串互不共享），其中约10%的表描述与其他租户不同。</p>
+ * <pre>
+ * java -cp target/benchmarks.jar com.llm.ttsql.benchmark.TenantHeapFootprint [租户数] [表数] [列数]
+ * </pre>
+ * @Version: 1.0
+ **/
+public final class TenantHeapFootprint {
+    private TenantHeapFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int tenantCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int tableCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int columnCount = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        List<TableMeta> base = SchemaFixtures.tables(tableCount, columnCount);
+        System.out.printf("%d 个租户，每个 %d 张表 x %d 列，约10%%的表因租户而异%n", tenantCount, tableCount, columnCount);
+
+        long before = usedHeap();
+        List<GenerateSQLWithLLM> separate = new ArrayList<>();
+        for (int i = 0; i < tenantCount; i++) {
+            separate.add(new GenerateSQLWithLLM(llm(i), tenantSchema(base, i), new Config()));
+        }
+        report("独立生成器与独立配置", usedHeap() - before, tenantCount);
+        separate = null;
+
+        before = usedHeap();
+        Config shared = new Config();
+        List<GenerateSQLWithLLM> sharedConfig = new ArrayList<>();
+        for (int i = 0; i < tenantCount; i++) {
+            sharedConfig.add(new GenerateSQLWithLLM(llm(i), tenantSchema(base, i), shared));
+        }
+        report("独立生成器、共享配置", usedHeap() - before, tenantCount);
+        sharedConfig = null;
+
+        before = usedHeap();
+        TenantRegistry registry = new TenantRegistry();
+        for (int i = 0; i < tenantCount; i++) {
+            registry.register("tenant-" + i, llm(i), tenantSchema(base, i), null);
+        }
+        report("TenantRegistry（完整表结构，自动去重）", usedHeap() - before, tenantCount);
+        registry = null;
+
+        before = usedHeap();
+        registry = new TenantRegistry();
+        registry.setBaseTables(copy(base, -1));
+        for (int i = 0; i < tenantCount; i++) {
+            registry.register("tenant-" + i, llm(i), tenantOverlay(base, i), null);
+        }
+        report("TenantRegistry（公共表 + 覆盖层）", usedHeap() - before, tenantCount);
+        System.out.printf("驻留池：%d 张表，%d 列，%d 个字符串%n", registry.getInterner().getTableCount(),
+                registry.getInterner().getColumnCount(), registry.getInterner().getStringCount());
+    }
+
+    private static LLMInfo llm(int tenant) {
+        LLMInfo info = new LLMInfo();
+        info.setApiKey("key-" + tenant);
+        info.setModel("model");
+        info.setChatEndpoint("http://127.0.0.1:" + (10000 + tenant) + "/v1/chat/completions");
+        return info;
+    }
+
+    /**
+     * 租户的完整表结构：前10%的表描述带租户信息，其余与公共结构内容相同但对象独立
+     */
+    private static List<TableMeta> tenantSchema(List<TableMeta> base, int tenant) {
+        return copy(base, tenant);
+    }
+
+    private static List<TableMeta> tenantOverlay(List<TableMeta> base, int tenant) {
+        return copy(base, tenant).subList(0, Math.max(1, base.size() / 10));
+    }
+
+    private static List<TableMeta> copy(List<TableMeta> base, int tenant) {
+        int customized = tenant < 0 ? 0 : Math.max(1, base.size() / 10);
+        List<TableMeta> tables = new ArrayList<>(base.size());
+        for (int i = 0; i < base.size(); i++) {
+            TableMeta source = base.get(i);
+            TableMeta table = new TableMeta();
+            table.setTableName(new String(source.getTableName()));
+            table.setDescription(i < customized ? source.getDescription() + "(租户" + tenant + ")"
+                    : new String(source.getDescription()));
+            List<ColumnMeta> columns = new ArrayList<>(source.getColumns().size());
+            for (ColumnMeta c : source.getColumns()) {
+                ColumnMeta column = new ColumnMeta();
+                column.setName(new String(c.getName()));
+                column.setType(new String(c.getType()));
+                column.setDescription(new String(c.getDescription()));
+                columns.add(column);
+            }
+            table.setColumns(columns);
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String name, long bytes, int tenants) {
+        System.out.printf("%-36s 共 %8.1f MB，每租户 %8.1f KB%n", name, bytes / 1048576.0, bytes / 1024.0 / tenants);
+    }
+}
@@ -0,0 +1,83 @@
+package com.llm.ttsql.loadtest;
+
+import java.util.Random;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 桩服务的模拟延迟分布，由命令行参数解析
+ * <ul>
+ *   <li>{@code fixed:200}：固定200ms</li>
+ *   <li>{@code uniform:100:300}：100~300ms均匀分布</li>
+ *   <li>{@code lognormal:200:800}：对数正态分布，p50为200ms、p99为800ms（接近真实模型服务的长尾）</li>
+ * </ul>
+ * @Version: 1.0
+ **/
+public final class LatencyDistribution {
+    //标准正态分布的99分位
+    private static final double Z99 = 2.3263478740408408;
+
+    private final String spec;
+    private final int kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, int kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * @param spec 分布描述，见类说明
+     * @return 延迟分布
+     * @throws IllegalArgumentException 格式不正确时抛出
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new LatencyDistribution(spec, 0, Double.parseDouble(parts[1]), 0);
+                case "uniform":
+                    double min = Double.parseDouble(parts[1]);
+                    double max = Double.parseDouble(parts[2]);
+                    if (max < min) {
+                        throw new IllegalArgumentException("延迟分布的上界小于下界：" + spec);
+                    }
+                    return new LatencyDistribution(spec, 1, min, max);
+                case "lognormal":
+                    double p50 = Double.parseDouble(parts[1]);
+                    double p99 = Double.parseDouble(parts[2]);
+                    if (p50 <= 0 || p99 < p50) {
+                        throw new IllegalArgumentException("对数正态分布需满足 0 < p50 <= p99：" + spec);
+                    }
+                    return new LatencyDistribution(spec, 2, Math.log(p50), Math.log(p99 / p50) / Z99);
+                default:
+                    throw new IllegalArgumentException("未知的延迟分布：" + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("延迟分布格式不正确：" + spec, e);
+        }
+    }
+
+    /**
+     * @param random 随机数源
+     * @return 一次采样的延迟（毫秒）
+     */
+    public long sampleMillis(Random random) {
+        switch (kind) {
+            case 0:
+                return Math.round(a);
+            case 1:
+                return Math.round(a + random.nextDouble() * (b - a));
+            default:
+                return Math.round(Math.exp(a + b * random.nextGaussian()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,527 @@
+package com.llm.ttsql.loadtest;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.exception.LLMHttpException;
+import com.llm.ttsql.metrics.ConsensusStats;
+import com.llm.ttsql.metrics.LatencyHistogram;
+import com.llm.ttsql.metrics.MetricStage;
+import com.llm.ttsql.metrics.MetricsListener;
+import com.llm.ttsql.metrics.impl.HistogramMetricsListener;
+import com.llm.ttsql.prompt.PromptLayout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: GenerateSQLWithLLM负载测试：启动内嵌桩服务，由N个并发客户端回放问题语料
+ * <p>先执行预热请求（不计入结果），再执行测量请求；输出延迟分布、吞吐、重试与错误分类、客户端线程的内存分配速率。
+ * 桩服务的延迟与错误序列由种子确定，相同参数的多次运行可直接对比：</p>
+ * <pre>
+ * java -jar target/loadtest.jar --clients=32 --requests=5000 --latency=lognormal:200:800 \
+ *      --errorRate=0.02 --errorStatus=429,503 --out=run.properties --baseline=last.properties
+ * </pre>
+ * @Version: 1.0
+ **/
+public final class LoadTest {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("corpus", "");
+        DEFAULTS.put("clients", "16");
+        DEFAULTS.put("requests", "2000");
+        DEFAULTS.put("warmup", "200");
+        DEFAULTS.put("latency", "lognormal:200:800");
+        DEFAULTS.put("errorRate", "0");
+        DEFAULTS.put("errorStatus", "503");
+        DEFAULTS.put("responseBytes", "0");
+        DEFAULTS.put("tables", "100");
+        DEFAULTS.put("maxRetries", "1");
+        DEFAULTS.put("retrievalTopK", "0");
+        DEFAULTS.put("coalesce", "true");
+        DEFAULTS.put("layout", "SINGLE_MESSAGE");
+        DEFAULTS.put("budget", "0");
+        DEFAULTS.put("streaming", "false");
+        DEFAULTS.put("prefillMsPer1kTokens", "0");
+        DEFAULTS.put("uniqueQuestions", "false");
+        DEFAULTS.put("candidates", "1");
+        DEFAULTS.put("quorum", "1");
+        DEFAULTS.put("equivalentRate", "0");
+        DEFAULTS.put("wrongRate", "0");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("out", "");
+        DEFAULTS.put("baseline", "");
+    }
+
+    private static final AtomicLong UNIQUE_SEQUENCE = new AtomicLong();
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        List<String> corpus = loadCorpus(options.get("corpus"));
+        int clients = Integer.parseInt(options.get("clients"));
+        int requests = Integer.parseInt(options.get("requests"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        LatencyDistribution latency = LatencyDistribution.parse(options.get("latency"));
+        double errorRate = Double.parseDouble(options.get("errorRate"));
+        int[] errorStatuses = Arrays.stream(options.get("errorStatus").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt).toArray();
+        int responseBytes = Integer.parseInt(options.get("responseBytes"));
+        long seed = Long.parseLong(options.get("seed"));
+
+        PromptLayout layout = PromptLayout.valueOf(options.get("layout"));
+        int retrievalTopK = Integer.parseInt(options.get("retrievalTopK"));
+        boolean unique = Boolean.parseBoolean(options.get("uniqueQuestions"));
+
+        try (StubLlmServer server = new StubLlmServer(latency, errorRate, errorStatuses, responseBytes, seed)
+                .prefill(Double.parseDouble(options.get("prefillMsPer1kTokens")))
+                .answerVariants(Double.parseDouble(options.get("equivalentRate")),
+                        Double.parseDouble(options.get("wrongRate")))) {
+            SwitchableListener listener = new SwitchableListener();
+            Config config = new Config()
+                    .maxRetries(Integer.parseInt(options.get("maxRetries")))
+                    .retrievalTopK(retrievalTopK)
+                    .coalesceRequests(Boolean.parseBoolean(options.get("coalesce")))
+                    .promptLayout(layout)
+                    .promptTokenBudget(Integer.parseInt(options.get("budget")))
+                    .streaming(Boolean.parseBoolean(options.get("streaming")))
+                    .candidates(Integer.parseInt(options.get("candidates")), Integer.parseInt(options.get("quorum")))
+                    .maxIdleConnections(Math.max(16, clients))
+                    .metricsListener(listener);
+            LLMInfo llm = new LLMInfo();
+            llm.setApiKey("Bearer loadtest");
+            llm.setModel("stub");
+            llm.setChatEndpoint(server.getEndpoint());
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(llm,
+                    tables(Integer.parseInt(options.get("tables")), seed), config);
+
+            System.out.printf("预热 %d 个请求...%n", warmup);
+            run(generator, corpus, unique, clients, warmup, null);
+
+            HistogramMetricsListener metrics = new HistogramMetricsListener();
+            listener.target = metrics;
+            long stubBefore = server.getRequestCount();
+            Map<Integer, Long> injectedBefore = server.getInjectedErrors();
+            long promptTokensBefore = server.getPromptTokens();
+            long cachedTokensBefore = server.getCachedPromptTokens();
+            System.out.printf("测量 %d 个请求，%d 个并发客户端...%n", requests, clients);
+            long gcCountBefore = gcCount();
+            long gcTimeBefore = gcTime();
+            Result result = new Result();
+            long start = System.nanoTime();
+            run(generator, corpus, unique, clients, requests, result);
+            long elapsed = System.nanoTime() - start;
+
+            LoadTestReport report = new LoadTestReport();
+            for (Map.Entry<String, String> e : options.entrySet()) {
+                if (!e.getKey().equals("out") && !e.getKey().equals("baseline")) {
+                    report.put("config." + e.getKey(), e.getValue());
+                }
+            }
+            report.put("config.corpusSize", corpus.size());
+            double seconds = elapsed / 1e9;
+            long ok = result.successes.sum();
+            long failed = result.failures.sum();
+            report.put("throughput.rps", ok / seconds);
+            report.put("requests.success", ok);
+            report.put("requests.failed", failed);
+            report.put("elapsed.seconds", seconds);
+            LatencyHistogram h = result.latency;
+            report.put("latency.p50.ms", h.getPercentile(0.5) / 1e6);
+            report.put("latency.p90.ms", h.getPercentile(0.9) / 1e6);
+            report.put("latency.p99.ms", h.getPercentile(0.99) / 1e6);
+            report.put("latency.p999.ms", h.getPercentile(0.999) / 1e6);
+            report.put("latency.max.ms", h.getMax() / 1e6);
+            report.put("latency.mean.ms", h.getMean() / 1e6);
+            report.put("server.requests", server.getRequestCount() - stubBefore);
+            report.put("server.requestsPerCall", (double) (server.getRequestCount() - stubBefore) / requests);
+            server.getInjectedErrors().forEach((status, n) ->
+                    report.put("server.injected." + status, n - injectedBefore.getOrDefault(status, 0L)));
+            long promptTokens = server.getPromptTokens() - promptTokensBefore;
+            report.put("server.promptTokensPerRequest", (double) promptTokens / Math.max(1, requests));
+            report.put("server.prefixCacheHitRate",
+                    promptTokens == 0 ? 0D : (double) (server.getCachedPromptTokens() - cachedTokensBefore) / promptTokens);
+            report.put("server.distinctSystemPrompts", server.getDistinctSystemPrompts());
+            LatencyHistogram firstToken = metrics.getStageHistogram(MetricStage.FIRST_TOKEN);
+            if (firstToken.getCount() > 0) {
+                report.put("ttft.p50.ms", firstToken.getPercentile(0.5) / 1e6);
+                report.put("ttft.p99.ms", firstToken.getPercentile(0.99) / 1e6);
+                report.put("ttft.mean.ms", firstToken.getMean() / 1e6);
+            }
+            ConsensusStats consensus = generator.getConsensusStats();
+            if (consensus.getVoteCount() > 0) {
+                // 预热阶段同样计入，比例类指标不受影响
+                report.put("consensus.quorumRate", consensus.getQuorumRate());
+                report.put("consensus.decidedEarlyRate",
+                        (double) consensus.getDecidedEarlyCount() / consensus.getVoteCount());
+                report.put("consensus.agreementRate", consensus.getAgreementRate());
+                report.put("consensus.avgDistinctAnswers", consensus.getAvgDistinctAnswers());
+                report.put("consensus.avgAnsweredCandidates", consensus.getAvgAnsweredCandidates());
+                report.put("consensus.cancelledPerVote",
+                        (double) consensus.getCancelledCandidateCount() / consensus.getVoteCount());
+                report.put("consensus.decision.mean.ms", consensus.getAvgDecisionMillis());
+            }
+            report.put("client.retries", metrics.getRetryCount());
+            report.put("client.coalesced", metrics.getCoalescedCount());
+            new TreeMap<>(result.errors).forEach((cause, n) -> report.put("client.error." + cause, n.sum()));
+            long allocated = result.allocatedBytes.sum();
+            if (allocationBean() != null) {
+                report.put("alloc.bytesPerRequest", (double) allocated / requests);
+                report.put("alloc.mbPerSecond", allocated / seconds / (1024 * 1024));
+            }
+            report.put("gc.count", gcCount() - gcCountBefore);
+            report.put("gc.ms", gcTime() - gcTimeBefore);
+
+            print(report, result, metrics);
+            if (layout == PromptLayout.PREFIX_CACHED && retrievalTopK <= 0) {
+                // 未启用检索时所有问题使用同一组表，system消息应逐字节一致
+                int distinct = server.getDistinctSystemPrompts();
+                System.out.printf("前缀一致性检查: 收到 %d 种system消息（期望1）%s%n", distinct,
+                        distinct == 1 ? "，通过" : "，未通过");
+            }
+            if (!options.get("out").isEmpty()) {
+                report.save(Paths.get(options.get("out")));
+                System.out.println("结果已写入 " + options.get("out"));
+            }
+            if (!options.get("baseline").isEmpty()) {
+                Path baseline = Paths.get(options.get("baseline"));
+                if (Files.exists(baseline)) {
+                    System.out.println();
+                    System.out.println("== 与基线对比：" + baseline + " ==");
+                    System.out.print(report.compare(LoadTestReport.load(baseline)));
+                } else {
+                    System.out.println("基线文件不存在：" + baseline);
+                }
+            }
+        }
+    }
+
+    /**
+     * 各客户端按全局序号依次取问题，共执行count个请求
+     *
+     * @param unique 为每个请求的问题附加序号，使问题互不相同（实际问题很少逐字重复）
+     */
+    private static void run(GenerateSQLWithLLM generator, List<String> corpus, boolean unique, int clients, int count,
+                            Result result) throws InterruptedException {
+        long offset = UNIQUE_SEQUENCE.getAndAdd(count);
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(clients);
+        com.sun.management.ThreadMXBean threads = allocationBean();
+        for (int c = 0; c < clients; c++) {
+            Thread t = new Thread(() -> {
+                long allocStart = threads != null ? threads.getCurrentThreadAllocatedBytes() : -1;
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < count) {
+                        String question = corpus.get(i % corpus.size());
+                        if (unique) {
+                            question = question + "（编号" + (offset + i) + "）";
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            generator.generateSQL(question);
+                            if (result != null) {
+                                result.record(System.nanoTime() - start);
+                                result.successes.increment();
+                            }
+                        } catch (Exception e) {
+                            if (result != null) {
+                                result.record(System.nanoTime() - start);
+                                result.failures.increment();
+                                result.errors.computeIfAbsent(classify(e), k -> new LongAdder()).increment();
+                            }
+                        }
+                    }
+                } finally {
+                    if (result != null && threads != null) {
+                        result.allocatedBytes.add(threads.getCurrentThreadAllocatedBytes() - allocStart);
+                    }
+                    done.countDown();
+                }
+            }, "loadtest-client-" + c);
+            t.start();
+        }
+        done.await();
+    }
+
+    /**
+     * 错误分类：最内层的HTTP状态码，否则为异常类型
+     */
+    private static String classify(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof LLMHttpException) {
+                int status = ((LLMHttpException) t).getStatusCode();
+                return status == 0 ? "network" : "http" + status;
+            }
+            if (t.getCause() == null) {
+                return t.getClass().getSimpleName();
+            }
+        }
+        return "unknown";
+    }
+
+    private static void print(LoadTestReport report, Result result, HistogramMetricsListener metrics) {
+        Map<String, String> v = report.getValues();
+        System.out.println();
+        System.out.println("== GenerateSQLWithLLM 负载测试 ==");
+        StringBuilder config = new StringBuilder();
+        v.forEach((k, val) -> {
+            if (k.startsWith("config.")) {
+                config.append(k.substring(7)).append('=').append(val).append(' ');
+            }
+        });
+        System.out.println("配置: " + config.toString().trim());
+        System.out.printf("吞吐: %s req/s（成功 %s，失败 %s，耗时 %ss）%n", v.get("throughput.rps"),
+                v.get("requests.success"), v.get("requests.failed"), v.get("elapsed.seconds"));
+        System.out.printf("延迟(ms): p50=%s p90=%s p99=%s p99.9=%s max=%s mean=%s%n", v.get("latency.p50.ms"),
+                v.get("latency.p90.ms"), v.get("latency.p99.ms"), v.get("latency.p999.ms"),
+                v.get("latency.max.ms"), v.get("latency.mean.ms"));
+        System.out.print(result.histogram());
+        System.out.printf("桩服务: 收到 %s 个请求（每次调用 %s 个）%n", v.get("server.requests"), v.get("server.requestsPerCall"));
+        System.out.printf("提示词: 每请求 %s token，前缀缓存命中率 %s，system消息 %s 种%n",
+                v.get("server.promptTokensPerRequest"), v.get("server.prefixCacheHitRate"),
+                v.get("server.distinctSystemPrompts"));
+        if (v.containsKey("ttft.p50.ms")) {
+            System.out.printf("首token(ms): p50=%s p99=%s mean=%s%n", v.get("ttft.p50.ms"), v.get("ttft.p99.ms"),
+                    v.get("ttft.mean.ms"));
+        }
+        if (v.containsKey("consensus.quorumRate")) {
+            System.out.printf("投票: 达到法定票数 %s（提前决出 %s），一致率 %s，平均 %s 种答案，"
+                            + "每次返回 %s 个候选、取消 %s 个，决出耗时 %s ms%n",
+                    v.get("consensus.quorumRate"), v.get("consensus.decidedEarlyRate"),
+                    v.get("consensus.agreementRate"), v.get("consensus.avgDistinctAnswers"),
+                    v.get("consensus.avgAnsweredCandidates"), v.get("consensus.cancelledPerVote"),
+                    v.get("consensus.decision.mean.ms"));
+        }
+        StringBuilder errors = new StringBuilder();
+        v.forEach((k, val) -> {
+            if (k.startsWith("server.injected.") || k.startsWith("client.error.")) {
+                errors.append(k).append('=').append(val).append(' ');
+            }
+        });
+        System.out.printf("重试: %s 次，合并: %s 次；错误: %s%n", v.get("client.retries"), v.get("client.coalesced"),
+                errors.length() == 0 ? "无" : errors.toString().trim());
+        if (v.containsKey("alloc.bytesPerRequest")) {
+            System.out.printf("分配(客户端线程): %s 字节/请求, %s MB/s；GC %s 次 / %s ms%n",
+                    v.get("alloc.bytesPerRequest"), v.get("alloc.mbPerSecond"), v.get("gc.count"), v.get("gc.ms"));
+        }
+        System.out.println("阶段耗时:");
+        System.out.print(metrics.report());
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("参数格式应为 --名称=值：" + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            if (!DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException("未知参数：" + key + "，可用参数：" + DEFAULTS.keySet());
+            }
+            options.put(key, arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    /**
+     * 读取语料文件，未指定时使用内置语料；每行一个问题，空行与#开头的行忽略
+     */
+    private static List<String> loadCorpus(String file) throws IOException {
+        List<String> questions = new ArrayList<>();
+        try (InputStream in = file.isEmpty() ? LoadTest.class.getResourceAsStream("/questions.txt")
+                : Files.newInputStream(Paths.get(file));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    questions.add(line);
+                }
+            }
+        }
+        if (questions.isEmpty()) {
+            throw new IllegalArgumentException("问题语料为空");
+        }
+        return questions;
+    }
+
+    /**
+     * 固定种子的合成表结构
+     */
+    private static List<TableMeta> tables(int count, long seed) {
+        String[] subjects = {"用户", "订单", "商品", "库存", "部门", "登录", "支付", "物流", "客户", "合同"};
+        String[] types = {"varchar(64)", "int", "datetime", "decimal(18,2)", "bigint"};
+        Random random = new Random(seed);
+        List<TableMeta> tables = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String subject = subjects[i % subjects.length];
+            TableMeta table = new TableMeta();
+            table.setTableName("t_" + i + "_" + (i % subjects.length));
+            table.setDescription(subject + "业务表" + i);
+            List<ColumnMeta> columns = new ArrayList<>();
+            for (int c = 0; c < 20; c++) {
+                ColumnMeta column = new ColumnMeta();
+                column.setName("col_" + c);
+                column.setType(types[random.nextInt(types.length)]);
+                column.setDescription(subject + "字段" + c);
+                columns.add(column);
+            }
+            table.setColumns(columns);
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        }
+        return null;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(0, gc.getCollectionCount());
+        }
+        return n;
+    }
+
+    private static long gcTime() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(0, gc.getCollectionTime());
+        }
+        return n;
+    }
+
+    /**
+     * 测量阶段的客户端结果
+     */
+    private static final class Result {
+        //按2的幂划分的毫秒桶：[0,1) [1,2) [2,4) ...
+        private static final int BUCKETS = 24;
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final LongAdder successes = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void record(long nanos) {
+            latency.record(nanos);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+            buckets.incrementAndGet(bucket);
+        }
+
+        String histogram() {
+            long total = 0;
+            long peak = 0;
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = buckets.get(i);
+                total += n;
+                peak = Math.max(peak, n);
+                if (n > 0) {
+                    last = i;
+                    if (first < 0) {
+                        first = i;
+                    }
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = first; i >= 0 && i <= last; i++) {
+                long n = buckets.get(i);
+                String range = i <= 1 ? (i == 0 ? "<1ms" : "1ms") : String.format("%d-%dms", 1L << (i - 1), (1L << i) - 1);
+                int bar = (int) Math.round(50.0 * n / peak);
+                sb.append(String.format(Locale.ROOT, "  %13s | %-50s %6.2f%% (%d)%n", range, "#".repeat(bar),
+                        100.0 * n / total, n));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 预热阶段丢弃指标，测量阶段转发到目标
+     */
+    private static final class SwitchableListener implements MetricsListener {
+        volatile MetricsListener target;
+
+        @Override
+        public void onStage(MetricStage stage, long nanos) {
+            MetricsListener t = target;
+            if (t != null) {
+                t.onStage(stage, nanos);
+            }
+        }
+
+        @Override
+        public void onTokenUsage(int promptTokens, int completionTokens) {
+            MetricsListener t = target;
+            if (t != null) {
+                t.onTokenUsage(promptTokens, completionTokens);
+            }
+        }
+
+        @Override
+        public void onRetry(int attempt, Throwable cause) {
+            MetricsListener t = target;
+            if (t != null) {
+                t.onRetry(attempt, cause);
+            }
+        }
+
+        @Override
+        public void onSuccess(long nanos, int retries) {
+            MetricsListener t = target;
+            if (t != null) {
+                t.onSuccess(nanos, retries);
+            }
+        }
+
+        @Override
+        public void onFailure(long nanos, int retries, Throwable cause) {
+            MetricsListener t = target;
+            if (t != null) {
+                t.onFailure(nanos, retries, cause);
+            }
+        }
+
+        @Override
+        public void onCoalesced(long nanos) {
+            MetricsListener t = target;
+            if (t != null) {
+                t.onCoalesced(nanos);
+            }
+        }
+    }
+}
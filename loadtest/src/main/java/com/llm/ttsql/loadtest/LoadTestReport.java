@@ -0,0 +1,103 @@
+package com.llm.ttsql.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 负载测试结果：按固定顺序保存的指标键值，可写入文件并与上一次运行对比
+ * <p>文件为UTF-8的properties格式，键名与顺序固定，便于直接diff或通过{@link #compare(Map)}输出变化比例</p>
+ * @Version: 1.0
+ **/
+public class LoadTestReport {
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    public void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, long value) {
+        values.put(key, Long.toString(value));
+    }
+
+    public void put(String key, double value) {
+        values.put(key, String.format(Locale.ROOT, "%.3f", value));
+    }
+
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    /**
+     * 写入文件，键按写入顺序排列
+     */
+    public void save(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : values.entrySet()) {
+                out.write(e.getKey() + "=" + e.getValue().replace("\\", "\\\\") + System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * 读取之前保存的结果
+     */
+    public static Map<String, String> load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(in);
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        props.stringPropertyNames().forEach(k -> result.put(k, props.getProperty(k)));
+        return result;
+    }
+
+    /**
+     * 与基线结果逐项对比，只输出两边都有的数值指标；配置项不同时提示结果不可直接比较
+     *
+     * @param baseline 基线结果
+     * @return 对比表
+     */
+    public String compare(Map<String, String> baseline) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            String key = e.getKey();
+            String before = baseline.get(key);
+            if (key.startsWith("config.") && before != null && !before.equals(e.getValue())) {
+                sb.append(String.format("注意：配置项 %s 不同（基线 %s，本次 %s）%n", key, before, e.getValue()));
+            }
+        }
+        sb.append(String.format("%-28s %14s %14s %10s%n", "指标", "基线", "本次", "变化"));
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            String key = e.getKey();
+            if (key.startsWith("config.") || !baseline.containsKey(key)) {
+                continue;
+            }
+            Double now = number(e.getValue());
+            Double before = number(baseline.get(key));
+            if (now == null || before == null) {
+                continue;
+            }
+            String delta = before == 0 ? (now == 0 ? "0.0%" : "n/a")
+                    : String.format(Locale.ROOT, "%+.1f%%", (now - before) * 100 / before);
+            sb.append(String.format(Locale.ROOT, "%-28s %14.3f %14.3f %10s%n", key, before, now, delta));
+        }
+        return sb.toString();
+    }
+
+    private static Double number(String s) {
+        try {
+            return Double.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
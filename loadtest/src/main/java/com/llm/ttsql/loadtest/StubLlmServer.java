@@ -0,0 +1,332 @@
+package com.llm.ttsql.loadtest;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.prompt.TokenEstimator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 内嵌的OpenAI兼容chat completions桩服务
+ * <ul>
+ *   <li>每个请求按{@link LatencyDistribution}采样延迟</li>
+ *   <li>按错误率返回指定的HTTP状态码（如429、503）</li>
+ *   <li>响应内容在SQL前附加指定字节数的&lt;think&gt;推理文本，模拟不同大小的响应</li>
+ *   <li>请求体中stream为true时以SSE逐段返回：预填充结束后输出首段，采样的延迟作为其余输出的生成时间</li>
+ *   <li>模拟推理服务的前缀KV缓存：按定长块计算与已缓存提示词的最长公共前缀，
+ *   只有未命中部分的token计入预填充时间（{@link #prefill(double)}）</li>
+ *   <li>统计收到的不同system消息数，用于确认提示词前缀在不同问题间保持一致</li>
+ *   <li>按比例返回写法不同但等价的SQL（别名、大小写、空白）或错误的SQL，模拟采样温度下模型答案的分歧
+ *   （{@link #answerVariants(double, double)}）</li>
+ * </ul>
+ * <p>第n个请求的随机数由种子与n确定，相同参数的多次运行注入的延迟与错误序列一致</p>
+ * @Version: 1.0
+ **/
+public class StubLlmServer implements AutoCloseable {
+    private static final String SQL = "SELECT COUNT(DISTINCT l.user_id) FROM sys_log l WHERE l.op_type = 3";
+    //与SQL等价，只有别名、引号、大小写与空白不同
+    private static final String EQUIVALENT_SQL = "select count(distinct s.user_id)  from `sys_log` as s where s.op_type=3;";
+    private static final String WRONG_SQL = "SELECT COUNT(l.user_id) FROM sys_log l WHERE l.op_type = 3";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int[] errorStatuses;
+    private final long seed;
+    private final int responseBytes;
+    private final byte[] okBody;
+    private byte[] equivalentBody;
+    private byte[] wrongBody;
+    private volatile double equivalentRate;
+    private volatile double wrongRate;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final Map<Integer, LongAdder> injected = new ConcurrentHashMap<>();
+    private final Set<Long> systemPrompts = ConcurrentHashMap.newKeySet();
+    private final PrefixCache prefixCache = new PrefixCache(1 << 16);
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder cachedTokens = new LongAdder();
+    private volatile double prefillMillisPer1kTokens;
+
+    /**
+     * @param latency       延迟分布
+     * @param errorRate     返回错误状态码的比例（0~1）
+     * @param errorStatuses 注入的错误状态码，多个时随机选取
+     * @param responseBytes 响应中推理文本的字节数
+     * @param seed          随机种子
+     */
+    public StubLlmServer(LatencyDistribution latency, double errorRate, int[] errorStatuses, int responseBytes,
+                         long seed) throws IOException {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("错误率必须在0到1之间");
+        }
+        if (errorRate > 0 && errorStatuses.length == 0) {
+            throw new IllegalArgumentException("错误率大于0时至少需要一个错误状态码");
+        }
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.errorStatuses = errorStatuses.clone();
+        this.seed = seed;
+        this.responseBytes = responseBytes;
+        this.okBody = buildResponse(SQL, responseBytes);
+        // 关闭Nagle，否则响应头与响应体分两次写出时会叠加客户端的延迟ACK（约40ms）
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-llm");
+            t.setDaemon(true);
+            return t;
+        });
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @param millisPer1kTokens 每1000个未命中前缀缓存的提示词token的预填充耗时，0表示不模拟
+     */
+    public StubLlmServer prefill(double millisPer1kTokens) {
+        this.prefillMillisPer1kTokens = millisPer1kTokens;
+        return this;
+    }
+
+    /**
+     * @param equivalentRate 返回等价写法的比例
+     * @param wrongRate      返回错误SQL的比例
+     */
+    public StubLlmServer answerVariants(double equivalentRate, double wrongRate) {
+        if (equivalentRate < 0 || wrongRate < 0 || equivalentRate + wrongRate > 1) {
+            throw new IllegalArgumentException("答案比例必须在0到1之间，且两者之和不超过1");
+        }
+        this.equivalentBody = buildResponse(EQUIVALENT_SQL, responseBytes);
+        this.wrongBody = buildResponse(WRONG_SQL, responseBytes);
+        this.equivalentRate = equivalentRate;
+        this.wrongRate = wrongRate;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] raw;
+        try (InputStream in = exchange.getRequestBody()) {
+            raw = in.readAllBytes();
+        }
+        requests.increment();
+        JSONObject request = JSONUtil.parseObj(new String(raw, StandardCharsets.UTF_8));
+        long prefill = prefillMillis(request.getJSONArray("messages"));
+        boolean stream = request.getBool("stream", false);
+        Random random = new Random(seed * 0x9E3779B97F4A7C15L + sequence.getAndIncrement());
+        long delay = latency.sampleMillis(random);
+        int status = 200;
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            status = errorStatuses[random.nextInt(errorStatuses.length)];
+            injected.computeIfAbsent(status, k -> new LongAdder()).increment();
+        }
+        String sql = SQL;
+        byte[] ok = okBody;
+        if (equivalentRate > 0 || wrongRate > 0) {
+            double answer = random.nextDouble();
+            if (answer < equivalentRate) {
+                sql = EQUIVALENT_SQL;
+                ok = equivalentBody;
+            } else if (answer < equivalentRate + wrongRate) {
+                sql = WRONG_SQL;
+                ok = wrongBody;
+            }
+        }
+        if (status == 200 && stream) {
+            sleep(prefill);
+            stream(exchange, delay, sql);
+            return;
+        }
+        sleep(prefill + delay);
+        byte[] body = status == 200 ? ok
+                : ("{\"error\":{\"message\":\"injected " + status + "\",\"type\":\"stub\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * SSE输出：首段为&lt;think&gt;，其余内容在生成时间后输出
+     */
+    private void stream(HttpExchange exchange, long delay, String sql) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            writeChunk(out, "<think>");
+            out.flush();
+            sleep(delay);
+            writeChunk(out, "analyzing table structure and question constraints</think>\\n");
+            writeChunk(out, "```json\\n{\\\"sql\\\": \\\"" + sql + "\\\"}\\n```");
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // 客户端拿到SQL后提前关闭连接
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String escapedContent) throws IOException {
+        out.write(("data: {\"id\":\"stub\",\"object\":\"chat.completion.chunk\",\"choices\":[{\"index\":0,"
+                + "\"delta\":{\"content\":\"" + escapedContent + "\"}}]}\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 按chat模板拼接消息，查询前缀缓存并返回未命中部分的预填充耗时
+     */
+    private long prefillMillis(JSONArray messages) {
+        if (messages == null) {
+            return 0L;
+        }
+        StringBuilder prompt = new StringBuilder();
+        for (int i = 0; i < messages.size(); i++) {
+            JSONObject message = messages.getJSONObject(i);
+            String role = message.getStr("role");
+            String content = message.getStr("content", "");
+            if ("system".equals(role)) {
+                systemPrompts.add(((long) content.hashCode() << 32) ^ content.length());
+            }
+            prompt.append("<|").append(role).append("|>\n").append(content).append('\n');
+        }
+        int cached = prefixCache.match(prompt);
+        int total = TokenEstimator.estimate(prompt.toString());
+        int hit = TokenEstimator.estimate(prompt.substring(0, cached));
+        promptTokens.add(total);
+        cachedTokens.add(hit);
+        return Math.round((total - hit) * prefillMillisPer1kTokens / 1000);
+    }
+
+    private static byte[] buildResponse(String sql, int responseBytes) {
+        StringBuilder think = new StringBuilder(responseBytes + 32);
+        if (responseBytes > 0) {
+            think.append("<think>");
+            String filler = "analyzing table structure and question constraints ";
+            while (think.length() < responseBytes) {
+                think.append(filler, 0, Math.min(filler.length(), responseBytes - think.length()));
+            }
+            think.append("</think>\\n");
+        }
+        return ("{\"id\":\"stub\",\"object\":\"chat.completion\",\"choices\":[{\"index\":0,"
+                + "\"message\":{\"role\":\"assistant\",\"content\":\"" + think
+                + "```json\\n{\\\"sql\\\": \\\"" + sql + "\\\"}\\n```\"},"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1000,\"completion_tokens\":"
+                + (20 + responseBytes / 4) + ",\"total_tokens\":" + (1020 + responseBytes / 4) + "}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    /**
+     * @return 收到的请求数（含注入错误的请求）
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return 收到的不同system消息数
+     */
+    public int getDistinctSystemPrompts() {
+        return systemPrompts.size();
+    }
+
+    /**
+     * @return 收到的提示词token总数（本地估算）
+     */
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    /**
+     * @return 命中模拟前缀缓存的提示词token数
+     */
+    public long getCachedPromptTokens() {
+        return cachedTokens.sum();
+    }
+
+    /**
+     * @return 注入的错误：状态码 -> 次数
+     */
+    public Map<Integer, Long> getInjectedErrors() {
+        Map<Integer, Long> result = new TreeMap<>();
+        injected.forEach((status, n) -> result.put(status, n.sum()));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 按块的前缀缓存：每块的键为从开头到该块的链式哈希，与vLLM的自动前缀缓存一致，
+     * 只有之前的块全部命中时后续块才可能命中；块数超过容量时淘汰最久未用的块
+     */
+    private static final class PrefixCache {
+        private static final int BLOCK_CHARS = 64;
+        private final Map<Long, Boolean> blocks;
+
+        PrefixCache(int capacity) {
+            blocks = new LinkedHashMap<Long, Boolean>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * @return 命中的前缀字符数；所有完整块随后写入缓存
+         */
+        synchronized int match(CharSequence prompt) {
+            int matched = 0;
+            boolean hit = true;
+            long hash = 1125899906842597L;
+            for (int end = BLOCK_CHARS; end <= prompt.length(); end += BLOCK_CHARS) {
+                for (int i = end - BLOCK_CHARS; i < end; i++) {
+                    hash = 31 * hash + prompt.charAt(i);
+                }
+                Long key = hash;
+                if (hit && blocks.get(key) != null) {
+                    matched = end;
+                } else {
+                    hit = false;
+                    blocks.put(key, Boolean.TRUE);
+                }
+            }
+            return matched;
+        }
+    }
+}
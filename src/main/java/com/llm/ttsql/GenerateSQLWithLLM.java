@@ -1,20 +1,58 @@
 package com.llm.ttsql;
 
 import cn.hutool.core.convert.ConvertException;
-import cn.hutool.http.HttpException;
-import cn.hutool.http.HttpRequest;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.async.AsyncSqlExecutor;
+import com.llm.ttsql.async.CancellationScope;
+import com.llm.ttsql.async.SingleFlight;
+import com.llm.ttsql.cache.SchemaChangeEvent;
+import com.llm.ttsql.cache.SchemaChangeListener;
+import com.llm.ttsql.cache.SchemaDelta;
+import com.llm.ttsql.cache.SchemaFingerprint;
+import com.llm.ttsql.cache.SchemaSnapshot;
+import com.llm.ttsql.cache.SchemaSnapshotFile;
+import com.llm.ttsql.cache.QuestionTemplateCache;
+import com.llm.ttsql.cache.SqlResultCache;
 import com.llm.ttsql.config.Config;
-import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.BatchSqlResult;
 import com.llm.ttsql.entity.LLMInfo;
 import com.llm.ttsql.entity.PromptConfig;
 import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.exception.LLMHttpException;
 import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.exception.SqlValidationException;
+import com.llm.ttsql.extractor.impl.IncrementalSqlExtractor;
+import com.llm.ttsql.metrics.ConsensusStats;
+import com.llm.ttsql.metrics.MetricStage;
+import com.llm.ttsql.metrics.MetricsListener;
+import com.llm.ttsql.metrics.StreamStats;
+import com.llm.ttsql.prompt.ChatRequestBody;
+import com.llm.ttsql.prompt.PromptLayout;
+import com.llm.ttsql.prompt.PromptTemplate;
+import com.llm.ttsql.prompt.SchemaBudget;
+import com.llm.ttsql.prompt.TokenEstimator;
+import com.llm.ttsql.retrieval.SchemaRetriever;
+import com.llm.ttsql.retrieval.impl.Bm25SchemaRetriever;
+import com.llm.ttsql.routing.AdmissionController;
+import com.llm.ttsql.routing.AdmissionController.Priority;
+import com.llm.ttsql.routing.EndpointPool;
+import com.llm.ttsql.routing.LLMEndpoint;
+import com.llm.ttsql.session.ConversationSession;
+import com.llm.ttsql.session.SessionStore;
+import com.llm.ttsql.transport.LLMTransport;
+import com.llm.ttsql.transport.impl.PooledHttpTransport;
+import com.llm.ttsql.validation.SchemaIndex;
+import com.llm.ttsql.validation.SqlValidator;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -26,6 +64,13 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li>支持自定义提示词</li>
  *   <li>可扩展的SQL解析策略</li>
  *   <li>带重试机制的模型调用</li>
+ *   <li>基于CompletableFuture的异步生成</li>
+ *   <li>共享表结构的批量生成</li>
+ *   <li>流式调用，SQL就绪后立即返回</li>
+ *   <li>多节点负载均衡、退避重试、熔断与对冲请求</li>
+ *   <li>分阶段耗时、token用量与重试指标（{@link Config#metricsListener(MetricsListener)}）</li>
+ *   <li>基于已缓存表结构的本地SQL校验与自动修复</li>
+ *   <li>便于推理服务复用前缀缓存的提示词布局（{@link Config#promptLayout(PromptLayout)}）</li>
  * </ol>
  *
  * <p>典型用法：</p>
@@ -39,7 +84,25 @@ import java.util.concurrent.ConcurrentHashMap;
  * @history 1. [2025/03/05] 初始版本
  */
 public class GenerateSQLWithLLM {
-    private final Map<String, TableMeta> tableCache = new ConcurrentHashMap<>();
+    //当前表结构快照（表、指纹、预渲染片段与列名索引），写入时整体替换，读取无需加锁或复制
+    private final AtomicReference<SchemaSnapshot> schema = new AtomicReference<>(SchemaSnapshot.empty());
+    //串行化表结构写入，避免并发写入时互相覆盖
+    private final Object schemaWriteLock = new Object();
+    //编译后的默认提示词模板，PromptConfig中的模板被替换时重新编译
+    private volatile PromptTemplate compiledTemplate;
+    private volatile PromptTemplate compiledBatchTemplate;
+    private volatile PromptTemplate compiledRepairTemplate;
+    private volatile PromptTemplate compiledCachedTemplate;
+    private volatile PromptTemplate compiledQuestionTemplate;
+    private volatile PromptTemplate compiledFollowUpTemplate;
+    //前缀缓存布局下最近一次构建的system消息，表结构、模板与所选表不变时直接复用
+    private volatile SystemPrompt systemPrompt;
+    private final AtomicLong systemPromptIds = new AtomicLong();
+    //前缀缓存布局下system消息中表的顺序
+    private static final Comparator<TableMeta> TABLE_ORDER = Comparator.comparing(TableMeta::getTableName,
+            Comparator.nullsFirst(Comparator.naturalOrder()));
+    //批量模式下为每个问题预留的输出token数
+    private static final int BATCH_OUTPUT_TOKENS_PER_QUESTION = 200;
  /**
      * 清空当前所有缓存的表元数据
      * <p>使用场景：</p>
@@ -51,7 +114,15 @@ public class GenerateSQLWithLLM {
      * <p><b>注意：</b>清空后调用generateSQL()方法将抛出异常，直到重新缓存表结构</p>
      */
     public void clearCache() {
-        tableCache.clear();
+        synchronized (schemaWriteLock) {
+            SchemaSnapshot.Builder builder = schemaBuilder();
+            Set<String> removed = builder.tableNames();
+            builder.clear();
+            publish(builder.build(), removed, Collections.emptyMap(), false);
+            if (schemaRetriever != null) {
+                schemaRetriever.clear();
+            }
+        }
     }
     /**
      * 全量刷新缓存（批量模式）
@@ -61,6 +132,7 @@ public class GenerateSQLWithLLM {
      *   <li>定期同步最新表结构</li>
      *   <li>多环境切换（如从测试环境切到生产环境）</li>
      * </ol>
+     * <p>结构未变化的表保留原有的预渲染片段、检索索引与结果缓存</p>
      *
      * @param tables 新的全量表结构集合（非空）
      * @throws IllegalArgumentException 当tables为null或空集合时抛出
@@ -70,8 +142,21 @@ public class GenerateSQLWithLLM {
         if (tables.isEmpty()) {
             throw new IllegalArgumentException("至少需要提供一个表结构");
         }
-        tableCache.clear();
-        cacheAllTableMeta(tables);
+        synchronized (schemaWriteLock) {
+            // 新版本在旁边构建完成后一次性替换，并发读取看到的要么是旧的全量表结构，要么是新的
+            SchemaSnapshot.Builder builder = schemaBuilder();
+            Set<String> touched = new HashSet<>(builder.tableNames());
+            Set<String> removed = new HashSet<>(touched);
+            for (TableMeta table : tables) {
+                removed.remove(table.getTableName());
+                touched.add(table.getTableName());
+            }
+            for (String name : removed) {
+                builder.remove(name);
+            }
+            tables.forEach(builder::put);
+            publish(builder.build(), touched, Collections.emptyMap(), true);
+        }
     }
     /**
      * 单表结构热更新
@@ -81,21 +166,21 @@ public class GenerateSQLWithLLM {
      *   <li>临时分析特定表结构</li>
      *   <li>开发调试时快速验证单个表</li>
      * </ul>
-     * <p><b>警告：</b>此操作会清空所有已缓存表，仅保留当前传入表</p>
+     * <p><b>警告：</b>此操作会清空所有已缓存表，仅保留当前传入表；只更新单张表请使用
+     * {@link #cacheTableMeta(TableMeta)}或{@link #applySchemaDelta(SchemaDelta)}</p>
      *
      * @param table 需要单独缓存的表结构（非空）
      */
     public void refreshCache(TableMeta  table) {
         Objects.requireNonNull(table, "表结构不能为空");
-        tableCache.clear();
-        cacheTableMeta(table);
+        refreshCache(Collections.singletonList(table));
     }
     /**
      * 缓存表元数据
      * @param table 需要缓存的表结构元数据
      */
     public void cacheTableMeta(TableMeta table) {
-        tableCache.put(table.getTableName(), table);
+        cacheAllTableMeta(Collections.singletonList(table));
     }
 
     /**
@@ -103,10 +188,238 @@ public class GenerateSQLWithLLM {
      * @param tables 需要缓存的表结构列表
      */
     public void cacheAllTableMeta(List<TableMeta> tables) {
-        tables.forEach(table -> tableCache.put(table.getTableName(), table));
+        synchronized (schemaWriteLock) {
+            SchemaSnapshot.Builder builder = schemaBuilder();
+            tables.forEach(builder::put);
+            publish(builder.build(), tableNames(tables), Collections.emptyMap(), true);
+        }
+    }
+
+    /**
+     * 移除单张表的缓存元数据，其余已缓存表不受影响
+     * @param tableName 表名
+     * @return 该表此前已缓存时返回true
+     */
+    public boolean removeTableMeta(String tableName) {
+        synchronized (schemaWriteLock) {
+            SchemaSnapshot.Builder builder = schemaBuilder();
+            if (!builder.remove(tableName)) {
+                return false;
+            }
+            publish(builder.build(), Collections.singleton(tableName), Collections.emptyMap(), true);
+        }
+        return true;
+    }
+
+    /**
+     * 增量应用一组表结构变更（新增或替换、删除、改名），开销只与变更的表数量有关
+     * <p>整组变更一次性发布：并发查询看到的要么是变更前的全部表结构，要么是变更后的，查询无需暂停。
+     * 只有变更涉及的表会重新渲染片段、更新检索索引与列名索引，结果缓存与问题模板也只失效这些表；
+     * 结构未变化的新增或替换不产生变更。</p>
+     * <p>发布后通过{@link #addSchemaChangeListener(SchemaChangeListener)}注册的监听器收到同一个事件</p>
+     *
+     * @param delta 表结构变更
+     * @return 本次变更的净变化
+     * @throws IllegalArgumentException 改名的原表不存在或新表名已存在时抛出，此时整组变更都不生效
+     */
+    public SchemaChangeEvent applySchemaDelta(SchemaDelta delta) {
+        Objects.requireNonNull(delta, "表结构变更不能为空");
+        synchronized (schemaWriteLock) {
+            SchemaSnapshot.Builder builder = schemaBuilder();
+            Set<String> touched = new HashSet<>();
+            //新表名 -> 本组变更开始前的原表名
+            Map<String, String> renames = new HashMap<>();
+            for (SchemaDelta.Op op : delta.getOps()) {
+                String name = op.getTableName();
+                touched.add(name);
+                switch (op.getKind()) {
+                    case UPSERT:
+                        builder.put(op.getTable());
+                        break;
+                    case REMOVE:
+                        builder.remove(name);
+                        renames.remove(name);
+                        break;
+                    case RENAME:
+                        if (!builder.rename(name, op.getNewName())) {
+                            throw new IllegalArgumentException("表不存在：" + name);
+                        }
+                        touched.add(op.getNewName());
+                        String origin = renames.remove(name);
+                        renames.put(op.getNewName(), origin != null ? origin : name);
+                        break;
+                    default:
+                        throw new IllegalStateException(op.getKind().name());
+                }
+            }
+            return publish(builder.build(), touched, renames, true);
+        }
+    }
+
+    /**
+     * 注册表结构变更监听器，之后每次表结构变化（包括缓存、刷新、删除、加载快照与增量变更）都会收到事件
+     */
+    public void addSchemaChangeListener(SchemaChangeListener listener) {
+        schemaChangeListeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeSchemaChangeListener(SchemaChangeListener listener) {
+        schemaChangeListeners.remove(listener);
+    }
+
+    /**
+     * 把当前表结构连同预渲染片段与检索索引写入快照文件，供新实例启动时通过{@link #loadSchemaSnapshot(Path)}快速加载
+     * <p>先写同目录下的临时文件再原子替换，写入失败时原文件保持不变</p>
+     *
+     * @param file 快照文件
+     * @throws IOException 写入失败时抛出
+     */
+    public void saveSchemaSnapshot(Path file) throws IOException {
+        // 持有写锁，保证检索索引与表结构属于同一版本
+        synchronized (schemaWriteLock) {
+            SchemaSnapshotFile.write(file, schema.get(), schemaRetriever);
+        }
+    }
+
+    /**
+     * 从快照文件加载表结构，替换当前全部缓存
+     * <p>文件通过内存映射读取，加载时只校验文件并解码表名，各表的列、描述与提示词片段在首次使用时才解码；
+     * 文件中保存了检索索引时直接恢复，否则逐表重建（此时会解码全部表）。加载后可再调用
+     * {@link com.llm.ttsql.loader.SchemaLoader#refresh(GenerateSQLWithLLM)}补上文件写入之后的变更</p>
+     *
+     * @param file 快照文件
+     * @return 加载的表数量
+     * @throws IOException 文件不存在、损坏（校验和不符）或格式版本不兼容时抛出，当前缓存保持不变
+     */
+    public int loadSchemaSnapshot(Path file) throws IOException {
+        SchemaSnapshotFile mapped = SchemaSnapshotFile.open(file);
+        synchronized (schemaWriteLock) {
+            SchemaSnapshot current = schema.get();
+            SchemaSnapshot loaded = mapped.toSnapshot(current.getVersion() + 1, config.getSchemaRenderer());
+            Set<String> touched = new HashSet<>(tableNames(current.getTables()));
+            touched.addAll(tableNames(loaded.getTables()));
+            if (schemaRetriever != null && !mapped.restoreRetriever(schemaRetriever)) {
+                schemaRetriever.clear();
+                loaded.getTables().forEach(schemaRetriever::index);
+            }
+            publish(loaded, touched, Collections.emptyMap(), false);
+        }
+        return mapped.getTableCount();
+    }
+
+    /**
+     * @return 当前表结构快照；快照不可变，版本号随每次表结构变更递增
+     */
+    public SchemaSnapshot getSchemaSnapshot() {
+        return schema.get();
+    }
+
+    private SchemaSnapshot.Builder schemaBuilder() {
+        return schema.get().toBuilder(config.getSchemaInterner(), config.getSchemaRenderer());
+    }
+
+    /**
+     * 发布新快照，失效相关的结果缓存后通知监听器；调用方需持有schemaWriteLock
+     * <p>新增、变化与改名后的表在发布前写入检索索引，删除的表在发布后移除，检索结果中的表名总能在快照中找到或被忽略。
+     * 监听器抛出的异常传给发起变更的调用方，此时变更已经生效</p>
+     *
+     * @param touched         可能发生变化的表名，只比较这些表
+     * @param renames         新表名 -> 原表名
+     * @param updateRetriever 是否同步检索索引（调用方已自行维护时为false）
+     * @return 本次变更的净变化
+     */
+    private SchemaChangeEvent publish(SchemaSnapshot next, Collection<String> touched, Map<String, String> renames,
+                                      boolean updateRetriever) {
+        SchemaSnapshot previous = schema.get();
+        Set<String> added = new LinkedHashSet<>();
+        Set<String> updated = new LinkedHashSet<>();
+        Set<String> removed = new LinkedHashSet<>();
+        for (String name : touched) {
+            TableMeta before = previous.get(name);
+            TableMeta after = next.get(name);
+            if (before == null) {
+                if (after != null) {
+                    added.add(name);
+                }
+            } else if (after == null) {
+                removed.add(name);
+            } else if (previous.fingerprint(before) != next.fingerprint(after)) {
+                updated.add(name);
+            }
+        }
+        Map<String, String> renamed = new LinkedHashMap<>();
+        renames.forEach((to, from) -> {
+            if (removed.contains(from) && added.contains(to)) {
+                removed.remove(from);
+                added.remove(to);
+                renamed.put(from, to);
+                // 同一组变更中改名后又修改了结构
+                TableMeta before = previous.get(from);
+                TableMeta moved = new TableMeta();
+                moved.setTableName(to);
+                moved.setDescription(before.getDescription());
+                moved.setColumns(before.getColumns());
+                if (SchemaFingerprint.of(moved) != next.fingerprint(next.get(to))) {
+                    updated.add(to);
+                }
+            }
+        });
+        SchemaChangeEvent event = new SchemaChangeEvent(previous.getVersion(), next.getVersion(),
+                added, updated, removed, renamed);
+        boolean reindex = updateRetriever && schemaRetriever != null;
+        if (reindex) {
+            added.forEach(name -> schemaRetriever.index(next.get(name)));
+            updated.forEach(name -> schemaRetriever.index(next.get(name)));
+            renamed.values().forEach(name -> schemaRetriever.index(next.get(name)));
+        }
+        schema.set(next);
+        if (reindex) {
+            removed.forEach(schemaRetriever::remove);
+            renamed.keySet().forEach(schemaRetriever::remove);
+        }
+        invalidateResponses(event);
+        if (!event.isEmpty()) {
+            for (SchemaChangeListener listener : schemaChangeListeners) {
+                listener.onSchemaChange(event);
+            }
+        }
+        return event;
+    }
+
+    /**
+     * 使引用了变化、删除或改名前的表的结果缓存与问题模板失效，其余缓存条目保持不变
+     */
+    private void invalidateResponses(SchemaChangeEvent event) {
+        Set<String> tableNames = new HashSet<>(event.getUpdated());
+        tableNames.addAll(event.getRemoved());
+        tableNames.addAll(event.getRenamed().keySet());
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        SqlResultCache responseCache = config.getResponseCache();
+        if (responseCache != null) {
+            responseCache.invalidateTables(tableNames);
+        }
+        QuestionTemplateCache templateCache = config.getQuestionTemplateCache();
+        if (templateCache != null) {
+            templateCache.invalidateTables(tableNames);
+        }
     }
     private LLMInfo llmInfo;
     private Config config;
+    private SchemaRetriever schemaRetriever;
+    private final List<SchemaChangeListener> schemaChangeListeners = new CopyOnWriteArrayList<>();
+    private final AsyncSqlExecutor asyncExecutor;
+    private final LLMTransport transport;
+    private final StreamStats streamStats = new StreamStats();
+    private final ConsensusStats consensusStats = new ConsensusStats();
+    private final EndpointPool endpointPool;
+    //对冲请求使用的执行器，不受maxInFlight限制
+    private final AsyncSqlExecutor hedgeExecutor;
+    //相同提示词的并发请求合并，未启用时为null
+    private final SingleFlight singleFlight;
+    //启用对冲前节点至少需要的成功样本数
+    private static final int HEDGE_MIN_SAMPLES = 20;
 
     /**
      * 构造方法（使用默认配置）
@@ -134,9 +447,25 @@ public class GenerateSQLWithLLM {
      * @throws NullPointerException 如果任一参数为null
      */
     public GenerateSQLWithLLM(LLMInfo llmInfo, List<TableMeta> tables,Config config) {
-        cacheAllTableMeta(tables);
         this.llmInfo = Objects.requireNonNull(llmInfo);
         this.config = Objects.requireNonNull(config);
+        this.schema.set(SchemaSnapshot.empty(config.getSchemaRenderer()));
+        this.asyncExecutor = new AsyncSqlExecutor(config.getAsyncExecutor(), config.getMaxInFlight(),
+                config.getMetricsListener());
+        this.transport = config.getTransport() != null ? config.getTransport() : PooledHttpTransport.shared(config);
+        List<LLMInfo> backends = new ArrayList<>();
+        backends.add(llmInfo);
+        backends.addAll(config.getBackends());
+        this.endpointPool = new EndpointPool(backends, config.getLoadBalanceStrategy(),
+                config.getCircuitFailureThreshold(), config.getCircuitOpenMillis());
+        this.hedgeExecutor = new AsyncSqlExecutor(config.getAsyncExecutor(), Integer.MAX_VALUE);
+        this.singleFlight = config.isCoalesceRequests() ? new SingleFlight(config.getMetricsListener()) : null;
+        if (config.getRetrievalTopK() > 0) {
+            this.schemaRetriever = createSchemaRetriever();
+        }
+        if (tables != null) {
+            cacheAllTableMeta(tables);
+        }
     }
 
     /**
@@ -160,6 +489,7 @@ public class GenerateSQLWithLLM {
      *    <li>构造方法预缓存</li>
      *    <li>调用cacheTableMeta/cacheAllTableMeta方法</li>
      *  </ul>
+     *  <p>配置了{@link Config#retrievalTopK(int)}时，只发送与问题最相关的表及其关联表；检索无结果时至多发送topK张表</p>
      *
      * @param question 用户自然语言问题（需非空字符串）
      * @return 生成的SQL语句
@@ -167,7 +497,7 @@ public class GenerateSQLWithLLM {
      *  @throws IllegalArgumentException 当question为空或缓存为空时抛出
      */
     public String generateSQL(String question) throws SqlGenerationException {
-        List<TableMeta> cachedTables = new ArrayList<>(tableCache.values());
+        List<TableMeta> cachedTables = selectTables(question);
         if (cachedTables.isEmpty()) {
             throw new IllegalArgumentException("请先通过cacheTableMeta方法缓存表结构");
         }
@@ -182,7 +512,7 @@ public class GenerateSQLWithLLM {
      * @throws SqlGenerationException 当缓存为空或生成失败时抛出
      */
     public String generateSQL(String question, String prompt) throws SqlGenerationException {
-        List<TableMeta> cachedTables = new ArrayList<>(tableCache.values());
+        List<TableMeta> cachedTables = schema.get().getTables();
         if (cachedTables.isEmpty()) {
             throw new IllegalArgumentException("请先通过cacheTableMeta方法缓存表结构");
         }
@@ -195,10 +525,99 @@ public class GenerateSQLWithLLM {
      * @param tables   涉及的表结构元数据
      * @param prompt   自定义提示词（可选，null表示使用默认模板）
      * @return 生成的SQL语句
-     * @throws SqlGenerationException   生成失败时抛出，包含详细错误信息
+     * @throws SqlGenerationException   生成失败时抛出，包含详细错误信息；
+     *                                  配置了{@link Config#sqlValidator(SqlValidator)}且修复后仍未通过校验时为{@link SqlValidationException}
      * @throws IllegalArgumentException 当参数不合法时抛出
      */
     public String generateSQL(String question, List<TableMeta> tables, String prompt) throws SqlGenerationException {
+        return generateSQL(question, tables, prompt, Priority.INTERACTIVE, true);
+    }
+
+    /**
+     * 在对话会话中生成SQL（使用缓存元数据）
+     * <p>会话首轮按问题选表（配置了{@link Config#retrievalTopK(int)}时检索，否则为全部缓存表），之后的追问复用同一组表，
+     * 并把会话中之前的问题与SQL（最近几轮原文加更早问题的摘要）随问题发送，使“按部门呢？”这类追问沿用上文条件。
+     * 会话由{@link Config#sessionStore(SessionStore)}保存，生成失败的轮次不计入历史。</p>
+     *
+     * @param sessionId 会话ID，不存在或已过期时新建
+     * @param question  用户自然语言问题（非空）
+     * @return 生成的SQL语句
+     * @throws SqlGenerationException   生成失败时抛出
+     * @throws IllegalStateException    未配置会话存储时抛出
+     * @throws IllegalArgumentException 当question为空或缓存为空时抛出
+     */
+    public String generateSQLInSession(String sessionId, String question) throws SqlGenerationException {
+        SessionStore store = config.getSessionStore();
+        if (store == null) {
+            throw new IllegalStateException("未配置会话存储，请通过Config.sessionStore设置");
+        }
+        if (question == null || question.trim().isEmpty()) {
+            throw new IllegalArgumentException("问题内容不能为空");
+        }
+        long start = System.nanoTime();
+        ConversationSession session = store.getOrCreate(sessionId);
+        List<TableMeta> tables = sessionTables(session, question);
+        String history = session.renderHistory();
+        String contextual = history == null ? question : followUpTemplate().render(history, question);
+        recordStage(MetricStage.SESSION_CONTEXT, start);
+        String sql = generateSQL(contextual, tables, null, Priority.INTERACTIVE, history == null);
+        session.addTurn(question, sql);
+        return sql;
+    }
+
+    /**
+     * 异步在对话会话中生成SQL，参见{@link #generateSQLInSession(String, String)}
+     */
+    public CompletableFuture<String> generateSQLInSessionAsync(String sessionId, String question) {
+        return asyncExecutor.submit(() -> generateSQLInSession(sessionId, question));
+    }
+
+    /**
+     * 结束会话，释放其历史
+     *
+     * @return 会话是否存在
+     */
+    public boolean endSession(String sessionId) {
+        SessionStore store = config.getSessionStore();
+        return store != null && store.remove(sessionId);
+    }
+
+    /**
+     * 会话使用的表：复用会话已选定的表（已被删除的表跳过），尚未选定或全部被删除时按问题重新选择
+     * <p>未启用检索时每次都使用全部缓存表，会话中不保存表名</p>
+     */
+    private List<TableMeta> sessionTables(ConversationSession session, String question) {
+        SchemaSnapshot snapshot = schema.get();
+        List<String> names = session.getTableNames();
+        if (names != null) {
+            List<TableMeta> tables = new ArrayList<>(names.size());
+            for (String name : names) {
+                TableMeta table = snapshot.get(name);
+                if (table != null) {
+                    tables.add(table);
+                }
+            }
+            if (!tables.isEmpty()) {
+                return tables;
+            }
+        }
+        List<TableMeta> tables = selectTables(question);
+        if (tables.isEmpty()) {
+            throw new IllegalArgumentException("请先通过cacheTableMeta方法缓存表结构");
+        }
+        if (schemaRetriever != null) {
+            session.setTableNames(tableNames(tables));
+        }
+        return tables;
+    }
+
+    /**
+     * @param priority  在模型节点准入队列中的优先级
+     * @param templates 是否使用问题模板缓存；携带会话历史的问题不使用
+     */
+    private String generateSQL(String question, List<TableMeta> tables, String prompt, Priority priority,
+                               boolean templates)
+            throws SqlGenerationException {
         // 参数校验
         if (question == null || question.trim().isEmpty()) {
             throw new IllegalArgumentException("问题内容不能为空");
@@ -207,13 +626,349 @@ public class GenerateSQLWithLLM {
             throw new IllegalArgumentException("至少需要提供一个表结构");
         }
 
-        try {
-            String finalPrompt = (prompt != null) ? prompt : buildPrompt(question, tables);
-            String sql = chatGetSqlWithRetry(finalPrompt);
+        SqlResultCache responseCache = config.getResponseCache();
+        // 问题模板只对应默认提示词
+        QuestionTemplateCache templateCache = prompt == null && templates ? config.getQuestionTemplateCache() : null;
+        long schemaFp = responseCache != null || templateCache != null ? schemaFingerprint(tables) : 0L;
+        String cacheKey = null;
+        if (responseCache != null) {
+            cacheKey = SqlResultCache.buildKey(question, schemaFp,
+                    llmInfo.getModel(), config.getDataBaseName(), prompt);
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (templateCache != null) {
+            String templated = templateCache.get(question, schemaFp, llmInfo.getModel(), config.getDataBaseName());
+            if (templated != null && validate(templated, tables) == null) {
+                if (responseCache != null) {
+                    responseCache.put(cacheKey, templated, tableNames(tables));
+                }
+                return templated;
+            }
+        }
+
+        String finalPrompt = prompt;
+        SystemPrompt system = null;
+        if (finalPrompt == null) {
+            long start = System.nanoTime();
+            if (config.getPromptLayout() == PromptLayout.PREFIX_CACHED) {
+                system = systemPrompt(tables);
+                finalPrompt = questionTemplate().render(question);
+            } else {
+                finalPrompt = buildPrompt(question, tables);
+            }
+            recordStage(MetricStage.PROMPT_BUILD, start);
+        }
+        String requestPrompt = finalPrompt;
+        SystemPrompt requestSystem = system;
+        String key = cacheKey;
+        AsyncSqlExecutor.SqlCallable call = () -> {
+            String sql = validateAndRepair(requestSystem, requestPrompt, config.getCandidateCount() > 1
+                    ? chatGetSqlByVote(requestSystem, requestPrompt, tables, priority)
+                    : chatGetSqlWithRetry(requestSystem, requestPrompt, priority), tables, priority);
+            if (responseCache != null || templateCache != null) {
+                List<String> tableNames = tableNames(tables);
+                if (responseCache != null) {
+                    responseCache.put(key, sql, tableNames);
+                }
+                if (templateCache != null) {
+                    templateCache.learn(question, sql, schemaFp, llmInfo.getModel(), config.getDataBaseName(), tableNames);
+                }
+            }
             return sql;
-        } catch (HttpException | ConvertException e) {
-            throw new SqlGenerationException("LLM服务调用失败", e);
+        };
+        if (singleFlight == null) {
+            return call.call();
         }
+        // 默认提示词已包含表结构；自定义提示词需区分校验所用的表结构
+        String flightKey = prompt == null ? (system == null ? finalPrompt : system.key + '\u0000' + finalPrompt)
+                : finalPrompt + '\u0000' + Long.toHexString(responseCache != null ? schemaFp : schemaFingerprint(tables));
+        return singleFlight.execute(flightKey, call);
+    }
+
+    /**
+     * @return 流式调用统计（首token时间、出SQL时间、完整生成时间）
+     */
+    public StreamStats getStreamStats() {
+        return streamStats;
+    }
+
+    /**
+     * @return 多候选投票统计（法定票数达成率、一致率、取消的候选数等）
+     */
+    public ConsensusStats getConsensusStats() {
+        return consensusStats;
+    }
+
+    /**
+     * @return 相同请求合并统计（实际调用数、合并的调用数），未启用合并时返回null
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * @return 模型节点池（节点负载、延迟、熔断状态及对冲统计）
+     */
+    public EndpointPool getEndpointPool() {
+        return endpointPool;
+    }
+
+    /**
+     * 批量生成SQL语句（使用缓存元数据）
+     * <p>多个问题共享同一份表结构，打包在一次模型请求中；启用表检索时使用各问题所选表的并集</p>
+     *
+     * @param questions 用户自然语言问题列表
+     * @return 与问题一一对应的结果
+     * @throws IllegalArgumentException 当问题列表为空或缓存为空时抛出
+     */
+    public List<BatchSqlResult> generateSQLBatch(List<String> questions) {
+        if (questions == null || questions.isEmpty()) {
+            throw new IllegalArgumentException("问题列表不能为空");
+        }
+        LinkedHashMap<String, TableMeta> union = new LinkedHashMap<>();
+        for (String question : questions) {
+            for (TableMeta table : selectTables(question)) {
+                union.putIfAbsent(table.getTableName(), table);
+            }
+        }
+        if (union.isEmpty()) {
+            throw new IllegalArgumentException("请先通过cacheTableMeta方法缓存表结构");
+        }
+        return generateSQLBatch(questions, new ArrayList<>(union.values()));
+    }
+
+    /**
+     * 批量生成SQL语句
+     *
+     * <p>处理流程：</p>
+     * <ol>
+     *   <li>按{@link Config#getBatchTokenBudget()}估算每批可容纳的问题数，自动切分</li>
+     *   <li>每批只携带一份表结构，要求模型返回 [{id, sql}] 形式的JSON数组</li>
+     *   <li>逐条通过{@link Config#getSqlExtractor()}校验提取结果</li>
+     *   <li>缺失或解析失败的问题单独调用{@link #generateSQL(String, List)}兜底</li>
+     * </ol>
+     *
+     * @param questions 用户自然语言问题列表
+     * @param tables    涉及的表结构元数据
+     * @return 与问题一一对应的结果，单个问题失败不影响其他问题
+     */
+    public List<BatchSqlResult> generateSQLBatch(List<String> questions, List<TableMeta> tables) {
+        if (questions == null || questions.isEmpty()) {
+            throw new IllegalArgumentException("问题列表不能为空");
+        }
+        if (tables == null || tables.isEmpty()) {
+            throw new IllegalArgumentException("至少需要提供一个表结构");
+        }
+        List<String> schemaDesc = new ArrayList<>(tables.size());
+        int schemaTokens = TokenEstimator.estimate(PromptConfig.getSysTemBatchPrompt());
+        SchemaSnapshot snapshot = schema.get();
+        for (TableMeta table : tables) {
+            String fragment = snapshot.fragment(table);
+            schemaDesc.add(fragment);
+            schemaTokens += TokenEstimator.estimate(fragment);
+        }
+        int available = config.getBatchTokenBudget() - schemaTokens;
+
+        BatchSqlResult[] results = new BatchSqlResult[questions.size()];
+        int start = 0;
+        while (start < questions.size()) {
+            // 贪心切分，每批至少一个问题
+            int end = start;
+            int used = 0;
+            do {
+                used += TokenEstimator.estimate(questions.get(end)) + BATCH_OUTPUT_TOKENS_PER_QUESTION;
+                end++;
+            } while (end < questions.size()
+                    && used + TokenEstimator.estimate(questions.get(end)) + BATCH_OUTPUT_TOKENS_PER_QUESTION <= available);
+            runBatch(questions, start, end, tables, schemaDesc, results);
+            start = end;
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 执行一批问题，[start, end)范围内的结果写入results
+     */
+    private void runBatch(List<String> questions, int start, int end, List<TableMeta> tables,
+                          List<String> schemaDesc, BatchSqlResult[] results) {
+        StringBuilder questionList = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            questionList.append(i - start + 1).append(". ")
+                    .append(questions.get(i).replace('\n', ' ').trim()).append('\n');
+        }
+        Map<Integer, String> answers = Collections.emptyMap();
+        if (end - start > 1) {
+            long buildStart = System.nanoTime();
+            String prompt = batchTemplate().render(config.getDataBaseName(), schemaDesc, questionList);
+            recordStage(MetricStage.PROMPT_BUILD, buildStart);
+            try {
+                answers = parseBatchReply(withRetry(target -> chatContent(target, null, prompt, target.getRequestParams()),
+                        TokenEstimator.estimate(prompt), Priority.BATCH), tables);
+            } catch (SqlGenerationException e) {
+                // 整批失败时全部转为单独调用
+                answers = Collections.emptyMap();
+            }
+        }
+        for (int i = start; i < end; i++) {
+            String question = questions.get(i);
+            String sql = answers.get(i - start + 1);
+            if (sql != null) {
+                results[i] = new BatchSqlResult(question, sql, null);
+                continue;
+            }
+            try {
+                results[i] = new BatchSqlResult(question, generateSQL(question, tables, null, Priority.BATCH, true), null);
+            } catch (SqlGenerationException e) {
+                results[i] = new BatchSqlResult(question, null, e);
+            } catch (RuntimeException e) {
+                results[i] = new BatchSqlResult(question, null, new SqlGenerationException(e.getMessage(), e));
+            }
+        }
+    }
+
+    /**
+     * 解析批量响应中的 [{id, sql}] 数组，每条sql重新包装为单条响应交给SqlExtractor提取，并做本地校验
+     *
+     * @param content 模型响应内容
+     * @param tables  本批使用的表结构
+     * @return 编号到SQL的映射，解析或校验失败的条目不包含在内
+     */
+    private Map<Integer, String> parseBatchReply(String content, List<TableMeta> tables) {
+        Map<Integer, String> answers = new HashMap<>();
+        int fence = content.indexOf("```json");
+        int from = fence >= 0 ? content.indexOf('[', fence) : content.indexOf('[');
+        int fenceEnd = fence >= 0 ? content.indexOf("```", fence + 7) : -1;
+        int to = fenceEnd > 0 ? content.lastIndexOf(']', fenceEnd) : content.lastIndexOf(']');
+        if (from < 0 || to < from) {
+            return answers;
+        }
+        JSONArray array;
+        try {
+            array = JSONUtil.parseArray(content.substring(from, to + 1));
+        } catch (RuntimeException e) {
+            return answers;
+        }
+        for (Object item : array) {
+            if (!(item instanceof JSONObject)) {
+                continue;
+            }
+            JSONObject obj = (JSONObject) item;
+            Integer id = obj.getInt("id");
+            if (id == null || obj.getStr("sql") == null) {
+                continue;
+            }
+            JSONObject single = new JSONObject();
+            single.set("sql", obj.getStr("sql"));
+            try {
+                String sql = config.getSqlExtractor().extract("```json\n" + single + "\n```");
+                if (validate(sql, tables) == null) {
+                    answers.put(id, sql);
+                }
+            } catch (SqlGenerationException e) {
+                // 交由单独调用兜底
+            }
+        }
+        return answers;
+    }
+
+    /**
+     * 创建表结构检索器，仅在{@link Config#getRetrievalTopK()}大于0时调用
+     * <p>子类可覆盖此方法替换检索策略</p>
+     *
+     * @return 表结构检索器
+     */
+    protected SchemaRetriever createSchemaRetriever() {
+        return new Bm25SchemaRetriever();
+    }
+
+    /**
+     * 从缓存中选取与问题相关的表
+     * <p>未启用检索时返回全部缓存表；检索无结果时不退回全部缓存表，
+     * 而是由{@link SchemaBudget#top(List, String, int)}按相关度选取至多topK张，避免大库下提示词失控</p>
+     *
+     * @param question 用户问题
+     * @return 表结构列表
+     */
+    private List<TableMeta> selectTables(String question) {
+        SchemaSnapshot snapshot = schema.get();
+        if (schemaRetriever != null && question != null) {
+            List<String> names = schemaRetriever.select(question, config.getRetrievalTopK());
+            List<TableMeta> selected = new ArrayList<>(names.size());
+            for (String name : names) {
+                TableMeta table = snapshot.get(name);
+                if (table != null) {
+                    selected.add(table);
+                }
+            }
+            if (!selected.isEmpty()) {
+                return selected;
+            }
+            return SchemaBudget.top(snapshot.getTables(), question, config.getRetrievalTopK());
+        }
+        return snapshot.getTables();
+    }
+
+    /**
+     * 计算本次发送给模型的表结构整体指纹，已缓存且未被替换的表直接复用缓存的指纹
+     *
+     * @param tables 表结构列表
+     * @return 与表顺序无关的整体指纹
+     */
+    private long schemaFingerprint(List<TableMeta> tables) {
+        long[] fingerprints = new long[tables.size()];
+        int i = 0;
+        SchemaSnapshot snapshot = schema.get();
+        for (TableMeta table : tables) {
+            fingerprints[i++] = snapshot.fingerprint(table);
+        }
+        return SchemaFingerprint.combine(fingerprints);
+    }
+
+    /**
+     * 异步生成SQL语句（使用缓存元数据），参见{@link #generateSQL(String)}
+     *
+     * @param question 用户自然语言问题
+     * @return 生成结果，失败时以{@link SqlGenerationException}异常完成；取消时中止进行中的模型调用
+     */
+    public CompletableFuture<String> generateSQLAsync(String question) {
+        return asyncExecutor.submit(() -> generateSQL(question));
+    }
+
+    /**
+     * 异步生成SQL语句（自动构建提示词），参见{@link #generateSQL(String, List)}
+     *
+     * @param question 用户自然语言问题
+     * @param tables   涉及的表结构元数据
+     * @return 生成结果，失败时以{@link SqlGenerationException}异常完成；取消时中止进行中的模型调用
+     */
+    public CompletableFuture<String> generateSQLAsync(String question, List<TableMeta> tables) {
+        return asyncExecutor.submit(() -> generateSQL(question, tables));
+    }
+
+    /**
+     * 异步生成SQL语句（缓存元数据+自定义提示词），参见{@link #generateSQL(String, String)}
+     *
+     * @param question 用户自然语言问题
+     * @param prompt   自定义提示词
+     * @return 生成结果，失败时以{@link SqlGenerationException}异常完成；取消时中止进行中的模型调用
+     */
+    public CompletableFuture<String> generateSQLAsync(String question, String prompt) {
+        return asyncExecutor.submit(() -> generateSQL(question, prompt));
+    }
+
+    /**
+     * 异步生成SQL语句（自定义提示词），参见{@link #generateSQL(String, List, String)}
+     *
+     * @param question 用户自然语言问题
+     * @param tables   涉及的表结构元数据
+     * @param prompt   自定义提示词（可选，null表示使用默认模板）
+     * @return 生成结果，失败时以{@link SqlGenerationException}异常完成；取消时中止进行中的模型调用
+     */
+    public CompletableFuture<String> generateSQLAsync(String question, List<TableMeta> tables, String prompt) {
+        return asyncExecutor.submit(() -> generateSQL(question, tables, prompt));
     }
 
     /**
@@ -224,76 +979,834 @@ public class GenerateSQLWithLLM {
      * @return 符合大模型要求的完整提示词
      */
     protected String buildPrompt(String question, List<TableMeta> tables) {
-        // 构建表结构描述
-        StringBuilder schemaDesc = new StringBuilder();
+        // 已缓存的表直接复用预渲染片段，由模板一次性拼接
+        List<String> schemaDesc = new ArrayList<>(tables.size());
+        SchemaSnapshot snapshot = schema.get();
         for (TableMeta table : tables) {
-            schemaDesc.append("[表名: ").append(table.getTableName()).append("");
-            schemaDesc.append(",表描述: ").append(table.getDescription()).append("\n");
-            for (ColumnMeta col : table.getColumns()) {
-                schemaDesc.append("- 列名: ").append(col.getName())
-                        .append(", 类型: ").append(col.getType())
-                        .append(", 描述: ").append(col.getDescription()).append("\n");
+            schemaDesc.add(snapshot.fragment(table));
+        }
+        PromptTemplate template = promptTemplate();
+        int budget = config.getPromptTokenBudget();
+        if (budget > 0) {
+            int[] tokens = new int[tables.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = snapshot.fragmentTokens(tables.get(i));
+            }
+            int overhead = TokenEstimator.estimate(template.getSource()) + TokenEstimator.estimate(question)
+                    + TokenEstimator.estimate(config.getDataBaseName());
+            schemaDesc = SchemaBudget.fit(tables, schemaDesc, tokens, snapshot.getRenderer(), question,
+                    budget - overhead);
+        }
+        return template.render(config.getDataBaseName(), schemaDesc, question);
+    }
+
+    /**
+     * 构建前缀缓存布局的system消息：数据库类型、表结构与要求，不含问题
+     * <p>token预算按空问题降级，保证同一组表得到逐字节一致的内容</p>
+     *
+     * @param tables 按表名排序的表结构列表
+     * @return system消息内容
+     */
+    protected String buildSystemPrompt(List<TableMeta> tables) {
+        List<String> schemaDesc = new ArrayList<>(tables.size());
+        SchemaSnapshot snapshot = schema.get();
+        for (TableMeta table : tables) {
+            schemaDesc.add(snapshot.fragment(table));
+        }
+        PromptTemplate template = cachedTemplate();
+        int budget = config.getPromptTokenBudget();
+        if (budget > 0) {
+            int[] tokens = new int[tables.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = snapshot.fragmentTokens(tables.get(i));
+            }
+            int overhead = TokenEstimator.estimate(template.getSource())
+                    + TokenEstimator.estimate(questionTemplate().getSource())
+                    + TokenEstimator.estimate(config.getDataBaseName());
+            schemaDesc = SchemaBudget.fit(tables, schemaDesc, tokens, snapshot.getRenderer(), "",
+                    budget - overhead);
+        }
+        return template.render(config.getDataBaseName(), schemaDesc);
+    }
+
+    /**
+     * 获取本次请求的system消息
+     * <p>表结构快照、模板、数据库类型与所选表（按对象比较）均未变化时复用上一次构建的结果，
+     * 包括预先转义好的JSON内容，每次请求只需渲染问题部分</p>
+     */
+    private SystemPrompt systemPrompt(List<TableMeta> tables) {
+        SchemaSnapshot snapshot = schema.get();
+        PromptTemplate template = cachedTemplate();
+        String dataBaseName = config.getDataBaseName();
+        SystemPrompt cached = systemPrompt;
+        boolean reusable = cached != null && cached.snapshot == snapshot && cached.template == template
+                && Objects.equals(cached.dataBaseName, dataBaseName);
+        // 快照中的表列表不可变，可按引用直接判断
+        if (reusable && tables == cached.tables && tables == snapshot.getTables()) {
+            return cached;
+        }
+        List<TableMeta> sorted = new ArrayList<>(tables);
+        sorted.sort(TABLE_ORDER);
+        if (reusable && sameTables(cached.sorted, sorted, snapshot)) {
+            return cached;
+        }
+        String text = buildSystemPrompt(sorted);
+        cached = new SystemPrompt(snapshot, tables, sorted, dataBaseName, template, text,
+                "#" + systemPromptIds.incrementAndGet());
+        systemPrompt = cached;
+        return cached;
+    }
+
+    /**
+     * @return 两组表是否为快照中相同的表对象且顺序一致；未缓存的表可能被调用方原地修改，不复用
+     */
+    private static boolean sameTables(List<TableMeta> a, List<TableMeta> b, SchemaSnapshot snapshot) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i) || !snapshot.contains(b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 前缀缓存布局下构建完成的system消息
+     */
+    private static final class SystemPrompt {
+        final SchemaSnapshot snapshot;
+        final List<TableMeta> tables;
+        final List<TableMeta> sorted;
+        final String dataBaseName;
+        final PromptTemplate template;
+        //转义后的JSON字符串内容，直接写入请求体
+        final String escaped;
+        final int tokens;
+        //区分不同system消息的标识，用于相同请求合并
+        final String key;
+
+        SystemPrompt(SchemaSnapshot snapshot, List<TableMeta> tables, List<TableMeta> sorted, String dataBaseName,
+                     PromptTemplate template, String text, String key) {
+            this.snapshot = snapshot;
+            this.tables = tables;
+            this.sorted = sorted;
+            this.dataBaseName = dataBaseName;
+            this.template = template;
+            this.escaped = ChatRequestBody.escape(text);
+            this.tokens = TokenEstimator.estimate(text);
+            this.key = key;
+        }
+    }
+
+    /**
+     * 获取编译后的默认提示词模板
+     */
+    private PromptTemplate promptTemplate() {
+        String source = PromptConfig.getSysTemDefaultPrompt();
+        PromptTemplate template = compiledTemplate;
+        if (template == null || !template.getSource().equals(source)) {
+            template = PromptTemplate.compile(source);
+            compiledTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * 获取编译后的前缀缓存布局system消息模板
+     */
+    private PromptTemplate cachedTemplate() {
+        String source = PromptConfig.getSysTemCachedPrompt();
+        PromptTemplate template = compiledCachedTemplate;
+        if (template == null || !template.getSource().equals(source)) {
+            template = PromptTemplate.compile(source);
+            compiledCachedTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * 获取编译后的前缀缓存布局问题模板
+     */
+    private PromptTemplate questionTemplate() {
+        String source = PromptConfig.getSysTemCachedQuestionPrompt();
+        PromptTemplate template = compiledQuestionTemplate;
+        if (template == null || !template.getSource().equals(source)) {
+            template = PromptTemplate.compile(source);
+            compiledQuestionTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * 获取编译后的会话追问模板
+     */
+    private PromptTemplate followUpTemplate() {
+        String source = PromptConfig.getSysTemFollowUpPrompt();
+        PromptTemplate template = compiledFollowUpTemplate;
+        if (template == null || !template.getSource().equals(source)) {
+            template = PromptTemplate.compile(source);
+            compiledFollowUpTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * 获取编译后的批量提示词模板
+     */
+    private PromptTemplate batchTemplate() {
+        String source = PromptConfig.getSysTemBatchPrompt();
+        PromptTemplate template = compiledBatchTemplate;
+        if (template == null || !template.getSource().equals(source)) {
+            template = PromptTemplate.compile(source);
+            compiledBatchTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * 获取编译后的修复提示词模板
+     */
+    private PromptTemplate repairTemplate() {
+        String source = PromptConfig.getSysTemRepairPrompt();
+        PromptTemplate template = compiledRepairTemplate;
+        if (template == null || !template.getSource().equals(source)) {
+            template = PromptTemplate.compile(source);
+            compiledRepairTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * 本地校验生成的SQL，不通过时把具体错误连同原提示词发回模型修正
+     *
+     * @param system 前缀缓存布局的system消息，修正请求保持不变；其他布局为null
+     * @param prompt 原提示词（前缀缓存布局下为user消息部分）
+     * @param sql    模型生成的SQL
+     * @param tables 本次使用的表结构
+     * @return 通过校验的SQL；未配置校验器时原样返回
+     * @throws SqlValidationException 超过{@link Config#getMaxRepairRounds()}轮仍未通过时抛出
+     */
+    private String validateAndRepair(SystemPrompt system, String prompt, String sql, List<TableMeta> tables,
+                                     Priority priority)
+            throws SqlGenerationException {
+        if (config.getSqlValidator() == null) {
+            return sql;
+        }
+        for (int round = 0; ; round++) {
+            String error = validate(sql, tables);
+            if (error == null) {
+                return sql;
+            }
+            if (round >= config.getMaxRepairRounds()) {
+                throw new SqlValidationException(sql, error);
+            }
+            sql = repair(system, repairTemplate().render(prompt, sql, error), priority);
+        }
+    }
+
+    /**
+     * 一轮修正请求：耗时计入{@link MetricStage#REPAIR}，成败不再报告给{@link MetricsListener#onSuccess}，
+     * 避免同一次生成被重复计数
+     */
+    private String repair(SystemPrompt system, String prompt, Priority priority) throws SqlGenerationException {
+        int tokens = TokenEstimator.estimate(prompt) + (system == null ? 0 : system.tokens);
+        long start = System.nanoTime();
+        try {
+            return withRetry(target -> chat(target, system, prompt, target.getRequestParams()), tokens, priority,
+                    false);
+        } finally {
+            recordStage(MetricStage.REPAIR, start);
+        }
+    }
+
+    private static List<String> tableNames(List<TableMeta> tables) {
+        List<String> names = new ArrayList<>(tables.size());
+        tables.forEach(table -> names.add(table.getTableName()));
+        return names;
+    }
+
+    /**
+     * @return 校验失败原因，通过或未配置校验器时返回null
+     */
+    private String validate(String sql, List<TableMeta> tables) {
+        SqlValidator validator = config.getSqlValidator();
+        if (validator == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        // 调用方直接传入、未缓存（或与缓存不是同一对象）的表叠加在缓存索引之上
+        List<TableMeta> extra = null;
+        SchemaSnapshot snapshot = schema.get();
+        for (TableMeta table : tables) {
+            if (!snapshot.contains(table)) {
+                if (extra == null) {
+                    extra = new ArrayList<>();
+                }
+                extra.add(table);
             }
-            schemaDesc.append("\n]");
         }
-        return String.format(PromptConfig.getSysTemDefaultPrompt(), config.getDataBaseName(),schemaDesc, question);
+        SchemaIndex index = extra == null ? snapshot.getIndex() : snapshot.getIndex().overlay(extra);
+        String error = validator.validate(sql, index, config.getDataBaseName());
+        recordStage(MetricStage.VALIDATION, start);
+        return error;
     }
 
     /**
      * 带重试机制的模型调用
      *
-     * @param prompt 完整的提示词内容
+     * @param system   前缀缓存布局的system消息，其他布局为null
+     * @param prompt   完整的提示词内容（前缀缓存布局下为user消息部分）
+     * @param priority 在模型节点准入队列中的优先级
      * @return 解析后的SQL语句
      * @throws SqlGenerationException 当超过最大重试次数时抛出
      */
-    private String chatGetSqlWithRetry(String prompt) throws SqlGenerationException {
+    private String chatGetSqlWithRetry(SystemPrompt system, String prompt, Priority priority)
+            throws SqlGenerationException {
+        int tokens = TokenEstimator.estimate(prompt) + (system == null ? 0 : system.tokens);
+        return withRetry(target -> chat(target, system, prompt, target.getRequestParams()), tokens, priority);
+    }
+
+    /**
+     * 多候选投票：并发发出{@link Config#getCandidateCount()}个采样请求，规范化后相同的有效候选
+     * 达到法定票数即返回，并取消仍未返回的候选；全部候选返回仍未达到时按多数决出
+     * <p>每个候选只调用一次、不重试，由负载均衡策略各自选择节点；候选全部失败时改为常规重试</p>
+     *
+     * @param tables 本次使用的表结构，用于剔除未通过本地校验的候选
+     * @return 胜出的SQL；候选均未通过校验时为最先返回的候选，由后续修复流程处理
+     */
+    private String chatGetSqlByVote(SystemPrompt system, String prompt, List<TableMeta> tables, Priority priority)
+            throws SqlGenerationException {
+        int count = config.getCandidateCount();
+        int tokens = TokenEstimator.estimate(prompt) + (system == null ? 0 : system.tokens);
+        long start = System.nanoTime();
+        CandidateVote vote = new CandidateVote(count, config.getCandidateQuorum(), tables, start);
+        List<CompletableFuture<String>> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<String> candidate = hedgeExecutor.submit(() -> invoke(endpointPool.acquire(null),
+                    target -> chat(target, system, prompt, samplingParams(target)), tokens, priority));
+            candidates.add(candidate);
+            candidate.whenComplete(vote::accept);
+        }
+        Runnable cancelAll = () -> candidates.forEach(candidate -> candidate.cancel(true));
+        CancellationScope scope = CancellationScope.current();
+        if (scope != null) {
+            scope.onCancel(cancelAll);
+        }
+        String sql;
+        try {
+            sql = await(vote.result);
+        } finally {
+            cancelAll.run();
+            if (scope != null) {
+                scope.remove(cancelAll);
+            }
+        }
+        recordStage(MetricStage.CANDIDATE_VOTE, start);
+        if (sql == null) {
+            return chatGetSqlWithRetry(system, prompt, priority);
+        }
+        MetricsListener metrics = config.getMetricsListener();
+        if (metrics != null) {
+            metrics.onSuccess(System.nanoTime() - start, 0);
+        }
+        return sql;
+    }
+
+    /**
+     * 候选请求的参数：节点配置的请求参数，并以{@link Config#getCandidateTemperature()}覆盖采样温度
+     */
+    private Map<String, Object> samplingParams(LLMInfo target) {
+        Double temperature = config.getCandidateTemperature();
+        if (temperature == null) {
+            return target.getRequestParams();
+        }
+        Map<String, Object> params = target.getRequestParams() == null ? new LinkedHashMap<>()
+                : new LinkedHashMap<>(target.getRequestParams());
+        params.put("temperature", temperature);
+        return params;
+    }
+
+    /**
+     * 一次多候选投票的计票，候选完成回调在各自的线程中执行
+     */
+    private final class CandidateVote {
+        //投票结果；候选全部失败时为null
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        private final int count;
+        private final int quorum;
+        private final List<TableMeta> tables;
+        private final long start;
+        //规范化结果 -> [票数, 首个候选在answers中的位置]
+        private final Map<String, int[]> tally = new HashMap<>();
+        private final List<String> answers = new ArrayList<>();
+        private String firstInvalid;
+        private int answered;
+        private int invalid;
+        private int failed;
+
+        CandidateVote(int count, int quorum, List<TableMeta> tables, long start) {
+            this.count = count;
+            this.quorum = quorum;
+            this.tables = tables;
+            this.start = start;
+        }
+
+        void accept(String sql, Throwable error) {
+            // 校验与规范化在锁外进行，得出结果后返回的候选不再处理
+            String key = null;
+            if (error == null && !result.isDone()) {
+                try {
+                    if (validate(sql, tables) == null) {
+                        key = config.getSqlNormalizer().normalize(sql, config.getDataBaseName());
+                    }
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                if (error != null) {
+                    failed++;
+                } else if (key == null) {
+                    answered++;
+                    invalid++;
+                    if (firstInvalid == null) {
+                        firstInvalid = sql;
+                    }
+                } else {
+                    answered++;
+                    int[] votes = tally.get(key);
+                    if (votes == null) {
+                        votes = new int[]{0, answers.size()};
+                        tally.put(key, votes);
+                        answers.add(sql);
+                    }
+                    if (++votes[0] >= quorum) {
+                        decide(answers.get(votes[1]), votes[0], true);
+                        return;
+                    }
+                }
+                if (answered + failed == count) {
+                    int[] best = null;
+                    for (int[] votes : tally.values()) {
+                        if (best == null || votes[0] > best[0] || votes[0] == best[0] && votes[1] < best[1]) {
+                            best = votes;
+                        }
+                    }
+                    decide(best == null ? firstInvalid : answers.get(best[1]), best == null ? 0 : best[0], false);
+                }
+            }
+        }
+
+        private void decide(String sql, int votes, boolean quorumReached) {
+            consensusStats.record(count, answered, invalid, failed, votes, tally.size(), quorumReached,
+                    System.nanoTime() - start);
+            result.complete(sql);
+        }
+    }
+
+    /**
+     * 面向单个模型节点的调用
+     */
+    @FunctionalInterface
+    private interface EndpointCall {
+        String call(LLMInfo target) throws SqlGenerationException;
+    }
+
+    /**
+     * 按{@link Config#getMaxRetries()}重试执行模型调用
+     * <p>每次调用按负载均衡策略选择节点，重试时避开上次失败的节点，并以指数退避加随机抖动等待</p>
+     *
+     * @param call     单次调用
+     * @param tokens   估算的提示词token数，用于节点准入控制
+     * @param priority 在节点准入队列中的优先级
+     * @return 调用结果
+     * @throws SqlGenerationException 当超过最大重试次数或调用被取消时抛出
+     */
+    private String withRetry(EndpointCall call, int tokens, Priority priority) throws SqlGenerationException {
+        return withRetry(call, tokens, priority, true);
+    }
+
+    /**
+     * @param reportOutcome 是否向{@link MetricsListener#onSuccess}/{@link MetricsListener#onFailure}报告最终结果，
+     *                      同一次生成中的后续调用（如修正请求）传false
+     */
+    private String withRetry(EndpointCall call, int tokens, Priority priority, boolean reportOutcome)
+            throws SqlGenerationException {
         int retries = 0;
         Exception lastException = null;
+        LLMEndpoint lastEndpoint = null;
+        MetricsListener metrics = config.getMetricsListener();
+        MetricsListener outcome = reportOutcome ? metrics : null;
+        long start = System.nanoTime();
 
+        CancellationScope scope = CancellationScope.current();
         while (retries <= config.getMaxRetries()) {
             try {
-                return chat(prompt);
+                if (scope != null && scope.isCancelled()) {
+                    throw new SqlGenerationException("请求已取消", lastException);
+                }
+                if (retries > 0) {
+                    backoff(retries);
+                }
+            } catch (SqlGenerationException e) {
+                if (outcome != null) {
+                    outcome.onFailure(System.nanoTime() - start, retries, e);
+                }
+                throw e;
+            }
+            LLMEndpoint endpoint = null;
+            try {
+                endpoint = endpointPool.acquire(lastEndpoint);
+                String result = config.isHedging() ? hedgedCall(endpoint, call, tokens, priority)
+                        : invoke(endpoint, call, tokens, priority);
+                if (outcome != null) {
+                    outcome.onSuccess(System.nanoTime() - start, retries);
+                }
+                return result;
             } catch (Exception e) {
                 lastException = e;
+                lastEndpoint = endpoint;
                 retries++;
+                if (metrics != null && retries <= config.getMaxRetries()) {
+                    metrics.onRetry(retries, e);
+                }
             }
         }
+        if (outcome != null) {
+            outcome.onFailure(System.nanoTime() - start, config.getMaxRetries(), lastException);
+        }
         throw new SqlGenerationException(
                 String.format("请求失败，已重试%d次", config.getMaxRetries()),
                 lastException
         );
     }
 
+    /**
+     * 向指标回调报告阶段耗时
+     *
+     * @param stage 阶段
+     * @param start 阶段开始时的{@link System#nanoTime()}
+     */
+    private void recordStage(MetricStage stage, long start) {
+        MetricsListener metrics = config.getMetricsListener();
+        if (metrics != null) {
+            metrics.onStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 读取响应中的usage并报告token用量
+     */
+    private void recordUsage(JSONObject response) {
+        MetricsListener metrics = config.getMetricsListener();
+        JSONObject usage = metrics == null ? null : response.getJSONObject("usage");
+        if (usage != null) {
+            metrics.onTokenUsage(usage.getInt("prompt_tokens", 0), usage.getInt("completion_tokens", 0));
+        }
+    }
+
+    /**
+     * 提取SQL并报告提取耗时
+     */
+    private String extract(String content) throws SqlGenerationException {
+        long start = System.nanoTime();
+        try {
+            return config.getSqlExtractor().extract(content);
+        } finally {
+            recordStage(MetricStage.EXTRACTION, start);
+        }
+    }
+
+    /**
+     * 重试前的退避等待（full jitter）
+     *
+     * @param attempt 第几次重试（从1开始）
+     * @throws SqlGenerationException 等待期间被中断（异步调用取消）时抛出
+     */
+    private void backoff(int attempt) throws SqlGenerationException {
+        long cap = Math.min(config.getRetryBackoffMaxMillis(),
+                config.getRetryBackoffMillis() << Math.min(attempt - 1, 20));
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SqlGenerationException("请求已取消", e);
+        }
+    }
+
+    /**
+     * 在指定节点上执行调用并更新节点的延迟、负载与熔断状态
+     * <p>节点配置了准入控制时先获取许可（排队时间不计入节点延迟）；
+     * 网络错误、HTTP 5xx与429计为节点故障；节点正常响应但内容不合格不计入熔断</p>
+     */
+    private String invoke(LLMEndpoint endpoint, EndpointCall call, int tokens, Priority priority)
+            throws SqlGenerationException {
+        AdmissionController admission = endpoint.getLlmInfo().getAdmissionController();
+        if (admission != null) {
+            try {
+                long waited = admission.acquire(tokens, priority);
+                MetricsListener metrics = config.getMetricsListener();
+                if (metrics != null) {
+                    metrics.onStage(MetricStage.ADMISSION_WAIT, waited);
+                }
+            } catch (SqlGenerationException e) {
+                endpoint.end(0L, null);
+                throw e;
+            }
+        }
+        long start = System.nanoTime();
+        Boolean failure = Boolean.TRUE;
+        boolean overloaded = false;
+        try {
+            String result = call.call(endpoint.getLlmInfo());
+            failure = Boolean.FALSE;
+            return result;
+        } catch (LLMHttpException e) {
+            int status = e.getStatusCode();
+            failure = status == 0 || status == 429 || status >= 500;
+            overloaded = status == 429 || status == 503;
+            throw e;
+        } catch (SqlGenerationException e) {
+            failure = Boolean.FALSE;
+            throw e;
+        } finally {
+            long latency = System.nanoTime() - start;
+            CancellationScope scope = CancellationScope.current();
+            // 被取消的请求（如对冲中落败的一方）不计入节点统计
+            boolean cancelled = scope != null && scope.isCancelled();
+            endpoint.end(latency, cancelled ? null : failure);
+            if (admission != null) {
+                if (overloaded) {
+                    admission.releaseOverloaded();
+                } else if (cancelled || failure) {
+                    admission.releaseIgnored();
+                } else {
+                    admission.release(latency);
+                }
+            }
+        }
+    }
+
+    /**
+     * 对冲调用：主请求超过节点观测到的p95延迟仍未返回时，向另一节点发起相同请求，
+     * 取最先返回的有效结果并取消另一方
+     */
+    private String hedgedCall(LLMEndpoint primary, EndpointCall call, int tokens, Priority priority)
+            throws SqlGenerationException {
+        long delay = primary.getP95LatencyMillis(HEDGE_MIN_SAMPLES);
+        if (delay < 0 || endpointPool.size() < 2) {
+            return invoke(primary, call, tokens, priority);
+        }
+        CompletableFuture<String> first = submitHedge(primary, call, tokens, priority);
+        try {
+            return first.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超过p95仍未返回，发起对冲请求
+        } catch (InterruptedException e) {
+            first.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SqlGenerationException("请求已取消", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        LLMEndpoint secondary = endpointPool.acquireOther(primary);
+        if (secondary == null) {
+            return await(first);
+        }
+        endpointPool.recordHedgeStarted();
+        CompletableFuture<String> second = submitHedge(secondary, call, tokens, priority);
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicBoolean oneFailed = new AtomicBoolean();
+        first.whenComplete((result, error) -> settle(winner, oneFailed, result, error, false));
+        second.whenComplete((result, error) -> settle(winner, oneFailed, result, error, true));
+        try {
+            return await(winner);
+        } finally {
+            first.cancel(true);
+            second.cancel(true);
+        }
+    }
+
+    /**
+     * 对冲中的一路完成：首个成功结果胜出，两路均失败时以后失败的一路异常结束
+     */
+    private void settle(CompletableFuture<String> winner, AtomicBoolean oneFailed,
+                        String result, Throwable error, boolean hedge) {
+        if (error == null) {
+            if (winner.complete(result) && hedge) {
+                endpointPool.recordHedgeWon();
+            }
+        } else if (!oneFailed.compareAndSet(false, true)) {
+            winner.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 提交对冲中的一路请求，任务在执行前被取消时同样释放节点占用
+     */
+    private CompletableFuture<String> submitHedge(LLMEndpoint endpoint, EndpointCall call, int tokens,
+                                                  Priority priority) {
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<String> future = hedgeExecutor.submit(() -> {
+            if (!started.compareAndSet(false, true)) {
+                throw new SqlGenerationException("请求已取消");
+            }
+            return invoke(endpoint, call, tokens, priority);
+        });
+        future.whenComplete((result, error) -> {
+            if (started.compareAndSet(false, true)) {
+                endpoint.end(0L, null);
+            }
+        });
+        return future;
+    }
+
+    private static String await(CompletableFuture<String> future) throws SqlGenerationException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SqlGenerationException("请求已取消", e);
+        } catch (CancellationException e) {
+            throw new SqlGenerationException("请求已取消", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static SqlGenerationException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof SqlGenerationException ? (SqlGenerationException) error
+                : new SqlGenerationException("SQL生成失败: " + error.getMessage(), error);
+    }
+
     /**
      * 执行大模型调用并解析结果
      *
-     * @param txt 完整的提示词内容
+     * @param target 目标模型节点
+     * @param system system消息，null表示只发送user消息
+     * @param txt    完整的提示词内容
+     * @param params 请求参数（如temperature），可为null
+     * @return 解析后的SQL语句
+     * @throws SqlGenerationException 当通信失败或响应格式错误时抛出
+     */
+    private String chat(LLMInfo target, SystemPrompt system, String txt, Map<String, Object> params)
+            throws SqlGenerationException {
+        if (config.isStreaming()) {
+            return chatStream(target, system, txt, params);
+        }
+        return extract(chatContent(target, system, txt, params));
+    }
+
+    /**
+     * 流式执行大模型调用
+     * <p>逐个事件增量定位SQL所在的JSON对象，对象闭合后立即取消剩余的流；
+     * 流结束仍未定位到时对完整输出做常规提取</p>
+     *
+     * @param target 目标模型节点
+     * @param system system消息，null表示只发送user消息
+     * @param txt    完整的提示词内容
+     * @param params 请求参数（如temperature），可为null
+     * @return 解析后的SQL语句
+     * @throws SqlGenerationException 当通信失败或响应格式错误时抛出
+     */
+    private String chatStream(LLMInfo target, SystemPrompt system, String txt, Map<String, Object> params)
+            throws SqlGenerationException {
+        String requestBody = buildChatBody(target, system, txt, true, params);
+        IncrementalSqlExtractor incremental = new IncrementalSqlExtractor();
+        long start = System.nanoTime();
+        long[] firstToken = {-1L};
+        long[] timeToSql = {-1L};
+        transport.postStream(target.getChatEndpoint(), buildChatHeaders(target), requestBody, data -> {
+            JSONObject chunk = JSONUtil.parseObj(data);
+            recordUsage(chunk);
+            JSONArray choices = chunk.getJSONArray("choices");
+            if (choices == null || choices.isEmpty()) {
+                return true;
+            }
+            JSONObject delta = choices.getJSONObject(0).getJSONObject("delta");
+            String content = delta == null ? null : delta.getStr("content");
+            if (content == null || content.isEmpty()) {
+                return true;
+            }
+            if (firstToken[0] < 0) {
+                firstToken[0] = System.nanoTime() - start;
+                recordStage(MetricStage.FIRST_TOKEN, start);
+            }
+            if (incremental.append(content)) {
+                timeToSql[0] = System.nanoTime() - start;
+                return false;
+            }
+            return true;
+        });
+        recordStage(MetricStage.HTTP, start);
+        MetricsListener metrics = config.getMetricsListener();
+        if (incremental.isComplete()) {
+            streamStats.record(firstToken[0], timeToSql[0], -1L);
+            if (metrics != null) {
+                metrics.onStage(MetricStage.TIME_TO_SQL, timeToSql[0]);
+            }
+            return extract(incremental.getBlock());
+        }
+        long completion = System.nanoTime() - start;
+        streamStats.record(firstToken[0], completion, completion);
+        if (metrics != null) {
+            metrics.onStage(MetricStage.TIME_TO_SQL, completion);
+        }
+        return extract(incremental.getContent());
+    }
+
+    /**
+     * 构造chat completions请求体，附加请求参数（通常为节点配置的请求参数）
+     */
+    private String buildChatBody(LLMInfo target, SystemPrompt system, String txt, boolean stream,
+                                 Map<String, Object> params) {
+        return ChatRequestBody.build(target.getModel(), system == null ? null : system.escaped, txt, stream, params);
+    }
+
+    private Map<String, String> buildChatHeaders(LLMInfo target) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Authorization", target.getApiKey());
+        headers.put("Content-Type", "application/json");
+        return headers;
+    }
+
+    /**
+     * 执行大模型调用
+     *
+     * @param target 目标模型节点
+     * @param system system消息，null表示只发送user消息
+     * @param txt    完整的提示词内容
+     * @param params 请求参数（如temperature），可为null
      * @return 原始模型响应内容
      * @throws SqlGenerationException 当通信失败或响应格式错误时抛出
      */
-    private String chat(String txt) throws SqlGenerationException {
-        System.out.println(txt);
+    private String chatContent(LLMInfo target, SystemPrompt system, String txt, Map<String, Object> params)
+            throws SqlGenerationException {
         // 构造请求参数
-        Map<String, Object> paramMap = new HashMap<String, Object>();
-        paramMap.put("model", llmInfo.getModel());
-        List<Map<String, String>> dataList = new ArrayList<Map<String, String>>();
-        Map paramMap2 = new HashMap<String, String>();
-        paramMap2.put("role", "user");
-        paramMap2.put("content", txt);
-        dataList.add(paramMap2);
-        paramMap.put("messages", dataList);
+        String requestBody = buildChatBody(target, system, txt, false, params);
         JSONObject message = null;
         try {
             // 发送HTTP请求
-            String body = HttpRequest.post(llmInfo.getChatEndpoint())
-                    .header("Authorization", llmInfo.getApiKey())
-                    .header("Content-Type", "application/json")
-                    .body(new JSONObject(paramMap).toString())
-                    .execute()
-                    .body();
+            long start = System.nanoTime();
+            String body = transport.post(target.getChatEndpoint(), buildChatHeaders(target), requestBody);
+            recordStage(MetricStage.HTTP, start);
             // 解析响应
+            start = System.nanoTime();
             JSONObject jsonObject = JSONUtil.parseObj(body);
-            System.out.println(jsonObject);
+            recordUsage(jsonObject);
+            recordStage(MetricStage.PARSE, start);
             JSONArray choices = jsonObject.getJSONArray("choices");
             if (choices == null || choices.isEmpty()) {
                 throw new SqlGenerationException("无效的模型响应：choices字段缺失或为空");
@@ -303,12 +1816,10 @@ public class GenerateSQLWithLLM {
             if (message == null) {
                 throw new SqlGenerationException("无效的模型响应：message字段缺失");
             }
-        } catch (HttpException e) {
-            throw new SqlGenerationException("大模型http接口连接出错");
         } catch (ConvertException e) {
             throw new SqlGenerationException("调用结果转换出错");
         }
-        return config.getSqlExtractor().extract(message.getStr("content"));
+        return message.getStr("content");
     }
 
 
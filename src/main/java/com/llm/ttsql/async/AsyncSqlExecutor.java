@@ -0,0 +1,237 @@
+package com.llm.ttsql.async;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.metrics.MetricStage;
+import com.llm.ttsql.metrics.MetricsListener;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步SQL生成执行器
+ *
+ * <p>负责：</p>
+ * <ol>
+ *   <li>在配置的线程池上执行生成任务（默认使用虚拟线程，运行环境不支持时退化为守护线程池）</li>
+ *   <li>限制同时进行中的模型调用数量：获得许可后才提交到线程池，超出的任务在队列中等待，不占用线程；
+ *   任务结束时由同一线程接着执行队首任务</li>
+ *   <li>Future被取消时中断工作线程并触发{@link CancellationScope}回调，中止底层HTTP请求</li>
+ *   <li>所有失败统一以{@link SqlGenerationException}异常完成Future</li>
+ *   <li>向{@link MetricsListener}报告任务提交到开始执行的排队时间</li>
+ * </ol>
+ *
+ * @version 1.0
+ */
+public class AsyncSqlExecutor {
+    private static volatile Executor defaultExecutor;
+
+    private final Executor executor;
+    private final int maxInFlight;
+    //已获得许可（已提交或正在执行）的任务数，由pending的锁保护
+    private int inFlight;
+    //等待许可的任务，按提交顺序
+    private final ArrayDeque<SqlFuture> pending = new ArrayDeque<>();
+    private final MetricsListener metrics;
+
+    /**
+     * @param executor    执行线程池，null表示使用{@link #defaultExecutor()}
+     * @param maxInFlight 最大并发调用数
+     */
+    public AsyncSqlExecutor(Executor executor, int maxInFlight) {
+        this(executor, maxInFlight, null);
+    }
+
+    /**
+     * @param executor    执行线程池，null表示使用{@link #defaultExecutor()}
+     * @param maxInFlight 最大并发调用数
+     * @param metrics     排队时间的指标回调（可选，可传null）
+     */
+    public AsyncSqlExecutor(Executor executor, int maxInFlight, MetricsListener metrics) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("最大并发调用数必须大于0");
+        }
+        this.executor = executor != null ? executor : defaultExecutor();
+        this.maxInFlight = maxInFlight;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 默认执行器：JDK21+使用每任务一个虚拟线程，否则使用按需创建的守护线程池
+     */
+    public static Executor defaultExecutor() {
+        Executor result = defaultExecutor;
+        if (result == null) {
+            synchronized (AsyncSqlExecutor.class) {
+                result = defaultExecutor;
+                if (result == null) {
+                    result = createDefaultExecutor();
+                    defaultExecutor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger seq = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "ttsql-async-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * 提交异步任务
+     *
+     * @param call 生成任务
+     * @return 可取消的Future
+     */
+    public CompletableFuture<String> submit(SqlCallable call) {
+        SqlFuture future = new SqlFuture(call, System.nanoTime());
+        synchronized (pending) {
+            if (inFlight >= maxInFlight) {
+                pending.addLast(future);
+                return future;
+            }
+            inFlight++;
+        }
+        dispatch(future);
+        return future;
+    }
+
+    /**
+     * 把已获得许可的任务提交到线程池；被拒绝时以异常结束，许可交给下一个排队任务
+     */
+    private void dispatch(SqlFuture future) {
+        while (future != null) {
+            try {
+                executor.execute(future::run);
+                return;
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(new SqlGenerationException("异步任务提交被拒绝", e));
+                future = next();
+            }
+        }
+    }
+
+    /**
+     * 任务结束时调用：取出下一个未取消的排队任务并转交许可，没有排队任务时归还许可
+     */
+    private SqlFuture next() {
+        synchronized (pending) {
+            SqlFuture next;
+            while ((next = pending.pollFirst()) != null) {
+                if (!next.isDone()) {
+                    return next;
+                }
+            }
+            inFlight--;
+            return null;
+        }
+    }
+
+    /**
+     * @return 当前正在调用模型（已获取许可）的任务数
+     */
+    public int getInFlight() {
+        synchronized (pending) {
+            return inFlight;
+        }
+    }
+
+    /**
+     * @return 等待许可的任务数
+     */
+    public int getQueueLength() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlCallable {
+        String call() throws SqlGenerationException;
+    }
+
+    private final class SqlFuture extends CompletableFuture<String> {
+        private final CancellationScope scope = new CancellationScope();
+        private final SqlCallable call;
+        private final long submitted;
+        private Thread runner;
+
+        SqlFuture(SqlCallable call, long submitted) {
+            this.call = call;
+            this.submitted = submitted;
+        }
+
+        /**
+         * 执行本任务，结束后在同一线程上继续执行转交了许可的排队任务，线程数不超过并发上限
+         */
+        void run() {
+            SqlFuture task = this;
+            try {
+                while (task != null) {
+                    SqlFuture current = task;
+                    task = null;
+                    try {
+                        if (!current.isDone()) {
+                            current.execute();
+                        }
+                    } finally {
+                        task = next();
+                    }
+                }
+            } finally {
+                // 仅在执行中抛出Error时task非空，许可交给线程池中的其他线程
+                dispatch(task);
+            }
+        }
+
+        private void execute() {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            CancellationScope.bind(scope);
+            try {
+                if (metrics != null) {
+                    metrics.onStage(MetricStage.QUEUE_WAIT, System.nanoTime() - submitted);
+                }
+                complete(call.call());
+            } catch (SqlGenerationException e) {
+                completeExceptionally(e);
+            } catch (Exception e) {
+                completeExceptionally(new SqlGenerationException("SQL生成失败: " + e.getMessage(), e));
+            } finally {
+                CancellationScope.bind(null);
+                synchronized (this) {
+                    runner = null;
+                    // 清除取消时设置的中断标记，避免影响线程池中的后续任务
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                synchronized (pending) {
+                    pending.remove(this);
+                }
+                scope.cancel();
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+}
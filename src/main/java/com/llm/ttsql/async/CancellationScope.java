@@ -0,0 +1,65 @@
+package com.llm.ttsql.async;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 异步调用的取消作用域
+ * <p>异步任务执行期间绑定到工作线程，阻塞中的操作（如HTTP请求）可注册取消回调，
+ * Future被取消时回调立即执行以中断底层连接。同步调用时{@link #current()}返回null。</p>
+ * @Version: 1.0
+ **/
+public final class CancellationScope {
+    private static final ThreadLocal<CancellationScope> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> hooks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * @return 当前线程绑定的取消作用域，未处于异步任务中时返回null
+     */
+    public static CancellationScope current() {
+        return CURRENT.get();
+    }
+
+    static void bind(CancellationScope scope) {
+        if (scope == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(scope);
+        }
+    }
+
+    /**
+     * 注册取消回调，若已取消则立即执行
+     *
+     * @param hook 取消回调
+     */
+    public void onCancel(Runnable hook) {
+        hooks.add(hook);
+        if (cancelled && hooks.remove(hook)) {
+            hook.run();
+        }
+    }
+
+    /**
+     * 移除取消回调（被保护的操作正常结束后调用）
+     */
+    public void remove(Runnable hook) {
+        hooks.remove(hook);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (Runnable hook : hooks) {
+            if (hooks.remove(hook)) {
+                hook.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.llm.ttsql.async;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.metrics.MetricsListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 相同请求的合并执行（single-flight）
+ *
+ * <p>同一键同时只执行一次：首个调用方执行任务，执行期间到达的相同键调用方等待并共享其结果或异常；
+ * 任务结束后键即移除，之后的调用重新执行。</p>
+ * <ul>
+ *   <li>执行方的异步任务被取消时，等待方不会收到取消异常，而是由其中一个重新执行</li>
+ *   <li>等待方自身被取消或中断时立即停止等待，不影响执行方</li>
+ * </ul>
+ *
+ * @version 1.0
+ */
+public class SingleFlight {
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final MetricsListener metrics;
+
+    /**
+     * @param metrics 合并等待的指标回调（可选，可传null）
+     */
+    public SingleFlight(MetricsListener metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 执行任务，或等待进行中的相同键任务
+     *
+     * @param key  请求键
+     * @param call 任务，只在当前调用方成为执行方时调用
+     * @return 任务结果
+     * @throws SqlGenerationException 任务失败（共享执行方的异常）或等待被取消、中断时抛出
+     */
+    public String execute(String key, AsyncSqlExecutor.SqlCallable call) throws SqlGenerationException {
+        CancellationScope scope = CancellationScope.current();
+        while (true) {
+            Flight flight = new Flight(scope);
+            Flight pending = flights.putIfAbsent(key, flight);
+            if (pending == null) {
+                executions.increment();
+                try {
+                    String result = call.call();
+                    flight.complete(result);
+                    return result;
+                } catch (Throwable e) {
+                    flight.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    flights.remove(key, flight);
+                }
+            }
+            coalesced.increment();
+            long start = System.nanoTime();
+            try {
+                return pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SqlGenerationException(scope != null && scope.isCancelled() ? "请求已取消" : "等待合并请求时被中断", e);
+            } catch (ExecutionException e) {
+                if (pending.owner != null && pending.owner.isCancelled() && (scope == null || !scope.isCancelled())) {
+                    // 执行方被取消，由等待方重新执行
+                    continue;
+                }
+                throw rethrow(e.getCause());
+            } finally {
+                if (metrics != null) {
+                    metrics.onCoalesced(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private static SqlGenerationException rethrow(Throwable cause) {
+        if (cause instanceof SqlGenerationException) {
+            return (SqlGenerationException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new SqlGenerationException("SQL生成失败: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * @return 实际执行的任务数
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * @return 合并到进行中任务、未单独执行的调用数
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return 当前进行中的任务数
+     */
+    public int getPendingCount() {
+        return flights.size();
+    }
+
+    private static final class Flight extends CompletableFuture<String> {
+        //执行方的取消作用域，同步调用时为null
+        final CancellationScope owner;
+
+        Flight(CancellationScope owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.llm.ttsql.cache;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 以字符串为键的不可变哈希映射，修改时只复制根到目标位置路径上的节点
+ * <p>键的哈希每5位一层，每个分支节点32个槽位，叶子最多{@value #LEAF_SIZE}个键（哈希用尽后不再分裂）。
+ * 一次修改复制O(log32 n)个节点，其余节点在新旧版本之间共享，适合“整体发布不可变快照、每次只改少量键”的场景。</p>
+ * <p>按插入顺序遍历：每个键记录首次插入的序号，替换值时序号不变，遍历时按序号排序。</p>
+ * <p>批量修改通过{@link #toBuilder()}进行，构建器只原地修改自己创建的节点，{@link Builder#build()}之后的修改重新复制。</p>
+ * @Version: 1.0
+ **/
+public final class PersistentMap<V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int LEAF_SIZE = 8;
+    private static final PersistentMap<?> EMPTY = new PersistentMap<>(null, 0, 0);
+
+    private final Object root;
+    private final int size;
+    private final long nextOrder;
+
+    private PersistentMap(Object root, int size, long nextOrder) {
+        this.root = root;
+        this.size = size;
+        this.nextOrder = nextOrder;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentMap<V> empty() {
+        return (PersistentMap<V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return 键对应的值，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String key) {
+        return (V) find(root, key);
+    }
+
+    /**
+     * @return 添加或替换后的新映射，当前映射不变
+     */
+    public PersistentMap<V> put(String key, V value) {
+        return toBuilder().put(key, value).build();
+    }
+
+    /**
+     * @return 移除后的新映射，键不存在时返回当前映射本身
+     */
+    public PersistentMap<V> remove(String key) {
+        return containsKey(key) ? toBuilder().remove(key).build() : this;
+    }
+
+    /**
+     * 按插入顺序遍历全部键值
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<String, V> action) {
+        if (size == 0) {
+            return;
+        }
+        Leaf[] leaves = new Leaf[size];
+        int[] slots = new int[size];
+        long[] orders = new long[size];
+        int[] count = new int[1];
+        collect(root, leaves, slots, orders, count);
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparingLong(i -> orders[i]));
+        for (int i : sorted) {
+            action.accept(leaves[i].keys[slots[i]], (V) leaves[i].values[slots[i]]);
+        }
+    }
+
+    /**
+     * @return 按插入顺序排列的全部值
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        forEach((k, v) -> values.add(v));
+        return values;
+    }
+
+    /**
+     * @return 按插入顺序排列的全部键（只读）
+     */
+    public Set<String> keySet() {
+        Set<String> keys = new LinkedHashSet<>(size * 4 / 3 + 1);
+        forEach((k, v) -> keys.add(k));
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return 以当前映射为基础的构建器，当前映射不受影响
+     */
+    public Builder<V> toBuilder() {
+        return new Builder<>(root, size, nextOrder);
+    }
+
+    private static Object find(Object node, String key) {
+        int hash = hash(key);
+        int shift = 0;
+        while (node instanceof Branch) {
+            node = ((Branch) node).children[(hash >>> shift) & (WIDTH - 1)];
+            shift += BITS;
+        }
+        if (node == null) {
+            return null;
+        }
+        Leaf leaf = (Leaf) node;
+        int i = leaf.indexOf(key);
+        return i < 0 ? null : leaf.values[i];
+    }
+
+    private static void collect(Object node, Leaf[] leaves, int[] slots, long[] orders, int[] count) {
+        if (node instanceof Branch) {
+            for (Object child : ((Branch) node).children) {
+                if (child != null) {
+                    collect(child, leaves, slots, orders, count);
+                }
+            }
+        } else if (node != null) {
+            Leaf leaf = (Leaf) node;
+            for (int i = 0; i < leaf.size; i++) {
+                leaves[count[0]] = leaf;
+                slots[count[0]] = i;
+                orders[count[0]++] = leaf.orders[i];
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 构建器，非线程安全
+     */
+    public static final class Builder<V> {
+        //本构建器创建的节点持有此标记，可原地修改；build之后更换标记
+        private Object owner = new Object();
+        private Object root;
+        private int size;
+        private long nextOrder;
+
+        private Builder(Object root, int size, long nextOrder) {
+            this.root = root;
+            this.size = size;
+            this.nextOrder = nextOrder;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(String key) {
+            return (V) find(root, key);
+        }
+
+        public boolean containsKey(String key) {
+            return find(root, key) != null;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param value 值（非空）
+         */
+        public Builder<V> put(String key, V value) {
+            Objects.requireNonNull(value);
+            root = put(root, key, hash(key), 0, value);
+            return this;
+        }
+
+        public Builder<V> remove(String key) {
+            if (containsKey(key)) {
+                root = remove(root, key, hash(key), 0);
+                size--;
+            }
+            return this;
+        }
+
+        public Builder<V> clear() {
+            root = null;
+            size = 0;
+            return this;
+        }
+
+        /**
+         * @return 不可变映射；之后对构建器的修改不影响它
+         */
+        public PersistentMap<V> build() {
+            owner = new Object();
+            return size == 0 && nextOrder == 0 ? empty() : new PersistentMap<>(root, size, nextOrder);
+        }
+
+        private Object put(Object node, String key, int hash, int shift, V value) {
+            if (node == null) {
+                Leaf leaf = new Leaf(owner, 1);
+                leaf.append(key, value, nextOrder++);
+                size++;
+                return leaf;
+            }
+            if (node instanceof Branch) {
+                Branch branch = editable((Branch) node);
+                int i = (hash >>> shift) & (WIDTH - 1);
+                branch.children[i] = put(branch.children[i], key, hash, shift + BITS, value);
+                return branch;
+            }
+            Leaf leaf = (Leaf) node;
+            int i = leaf.indexOf(key);
+            if (i >= 0) {
+                leaf = editable(leaf, 0);
+                leaf.values[i] = value;
+                return leaf;
+            }
+            if (leaf.size < LEAF_SIZE || shift >= Integer.SIZE) {
+                leaf = editable(leaf, 1);
+                leaf.append(key, value, nextOrder++);
+                size++;
+                return leaf;
+            }
+            // 叶子已满，按下一层的哈希位分裂
+            Branch branch = new Branch(owner);
+            for (int k = 0; k < leaf.size; k++) {
+                int slot = (hash(leaf.keys[k]) >>> shift) & (WIDTH - 1);
+                Leaf child = (Leaf) branch.children[slot];
+                if (child == null) {
+                    branch.children[slot] = child = new Leaf(owner, LEAF_SIZE);
+                }
+                child.append(leaf.keys[k], leaf.values[k], leaf.orders[k]);
+            }
+            int slot = (hash >>> shift) & (WIDTH - 1);
+            branch.children[slot] = put(branch.children[slot], key, hash, shift + BITS, value);
+            return branch;
+        }
+
+        private Object remove(Object node, String key, int hash, int shift) {
+            if (node instanceof Branch) {
+                int i = (hash >>> shift) & (WIDTH - 1);
+                Object child = remove(((Branch) node).children[i], key, hash, shift + BITS);
+                Branch branch = editable((Branch) node);
+                branch.children[i] = child;
+                for (Object c : branch.children) {
+                    if (c != null) {
+                        return branch;
+                    }
+                }
+                return null;
+            }
+            Leaf leaf = (Leaf) node;
+            if (leaf.size == 1) {
+                return null;
+            }
+            leaf = editable(leaf, 0);
+            leaf.delete(leaf.indexOf(key));
+            return leaf;
+        }
+
+        private Branch editable(Branch branch) {
+            if (branch.owner == owner) {
+                return branch;
+            }
+            Branch copy = new Branch(owner);
+            System.arraycopy(branch.children, 0, copy.children, 0, WIDTH);
+            return copy;
+        }
+
+        private Leaf editable(Leaf leaf, int extra) {
+            if (leaf.owner == owner && leaf.size + extra <= leaf.keys.length) {
+                return leaf;
+            }
+            Leaf copy = new Leaf(owner, Math.max(leaf.size + extra, leaf.owner == owner ? leaf.size * 2 : 0));
+            System.arraycopy(leaf.keys, 0, copy.keys, 0, leaf.size);
+            System.arraycopy(leaf.values, 0, copy.values, 0, leaf.size);
+            System.arraycopy(leaf.orders, 0, copy.orders, 0, leaf.size);
+            copy.size = leaf.size;
+            return copy;
+        }
+    }
+
+    private static final class Branch {
+        final Object owner;
+        final Object[] children = new Object[WIDTH];
+
+        Branch(Object owner) {
+            this.owner = owner;
+        }
+    }
+
+    private static final class Leaf {
+        final Object owner;
+        final String[] keys;
+        final Object[] values;
+        final long[] orders;
+        int size;
+
+        Leaf(Object owner, int capacity) {
+            this.owner = owner;
+            this.keys = new String[capacity];
+            this.values = new Object[capacity];
+            this.orders = new long[capacity];
+        }
+
+        int indexOf(String key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void append(String key, Object value, long order) {
+            keys[size] = key;
+            values[size] = value;
+            orders[size] = order;
+            size++;
+        }
+
+        void delete(int i) {
+            size--;
+            keys[i] = keys[size];
+            values[i] = values[size];
+            orders[i] = orders[size];
+            keys[size] = null;
+            values[size] = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.llm.ttsql.cache;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 问题句式：把问题中的日期、数字与引号内的文字抽取为槽位，其余部分规范化后作为句式键
+ * <p>例如“本月登录人数”“上月登录人数”“2026年3月登录人数”的句式相同，均为“{月}登录人数”</p>
+ * @Version: 1.0
+ **/
+final class QuestionShape {
+    static final int DAY = 0;
+    static final int MONTH = 1;
+    static final int YEAR = 2;
+    static final int NUMBER = 3;
+    static final int TEXT = 4;
+    private static final char[] KIND_MARKS = {'d', 'm', 'y', 'n', 't'};
+
+    private static final Pattern SLOT = Pattern.compile(
+            "(?<quoted>'[^']+'|\"[^\"]+\"|“[^”]+”|‘[^’]+’|「[^」]+」)"
+                    + "|(?<ymd>(?<y1>\\d{4})(?:年|[-/.])(?<m1>\\d{1,2})(?:月|[-/.])(?<d1>\\d{1,2})[日号]?)"
+                    + "|(?<ym>(?<y2>\\d{4})(?:年(?<m2>\\d{1,2})月份?|[-/](?<m3>\\d{1,2})(?!\\d)))"
+                    + "|(?<md>(?<m4>\\d{1,2})月(?<d4>\\d{1,2})[日号])"
+                    + "|(?<y>(?<y5>\\d{4})年(?:度)?)"
+                    + "|(?<m>(?<m6>\\d{1,2})月份?)"
+                    + "|(?<rel>今天|今日|昨天|昨日|前天|本月|这个月|当月|上个月|上月|今年|本年|去年|前年)"
+                    + "|(?<num>\\d+(?:\\.\\d+)?)");
+
+    final String key;
+    final List<Slot> slots;
+
+    private QuestionShape(String key, List<Slot> slots) {
+        this.key = key;
+        this.slots = slots;
+    }
+
+    /**
+     * 解析问题
+     *
+     * @param question 用户问题
+     * @param today    解析“本月”“昨天”等相对日期使用的当前日期
+     * @return 问题句式
+     */
+    static QuestionShape parse(String question, LocalDate today) {
+        StringBuilder key = new StringBuilder(question.length());
+        List<Slot> slots = new ArrayList<>(4);
+        Matcher m = SLOT.matcher(question);
+        int last = 0;
+        while (m.find()) {
+            Slot slot = toSlot(m, today);
+            if (slot == null) {
+                continue;
+            }
+            key.append(question, last, m.start()).append('\u0002').append(KIND_MARKS[slot.kind]);
+            slots.add(slot);
+            last = m.end();
+        }
+        key.append(question, last, question.length());
+        return new QuestionShape(SqlResultCache.normalizeQuestion(key.toString()), Collections.unmodifiableList(slots));
+    }
+
+    private static Slot toSlot(Matcher m, LocalDate today) {
+        try {
+            if (m.group("quoted") != null) {
+                String text = m.group("quoted");
+                return new Slot(TEXT, text.substring(1, text.length() - 1), null);
+            }
+            if (m.group("ymd") != null) {
+                return date(DAY, LocalDate.of(num(m, "y1"), num(m, "m1"), num(m, "d1")));
+            }
+            if (m.group("ym") != null) {
+                int month = m.group("m2") != null ? num(m, "m2") : num(m, "m3");
+                return date(MONTH, LocalDate.of(num(m, "y2"), month, 1));
+            }
+            if (m.group("md") != null) {
+                return date(DAY, LocalDate.of(today.getYear(), num(m, "m4"), num(m, "d4")));
+            }
+            if (m.group("y") != null) {
+                return date(YEAR, LocalDate.of(num(m, "y5"), 1, 1));
+            }
+            if (m.group("m") != null) {
+                return date(MONTH, LocalDate.of(today.getYear(), num(m, "m6"), 1));
+            }
+            if (m.group("rel") != null) {
+                return relative(m.group("rel"), today);
+            }
+            return new Slot(NUMBER, m.group("num"), null);
+        } catch (DateTimeException e) {
+            // 不是合法日期（如13月），作为普通文字保留在句式中
+            return null;
+        }
+    }
+
+    private static Slot relative(String word, LocalDate today) {
+        LocalDate month = today.withDayOfMonth(1);
+        LocalDate year = today.withDayOfYear(1);
+        switch (word) {
+            case "今天":
+            case "今日":
+                return new Slot(DAY, word, today);
+            case "昨天":
+            case "昨日":
+                return new Slot(DAY, word, today.minusDays(1));
+            case "前天":
+                return new Slot(DAY, word, today.minusDays(2));
+            case "本月":
+            case "这个月":
+            case "当月":
+                return new Slot(MONTH, word, month);
+            case "上个月":
+            case "上月":
+                return new Slot(MONTH, word, month.minusMonths(1));
+            case "今年":
+            case "本年":
+                return new Slot(YEAR, word, year);
+            case "去年":
+                return new Slot(YEAR, word, year.minusYears(1));
+            default:
+                return new Slot(YEAR, word, year.minusYears(2));
+        }
+    }
+
+    private static Slot date(int kind, LocalDate date) {
+        return new Slot(kind, date.toString(), date);
+    }
+
+    private static int num(Matcher m, String group) {
+        return Integer.parseInt(m.group(group));
+    }
+
+    /**
+     * 槽位
+     */
+    static final class Slot {
+        final int kind;
+        //原始取值：相对日期为原词，绝对日期为ISO日期，数字与文字为原文
+        final String raw;
+        //日期槽位对应时间段的第一天
+        final LocalDate date;
+
+        Slot(int kind, String raw, LocalDate date) {
+            this.kind = kind;
+            this.raw = raw;
+            this.date = date;
+        }
+    }
+}
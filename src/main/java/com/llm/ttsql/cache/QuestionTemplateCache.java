@@ -0,0 +1,297 @@
+package com.llm.ttsql.cache;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 参数化问题模板缓存
+ *
+ * <p>把问题中的日期（绝对日期及“本月”“去年”等相对日期）、数字与引号内的文字抽取为槽位，
+ * 同一句式的问题（如“本月登录人数”“2026年3月登录人数”）共用一个SQL模板：</p>
+ * <ol>
+ *   <li>句式首次由模型回答（且通过校验）后，从SQL中定位各槽位取值，学习出模板</li>
+ *   <li>同一句式再次出现时直接代入新的槽位取值生成SQL，不再调用模型</li>
+ *   <li>模板被相同的回答确认达到{@link #minConfirmations(int)}次（默认2次）后才会使用，单次回答中的偶然巧合不会被当作模板；
+ *   模型给出不同的模板时以新模板替换并重新计数</li>
+ * </ol>
+ *
+ * <p>缓存键包含模型名称、数据库类型与表结构指纹，表结构变化后旧模板不再命中，
+ * 生成器也会通过{@link #invalidateTables(Set)}清除引用了变更表的模板。</p>
+ *
+ * <pre>{@code
+ * Config config = new Config().questionTemplateCache(new QuestionTemplateCache(1000).minConfirmations(3));
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class QuestionTemplateCache {
+    //同一句式最多保留的模板数（槽位取值约束不同的模板）
+    private static final int MAX_VARIANTS = 8;
+
+    private final int maxSize;
+    private final LinkedHashMap<String, List<Variant>> entries;
+    private int minConfirmations = 2;
+    private Clock clock = Clock.systemDefaultZone();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong learned = new AtomicLong();
+    private final AtomicLong confirmations = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong unlearnable = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize 最多缓存的句式数（超出后按LRU淘汰）
+     */
+    public QuestionTemplateCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0");
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, List<Variant>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Variant>> eldest) {
+                if (size() > QuestionTemplateCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param minConfirmations 模板被相同回答确认多少次后才使用，默认2；设为1时首次学习后即使用
+     * @return 当前缓存
+     */
+    public QuestionTemplateCache minConfirmations(int minConfirmations) {
+        if (minConfirmations <= 0) {
+            throw new IllegalArgumentException("确认次数必须大于0");
+        }
+        this.minConfirmations = minConfirmations;
+        return this;
+    }
+
+    /**
+     * @param clock 解析相对日期使用的时钟
+     * @return 当前缓存
+     */
+    public QuestionTemplateCache clock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+        return this;
+    }
+
+    /**
+     * 按句式查找模板并代入槽位
+     *
+     * @param question          用户问题
+     * @param schemaFingerprint 表结构指纹
+     * @param model             模型名称
+     * @param dataBaseName      数据库类型
+     * @return 生成的SQL，未命中时返回null
+     */
+    public String get(String question, long schemaFingerprint, String model, String dataBaseName) {
+        QuestionShape shape = QuestionShape.parse(question, LocalDate.now(clock));
+        if (!shape.slots.isEmpty()) {
+            String key = key(shape, schemaFingerprint, model, dataBaseName);
+            synchronized (entries) {
+                List<Variant> variants = entries.get(key);
+                if (variants != null) {
+                    for (Variant variant : variants) {
+                        if (variant.confirmations >= minConfirmations && variant.template.accepts(shape.slots)) {
+                            String sql = variant.template.render(shape.slots);
+                            if (sql != null) {
+                                hits.incrementAndGet();
+                                return sql;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 从模型的回答学习模板，应只传入通过校验的SQL
+     *
+     * @param question          用户问题
+     * @param sql               模型生成的SQL
+     * @param schemaFingerprint 表结构指纹
+     * @param model             模型名称
+     * @param dataBaseName      数据库类型
+     * @param tableNames        生成该SQL时发送给模型的表名，用于表结构变更时定向失效
+     */
+    public void learn(String question, String sql, long schemaFingerprint, String model, String dataBaseName,
+                      Collection<String> tableNames) {
+        QuestionShape shape = QuestionShape.parse(question, LocalDate.now(clock));
+        if (shape.slots.isEmpty()) {
+            return;
+        }
+        SqlTemplate template = SqlTemplate.learn(sql, shape.slots);
+        if (template == null) {
+            unlearnable.incrementAndGet();
+            return;
+        }
+        String key = key(shape, schemaFingerprint, model, dataBaseName);
+        String[] tables = tableNames.toArray(new String[0]);
+        synchronized (entries) {
+            List<Variant> variants = entries.computeIfAbsent(key, k -> new ArrayList<>(2));
+            for (int i = 0; i < variants.size(); i++) {
+                Variant variant = variants.get(i);
+                if (!variant.template.accepts(shape.slots)) {
+                    continue;
+                }
+                if (variant.template.equals(template)) {
+                    variant.confirmations++;
+                    confirmations.incrementAndGet();
+                } else {
+                    variants.set(i, new Variant(template, tables));
+                    conflicts.incrementAndGet();
+                }
+                return;
+            }
+            if (variants.size() >= MAX_VARIANTS) {
+                variants.remove(0);
+                evictions.incrementAndGet();
+            }
+            variants.add(new Variant(template, tables));
+            learned.incrementAndGet();
+        }
+    }
+
+    /**
+     * 使引用了指定表的模板失效
+     *
+     * @param tableNames 结构发生变化的表名
+     * @return 失效的模板数
+     */
+    public int invalidateTables(Set<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            return 0;
+        }
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<List<Variant>> it = entries.values().iterator();
+            while (it.hasNext()) {
+                List<Variant> variants = it.next();
+                Iterator<Variant> vit = variants.iterator();
+                while (vit.hasNext()) {
+                    for (String table : vit.next().tables) {
+                        if (tableNames.contains(table)) {
+                            vit.remove();
+                            removed++;
+                            break;
+                        }
+                    }
+                }
+                if (variants.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        invalidations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * 清空缓存（不影响统计）
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return 缓存的模板数
+     */
+    public int size() {
+        synchronized (entries) {
+            int size = 0;
+            for (List<Variant> variants : entries.values()) {
+                size += variants.size();
+            }
+            return size;
+        }
+    }
+
+    public int getMinConfirmations() {
+        return minConfirmations;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return 新学习的模板数
+     */
+    public long getLearnedCount() {
+        return learned.get();
+    }
+
+    /**
+     * @return 模型回答与已有模板一致的次数
+     */
+    public long getConfirmationCount() {
+        return confirmations.get();
+    }
+
+    /**
+     * @return 模型回答与已有模板不一致、模板被替换的次数
+     */
+    public long getConflictCount() {
+        return conflicts.get();
+    }
+
+    /**
+     * @return 字面量来源有歧义、无法学习的回答数
+     */
+    public long getUnlearnableCount() {
+        return unlearnable.get();
+    }
+
+    /**
+     * @return 因表结构变化失效的模板数
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return 命中率，无请求时返回0
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0D : (double) h / total;
+    }
+
+    private static String key(QuestionShape shape, long schemaFingerprint, String model, String dataBaseName) {
+        return model + '\u0001' + dataBaseName + '\u0001' + Long.toHexString(schemaFingerprint) + '\u0001' + shape.key;
+    }
+
+    private static final class Variant {
+        final SqlTemplate template;
+        final String[] tables;
+        int confirmations = 1;
+
+        Variant(SqlTemplate template, String[] tables) {
+            this.template = template;
+            this.tables = tables;
+        }
+    }
+}
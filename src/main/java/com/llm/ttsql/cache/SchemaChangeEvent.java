@@ -0,0 +1,90 @@
+package com.llm.ttsql.cache;
+
+import java.util.*;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表结构变更事件，描述相邻两个快照版本之间的净变化
+ * <p>同一次变更中先删除再新增的表记为更新，新增后又删除的表不出现；改名的表出现在{@link #getRenamed()}中，
+ * 不计入新增与删除，改名后结构也有变化时新表名同时计入{@link #getUpdated()}。结构未变化的表不出现在任何集合中。</p>
+ * @Version: 1.0
+ **/
+public final class SchemaChangeEvent {
+    private final long previousVersion;
+    private final long version;
+    private final Set<String> added;
+    private final Set<String> updated;
+    private final Set<String> removed;
+    private final Map<String, String> renamed;
+
+    /**
+     * @param renamed 原表名 -> 新表名
+     */
+    public SchemaChangeEvent(long previousVersion, long version, Set<String> added, Set<String> updated,
+                             Set<String> removed, Map<String, String> renamed) {
+        this.previousVersion = previousVersion;
+        this.version = version;
+        this.added = Collections.unmodifiableSet(added);
+        this.updated = Collections.unmodifiableSet(updated);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.renamed = Collections.unmodifiableMap(renamed);
+    }
+
+    /**
+     * @return 变更前的快照版本
+     */
+    public long getPreviousVersion() {
+        return previousVersion;
+    }
+
+    /**
+     * @return 变更后的快照版本，没有任何变化时与变更前相同
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return 结构发生变化的已有表
+     */
+    public Set<String> getUpdated() {
+        return updated;
+    }
+
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return 原表名 -> 新表名
+     */
+    public Map<String, String> getRenamed() {
+        return renamed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty() && renamed.isEmpty();
+    }
+
+    /**
+     * @return 受影响的全部表名（包括改名前后的名称）
+     */
+    public Set<String> getAffectedTables() {
+        Set<String> tables = new HashSet<>(added);
+        tables.addAll(updated);
+        tables.addAll(removed);
+        tables.addAll(renamed.keySet());
+        tables.addAll(renamed.values());
+        return tables;
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaChangeEvent{version=" + previousVersion + "->" + version + ", added=" + added
+                + ", updated=" + updated + ", removed=" + removed + ", renamed=" + renamed + '}';
+    }
+}
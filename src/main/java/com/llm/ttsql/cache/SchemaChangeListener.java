@@ -0,0 +1,16 @@
+package com.llm.ttsql.cache;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表结构变更监听器，用于维护依赖表结构的派生数据（自有的索引、缓存等）
+ * <p>每次发布新的表结构快照后调用一次，调用时持有生成器的表结构写锁，因此事件按版本顺序到达，
+ * 但监听器应尽快返回；查询不受影响。监听器抛出的异常传给发起变更的调用方，此时变更已经生效。</p>
+ * @Version: 1.0
+ **/
+@FunctionalInterface
+public interface SchemaChangeListener {
+    /**
+     * @param event 本次变更涉及的表
+     */
+    void onSchemaChange(SchemaChangeEvent event);
+}
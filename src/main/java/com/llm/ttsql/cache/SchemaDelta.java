@@ -0,0 +1,117 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.TableMeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 一组按顺序执行的表结构变更（新增或替换、删除、改名），通过
+ * {@link com.llm.ttsql.GenerateSQLWithLLM#applySchemaDelta(SchemaDelta)}整体生效
+ * <p>适合逐条回放DDL事件：</p>
+ * <pre>{@code
+ * g.applySchemaDelta(new SchemaDelta()
+ *         .upsert(orderTable)
+ *         .rename("t_cust", "t_customer")
+ *         .remove("t_tmp_import"));
+ * }</pre>
+ * @Version: 1.0
+ **/
+public class SchemaDelta {
+    private final List<Op> ops = new ArrayList<>();
+
+    /**
+     * 新增表，或替换同名表；结构未变化时不产生变更
+     */
+    public SchemaDelta upsert(TableMeta table) {
+        Objects.requireNonNull(table, "表结构不能为空");
+        Objects.requireNonNull(table.getTableName(), "表名不能为空");
+        ops.add(new Op(Kind.UPSERT, table.getTableName(), null, table));
+        return this;
+    }
+
+    public SchemaDelta upsertAll(List<TableMeta> tables) {
+        tables.forEach(this::upsert);
+        return this;
+    }
+
+    /**
+     * 删除表，表不存在时忽略
+     */
+    public SchemaDelta remove(String tableName) {
+        ops.add(new Op(Kind.REMOVE, Objects.requireNonNull(tableName, "表名不能为空"), null, null));
+        return this;
+    }
+
+    /**
+     * 表改名，列与描述保持不变；原表不存在或新表名已存在时整组变更都不生效
+     */
+    public SchemaDelta rename(String from, String to) {
+        ops.add(new Op(Kind.RENAME, Objects.requireNonNull(from, "表名不能为空"),
+                Objects.requireNonNull(to, "新表名不能为空"), null));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    public int size() {
+        return ops.size();
+    }
+
+    /**
+     * @return 全部变更（只读，按添加顺序）
+     */
+    public List<Op> getOps() {
+        return Collections.unmodifiableList(ops);
+    }
+
+    public enum Kind {
+        UPSERT,
+        REMOVE,
+        RENAME
+    }
+
+    /**
+     * 单条变更
+     */
+    public static final class Op {
+        private final Kind kind;
+        private final String tableName;
+        private final String newName;
+        private final TableMeta table;
+
+        private Op(Kind kind, String tableName, String newName, TableMeta table) {
+            this.kind = kind;
+            this.tableName = tableName;
+            this.newName = newName;
+            this.table = table;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @return 改名后的表名，仅RENAME有值
+         */
+        public String getNewName() {
+            return newName;
+        }
+
+        /**
+         * @return 表结构，仅UPSERT有值
+         */
+        public TableMeta getTable() {
+            return table;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表结构指纹计算（64位FNV-1a），用于判断表结构是否发生变化
+ * @Version: 1.0
+ **/
+public final class SchemaFingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SchemaFingerprint() {
+    }
+
+    /**
+     * 计算单表指纹，覆盖表名、表描述以及所有列的名称、类型、描述
+     *
+     * @param table 表结构
+     * @return 64位指纹
+     */
+    public static long of(TableMeta table) {
+        long h = FNV_OFFSET;
+        h = mix(h, table.getTableName());
+        h = mix(h, table.getDescription());
+        List<ColumnMeta> columns = table.getColumns();
+        if (columns != null) {
+            for (ColumnMeta col : columns) {
+                h = mix(h, col.getName());
+                h = mix(h, col.getType());
+                h = mix(h, col.getDescription());
+            }
+        }
+        return h;
+    }
+
+    /**
+     * 合并多个单表指纹为整体指纹（与表顺序无关）
+     *
+     * @param fingerprints 单表指纹
+     * @return 合并后的指纹
+     */
+    public static long combine(long[] fingerprints) {
+        long[] sorted = fingerprints.clone();
+        Arrays.sort(sorted);
+        long h = FNV_OFFSET;
+        for (long fp : sorted) {
+            for (int i = 0; i < 8; i++) {
+                h ^= (fp >>> (i * 8)) & 0xff;
+                h *= FNV_PRIME;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * 计算任意字符串的指纹（用于自定义提示词等）
+     */
+    public static long of(String text) {
+        return mix(FNV_OFFSET, text);
+    }
+
+    private static long mix(long h, String s) {
+        if (s == null) {
+            h ^= 0xff;
+            return h * FNV_PRIME;
+        }
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            h ^= (c & 0xff);
+            h *= FNV_PRIME;
+            h ^= (c >>> 8);
+            h *= FNV_PRIME;
+        }
+        // 字段分隔，避免 "ab"+"c" 与 "a"+"bc" 冲突
+        h ^= 0x1f;
+        return h * FNV_PRIME;
+    }
+}
@@ -0,0 +1,324 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.SchemaRenderer;
+import com.llm.ttsql.prompt.TokenEstimator;
+import com.llm.ttsql.validation.SchemaIndex;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表结构驻留池，多个生成器（如每个租户一个）共享同一份表结构对象
+ * <ul>
+ *   <li>表名、列名、类型、描述等字符串只保留一份</li>
+ *   <li>名称、类型、描述都相同的列共享同一个ColumnMeta，列完全相同的表共享同一个列列表</li>
+ *   <li>结构完全相同的表共享同一个TableMeta，以及它的指纹、预渲染片段和列名集合</li>
+ * </ul>
+ * <p>通过{@link com.llm.ttsql.config.Config#schemaInterner(SchemaInterner)}配置后，生成器缓存的是驻留后的共享对象。
+ * 共享对象的内容不能再被修改（共享表的修改方法抛出UnsupportedOperationException）；需要变更表结构时应传入新的TableMeta。</p>
+ * <p>池对共享对象只持有弱引用：快照（或调用方）不再引用的表在垃圾回收后移出池，随后其独占的列表、列与字符串也依次移出，
+ * 租户下线或表结构变更后无需手动清理。</p>
+ * @Version: 1.0
+ **/
+public class SchemaInterner {
+    //键为弱引用，值为指向键本身的弱引用，字符串不再被任何共享对象引用后自动移除
+    private final Map<String, WeakReference<String>> strings = new WeakHashMap<>();
+    private final WeakPool<ColumnKey, ColumnMeta> columns = new WeakPool<>();
+    private final WeakPool<List<ColumnMeta>, List<ColumnMeta>> columnLists = new WeakPool<>();
+    //共享表的TableMeta强引用SharedTable，快照引用着表时SharedTable就不会被回收
+    private final WeakPool<TableKey, SharedTable> tables = new WeakPool<>();
+
+    /**
+     * @return 与传入字符串相等的共享实例，null原样返回
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        synchronized (strings) {
+            WeakReference<String> ref = strings.get(s);
+            String shared = ref == null ? null : ref.get();
+            if (shared != null) {
+                return shared;
+            }
+            strings.put(s, new WeakReference<>(s));
+            return s;
+        }
+    }
+
+    /**
+     * 驻留一张表
+     *
+     * @param table 表结构
+     * @return 结构相同的共享表；传入的表本身不会被修改
+     */
+    public SharedTable intern(TableMeta table) {
+        purge();
+        List<ColumnMeta> source = table.getColumns();
+        List<ColumnMeta> canonical = new ArrayList<>(source == null ? 0 : source.size());
+        if (source != null) {
+            for (ColumnMeta column : source) {
+                canonical.add(column(column));
+            }
+        }
+        // 驻留后的列按引用比较即按内容比较；值是独立的列表，键不会让值一直可达
+        List<ColumnMeta> shared = columnLists.intern(canonical, k -> Collections.unmodifiableList(new ArrayList<>(k)));
+        TableKey key = new TableKey(intern(table.getTableName()), intern(table.getDescription()), shared);
+        return tables.intern(key, SharedTable::new);
+    }
+
+    private ColumnMeta column(ColumnMeta column) {
+        ColumnKey key = new ColumnKey(intern(column.getName()), intern(column.getType()), intern(column.getDescription()));
+        return columns.intern(key, k -> {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(k.name);
+            meta.setType(k.type);
+            meta.setDescription(k.description);
+            return meta;
+        });
+    }
+
+    /**
+     * @return 池中不同的字符串数量（包括尚未被垃圾回收的不再使用的字符串）
+     */
+    public int getStringCount() {
+        synchronized (strings) {
+            return strings.size();
+        }
+    }
+
+    /**
+     * @return 池中不同的列数量
+     */
+    public int getColumnCount() {
+        purge();
+        return columns.size();
+    }
+
+    /**
+     * @return 池中不同的表数量
+     */
+    public int getTableCount() {
+        purge();
+        return tables.size();
+    }
+
+    /**
+     * 立即释放池中的全部对象，已被生成器引用的对象不受影响，之后驻留的表不再与它们共享
+     */
+    public void clear() {
+        tables.clear();
+        columnLists.clear();
+        columns.clear();
+        synchronized (strings) {
+            strings.clear();
+        }
+    }
+
+    /**
+     * 驻留后的共享表及其派生数据，派生数据在首次驻留时计算一次
+     */
+    public static final class SharedTable {
+        private final TableMeta table;
+        private final long fingerprint;
+        private final Set<String> columnNames;
+        //最近一次使用的渲染器及其片段，租户共享配置时只渲染一次
+        private volatile Fragment fragment;
+
+        private SharedTable(TableKey key) {
+            TableMeta meta = new InternedTableMeta(this, key);
+            this.table = meta;
+            this.fingerprint = SchemaFingerprint.of(meta);
+            this.columnNames = SchemaIndex.columnNames(meta);
+        }
+
+        public TableMeta getTable() {
+            return table;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getFragment(SchemaRenderer renderer) {
+            return fragment(renderer).text;
+        }
+
+        public int getFragmentTokens(SchemaRenderer renderer) {
+            return fragment(renderer).tokens;
+        }
+
+        private Fragment fragment(SchemaRenderer renderer) {
+            Fragment f = fragment;
+            if (f == null || f.renderer != renderer) {
+                String text = renderer.render(table, true);
+                f = new Fragment(renderer, text, TokenEstimator.estimate(text));
+                fragment = f;
+            }
+            return f;
+        }
+
+        public Set<String> getColumnNames() {
+            return columnNames;
+        }
+    }
+
+    /**
+     * 移除已被回收的对象；表先于列表、列表先于列，上游移除后下游在之后的垃圾回收中才变为可回收
+     */
+    private void purge() {
+        tables.purge();
+        columnLists.purge();
+        columns.purge();
+    }
+
+    /**
+     * 共享表，持有所属SharedTable的强引用，使其与表同生命周期；内容不能修改
+     */
+    private static final class InternedTableMeta extends TableMeta {
+        //只用于保持SharedTable可达
+        private final SharedTable owner;
+
+        InternedTableMeta(SharedTable owner, TableKey key) {
+            this.owner = owner;
+            super.setTableName(key.tableName);
+            super.setDescription(key.description);
+            super.setColumns(key.columns);
+        }
+
+        @Override
+        public void setTableName(String tableName) {
+            throw new UnsupportedOperationException("共享表不能修改");
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw new UnsupportedOperationException("共享表不能修改");
+        }
+
+        @Override
+        public void setColumns(List<ColumnMeta> columns) {
+            throw new UnsupportedOperationException("共享表不能修改");
+        }
+    }
+
+    /**
+     * 值为弱引用的驻留表：值被回收后，下次访问时移除对应的键
+     */
+    private static final class WeakPool<K, V> {
+        private final ConcurrentHashMap<K, Ref<K, V>> map = new ConcurrentHashMap<>();
+        private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+        V intern(K key, Function<K, V> factory) {
+            while (true) {
+                Ref<K, V> ref = map.get(key);
+                V value = ref == null ? null : ref.get();
+                if (value != null) {
+                    return value;
+                }
+                V created = factory.apply(key);
+                Ref<K, V> fresh = new Ref<>(key, created, queue);
+                if (ref == null ? map.putIfAbsent(key, fresh) == null : map.replace(key, ref, fresh)) {
+                    return created;
+                }
+            }
+        }
+
+        int size() {
+            return map.size();
+        }
+
+        void clear() {
+            map.clear();
+        }
+
+        void purge() {
+            Reference<? extends V> polled;
+            while ((polled = queue.poll()) != null) {
+                Ref<?, ?> ref = (Ref<?, ?>) polled;
+                map.remove(ref.key, ref);
+            }
+        }
+    }
+
+    private static final class Ref<K, V> extends WeakReference<V> {
+        final K key;
+
+        Ref(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    private static final class Fragment {
+        final SchemaRenderer renderer;
+        final String text;
+        final int tokens;
+
+        Fragment(SchemaRenderer renderer, String text, int tokens) {
+            this.renderer = renderer;
+            this.text = text;
+            this.tokens = tokens;
+        }
+    }
+
+    private static final class ColumnKey {
+        final String name;
+        final String type;
+        final String description;
+
+        ColumnKey(String name, String type, String description) {
+            this.name = name;
+            this.type = type;
+            this.description = description;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ColumnKey)) {
+                return false;
+            }
+            ColumnKey k = (ColumnKey) o;
+            return Objects.equals(name, k.name) && Objects.equals(type, k.type) && Objects.equals(description, k.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, type, description);
+        }
+    }
+
+    private static final class TableKey {
+        final String tableName;
+        final String description;
+        final List<ColumnMeta> columns;
+
+        TableKey(String tableName, String description, List<ColumnMeta> columns) {
+            this.tableName = tableName;
+            this.description = description;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TableKey)) {
+                return false;
+            }
+            TableKey k = (TableKey) o;
+            return Objects.equals(tableName, k.tableName) && Objects.equals(description, k.description)
+                    && columns == k.columns;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, description, System.identityHashCode(columns));
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.SchemaRenderer;
+import com.llm.ttsql.prompt.TokenEstimator;
+import com.llm.ttsql.prompt.impl.VerboseSchemaRenderer;
+import com.llm.ttsql.validation.SchemaIndex;
+
+import java.util.*;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 不可变的表结构快照
+ * <p>一个快照包含某一时刻全部已缓存的表，以及每张表的结构指纹、预渲染片段和列名索引。
+ * 片段在表写入时渲染一次（从快照文件加载的表在首次使用时解码），随表替换或删除而丢弃，
+ * 各版本之间共享未变化的片段。</p>
+ * <p>快照发布后不再修改，读取方无需加锁或复制即可得到一致的视图；写入方通过{@link #toBuilder()}
+ * 在旁边构建下一个版本，再整体替换。</p>
+ * <p>写入的表保存的是副本，调用方之后原地修改自己的TableMeta不会影响已发布的快照，再次写入时按指纹识别变化。</p>
+ * <p>版本号随每次发布单调递增，下游缓存可以用它判断表结构是否变化过。</p>
+ * <p>条目保存在{@link PersistentMap}中，下一个版本与当前版本共享未修改的部分，修改k张表的开销为O(k·log n)；
+ * 按顺序排列的表列表在首次调用{@link #getTables()}时才生成。</p>
+ * @Version: 1.0
+ **/
+public final class SchemaSnapshot {
+    private static final SchemaSnapshot EMPTY = new SchemaSnapshot(0, PersistentMap.empty(), new SchemaIndex(),
+            VerboseSchemaRenderer.INSTANCE);
+
+    private final long version;
+    private final PersistentMap<Entry> entries;
+    private volatile List<TableMeta> tables;
+    private final SchemaIndex index;
+    private final SchemaIndex readOnlyIndex;
+    private final SchemaRenderer renderer;
+
+    private SchemaSnapshot(long version, PersistentMap<Entry> entries, SchemaIndex index, SchemaRenderer renderer) {
+        this.version = version;
+        this.renderer = renderer;
+        this.entries = entries;
+        this.index = index;
+        this.readOnlyIndex = index.readOnlyView();
+    }
+
+    /**
+     * 由已构建好的条目创建快照（供{@link SchemaSnapshotFile}从快照文件恢复）
+     */
+    static SchemaSnapshot of(long version, PersistentMap<Entry> entries, SchemaIndex index, SchemaRenderer renderer) {
+        return new SchemaSnapshot(version, entries, index, renderer);
+    }
+
+    /**
+     * @return 版本号为0的空快照
+     */
+    public static SchemaSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param renderer 片段渲染器
+     * @return 版本号为0、使用指定渲染器的空快照
+     */
+    public static SchemaSnapshot empty(SchemaRenderer renderer) {
+        return renderer == EMPTY.renderer ? EMPTY
+                : new SchemaSnapshot(0, PersistentMap.empty(), new SchemaIndex(), renderer);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 全部表（只读，按首次缓存的顺序）；同一快照每次返回同一个列表实例
+     */
+    public List<TableMeta> getTables() {
+        List<TableMeta> list = tables;
+        if (list == null) {
+            synchronized (this) {
+                list = tables;
+                if (list == null) {
+                    List<TableMeta> ordered = new ArrayList<>(entries.size());
+                    entries.forEach((name, entry) -> ordered.add(entry.table));
+                    tables = list = Collections.unmodifiableList(ordered);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @param tableName 表名
+     * @return 表结构，不存在时返回null
+     */
+    public TableMeta get(String tableName) {
+        Entry entry = entries.get(tableName);
+        return entry == null ? null : entry.table;
+    }
+
+    /**
+     * @return 传入的正是快照中的同一个TableMeta实例（即从快照中取出的表）时返回true；快照保存的是副本，调用方自己的实例总是返回false
+     */
+    public boolean contains(TableMeta table) {
+        Entry entry = entries.get(table.getTableName());
+        return entry != null && entry.table == table;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * 表结构指纹，快照中的表直接返回缓存值，其他表现场计算
+     */
+    public long fingerprint(TableMeta table) {
+        Entry entry = entries.get(table.getTableName());
+        return entry != null && entry.table == table ? entry.fingerprint : SchemaFingerprint.of(table);
+    }
+
+    /**
+     * 表结构描述片段，快照中的表直接返回预渲染的片段，其他表现场渲染
+     */
+    public String fragment(TableMeta table) {
+        Entry entry = entries.get(table.getTableName());
+        return entry != null && entry.table == table ? entry.fragment() : renderer.render(table, true);
+    }
+
+    /**
+     * 表结构描述片段的估算token数，快照中的表直接返回缓存值
+     */
+    public int fragmentTokens(TableMeta table) {
+        Entry entry = entries.get(table.getTableName());
+        return entry != null && entry.table == table ? entry.tokens() : TokenEstimator.estimate(renderer.render(table, true));
+    }
+
+    /**
+     * @return 渲染片段使用的渲染器
+     */
+    public SchemaRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * @return 快照中全部表的列名索引（只读视图，修改方法抛出UnsupportedOperationException；可在其上{@link SchemaIndex#overlay(Collection)}）
+     */
+    public SchemaIndex getIndex() {
+        return readOnlyIndex;
+    }
+
+    /**
+     * @return 以当前快照为基础构建下一个版本的构建器，当前快照不受影响
+     */
+    public Builder toBuilder() {
+        return new Builder(this, null, renderer);
+    }
+
+    /**
+     * @param interner 表结构驻留池，写入的表先驻留为共享对象（可为null）
+     * @return 以当前快照为基础构建下一个版本的构建器，当前快照不受影响
+     */
+    public Builder toBuilder(SchemaInterner interner) {
+        return new Builder(this, interner, renderer);
+    }
+
+    /**
+     * @param interner 表结构驻留池（可为null）
+     * @param renderer 片段渲染器，与当前快照不同时全部表重新渲染
+     * @return 以当前快照为基础构建下一个版本的构建器，当前快照不受影响
+     */
+    public Builder toBuilder(SchemaInterner interner, SchemaRenderer renderer) {
+        return new Builder(this, interner, Objects.requireNonNull(renderer));
+    }
+
+    /**
+     * 快照构建器，非线程安全；首次修改时才复制基础快照的数据
+     */
+    public static final class Builder {
+        private final SchemaSnapshot base;
+        private final SchemaInterner interner;
+        private final SchemaRenderer renderer;
+        private PersistentMap.Builder<Entry> entries;
+        private SchemaIndex index;
+        //待写入列名索引的变更（小写表名 -> 列名集合，null表示删除），build时一次写入
+        private final Map<String, Set<String>> indexChanges = new LinkedHashMap<>();
+
+        private Builder(SchemaSnapshot base, SchemaInterner interner, SchemaRenderer renderer) {
+            this.base = base;
+            this.interner = interner;
+            this.renderer = renderer;
+            if (renderer != base.renderer) {
+                copy();
+                base.entries.forEach((name, e) ->
+                        entries.put(name, new Entry(e.table, e.fingerprint, renderer.render(e.table, true))));
+            }
+        }
+
+        /**
+         * 首次修改时以基础快照为起点，只共享不复制，开销与表数量无关
+         */
+        private void copy() {
+            if (entries == null) {
+                entries = base.entries.toBuilder();
+                index = base.index.copy();
+            }
+        }
+
+        public boolean contains(String tableName) {
+            return entries != null ? entries.containsKey(tableName) : base.entries.containsKey(tableName);
+        }
+
+        /**
+         * @return 构建中的表结构，不存在时返回null
+         */
+        public TableMeta get(String tableName) {
+            Entry entry = entries != null ? entries.get(tableName) : base.entries.get(tableName);
+            return entry == null ? null : entry.table;
+        }
+
+        /**
+         * @return 全部表名（只读，需遍历全部表）
+         */
+        public Set<String> tableNames() {
+            return entries != null ? entries.build().keySet() : base.entries.keySet();
+        }
+
+        /**
+         * 添加或替换表；结构与已有同名表相同（指纹一致）时复用其片段与索引
+         * <p>快照中保存的是传入表的副本（配置了驻留池时为驻留后的共享表），而不是传入的实例</p>
+         *
+         * @return 新增的表或结构发生变化时返回true
+         */
+        public boolean put(TableMeta table) {
+            copy();
+            if (interner != null) {
+                SchemaInterner.SharedTable shared = interner.intern(table);
+                Entry old = entries.get(table.getTableName());
+                entries.put(table.getTableName(),
+                        new Entry(shared.getTable(), shared.getFingerprint(), shared.getFragment(renderer),
+                                shared.getFragmentTokens(renderer)));
+                if (old != null && old.fingerprint == shared.getFingerprint()) {
+                    return false;
+                }
+                indexChanges.put(SchemaIndex.normalize(table.getTableName()), shared.getColumnNames());
+                return true;
+            }
+            TableMeta copy = copyOf(table);
+            long fingerprint = SchemaFingerprint.of(copy);
+            Entry old = entries.get(copy.getTableName());
+            if (old != null && old.fingerprint == fingerprint) {
+                return false;
+            }
+            entries.put(copy.getTableName(), new Entry(copy, fingerprint, renderer.render(copy, true)));
+            indexChanges.put(SchemaIndex.normalize(copy.getTableName()), SchemaIndex.columnNames(copy));
+            return true;
+        }
+
+        /**
+         * @return 表存在并被移除时返回true
+         */
+        public boolean remove(String tableName) {
+            if (!contains(tableName)) {
+                return false;
+            }
+            copy();
+            entries.remove(tableName);
+            indexChanges.put(SchemaIndex.normalize(tableName), null);
+            return true;
+        }
+
+        /**
+         * 表改名，列与描述不变；改名后的表排在最后
+         *
+         * @return 原表存在并完成改名时返回true
+         * @throws IllegalArgumentException 新表名已存在时抛出
+         */
+        public boolean rename(String from, String to) {
+            TableMeta table = get(from);
+            if (table == null || from.equals(to)) {
+                return table != null;
+            }
+            if (contains(to)) {
+                throw new IllegalArgumentException("表已存在：" + to);
+            }
+            TableMeta renamed = new TableMeta();
+            renamed.setTableName(to);
+            renamed.setDescription(table.getDescription());
+            renamed.setColumns(table.getColumns());
+            remove(from);
+            put(renamed);
+            return true;
+        }
+
+        public void clear() {
+            entries = PersistentMap.<Entry>empty().toBuilder();
+            index = new SchemaIndex();
+            indexChanges.clear();
+        }
+
+        /**
+         * @return 下一个版本的快照；没有任何修改时返回基础快照本身
+         */
+        public SchemaSnapshot build() {
+            if (entries == null) {
+                return base;
+            }
+            index.apply(indexChanges);
+            indexChanges.clear();
+            return new SchemaSnapshot(base.version + 1, entries.build(), index, renderer);
+        }
+    }
+
+    /**
+     * @return 表与各列的副本，列列表不可修改
+     */
+    private static TableMeta copyOf(TableMeta table) {
+        TableMeta copy = new TableMeta();
+        copy.setTableName(table.getTableName());
+        copy.setDescription(table.getDescription());
+        List<ColumnMeta> columns = table.getColumns();
+        if (columns != null) {
+            List<ColumnMeta> copied = new ArrayList<>(columns.size());
+            for (ColumnMeta column : columns) {
+                ColumnMeta c = new ColumnMeta();
+                c.setName(column.getName());
+                c.setType(column.getType());
+                c.setDescription(column.getDescription());
+                copied.add(c);
+            }
+            copy.setColumns(Collections.unmodifiableList(copied));
+        }
+        return copy;
+    }
+
+    /**
+     * 快照中的一张表；从快照文件恢复的条目在首次访问时才解码片段
+     */
+    static class Entry {
+        final TableMeta table;
+        final long fingerprint;
+        private final String fragment;
+        private final int tokens;
+
+        Entry(TableMeta table, long fingerprint, String fragment) {
+            this(table, fingerprint, fragment, TokenEstimator.estimate(fragment));
+        }
+
+        Entry(TableMeta table, long fingerprint, String fragment, int tokens) {
+            this.table = table;
+            this.fingerprint = fingerprint;
+            this.fragment = fragment;
+            this.tokens = tokens;
+        }
+
+        String fragment() {
+            return fragment;
+        }
+
+        int tokens() {
+            return tokens;
+        }
+    }
+}
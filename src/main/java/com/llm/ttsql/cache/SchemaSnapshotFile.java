@@ -0,0 +1,513 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.SchemaRenderer;
+import com.llm.ttsql.prompt.TokenEstimator;
+import com.llm.ttsql.retrieval.SchemaRetriever;
+import com.llm.ttsql.validation.SchemaIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表结构快照文件：版本化的紧凑二进制格式，内存映射后按需解码
+ * <p>文件结构（大端，偏移均为文件内的绝对位置）：</p>
+ * <pre>
+ * 头部（64字节）：魔数、格式版本、创建时间、快照版本、渲染器校验值、表数量、数据区与检索区的偏移、文件长度、CRC32C
+ * 目录：每张表24字节，依次为表名、表数据、预渲染片段的偏移，片段token数，结构指纹
+ * 数据区：去重后的字符串（字节数 + UTF-8）与表数据（描述、列数、每列名称/类型/描述的字符串偏移）
+ * 检索区：检索器类名 + 检索器写入的索引（{@link SchemaRetriever#writeSnapshot(java.io.DataOutput)}）
+ * </pre>
+ * <p>写入时先在同一目录写临时文件并刷盘，再原子替换目标文件，读取方不会看到写了一半的文件；
+ * 已映射旧文件的进程不受替换影响。读取时校验魔数、格式版本、文件长度与CRC32C，
+ * 之后只为每张表解码表名，描述、列与片段在首次访问时才从映射区解码。</p>
+ * <p>片段按写入时的渲染器生成；加载时渲染器对示例表的输出与写入时不同（如换用了
+ * {@link com.llm.ttsql.prompt.impl.CompactSchemaRenderer}），则忽略文件中的片段，在首次访问时重新渲染。</p>
+ * @Version: 1.0
+ **/
+public final class SchemaSnapshotFile {
+    /**
+     * 当前格式版本，读取到其他版本的文件时拒绝加载
+     */
+    public static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x54325353;
+    private static final int HEADER_SIZE = 64;
+    private static final int CRC_POSITION = 56;
+    private static final int DIR_ENTRY_SIZE = 24;
+    //用于判断渲染器是否与写入时一致的示例表
+    private static final TableMeta RENDER_PROBE = probeTable();
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final long createdAt;
+    private final long schemaVersion;
+    private final long rendererCheck;
+    private final int tableCount;
+    private final int retrievalOffset;
+    private final int retrievalLength;
+
+    private SchemaSnapshotFile(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是表结构快照文件：" + path);
+        }
+        int formatVersion = buffer.getInt(4);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException(String.format("快照文件格式版本不兼容：%d（当前为%d）：%s", formatVersion,
+                    FORMAT_VERSION, path));
+        }
+        if (buffer.getLong(48) != buffer.capacity()) {
+            throw new IOException("快照文件不完整：" + path);
+        }
+        if (buffer.getInt(CRC_POSITION) != checksum(buffer)) {
+            throw new IOException("快照文件校验失败：" + path);
+        }
+        this.createdAt = buffer.getLong(8);
+        this.schemaVersion = buffer.getLong(16);
+        this.rendererCheck = buffer.getLong(24);
+        this.tableCount = buffer.getInt(32);
+        this.retrievalOffset = buffer.getInt(40);
+        this.retrievalLength = buffer.getInt(44);
+    }
+
+    /**
+     * 映射并校验快照文件
+     *
+     * @param file 快照文件
+     * @return 已映射的快照文件，表结构尚未解码
+     * @throws IOException 文件不存在、不完整、校验和不符或格式版本不兼容时抛出，调用方可退回从数据库加载
+     */
+    public static SchemaSnapshotFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("快照文件超过2GB：" + file);
+            }
+            // 映射在通道关闭后仍然有效
+            return new SchemaSnapshotFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * 写入快照文件（先写临时文件再原子替换）
+     *
+     * @param file      目标文件
+     * @param snapshot  表结构快照
+     * @param retriever 检索器（可为null），不支持写入快照时不保存检索索引
+     * @throws IOException 写入失败时抛出，目标文件保持原样
+     */
+    public static void write(Path file, SchemaSnapshot snapshot, SchemaRetriever retriever) throws IOException {
+        List<TableMeta> tables = snapshot.getTables();
+        int dataOffset = HEADER_SIZE + tables.size() * DIR_ENTRY_SIZE;
+        ByteBuffer dir = ByteBuffer.allocate(tables.size() * DIR_ENTRY_SIZE);
+        DataWriter data = new DataWriter(dataOffset);
+        for (TableMeta table : tables) {
+            dir.putInt(data.string(table.getTableName()));
+            dir.putInt(data.table(table));
+            dir.putInt(data.string(snapshot.fragment(table)));
+            dir.putInt(snapshot.fragmentTokens(table));
+            dir.putLong(snapshot.fingerprint(table));
+        }
+        byte[] retrieval = retrievalSection(retriever);
+        long length = (long) dataOffset + data.size + (retrieval == null ? 0 : retrieval.length);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("快照文件超过2GB");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(System.currentTimeMillis())
+                .putLong(snapshot.getVersion()).putLong(rendererCheck(snapshot.getRenderer()))
+                .putInt(tables.size()).putInt(dataOffset)
+                .putInt(retrieval == null ? 0 : dataOffset + data.size).putInt(retrieval == null ? 0 : retrieval.length)
+                .putLong(length);
+        ByteBuffer payload = ByteBuffer.wrap(data.bytes, 0, data.size);
+        ByteBuffer retrievalBuffer = ByteBuffer.wrap(retrieval == null ? new byte[0] : retrieval);
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, CRC_POSITION);
+        crc.update(dir.array());
+        crc.update(payload.duplicate());
+        crc.update(retrievalBuffer.duplicate());
+        header.putInt(CRC_POSITION, (int) crc.getValue());
+        header.position(0);
+        dir.flip();
+
+        Path target = file.toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer[] parts = {header, dir, payload, retrievalBuffer};
+                long remaining = length;
+                while (remaining > 0) {
+                    remaining -= channel.write(parts);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] retrievalSection(SchemaRetriever retriever) throws IOException {
+        if (retriever == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] type = retriever.getClass().getName().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(type.length);
+        out.write(type);
+        if (!retriever.writeSnapshot(out)) {
+            return null;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 创建快照：只解码表名，描述、列与片段在首次访问时解码
+     * <p>恢复出的表不经过{@link SchemaInterner}驻留</p>
+     *
+     * @param version  新快照的版本号
+     * @param renderer 当前配置的渲染器
+     * @return 表结构快照
+     */
+    public SchemaSnapshot toSnapshot(long version, SchemaRenderer renderer) {
+        boolean fragmentsValid = rendererCheck == rendererCheck(renderer);
+        PersistentMap.Builder<SchemaSnapshot.Entry> entries = PersistentMap.<SchemaSnapshot.Entry>empty().toBuilder();
+        Map<String, Set<String>> columns = new HashMap<>(tableCount * 4 / 3 + 1);
+        for (int i = 0; i < tableCount; i++) {
+            int pos = HEADER_SIZE + i * DIR_ENTRY_SIZE;
+            String name = string(buffer.getInt(pos));
+            MappedTableMeta table = new MappedTableMeta(this, name, buffer.getInt(pos + 4));
+            entries.put(name, new MappedEntry(this, table, buffer.getLong(pos + 16),
+                    fragmentsValid ? buffer.getInt(pos + 8) : 0, buffer.getInt(pos + 12), renderer));
+            columns.put(SchemaIndex.normalize(name), new MappedColumnNames(table));
+        }
+        SchemaIndex index = new SchemaIndex();
+        index.apply(columns);
+        return SchemaSnapshot.of(version, entries.build(), index, renderer);
+    }
+
+    /**
+     * 从文件恢复检索索引
+     *
+     * @return 文件中没有检索索引、检索器类型不同或不支持恢复时返回false，调用方需逐表重建索引
+     */
+    public boolean restoreRetriever(SchemaRetriever retriever) {
+        if (retriever == null || retrievalOffset == 0) {
+            return false;
+        }
+        ByteBuffer in = buffer.slice(retrievalOffset, retrievalLength);
+        byte[] type = new byte[in.getInt()];
+        in.get(type);
+        if (!retriever.getClass().getName().equals(new String(type, StandardCharsets.UTF_8))) {
+            return false;
+        }
+        return retriever.readSnapshot(in);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return 写入时间（毫秒时间戳）
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return 写入时快照的版本号
+     */
+    public long getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    public int getTableCount() {
+        return tableCount;
+    }
+
+    /**
+     * @return 文件大小（字节）
+     */
+    public int getSize() {
+        return buffer.capacity();
+    }
+
+    private String string(int ref) {
+        if (ref == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.getInt(ref)];
+        buffer.get(ref + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, CRC_POSITION));
+        crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        return (int) crc.getValue();
+    }
+
+    private static long rendererCheck(SchemaRenderer renderer) {
+        String probe = renderer.render(RENDER_PROBE, true);
+        return (long) probe.hashCode() << 32 | probe.length();
+    }
+
+    private static TableMeta probeTable() {
+        TableMeta table = new TableMeta();
+        table.setTableName("t_probe_order");
+        table.setDescription("订单主表，记录下单、支付、发货与售后的全部状态变化");
+        String[][] columns = {
+                {"id", "bigint", "主键"},
+                {"order_no", "varchar(32)", "订单编号，全局唯一，由业务系统生成，规则为前缀+日期+流水号"},
+                {"addr_province", "varchar(32)", "所在省份"},
+                {"addr_city", "varchar(32)", "所在城市"},
+                {"create_time", "datetime", "创建时间"}};
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String[] c : columns) {
+            ColumnMeta column = new ColumnMeta();
+            column.setName(c[0]);
+            column.setType(c[1]);
+            column.setDescription(c[2]);
+            list.add(column);
+        }
+        table.setColumns(list);
+        return table;
+    }
+
+    /**
+     * 数据区写入：字符串去重，返回值均为文件内的绝对偏移（0表示null）
+     */
+    private static final class DataWriter {
+        private final int base;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        DataWriter(int base) {
+            this.base = base;
+        }
+
+        int string(String s) throws IOException {
+            if (s == null) {
+                return 0;
+            }
+            Integer ref = strings.get(s);
+            if (ref != null) {
+                return ref;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            int pos = position();
+            putInt(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+            strings.put(s, pos);
+            return pos;
+        }
+
+        int table(TableMeta table) throws IOException {
+            List<ColumnMeta> columns = table.getColumns();
+            int[] refs = new int[1 + (columns == null ? 0 : columns.size() * 3)];
+            refs[0] = string(table.getDescription());
+            for (int i = 0; columns != null && i < columns.size(); i++) {
+                ColumnMeta column = columns.get(i);
+                refs[1 + i * 3] = string(column.getName());
+                refs[2 + i * 3] = string(column.getType());
+                refs[3 + i * 3] = string(column.getDescription());
+            }
+            int pos = position();
+            putInt(refs[0]);
+            putInt(columns == null ? -1 : columns.size());
+            for (int i = 1; i < refs.length; i++) {
+                putInt(refs[i]);
+            }
+            return pos;
+        }
+
+        private int position() throws IOException {
+            if ((long) base + size > Integer.MAX_VALUE) {
+                throw new IOException("快照文件超过2GB");
+            }
+            return base + size;
+        }
+
+        private void putInt(int v) {
+            ensure(4);
+            bytes[size++] = (byte) (v >>> 24);
+            bytes[size++] = (byte) (v >>> 16);
+            bytes[size++] = (byte) (v >>> 8);
+            bytes[size++] = (byte) v;
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+            }
+        }
+    }
+
+    /**
+     * 映射区中的表：表名在加载时解码，描述与列在首次访问时解码；与快照中的其他表一样不能修改
+     */
+    static final class MappedTableMeta extends TableMeta {
+        private final SchemaSnapshotFile file;
+        private final int ref;
+        private volatile boolean decoded;
+
+        MappedTableMeta(SchemaSnapshotFile file, String name, int ref) {
+            this.file = file;
+            this.ref = ref;
+            setTableName(name);
+        }
+
+        @Override
+        public String getDescription() {
+            decode();
+            return super.getDescription();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw new UnsupportedOperationException("快照中的表不能修改");
+        }
+
+        @Override
+        public List<ColumnMeta> getColumns() {
+            decode();
+            return super.getColumns();
+        }
+
+        @Override
+        public void setColumns(List<ColumnMeta> columns) {
+            throw new UnsupportedOperationException("快照中的表不能修改");
+        }
+
+        boolean isDecoded() {
+            return decoded;
+        }
+
+        private void decode() {
+            if (decoded) {
+                return;
+            }
+            synchronized (this) {
+                if (decoded) {
+                    return;
+                }
+                ByteBuffer buffer = file.buffer;
+                super.setDescription(file.string(buffer.getInt(ref)));
+                int count = buffer.getInt(ref + 4);
+                List<ColumnMeta> columns = null;
+                if (count >= 0) {
+                    columns = new ArrayList<>(count);
+                    for (int i = 0, pos = ref + 8; i < count; i++, pos += 12) {
+                        ColumnMeta column = new ColumnMeta();
+                        column.setName(file.string(buffer.getInt(pos)));
+                        column.setType(file.string(buffer.getInt(pos + 4)));
+                        column.setDescription(file.string(buffer.getInt(pos + 8)));
+                        columns.add(column);
+                    }
+                    columns = Collections.unmodifiableList(columns);
+                }
+                super.setColumns(columns);
+                decoded = true;
+            }
+        }
+    }
+
+    /**
+     * 片段在首次访问时解码；文件中的片段不可用（渲染器已变化）时用当前渲染器重新渲染
+     */
+    private static final class MappedEntry extends SchemaSnapshot.Entry {
+        private final SchemaSnapshotFile file;
+        private final int fragmentRef;
+        private final int fileTokens;
+        private final SchemaRenderer renderer;
+        private volatile String fragment;
+        private volatile int tokens = -1;
+
+        MappedEntry(SchemaSnapshotFile file, TableMeta table, long fingerprint, int fragmentRef, int fileTokens,
+                    SchemaRenderer renderer) {
+            super(table, fingerprint, null, 0);
+            this.file = file;
+            this.fragmentRef = fragmentRef;
+            this.fileTokens = fileTokens;
+            this.renderer = renderer;
+        }
+
+        @Override
+        String fragment() {
+            String s = fragment;
+            if (s == null) {
+                s = fragmentRef != 0 ? file.string(fragmentRef) : renderer.render(table, true);
+                fragment = s;
+            }
+            return s;
+        }
+
+        @Override
+        int tokens() {
+            int t = tokens;
+            if (t < 0) {
+                t = fragmentRef != 0 ? fileTokens : TokenEstimator.estimate(fragment());
+                tokens = t;
+            }
+            return t;
+        }
+    }
+
+    /**
+     * 列名集合在首次用于校验时才解码对应的表
+     */
+    private static final class MappedColumnNames extends AbstractSet<String> {
+        private final TableMeta table;
+        private volatile Set<String> names;
+
+        MappedColumnNames(TableMeta table) {
+            this.table = table;
+        }
+
+        private Set<String> names() {
+            Set<String> s = names;
+            if (s == null) {
+                s = SchemaIndex.columnNames(table);
+                names = s;
+            }
+            return s;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return names().contains(o);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return names().iterator();
+        }
+
+        @Override
+        public int size() {
+            return names().size();
+        }
+    }
+}
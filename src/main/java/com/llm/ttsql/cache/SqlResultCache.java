@@ -0,0 +1,340 @@
+package com.llm.ttsql.cache;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SQL生成结果缓存
+ *
+ * <p>缓存键由以下部分组成：</p>
+ * <ol>
+ *   <li>规范化后的用户问题</li>
+ *   <li>实际发送给模型的表结构指纹</li>
+ *   <li>模型名称（{@code LLMInfo.getModel()}）</li>
+ *   <li>数据库类型（{@code Config.getDataBaseName()}）</li>
+ *   <li>自定义提示词指纹（未使用自定义提示词时为0）</li>
+ * </ol>
+ *
+ * <p>支持容量（LRU）与过期时间（TTL）淘汰、命中统计，以及可选的磁盘快照，
+ * 节点重启后可通过快照预热。</p>
+ *
+ * <p>按表名维护反向索引，表结构变更时只访问引用了变更表的条目。</p>
+ *
+ * <pre>{@code
+ * Config config = new Config().responseCache(
+ *         new SqlResultCache(1000, 24 * 3600 * 1000L).snapshotFile(new File("sql-cache.json")));
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class SqlResultCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    //表名 -> 引用了该表的缓存键，与entries在同一把锁下维护
+    private final Map<String, Set<String>> keysByTable = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private File snapshotFile;
+
+    /**
+     * @param maxSize   最大缓存条数（超出后按LRU淘汰）
+     * @param ttlMillis 条目存活时间（毫秒），小于等于0表示永不过期
+     */
+    public SqlResultCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SqlResultCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    unlink(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 设置磁盘快照文件，文件存在时立即加载其中未过期的条目
+     *
+     * @param file 快照文件
+     * @return 当前缓存
+     */
+    public SqlResultCache snapshotFile(File file) {
+        this.snapshotFile = file;
+        if (file != null && file.isFile()) {
+            loadSnapshot();
+        }
+        return this;
+    }
+
+    /**
+     * 构建缓存键
+     *
+     * @param question          用户问题
+     * @param schemaFingerprint 表结构指纹，参见{@link SchemaFingerprint}
+     * @param model             模型名称
+     * @param dataBaseName      数据库类型
+     * @param prompt            自定义提示词（可为null）
+     * @return 缓存键
+     */
+    public static String buildKey(String question, long schemaFingerprint, String model,
+                                  String dataBaseName, String prompt) {
+        long promptFp = prompt == null ? 0L : SchemaFingerprint.of(prompt);
+        return model + '\u0001' + dataBaseName + '\u0001' + Long.toHexString(schemaFingerprint)
+                + '\u0001' + Long.toHexString(promptFp) + '\u0001' + normalizeQuestion(question);
+    }
+
+    /**
+     * 问题规范化：去除首尾空白与结尾标点、合并连续空白；保留大小写，
+     * 问题中的取值（如 name = 'ABC' 与 'abc'）或标识符可能区分大小写，不能共用同一条SQL
+     */
+    static String normalizeQuestion(String question) {
+        StringBuilder sb = new StringBuilder(question.length());
+        boolean space = false;
+        for (int i = 0, n = question.length(); i < n; i++) {
+            char c = question.charAt(i);
+            if (Character.isWhitespace(c) || c == '　') {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(c);
+        }
+        int end = sb.length();
+        while (end > 0 && "?？。.!！".indexOf(sb.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param key 缓存键
+     * @return 缓存的SQL，未命中或已过期时返回null
+     */
+    public String get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+                entries.remove(key);
+                unlink(key, entry);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.sql;
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key        缓存键
+     * @param sql        生成的SQL
+     * @param tableNames 生成该SQL时发送给模型的表名，用于表结构变更时定向失效
+     */
+    public void put(String key, String sql, Collection<String> tableNames) {
+        Entry entry = new Entry(sql, tableNames.toArray(new String[0]), System.currentTimeMillis());
+        synchronized (entries) {
+            link(key, entry);
+        }
+    }
+
+    /**
+     * 使引用了指定表的缓存条目失效
+     *
+     * @param tableNames 结构发生变化的表名
+     * @return 失效的条目数
+     */
+    public int invalidateTables(Set<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            return 0;
+        }
+        int removed = 0;
+        synchronized (entries) {
+            for (String table : tableNames) {
+                Set<String> keys = keysByTable.get(table);
+                if (keys == null) {
+                    continue;
+                }
+                for (String key : keys.toArray(new String[0])) {
+                    Entry entry = entries.remove(key);
+                    if (entry != null) {
+                        unlink(key, entry);
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 清空缓存（不影响命中统计）
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            keysByTable.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return 命中率，无请求时返回0
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0D : (double) h / total;
+    }
+
+    /**
+     * 将当前未过期条目写入快照文件（先写临时文件再原子替换）
+     *
+     * @throws IllegalStateException 未设置快照文件或写入失败时抛出
+     */
+    public void saveSnapshot() {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("未设置缓存快照文件");
+        }
+        JSONArray array = new JSONArray();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (isExpired(entry, now)) {
+                    continue;
+                }
+                JSONObject item = new JSONObject();
+                item.set("key", e.getKey());
+                item.set("sql", entry.sql);
+                item.set("tables", entry.tables);
+                item.set("createdAt", entry.createdAt);
+                array.add(item);
+            }
+        }
+        Path target = snapshotFile.toPath().toAbsolutePath();
+        try {
+            Path tmp = Files.createTempFile(target.getParent(), snapshotFile.getName(), ".tmp");
+            Files.write(tmp, array.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存快照写入失败: " + target, e);
+        }
+    }
+
+    /**
+     * 从快照文件加载条目，已过期条目将被跳过
+     *
+     * @return 加载的条目数
+     */
+    public int loadSnapshot() {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("未设置缓存快照文件");
+        }
+        JSONArray array;
+        try {
+            array = JSONUtil.parseArray(new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存快照读取失败: " + snapshotFile, e);
+        }
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        synchronized (entries) {
+            for (int i = 0; i < array.size(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                Entry entry = new Entry(item.getStr("sql"),
+                        item.getJSONArray("tables").toArray(new String[0]),
+                        item.getLong("createdAt"));
+                if (!isExpired(entry, now)) {
+                    link(item.getStr("key"), entry);
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 写入条目并登记到反向索引；调用方需持有entries的锁
+     */
+    private void link(String key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            unlink(key, old);
+        }
+        for (String table : entry.tables) {
+            keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void unlink(String key, Entry entry) {
+        for (String table : entry.tables) {
+            Set<String> keys = keysByTable.get(table);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTable.remove(table);
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlMillis > 0 && now - entry.createdAt > ttlMillis;
+    }
+
+    private static final class Entry {
+        final String sql;
+        final String[] tables;
+        final long createdAt;
+
+        Entry(String sql, String[] tables, long createdAt) {
+            this.sql = sql;
+            this.tables = tables;
+            this.createdAt = createdAt;
+        }
+    }
+}
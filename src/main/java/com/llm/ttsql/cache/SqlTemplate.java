@@ -0,0 +1,352 @@
+package com.llm.ttsql.cache;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 由一次模型回答学习得到的SQL模板
+ * <p>学习时扫描SQL中的字符串与数字字面量，与问题各槽位的多种写法（如月份槽位的“2026-03”“2026-03-01”、
+ * 下月1日、2026、3等）比对，匹配上的字面量成为槽位引用。以下情况无法确定字面量的来源，不学习：</p>
+ * <ul>
+ *   <li>同一字面量能匹配多个槽位</li>
+ *   <li>槽位的同一种写法在SQL中出现多次（如“前3名”对应的SQL里同时有{@code status = 3}与{@code LIMIT 3}）</li>
+ *   <li>日期槽位的数字写法（年份、月份等）出现在日期上下文之外，如{@code LIMIT 3}、{@code status = 3}</li>
+ * </ul>
+ * <p> * 没有在SQL中找到的槽位（如模型用CURDATE()表达“本月”）记为约束：只有该槽位取值与学习时完全相同的问题才能复用模板。</p>
+ * @Version: 1.0
+ **/
+final class SqlTemplate {
+    private static final DateTimeFormatter BASIC = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter YEAR_MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter YEAR_MONTH_BASIC = DateTimeFormatter.ofPattern("yyyyMM");
+    //数字字面量左侧同一条件内出现这些函数或列名时视为日期上下文
+    private static final Pattern DATE_CONTEXT = Pattern.compile(
+            "(?i)\\b(?:year|month|day|quarter|week|extract|date_format|date_part|datepart|strftime|to_char)\\s*\\("
+                    + "|(?i)[a-z0-9_$]*(?:date|time|year|month|day)[a-z0-9_$]*|(?i)\\b(?:[a-z0-9_$]*_)?dt\\b");
+    //向左查找日期上下文时遇到这些关键字即停止（同一条件的边界）
+    private static final Pattern CONDITION_BOUNDARY = Pattern.compile(
+            "(?i)\\b(?:where|and|or|on|having|select|limit|offset|top|fetch|by|then|else|when|set|values)\\s*$");
+
+    //常量文本与槽位引用交替：texts.length == holes.length + 1
+    private final String[] texts;
+    private final Hole[] holes;
+    //未在SQL中出现的槽位须与学习时取值相同，null表示该槽位已绑定
+    private final String[] constraints;
+
+    private SqlTemplate(String[] texts, Hole[] holes, String[] constraints) {
+        this.texts = texts;
+        this.holes = holes;
+        this.constraints = constraints;
+    }
+
+    /**
+     * 从SQL学习模板
+     *
+     * @return 模板；字面量来源有歧义时返回null
+     */
+    static SqlTemplate learn(String sql, List<QuestionShape.Slot> slots) {
+        String[][] renderings = new String[slots.size()][];
+        for (int i = 0; i < slots.size(); i++) {
+            renderings[i] = renderings(slots.get(i));
+        }
+        boolean[] bound = new boolean[slots.size()];
+        boolean[][] used = new boolean[slots.size()][];
+        for (int s = 0; s < slots.size(); s++) {
+            used[s] = new boolean[renderings[s].length];
+        }
+        List<String> texts = new ArrayList<>();
+        List<Hole> holes = new ArrayList<>();
+        int copied = 0;
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                int end = stringEnd(sql, i);
+                if (end < 0) {
+                    return null;
+                }
+                String content = sql.substring(i + 1, end);
+                int[] match = match(content, renderings, slots, false);
+                if (match == null) {
+                    return null;
+                }
+                if (match[0] >= 0) {
+                    if (used[match[0]][match[1]]) {
+                        return null;
+                    }
+                    used[match[0]][match[1]] = true;
+                    String rendering = renderings[match[0]][match[1]];
+                    int at = content.indexOf(rendering);
+                    texts.add(sql.substring(copied, i + 1 + at));
+                    holes.add(new Hole(match[0], match[1], true));
+                    copied = i + 1 + at + rendering.length();
+                    bound[match[0]] = true;
+                }
+                i = end + 1;
+            } else if (c == '"' || c == '`' || c == '[') {
+                int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+                i = end < 0 ? n : end + 1;
+            } else if (isDigit(c) && (i == 0 || !isIdentPart(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < n && (isDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+                    end++;
+                }
+                if (end < n && isIdentPart(sql.charAt(end))) {
+                    i = end;
+                    continue;
+                }
+                int[] match = match(sql.substring(i, end), renderings, slots, true);
+                if (match == null) {
+                    return null;
+                }
+                if (match[0] >= 0) {
+                    if (used[match[0]][match[1]]
+                            || slots.get(match[0]).kind != QuestionShape.NUMBER && !dateContext(sql, i)) {
+                        return null;
+                    }
+                    used[match[0]][match[1]] = true;
+                    texts.add(sql.substring(copied, i));
+                    holes.add(new Hole(match[0], match[1], false));
+                    copied = end;
+                    bound[match[0]] = true;
+                }
+                i = end;
+            } else if (isIdentPart(c)) {
+                while (i < n && isIdentPart(sql.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        texts.add(sql.substring(copied));
+        String[] constraints = new String[slots.size()];
+        for (int s = 0; s < slots.size(); s++) {
+            constraints[s] = bound[s] ? null : slots.get(s).raw;
+        }
+        return new SqlTemplate(texts.toArray(new String[0]), holes.toArray(new Hole[0]), constraints);
+    }
+
+    /**
+     * @return 问题的约束槽位与学习时一致时返回true
+     */
+    boolean accepts(List<QuestionShape.Slot> slots) {
+        for (int s = 0; s < constraints.length; s++) {
+            if (constraints[s] != null && !constraints[s].equals(slots.get(s).raw)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用问题的槽位取值生成SQL
+     *
+     * @return SQL；取值无法安全写入字符串字面量时返回null
+     */
+    String render(List<QuestionShape.Slot> slots) {
+        StringBuilder sb = new StringBuilder(texts[0].length() * 2);
+        sb.append(texts[0]);
+        for (int h = 0; h < holes.length; h++) {
+            Hole hole = holes[h];
+            String value = renderings(slots.get(hole.slot))[hole.rendering];
+            if (hole.quoted) {
+                if (value.indexOf('\\') >= 0) {
+                    return null;
+                }
+                value = value.replace("'", "''");
+            }
+            sb.append(value).append(texts[h + 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 槽位引用的数量
+     */
+    int holeCount() {
+        return holes.length;
+    }
+
+    /**
+     * @return 与字面量匹配的[槽位, 写法]，没有匹配时为[-1, -1]，多个槽位都能匹配时返回null
+     */
+    private static int[] match(String literal, String[][] renderings, List<QuestionShape.Slot> slots, boolean numeric) {
+        int[] found = {-1, -1};
+        for (int s = 0; s < renderings.length; s++) {
+            int kind = slots.get(s).kind;
+            for (int r = 0; r < renderings[s].length; r++) {
+                String rendering = renderings[s][r];
+                if (rendering == null) {
+                    continue;
+                }
+                boolean numericRendering = isNumericRendering(kind, r);
+                boolean matches;
+                if (numeric) {
+                    matches = numericRendering && literal.equals(rendering);
+                } else if (kind == QuestionShape.TEXT) {
+                    matches = literal.contains(rendering);
+                } else {
+                    matches = literal.equals(rendering);
+                }
+                if (!matches) {
+                    continue;
+                }
+                if (found[0] >= 0 && found[0] != s) {
+                    return null;
+                }
+                if (found[0] < 0) {
+                    found[0] = s;
+                    found[1] = r;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean isNumericRendering(int kind, int rendering) {
+        switch (kind) {
+            case QuestionShape.NUMBER:
+                return true;
+            case QuestionShape.DAY:
+                return rendering == 1;
+            case QuestionShape.MONTH:
+                return rendering == 1 || rendering >= 8;
+            case QuestionShape.YEAR:
+                return rendering == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 槽位取值的各种写法，下标在同类槽位之间保持一致
+     */
+    private static String[] renderings(QuestionShape.Slot slot) {
+        LocalDate d = slot.date;
+        switch (slot.kind) {
+            case QuestionShape.DAY: {
+                LocalDate next = d.plusDays(1);
+                return new String[]{d.toString(), d.format(BASIC), next.toString(),
+                        d + " 00:00:00", d + " 23:59:59", next + " 00:00:00"};
+            }
+            case QuestionShape.MONTH: {
+                LocalDate last = d.plusMonths(1).minusDays(1);
+                LocalDate next = d.plusMonths(1);
+                return new String[]{d.format(YEAR_MONTH), d.format(YEAR_MONTH_BASIC), d.toString(), last.toString(),
+                        next.toString(), d + " 00:00:00", last + " 23:59:59", next + " 00:00:00",
+                        String.valueOf(d.getYear()), String.valueOf(d.getMonthValue())};
+            }
+            case QuestionShape.YEAR: {
+                LocalDate last = d.plusYears(1).minusDays(1);
+                LocalDate next = d.plusYears(1);
+                return new String[]{String.valueOf(d.getYear()), d.toString(), last.toString(), next.toString(),
+                        d + " 00:00:00", last + " 23:59:59", next + " 00:00:00"};
+            }
+            default:
+                return new String[]{slot.raw};
+        }
+    }
+
+    /**
+     * 数字字面量是否处于日期上下文：从字面量向左取同一条件（到括号外的逗号、左括号或WHERE、AND、LIMIT等关键字为止），
+     * 其中出现YEAR(、MONTH(等日期函数或名称含date、time、year等的列时返回true
+     */
+    static boolean dateContext(String sql, int literalStart) {
+        int depth = 0;
+        int i = literalStart;
+        while (i > 0) {
+            char c = sql.charAt(i - 1);
+            if (c == ')') {
+                depth++;
+            } else if (c == '(') {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == ';')) {
+                break;
+            } else if (depth == 0 && Character.isWhitespace(c)
+                    && CONDITION_BOUNDARY.matcher(sql.substring(Math.max(0, i - 16), i)).find()) {
+                break;
+            }
+            i--;
+        }
+        return DATE_CONTEXT.matcher(sql.substring(i, literalStart)).find();
+    }
+
+    private static int stringEnd(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                } else {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentPart(char c) {
+        return c == '_' || c == '$' || Character.isLetterOrDigit(c);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SqlTemplate)) {
+            return false;
+        }
+        SqlTemplate t = (SqlTemplate) o;
+        return Arrays.equals(texts, t.texts) && Arrays.equals(holes, t.holes) && Arrays.equals(constraints, t.constraints);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(texts) * 31 + Arrays.hashCode(constraints);
+    }
+
+    private static final class Hole {
+        final int slot;
+        final int rendering;
+        //是否位于字符串字面量内，写入时需要转义单引号
+        final boolean quoted;
+
+        Hole(int slot, int rendering, boolean quoted) {
+            this.slot = slot;
+            this.rendering = rendering;
+            this.quoted = quoted;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Hole)) {
+                return false;
+            }
+            Hole h = (Hole) o;
+            return slot == h.slot && rendering == h.rendering && quoted == h.quoted;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(slot, rendering, quoted);
+        }
+    }
+}
@@ -1,7 +1,27 @@
 package com.llm.ttsql.config;
 
+import com.llm.ttsql.cache.SchemaInterner;
+import com.llm.ttsql.cache.QuestionTemplateCache;
+import com.llm.ttsql.cache.SqlResultCache;
+import com.llm.ttsql.entity.LLMInfo;
 import com.llm.ttsql.extractor.SqlExtractor;
 import com.llm.ttsql.extractor.impl.DefaultSqlExtractor;
+import com.llm.ttsql.metrics.MetricsListener;
+import com.llm.ttsql.metrics.impl.HistogramMetricsListener;
+import com.llm.ttsql.prompt.PromptLayout;
+import com.llm.ttsql.prompt.SchemaRenderer;
+import com.llm.ttsql.prompt.impl.VerboseSchemaRenderer;
+import com.llm.ttsql.routing.LoadBalanceStrategy;
+import com.llm.ttsql.session.SessionStore;
+import com.llm.ttsql.transport.LLMTransport;
+import com.llm.ttsql.validation.SqlNormalizer;
+import com.llm.ttsql.validation.SqlValidator;
+import com.llm.ttsql.validation.impl.CanonicalSqlNormalizer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * @program: Text2SQLForLLM
@@ -10,12 +30,86 @@ import com.llm.ttsql.extractor.impl.DefaultSqlExtractor;
  * @History: 1.Created by zan.kang on 2025/3/5 22:17.
  * 2.
  **/
-public class Config {
+public class Config implements Cloneable {
+    //连接超时（毫秒）
     private int timeout = 5000;
+    //读取超时（毫秒），需覆盖模型生成耗时
+    private int readTimeout = 60000;
+    //单次请求的总超时（毫秒）：从发出请求到读完响应（含流式输出）的总时长上限，0表示不限制
+    private int requestTimeout = 0;
+    //连接池最大空闲连接数
+    private int maxIdleConnections = 16;
+    //空闲连接保留时长（毫秒）
+    private long keepAliveMillis = 60000;
+    //HTTP传输实现，null表示使用按配置共享的连接池实现
+    private LLMTransport transport;
     //最大重试次数
     private int maxRetries = 1;
     private String dataBaseName = "MySql";
     private SqlExtractor sqlExtractor = new DefaultSqlExtractor();
+    //SQL生成结果缓存，null表示不启用
+    private SqlResultCache responseCache;
+    //参数化问题模板缓存，null表示不启用
+    private QuestionTemplateCache questionTemplateCache;
+    //按问题检索相关表时最多选取的表数量，0表示不检索（发送全部缓存表）
+    private int retrievalTopK = 0;
+    //异步接口使用的线程池，null表示使用默认执行器（支持时为虚拟线程）
+    private Executor asyncExecutor;
+    //异步接口同时进行中的最大模型调用数
+    private int maxInFlight = 64;
+    //批量模式单次请求的token预算（表结构+问题+预估输出），用于自动确定每批问题数
+    private int batchTokenBudget = 32000;
+    //是否使用流式（SSE）调用，SQL就绪后立即返回并取消剩余输出
+    private boolean streaming = false;
+    //除构造参数中的主节点外的其他模型节点
+    private List<LLMInfo> backends = Collections.emptyList();
+    private LoadBalanceStrategy loadBalanceStrategy = LoadBalanceStrategy.LEAST_OUTSTANDING;
+    //重试退避基准时间（毫秒），第n次重试在[0, min(上限, 基准*2^(n-1))]内随机等待
+    private long retryBackoffMillis = 200;
+    private long retryBackoffMaxMillis = 5000;
+    //节点连续失败多少次后熔断
+    private int circuitFailureThreshold = 5;
+    //熔断持续时间（毫秒）
+    private long circuitOpenMillis = 30000;
+    //是否启用对冲请求：超过节点p95延迟未返回时向另一节点发起相同请求
+    private boolean hedging = false;
+    //同时进行中的相同提示词请求合并为一次模型调用，默认关闭（需要每次独立采样时不应合并）
+    private boolean coalesceRequests = false;
+    //指标回调，null表示不采集
+    private MetricsListener metricsListener = new HistogramMetricsListener();
+    //本地SQL校验，null表示不校验
+    private SqlValidator sqlValidator;
+    //校验失败后携带错误信息让模型修正的最大轮数
+    private int maxRepairRounds = 1;
+    //表结构驻留池，多个生成器共享相同的表结构对象，null表示不共享
+    private SchemaInterner schemaInterner;
+    //表结构渲染格式
+    private SchemaRenderer schemaRenderer = VerboseSchemaRenderer.INSTANCE;
+    //单次请求提示词的token预算，超出时逐步去掉描述、无关列和无关表，0表示不限制
+    private int promptTokenBudget = 0;
+    //默认提示词在请求中的布局
+    private PromptLayout promptLayout = PromptLayout.SINGLE_MESSAGE;
+    //多候选投票：每次生成并发采样的候选数，1表示不启用
+    private int candidateCount = 1;
+    //规范化后相同的候选达到该数量即返回结果并取消其余候选
+    private int candidateQuorum = 1;
+    //候选采样温度，覆盖节点请求参数中的temperature；null表示沿用节点参数
+    private Double candidateTemperature = 0.7;
+    //候选SQL投票前的规范化
+    private SqlNormalizer sqlNormalizer = new CanonicalSqlNormalizer();
+    //对话会话存储，null表示不支持会话
+    private SessionStore sessionStore;
+
+    /**
+     * @return 当前配置的浅拷贝：之后修改副本的设置不影响当前配置，连接池、指标监听器、缓存等组件仍是同一实例
+     */
+    public Config copy() {
+        try {
+            return (Config) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
     // Builder模式配置
     public Config timeout(int timeout) {
@@ -23,6 +117,38 @@ public class Config {
         return this;
     }
 
+    public Config readTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * @param requestTimeout 单次请求的总超时（毫秒），覆盖连接、发送与读取全过程；读取超时只限制两次读取之间的间隔，
+     *                       服务端持续缓慢输出时请求可能远超读取超时，需要设置该值。0表示不限制
+     */
+    public Config requestTimeout(int requestTimeout) {
+        if (requestTimeout < 0) {
+            throw new IllegalArgumentException("总超时不能为负数");
+        }
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public Config maxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+        return this;
+    }
+
+    public Config keepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+        return this;
+    }
+
+    public Config transport(LLMTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
     public Config maxRetries(int maxRetries) {
         this.maxRetries = maxRetries;
         return this;
@@ -33,10 +159,165 @@ public class Config {
         return this;
     }
 
+    public Config responseCache(SqlResultCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    public Config questionTemplateCache(QuestionTemplateCache questionTemplateCache) {
+        this.questionTemplateCache = questionTemplateCache;
+        return this;
+    }
+
+    public Config retrievalTopK(int retrievalTopK) {
+        this.retrievalTopK = retrievalTopK;
+        return this;
+    }
+
+    public Config asyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    public Config maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public Config batchTokenBudget(int batchTokenBudget) {
+        this.batchTokenBudget = batchTokenBudget;
+        return this;
+    }
+
+    public Config streaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    public Config backends(List<LLMInfo> backends) {
+        this.backends = backends == null ? Collections.emptyList() : backends;
+        return this;
+    }
+
+    public Config loadBalanceStrategy(LoadBalanceStrategy loadBalanceStrategy) {
+        this.loadBalanceStrategy = loadBalanceStrategy;
+        return this;
+    }
+
+    public Config retryBackoff(long baseMillis, long maxMillis) {
+        this.retryBackoffMillis = baseMillis;
+        this.retryBackoffMaxMillis = maxMillis;
+        return this;
+    }
+
+    public Config circuitBreaker(int failureThreshold, long openMillis) {
+        this.circuitFailureThreshold = failureThreshold;
+        this.circuitOpenMillis = openMillis;
+        return this;
+    }
+
+    public Config hedging(boolean hedging) {
+        this.hedging = hedging;
+        return this;
+    }
+
+    public Config coalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+        return this;
+    }
+
+    public Config metricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    public Config sqlValidator(SqlValidator sqlValidator) {
+        this.sqlValidator = sqlValidator;
+        return this;
+    }
+
+    public Config maxRepairRounds(int maxRepairRounds) {
+        this.maxRepairRounds = maxRepairRounds;
+        return this;
+    }
+
+    public Config schemaInterner(SchemaInterner schemaInterner) {
+        this.schemaInterner = schemaInterner;
+        return this;
+    }
+
+    public Config schemaRenderer(SchemaRenderer schemaRenderer) {
+        this.schemaRenderer = Objects.requireNonNull(schemaRenderer);
+        return this;
+    }
+
+    public Config promptTokenBudget(int promptTokenBudget) {
+        if (promptTokenBudget < 0) {
+            throw new IllegalArgumentException("token预算不能为负数");
+        }
+        this.promptTokenBudget = promptTokenBudget;
+        return this;
+    }
+
+    public Config promptLayout(PromptLayout promptLayout) {
+        this.promptLayout = Objects.requireNonNull(promptLayout);
+        return this;
+    }
+
+    /**
+     * 多候选投票：并发采样count个候选，规范化后相同的候选达到quorum个即返回
+     *
+     * @param count  候选数，1表示不启用
+     * @param quorum 法定票数，1表示取最先返回的有效候选
+     */
+    public Config candidates(int count, int quorum) {
+        if (count < 1 || quorum < 1 || quorum > count) {
+            throw new IllegalArgumentException("候选数与法定票数需满足 1 <= quorum <= count");
+        }
+        this.candidateCount = count;
+        this.candidateQuorum = quorum;
+        return this;
+    }
+
+    public Config candidateTemperature(Double candidateTemperature) {
+        this.candidateTemperature = candidateTemperature;
+        return this;
+    }
+
+    public Config sqlNormalizer(SqlNormalizer sqlNormalizer) {
+        this.sqlNormalizer = Objects.requireNonNull(sqlNormalizer);
+        return this;
+    }
+
+    public Config sessionStore(SessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+        return this;
+    }
+
     public int getTimeout() {
         return timeout;
     }
 
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public LLMTransport getTransport() {
+        return transport;
+    }
+
     public int getMaxRetries() {
         return maxRetries;
     }
@@ -45,6 +326,114 @@ public class Config {
         return sqlExtractor;
     }
 
+    public SqlResultCache getResponseCache() {
+        return responseCache;
+    }
+
+    public QuestionTemplateCache getQuestionTemplateCache() {
+        return questionTemplateCache;
+    }
+
+    public int getRetrievalTopK() {
+        return retrievalTopK;
+    }
+
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getBatchTokenBudget() {
+        return batchTokenBudget;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public List<LLMInfo> getBackends() {
+        return backends;
+    }
+
+    public LoadBalanceStrategy getLoadBalanceStrategy() {
+        return loadBalanceStrategy;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public long getRetryBackoffMaxMillis() {
+        return retryBackoffMaxMillis;
+    }
+
+    public int getCircuitFailureThreshold() {
+        return circuitFailureThreshold;
+    }
+
+    public long getCircuitOpenMillis() {
+        return circuitOpenMillis;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public SqlValidator getSqlValidator() {
+        return sqlValidator;
+    }
+
+    public int getMaxRepairRounds() {
+        return maxRepairRounds;
+    }
+
+    public SchemaInterner getSchemaInterner() {
+        return schemaInterner;
+    }
+
+    public SchemaRenderer getSchemaRenderer() {
+        return schemaRenderer;
+    }
+
+    public int getPromptTokenBudget() {
+        return promptTokenBudget;
+    }
+
+    public PromptLayout getPromptLayout() {
+        return promptLayout;
+    }
+
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    public int getCandidateQuorum() {
+        return candidateQuorum;
+    }
+
+    public Double getCandidateTemperature() {
+        return candidateTemperature;
+    }
+
+    public SqlNormalizer getSqlNormalizer() {
+        return sqlNormalizer;
+    }
+
+    public SessionStore getSessionStore() {
+        return sessionStore;
+    }
+
     public String getDataBaseName() {
         return dataBaseName ;
     }
@@ -0,0 +1,42 @@
+package com.llm.ttsql.entity;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 批量生成中单个问题的结果
+ * @Version: 1.0
+ **/
+public class BatchSqlResult {
+    private final String question;
+    private final String sql;
+    private final SqlGenerationException error;
+
+    public BatchSqlResult(String question, String sql, SqlGenerationException error) {
+        this.question = question;
+        this.sql = sql;
+        this.error = error;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    /**
+     * @return 生成的SQL，失败时为null
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return 失败原因，成功时为null
+     */
+    public SqlGenerationException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
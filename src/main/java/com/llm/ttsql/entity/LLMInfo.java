@@ -1,5 +1,9 @@
 package com.llm.ttsql.entity;
 
+import com.llm.ttsql.routing.AdmissionController;
+
+import java.util.Map;
+
 /**
  * @program: Text2SQLForLLM
  * @Description: TODO
@@ -13,7 +17,15 @@ public class LLMInfo {
     /*
      * 聊天端点
      */
-    static String chatEndpoint;
+    String chatEndpoint;
+    /*
+     * 准入控制（限流与自适应并发），null表示不限制
+     */
+    AdmissionController admissionController;
+    /*
+     * 附加到请求体顶层的参数（如推理服务的缓存提示，见CacheHints），null表示不附加
+     */
+    Map<String, Object> requestParams;
 
     public String getApiKey() {
         return apiKey;
@@ -38,4 +50,20 @@ public class LLMInfo {
     public void setChatEndpoint(String chatEndpoints) {
         chatEndpoint = chatEndpoints;
     }
+
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    public void setAdmissionController(AdmissionController admissionControllers) {
+        admissionController = admissionControllers;
+    }
+
+    public Map<String, Object> getRequestParams() {
+        return requestParams;
+    }
+
+    public void setRequestParams(Map<String, Object> requestParam) {
+        requestParams = requestParam;
+    }
 }
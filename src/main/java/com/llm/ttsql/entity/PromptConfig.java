@@ -22,6 +22,45 @@ public class PromptConfig {
             "\n5. 结合问题，只生成一条sql" +
             "\n6. 返回格式：{ \"sql\": \"生成的SQL\" }";
 
+    // 前缀缓存布局的system消息：数据库类型、表结构与要求，不含问题，表结构不变时逐字节一致
+    static String sysTemCachedPrompt = "你是一个专业的 %s DBA工程师，请根据以下数据库结构及用户问题需求生成SQL查询。" +
+            "以下是整个数据库表结构：" +
+            "%s" +
+            "\n要求：" +
+            "\n1. 使用支持的SQL语法" +
+            "\n2. 只生成SELECT语句" +
+            "\n3. 包含必要的字段说明" +
+            "\n4. 结合问题，只选取需要查询的表生成查询sql" +
+            "\n5. 结合问题，只生成一条sql" +
+            "\n6. 返回格式：{ \"sql\": \"生成的SQL\" }";
+
+    // 前缀缓存布局的user消息：用户问题
+    static String sysTemCachedQuestionPrompt = "用户问题：%s";
+
+    // 批量模式提示词：同一份表结构对应多个问题，要求按编号返回JSON数组
+    static String sysTemBatchPrompt = "你是一个专业的 %s DBA工程师，请根据以下数据库结构，分别为每个用户问题生成SQL查询。" +
+            "以下是整个数据库表结构：" +
+            "%s" +
+            "\n用户问题列表（每行格式为：编号. 问题）：\n%s" +
+            "\n要求：" +
+            "\n1. 使用支持的SQL语法" +
+            "\n2. 只生成SELECT语句" +
+            "\n3. 结合问题，只选取需要查询的表生成查询sql" +
+            "\n4. 每个问题只生成一条sql" +
+            "\n5. 返回格式为JSON数组，每个问题一个元素：[{ \"id\": 编号, \"sql\": \"生成的SQL\" }]";
+
+    // 修复提示词：原提示词、上一次生成的SQL、本地校验失败原因
+    static String sysTemRepairPrompt = "%s" +
+            "\n\n上一次生成的SQL：\n%s" +
+            "\n该SQL未通过校验：%s" +
+            "\n请只使用上述表结构中存在的表和列修正该SQL，仍只生成一条SELECT语句" +
+            "\n返回格式：{ \"sql\": \"生成的SQL\" }";
+
+    // 会话追问：之前的问题与SQL（每项以换行开头）、当前问题；渲染结果作为用户问题填入上面的模板
+    static String sysTemFollowUpPrompt = "本次会话中之前的问题与生成的SQL：" +
+            "%s" +
+            "\n当前问题（可能是对之前问题的追问，未提及的条件沿用上文）：%s";
+
     public static String getSysTemDefaultPrompt() {
         return sysTemDefaultPrompt;
     }
@@ -29,4 +68,44 @@ public class PromptConfig {
     public static void setSysTemDefaultPrompt(String prompt) {
         sysTemDefaultPrompt = prompt;
     }
+
+    public static String getSysTemCachedPrompt() {
+        return sysTemCachedPrompt;
+    }
+
+    public static void setSysTemCachedPrompt(String prompt) {
+        sysTemCachedPrompt = prompt;
+    }
+
+    public static String getSysTemCachedQuestionPrompt() {
+        return sysTemCachedQuestionPrompt;
+    }
+
+    public static void setSysTemCachedQuestionPrompt(String prompt) {
+        sysTemCachedQuestionPrompt = prompt;
+    }
+
+    public static String getSysTemBatchPrompt() {
+        return sysTemBatchPrompt;
+    }
+
+    public static void setSysTemBatchPrompt(String prompt) {
+        sysTemBatchPrompt = prompt;
+    }
+
+    public static String getSysTemFollowUpPrompt() {
+        return sysTemFollowUpPrompt;
+    }
+
+    public static void setSysTemFollowUpPrompt(String prompt) {
+        sysTemFollowUpPrompt = prompt;
+    }
+
+    public static String getSysTemRepairPrompt() {
+        return sysTemRepairPrompt;
+    }
+
+    public static void setSysTemRepairPrompt(String prompt) {
+        sysTemRepairPrompt = prompt;
+    }
 }
@@ -0,0 +1,29 @@
+package com.llm.ttsql.exception;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 大模型接口HTTP调用异常，携带HTTP状态码（网络错误时为0）
+ * @Version: 1.0
+ **/
+public class LLMHttpException extends SqlGenerationException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public LLMHttpException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public LLMHttpException(int statusCode, String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return HTTP状态码，连接失败、超时等网络错误时为0
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
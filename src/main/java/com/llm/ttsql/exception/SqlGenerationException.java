@@ -8,6 +8,8 @@ package com.llm.ttsql.exception;
  * 2.
  **/
 public class SqlGenerationException extends Exception {
+    private static final long serialVersionUID = 1L;
+
     public SqlGenerationException(String message) {
         super(message);
     }
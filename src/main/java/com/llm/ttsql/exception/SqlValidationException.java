@@ -0,0 +1,33 @@
+package com.llm.ttsql.exception;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 生成的SQL未通过本地校验（修复轮次用尽后仍不合格）
+ * @Version: 1.0
+ **/
+public class SqlValidationException extends SqlGenerationException {
+    private static final long serialVersionUID = 1L;
+
+    private final String sql;
+    private final String reason;
+
+    public SqlValidationException(String sql, String reason) {
+        super("SQL校验失败: " + reason);
+        this.sql = sql;
+        this.reason = reason;
+    }
+
+    /**
+     * @return 未通过校验的SQL
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return 校验失败原因
+     */
+    public String getReason() {
+        return reason;
+    }
+}
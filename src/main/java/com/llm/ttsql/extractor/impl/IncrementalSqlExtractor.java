@@ -0,0 +1,125 @@
+package com.llm.ttsql.extractor.impl;
+
+/**
+ * 流式响应的增量SQL定位器
+ *
+ * <p>按到达顺序追加模型输出片段，单次前向扫描（已扫描部分不再回看）定位
+ * 第一个{@code ```json}代码块中的JSON对象，对象的花括号闭合后即判定完成，调用方可以立即取消剩余的流。
+ * 双引号与单引号字符串（与{@link DefaultSqlExtractor}、{@link ScanningSqlExtractor}接受的写法一致）中的花括号不计入层级，
+ * 判定完成时对象一定完整；完成后调用方已取消流，{@link #getContent()}只含部分输出，不能再用于常规提取。</p>
+ *
+ * <p>代码块的选择与{@link DefaultSqlExtractor}一致（优先第一个{@code ```json}代码块，没有时才取{@code ```sql}），
+ * 保证开启流式后对同一响应提取出相同的SQL：{@code ```sql}代码块只能在流结束、确认没有{@code ```json}代码块后
+ * 才能选定，因此不做增量定位；第一个{@code ```json}代码块的内容不以“{”开头时同样放弃增量定位。
+ * 这两种情况下{@link #isComplete()}始终为false，由调用方对完整输出做常规提取。</p>
+ *
+ * <p>本类只负责定位，完成后通过{@link #getBlock()}得到标准代码块文本，
+ * 再交给配置的{@link com.llm.ttsql.extractor.SqlExtractor}做最终提取与校验。非线程安全。</p>
+ *
+ * @version 1.0
+ */
+public class IncrementalSqlExtractor {
+    private static final String FENCE = "```json";
+
+    //FALLBACK：无法增量定位，等待流结束后对完整输出提取
+    private enum Phase {FENCE, BRACE, OBJECT, DONE, FALLBACK}
+
+    private final StringBuilder buffer = new StringBuilder();
+    private Phase phase = Phase.FENCE;
+    private int pos;
+    private int objectStart;
+    private int depth;
+    //当前字符串的引号字符，0表示不在字符串中
+    private char quote;
+    private boolean escape;
+    private String block;
+
+    /**
+     * 追加一段输出
+     *
+     * @param delta 新到达的输出片段
+     * @return JSON对象已闭合时返回true
+     */
+    public boolean append(CharSequence delta) {
+        if (phase == Phase.DONE) {
+            return true;
+        }
+        if (delta != null) {
+            buffer.append(delta);
+        }
+        if (phase != Phase.FALLBACK) {
+            scan();
+        }
+        return phase == Phase.DONE;
+    }
+
+    public boolean isComplete() {
+        return phase == Phase.DONE;
+    }
+
+    /**
+     * @return 完成时返回 "```json\n{...}\n```" 形式的代码块，未完成时返回null
+     */
+    public String getBlock() {
+        return block;
+    }
+
+    /**
+     * @return 目前收到的全部输出
+     */
+    public String getContent() {
+        return buffer.toString();
+    }
+
+    private void scan() {
+        int n = buffer.length();
+        while (pos < n && phase != Phase.DONE && phase != Phase.FALLBACK) {
+            switch (phase) {
+                case FENCE:
+                    int found = buffer.indexOf(FENCE, pos);
+                    if (found < 0) {
+                        // 保留可能被截断的代码块标记前缀
+                        pos = Math.max(pos, n - FENCE.length() + 1);
+                        return;
+                    }
+                    pos = found + FENCE.length();
+                    phase = Phase.BRACE;
+                    break;
+                case BRACE:
+                    char b = buffer.charAt(pos);
+                    if (b == '{') {
+                        objectStart = pos;
+                        depth = 1;
+                        phase = Phase.OBJECT;
+                    } else if (!Character.isWhitespace(b)) {
+                        // 与常规提取一致，第一个```json代码块不以“{”开头时不再寻找后面的代码块
+                        phase = Phase.FALLBACK;
+                        break;
+                    }
+                    pos++;
+                    break;
+                case OBJECT:
+                    char o = buffer.charAt(pos++);
+                    if (quote != 0) {
+                        if (escape) {
+                            escape = false;
+                        } else if (o == '\\') {
+                            escape = true;
+                        } else if (o == quote) {
+                            quote = 0;
+                        }
+                    } else if (o == '"' || o == '\'') {
+                        quote = o;
+                    } else if (o == '{') {
+                        depth++;
+                    } else if (o == '}' && --depth == 0) {
+                        block = "```json\n" + buffer.substring(objectStart, pos) + "\n```";
+                        phase = Phase.DONE;
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.llm.ttsql.extractor.impl;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.extractor.SqlExtractor;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 单遍扫描、不使用正则的SQL提取实现
+ * <p>代码块的选择与JSON的解析规则与{@link DefaultSqlExtractor}一致：</p>
+ * <ol>
+ *   <li>取第一个```json代码块，没有时取第一个```sql代码块</li>
+ *   <li>代码块内容须以“{”开头，直接读取顶层的sql字段（支持双引号、单引号字符串与转义），不构建JSON树</li>
+ *   <li>解码sql字符串的同时按单词检查DROP/DELETE/INSERT/UPDATE/TRUNCATE，字符串字面量中的单词同样计入</li>
+ * </ol>
+ * <p>危险关键字检查比{@link DefaultSqlExtractor}更严格，以下两种SQL后者放行、本类拒绝：</p>
+ * <ul>
+ *   <li>多行SQL：后者的正则中“.”不匹配换行，含换行的SQL实际上不做检查</li>
+ *   <li>关键字紧邻中文等非ASCII字母（如“删除DELETE”）：本类按ASCII单词字符切分，后者的\b视两者为同一单词</li>
+ * </ul>
+ * <p>耗时与响应长度成线性关系，适用于带大段&lt;think&gt;推理内容的输出</p>
+ * @Version: 1.0
+ **/
+public class ScanningSqlExtractor implements SqlExtractor {
+    private static final String FENCE = "```";
+    private static final String[] DANGEROUS = {"DROP", "DELETE", "INSERT", "UPDATE", "TRUNCATE"};
+
+    @Override
+    public String extract(String input) throws SqlGenerationException {
+        if (input == null) {
+            throw new SqlGenerationException("SQL提取失败: 响应内容为空");
+        }
+        int[] block = findBlock(input, "```json");
+        if (block == null) {
+            block = findBlock(input, "```sql");
+        }
+        if (block == null) {
+            throw new SqlGenerationException("SQL提取失败: 未找到JSON代码块");
+        }
+        int pos = skipWhitespace(input, block[0], block[1]);
+        if (pos >= block[1] || input.charAt(pos) != '{') {
+            throw new SqlGenerationException("SQL提取失败: 非标准JSON格式");
+        }
+        return new ObjectScanner(input, pos + 1, block[1]).readSql();
+    }
+
+    /**
+     * 定位代码块内容
+     *
+     * @return [内容起点, 结束标记起点]，未找到闭合的代码块时返回null
+     */
+    private static int[] findBlock(String input, String opening) {
+        int open = input.indexOf(opening);
+        if (open < 0) {
+            return null;
+        }
+        int start = open + opening.length();
+        int close = input.indexOf(FENCE, start);
+        return close < 0 ? null : new int[]{start, close};
+    }
+
+    private static int skipWhitespace(String s, int pos, int end) {
+        while (pos < end && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 与正则\b一致按ASCII单词字符切分；大写后为ASCII字母的字符（如ı、ſ）同样视为单词字符
+     */
+    private static boolean isWordChar(char c) {
+        if (c >= 128) {
+            char upper = Character.toUpperCase(c);
+            return upper < 128 && Character.isLetter(upper);
+        }
+        return c == '_' || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * 顶层JSON对象扫描器：逐个键值对前进，只解码sql字段的值，其余值仅跳过
+     */
+    private static final class ObjectScanner {
+        private final String s;
+        private final int end;
+        private int pos;
+
+        ObjectScanner(String s, int pos, int end) {
+            this.s = s;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        String readSql() throws SqlGenerationException {
+            String sql = null;
+            boolean dangerous = false;
+            boolean first = true;
+            while (true) {
+                pos = skipWhitespace(s, pos, end);
+                if (pos >= end) {
+                    throw fail("JSON对象未闭合");
+                }
+                char c = s.charAt(pos);
+                if (c == '}') {
+                    break;
+                }
+                if (!first) {
+                    if (c != ',') {
+                        throw fail("键值对之间缺少逗号");
+                    }
+                    pos = skipWhitespace(s, pos + 1, end);
+                    if (pos >= end) {
+                        throw fail("JSON对象未闭合");
+                    }
+                    if (s.charAt(pos) == '}') {
+                        break;
+                    }
+                }
+                first = false;
+                boolean isSql = readKey();
+                pos = skipWhitespace(s, pos, end);
+                if (pos >= end || s.charAt(pos) != ':') {
+                    throw fail("键后缺少冒号");
+                }
+                pos = skipWhitespace(s, pos + 1, end);
+                if (pos >= end) {
+                    throw fail("JSON对象未闭合");
+                }
+                if (!isSql) {
+                    skipValue();
+                    continue;
+                }
+                char q = s.charAt(pos);
+                if (q == '"' || q == '\'') {
+                    StringBuilder sb = new StringBuilder();
+                    dangerous = readString(q, sb);
+                    sql = sb.toString();
+                } else {
+                    int start = pos;
+                    skipValue();
+                    String literal = s.substring(start, pos).trim();
+                    sql = "null".equals(literal) ? null : literal;
+                    dangerous = false;
+                }
+            }
+            if (sql == null) {
+                throw fail("未找到sql字段");
+            }
+            if (dangerous) {
+                throw fail("检测到危险操作");
+            }
+            return sql;
+        }
+
+        /**
+         * 读取键名（支持双引号、单引号与不带引号的键）
+         *
+         * @return 键名是否为sql
+         */
+        private boolean readKey() throws SqlGenerationException {
+            char q = s.charAt(pos);
+            if (q == '"' || q == '\'') {
+                int start = pos + 1;
+                int close = start;
+                while (close < end && s.charAt(close) != q && s.charAt(close) != '\\') {
+                    close++;
+                }
+                if (close < end && s.charAt(close) == q) {
+                    pos = close + 1;
+                    return close - start == 3 && s.startsWith("sql", start);
+                }
+                // 键名中含转义，按通用字符串解码
+                StringBuilder sb = new StringBuilder();
+                readString(q, sb);
+                return "sql".contentEquals(sb);
+            }
+            int start = pos;
+            while (pos < end && s.charAt(pos) != ':' && !Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                throw fail("缺少键名");
+            }
+            return pos - start == 3 && s.startsWith("sql", start);
+        }
+
+        /**
+         * 解码字符串，同时检查其中是否含有危险关键字
+         *
+         * @param q  引号字符，pos指向起始引号
+         * @param sb 解码结果
+         * @return 是否含有危险关键字
+         */
+        private boolean readString(char q, StringBuilder sb) throws SqlGenerationException {
+            pos++;
+            boolean dangerous = false;
+            int wordStart = -1;
+            while (true) {
+                if (pos >= end) {
+                    throw fail("字符串未闭合");
+                }
+                char c = s.charAt(pos++);
+                if (c == q) {
+                    break;
+                }
+                if (c == '\\') {
+                    c = unescape();
+                }
+                if (isWordChar(c)) {
+                    if (wordStart < 0) {
+                        wordStart = sb.length();
+                    }
+                } else if (wordStart >= 0) {
+                    dangerous |= isDangerous(sb, wordStart, sb.length());
+                    wordStart = -1;
+                }
+                sb.append(c);
+            }
+            if (wordStart >= 0) {
+                dangerous |= isDangerous(sb, wordStart, sb.length());
+            }
+            return dangerous;
+        }
+
+        private char unescape() throws SqlGenerationException {
+            if (pos >= end) {
+                throw fail("字符串未闭合");
+            }
+            char c = s.charAt(pos++);
+            switch (c) {
+                case 'n':
+                    return '\n';
+                case 't':
+                    return '\t';
+                case 'r':
+                    return '\r';
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'u':
+                    if (pos + 4 > end) {
+                        throw fail("非法的转义序列");
+                    }
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(s.charAt(pos++), 16);
+                        if (digit < 0) {
+                            throw fail("非法的转义序列");
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    return (char) code;
+                default:
+                    return c;
+            }
+        }
+
+        /**
+         * 跳过一个值（字符串、数字、字面量或嵌套的对象/数组），pos停在值之后
+         */
+        private void skipValue() throws SqlGenerationException {
+            char c = s.charAt(pos);
+            if (c == '"' || c == '\'') {
+                skipString(c);
+                return;
+            }
+            if (c != '{' && c != '[') {
+                while (pos < end) {
+                    c = s.charAt(pos);
+                    if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                        return;
+                    }
+                    pos++;
+                }
+                throw fail("JSON对象未闭合");
+            }
+            int depth = 0;
+            while (pos < end) {
+                c = s.charAt(pos);
+                if (c == '"' || c == '\'') {
+                    skipString(c);
+                    continue;
+                }
+                pos++;
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return;
+                }
+            }
+            throw fail("JSON对象未闭合");
+        }
+
+        private void skipString(char q) throws SqlGenerationException {
+            pos++;
+            while (pos < end) {
+                char c = s.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == q) {
+                    return;
+                }
+            }
+            throw fail("字符串未闭合");
+        }
+
+        private static boolean isDangerous(StringBuilder sb, int from, int to) {
+            int length = to - from;
+            if (length < 4 || length > 8) {
+                return false;
+            }
+            for (String keyword : DANGEROUS) {
+                if (keyword.length() != length) {
+                    continue;
+                }
+                int i = 0;
+                while (i < length && Character.toUpperCase(sb.charAt(from + i)) == keyword.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static SqlGenerationException fail(String reason) {
+            return new SqlGenerationException("SQL提取失败: " + reason);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.llm.ttsql.loader;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.entity.TableMeta;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 策略模式表结构加载接口
+ */
+public interface SchemaLoader {
+    /**
+     * 全量加载表结构
+     *
+     * @return 表结构列表
+     * @throws SQLException 读取元数据失败时抛出
+     */
+    List<TableMeta> load() throws SQLException;
+
+    /**
+     * 增量刷新：只重新读取结构发生变化的表，并通过生成器的缓存接口更新
+     *
+     * @param generator 需要同步表结构的生成器
+     * @return 本次新增、变更与删除的表
+     * @throws SQLException 读取元数据失败时抛出
+     */
+    SchemaRefreshResult refresh(GenerateSQLWithLLM generator) throws SQLException;
+}
@@ -0,0 +1,59 @@
+package com.llm.ttsql.loader;
+
+import java.util.List;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 一次增量刷新的结果
+ * @Version: 1.0
+ **/
+public class SchemaRefreshResult {
+    private final List<String> added;
+    private final List<String> changed;
+    private final List<String> removed;
+    private final int reread;
+
+    public SchemaRefreshResult(List<String> added, List<String> changed, List<String> removed, int reread) {
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+        this.reread = reread;
+    }
+
+    /**
+     * @return 新增的表
+     */
+    public List<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return 结构发生变化的表
+     */
+    public List<String> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return 已删除的表
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return 本次重新读取了列信息的表数量
+     */
+    public int getReread() {
+        return reread;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "新增 " + added + ", 变更 " + changed + ", 删除 " + removed + ", 重新读取 " + reread + " 张表";
+    }
+}
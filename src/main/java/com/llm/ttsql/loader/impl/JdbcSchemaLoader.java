@@ -0,0 +1,446 @@
+package com.llm.ttsql.loader.impl;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.cache.SchemaFingerprint;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.loader.SchemaLoader;
+import com.llm.ttsql.loader.SchemaRefreshResult;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 基于JDBC的表结构加载器
+ * <ul>
+ *   <li>每个schema只执行两条INFORMATION_SCHEMA批量查询（表、列），表注释与列注释作为描述</li>
+ *   <li>多个schema使用独立连接并行读取，此时表名带schema前缀（schema.table）</li>
+ *   <li>不支持INFORMATION_SCHEMA的数据库（如Oracle）退化为DatabaseMetaData批量读取</li>
+ *   <li>增量刷新先读取表清单及版本列（MySQL的CREATE_TIME、H2的LAST_MODIFICATION等），
+ *   只重新读取新增或版本变化的表的列，再按结构指纹确认确有变化后通过{@link GenerateSQLWithLLM#applySchemaDelta}一次写入</li>
+ * </ul>
+ * <p>典型用法：</p>
+ * <pre>{@code
+ * JdbcSchemaLoader loader = new JdbcSchemaLoader(dataSource).schemas("crm", "erp");
+ * GenerateSQLWithLLM g = new GenerateSQLWithLLM(llm, loader.load(), config);
+ * // 定时执行
+ * loader.refresh(g);
+ * }</pre>
+ * @Version: 1.0
+ **/
+public class JdbcSchemaLoader implements SchemaLoader {
+    //IN列表每批的表数量
+    private static final int IN_CHUNK = 500;
+    private static final String[] TABLE_COMMENT_COLUMNS = {"TABLE_COMMENT", "REMARKS"};
+    private static final String[] COLUMN_COMMENT_COLUMNS = {"COLUMN_COMMENT", "REMARKS"};
+    private static final String[] VERSION_COLUMNS = {"LAST_ALTERED", "CREATE_TIME", "LAST_MODIFICATION"};
+
+    private final DataSource dataSource;
+    private List<String> schemas = Collections.emptyList();
+    private int parallelism = 4;
+    private boolean includeViews = true;
+
+    //上次加载或刷新后各表的状态
+    private final Map<String, TableState> states = new ConcurrentHashMap<>();
+    //探测到的INFORMATION_SCHEMA可用列
+    private volatile InfoSchema infoSchema;
+
+    public JdbcSchemaLoader(DataSource dataSource) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+    }
+
+    /**
+     * @param schemas 需要加载的schema（MySQL为数据库名），不指定时使用连接的当前schema
+     */
+    public JdbcSchemaLoader schemas(String... schemas) {
+        this.schemas = Arrays.asList(schemas);
+        return this;
+    }
+
+    /**
+     * @param parallelism 同时读取的schema数（即同时占用的连接数）
+     */
+    public JdbcSchemaLoader parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("并行度必须大于0");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param includeViews 是否加载视图，默认加载
+     */
+    public JdbcSchemaLoader includeViews(boolean includeViews) {
+        this.includeViews = includeViews;
+        return this;
+    }
+
+    @Override
+    public List<TableMeta> load() throws SQLException {
+        List<SchemaDelta> deltas = forEachSchema(schema -> readSchema(schema, true));
+        states.clear();
+        List<TableMeta> tables = new ArrayList<>();
+        for (SchemaDelta delta : deltas) {
+            states.putAll(delta.states);
+            tables.addAll(delta.upserts);
+        }
+        return tables;
+    }
+
+    @Override
+    public SchemaRefreshResult refresh(GenerateSQLWithLLM generator) throws SQLException {
+        Objects.requireNonNull(generator);
+        List<SchemaDelta> deltas = forEachSchema(schema -> readSchema(schema, false));
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        com.llm.ttsql.cache.SchemaDelta changes = new com.llm.ttsql.cache.SchemaDelta();
+        int reread = 0;
+        for (SchemaDelta delta : deltas) {
+            changes.upsertAll(delta.upserts);
+            for (String name : delta.removed) {
+                changes.remove(name);
+                states.remove(name);
+            }
+            states.putAll(delta.states);
+            added.addAll(delta.added);
+            changed.addAll(delta.changed);
+            removed.addAll(delta.removed);
+            reread += delta.reread;
+        }
+        if (!changes.isEmpty()) {
+            // 删除与更新一次写入，生成器只发布一个新版本的表结构快照
+            generator.applySchemaDelta(changes);
+        }
+        return new SchemaRefreshResult(added, changed, removed, reread);
+    }
+
+    /**
+     * 读取单个schema
+     *
+     * @param full true表示全量读取；false表示只重新读取新增或版本变化的表，并只返回结构确有变化的表
+     */
+    private SchemaDelta readSchema(String schema, boolean full) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            InfoSchema info = infoSchema(conn);
+            String qualifier = schemas.size() > 1 ? schema + "." : "";
+            Map<String, TableRow> rows = info.available ? readTables(conn, info, schema) : readTablesByMetaData(conn, schema);
+
+            SchemaDelta delta = new SchemaDelta();
+            List<String> candidates = new ArrayList<>();
+            for (TableRow row : rows.values()) {
+                TableState state = full ? null : states.get(qualifier + row.name);
+                if (state == null || row.version == null || !row.version.equals(state.version)
+                        || !Objects.equals(row.comment, state.comment)) {
+                    candidates.add(row.name);
+                }
+            }
+            if (!full) {
+                for (Map.Entry<String, TableState> entry : states.entrySet()) {
+                    if (entry.getValue().schema.equals(schema) && !rows.containsKey(entry.getValue().table)) {
+                        delta.removed.add(entry.getKey());
+                    }
+                }
+            }
+            if (candidates.isEmpty()) {
+                return delta;
+            }
+
+            // 需要重读的表超过一半时直接读取整个schema
+            boolean wholeSchema = candidates.size() * 2 > rows.size();
+            Map<String, List<ColumnMeta>> columns = info.available
+                    ? readColumns(conn, info, schema, wholeSchema ? null : candidates)
+                    : readColumnsByMetaData(conn, schema);
+            delta.reread = candidates.size();
+            for (String name : candidates) {
+                TableRow row = rows.get(name);
+                TableMeta table = new TableMeta();
+                table.setTableName(qualifier + name);
+                table.setDescription(row.comment == null ? "" : row.comment);
+                table.setColumns(columns.getOrDefault(name, new ArrayList<>()));
+                long fingerprint = SchemaFingerprint.of(table);
+                TableState old = states.get(table.getTableName());
+                delta.states.put(table.getTableName(), new TableState(schema, name, row.version, row.comment, fingerprint));
+                if (full || old == null) {
+                    delta.added.add(table.getTableName());
+                    delta.upserts.add(table);
+                } else if (old.fingerprint != fingerprint) {
+                    delta.changed.add(table.getTableName());
+                    delta.upserts.add(table);
+                }
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * 探测INFORMATION_SCHEMA及各数据库特有的注释、类型与版本列
+     */
+    private InfoSchema infoSchema(Connection conn) {
+        InfoSchema info = infoSchema;
+        if (info == null) {
+            info = new InfoSchema();
+            try {
+                Set<String> tableColumns = columnNames(conn, "TABLES");
+                Set<String> columnColumns = columnNames(conn, "COLUMNS");
+                info.available = true;
+                info.tableComment = firstPresent(tableColumns, TABLE_COMMENT_COLUMNS);
+                info.version = firstPresent(tableColumns, VERSION_COLUMNS);
+                info.columnComment = firstPresent(columnColumns, COLUMN_COMMENT_COLUMNS);
+                info.columnType = columnColumns.contains("COLUMN_TYPE") ? "COLUMN_TYPE" : null;
+                info.charLength = columnColumns.contains("CHARACTER_MAXIMUM_LENGTH") ? "CHARACTER_MAXIMUM_LENGTH" : null;
+            } catch (SQLException e) {
+                info.available = false;
+            }
+            infoSchema = info;
+        }
+        return info;
+    }
+
+    private static Set<String> columnNames(Connection conn, String view) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM INFORMATION_SCHEMA." + view + " WHERE 1 = 0")) {
+            ResultSetMetaData md = rs.getMetaData();
+            Set<String> names = new HashSet<>();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                names.add(md.getColumnName(i).toUpperCase(Locale.ROOT));
+            }
+            return names;
+        }
+    }
+
+    private static String firstPresent(Set<String> columns, String[] candidates) {
+        for (String candidate : candidates) {
+            if (columns.contains(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, TableRow> readTables(Connection conn, InfoSchema info, String schema) throws SQLException {
+        String sql = "SELECT TABLE_NAME, TABLE_TYPE"
+                + (info.tableComment != null ? ", " + info.tableComment : ", NULL")
+                + (info.version != null ? ", " + info.version : ", NULL")
+                + " FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ?";
+        Map<String, TableRow> rows = new LinkedHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, schema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (acceptType(rs.getString(2))) {
+                        String name = rs.getString(1);
+                        rows.put(name, new TableRow(name, emptyToNull(rs.getString(3)), rs.getString(4)));
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param tables 只读取这些表，null表示整个schema
+     */
+    private Map<String, List<ColumnMeta>> readColumns(Connection conn, InfoSchema info, String schema,
+                                                      List<String> tables) throws SQLException {
+        String select = "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE"
+                + (info.columnType != null ? ", " + info.columnType : ", NULL")
+                + (info.charLength != null ? ", " + info.charLength : ", NULL")
+                + (info.columnComment != null ? ", " + info.columnComment : ", NULL")
+                + " FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = ?";
+        Map<String, List<ColumnMeta>> result = new HashMap<>();
+        if (tables == null) {
+            readColumns(conn, select + " ORDER BY TABLE_NAME, ORDINAL_POSITION", schema,
+                    Collections.emptyList(), result);
+            return result;
+        }
+        for (int from = 0; from < tables.size(); from += IN_CHUNK) {
+            List<String> chunk = tables.subList(from, Math.min(tables.size(), from + IN_CHUNK));
+            String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            readColumns(conn, select + " AND TABLE_NAME IN (" + in + ") ORDER BY TABLE_NAME, ORDINAL_POSITION",
+                    schema, chunk, result);
+        }
+        return result;
+    }
+
+    private static void readColumns(Connection conn, String sql, String schema, List<String> tables,
+                                    Map<String, List<ColumnMeta>> result) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            ps.setString(1, schema);
+            for (int i = 0; i < tables.size(); i++) {
+                ps.setString(i + 2, tables.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ColumnMeta column = new ColumnMeta();
+                    column.setName(rs.getString(2));
+                    column.setType(columnType(rs.getString(3), rs.getString(4), rs.getObject(5)));
+                    column.setDescription(nullToEmpty(rs.getString(6)));
+                    result.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(column);
+                }
+            }
+        }
+    }
+
+    /**
+     * 列类型：优先使用完整类型（MySQL的COLUMN_TYPE），否则为DATA_TYPE加字符长度
+     */
+    private static String columnType(String dataType, String fullType, Object charLength) {
+        if (fullType != null) {
+            return fullType;
+        }
+        if (charLength instanceof Number && dataType != null && dataType.indexOf('(') < 0) {
+            long length = ((Number) charLength).longValue();
+            if (length > 0 && length < 1_000_000) {
+                return dataType + "(" + length + ")";
+            }
+        }
+        return dataType;
+    }
+
+    private Map<String, TableRow> readTablesByMetaData(Connection conn, String schema) throws SQLException {
+        boolean catalog = conn.getSchema() == null;
+        String[] types = includeViews ? new String[]{"TABLE", "VIEW"} : new String[]{"TABLE"};
+        Map<String, TableRow> rows = new LinkedHashMap<>();
+        try (ResultSet rs = conn.getMetaData().getTables(catalog ? schema : null, catalog ? null : schema, "%", types)) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME");
+                rows.put(name, new TableRow(name, emptyToNull(rs.getString("REMARKS")), null));
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, List<ColumnMeta>> readColumnsByMetaData(Connection conn, String schema) throws SQLException {
+        boolean catalog = conn.getSchema() == null;
+        Map<String, List<ColumnMeta>> result = new HashMap<>();
+        try (ResultSet rs = conn.getMetaData().getColumns(catalog ? schema : null, catalog ? null : schema, "%", "%")) {
+            while (rs.next()) {
+                ColumnMeta column = new ColumnMeta();
+                column.setName(rs.getString("COLUMN_NAME"));
+                column.setType(rs.getString("TYPE_NAME"));
+                column.setDescription(nullToEmpty(rs.getString("REMARKS")));
+                result.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new ArrayList<>()).add(column);
+            }
+        }
+        return result;
+    }
+
+    private boolean acceptType(String type) {
+        if (type == null) {
+            return true;
+        }
+        String t = type.toUpperCase(Locale.ROOT);
+        return t.equals("BASE TABLE") || t.equals("TABLE") || includeViews && t.equals("VIEW");
+    }
+
+    @FunctionalInterface
+    private interface SchemaTask<T> {
+        T run(String schema) throws SQLException;
+    }
+
+    /**
+     * 按schema并行执行，结果顺序与schema顺序一致
+     */
+    private <T> List<T> forEachSchema(SchemaTask<T> task) throws SQLException {
+        List<String> targets = schemas;
+        if (targets.isEmpty()) {
+            try (Connection conn = dataSource.getConnection()) {
+                String current = conn.getSchema() != null ? conn.getSchema() : conn.getCatalog();
+                targets = Collections.singletonList(current);
+            }
+        }
+        if (targets.size() == 1 || parallelism == 1) {
+            List<T> results = new ArrayList<>(targets.size());
+            for (String schema : targets) {
+                results.add(task.run(schema));
+            }
+            return results;
+        }
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, targets.size()), r -> {
+            Thread t = new Thread(r, "ttsql-schema-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<T>> futures = new ArrayList<>(targets.size());
+            for (String schema : targets) {
+                futures.add(pool.submit(() -> task.run(schema)));
+            }
+            List<T> results = new ArrayList<>(targets.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("读取表结构被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException("读取表结构失败", cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static final class InfoSchema {
+        boolean available;
+        String tableComment;
+        String version;
+        String columnComment;
+        String columnType;
+        String charLength;
+    }
+
+    private static final class TableRow {
+        final String name;
+        final String comment;
+        final String version;
+
+        TableRow(String name, String comment, String version) {
+            this.name = name;
+            this.comment = comment;
+            this.version = version;
+        }
+    }
+
+    private static final class TableState {
+        final String schema;
+        final String table;
+        final String version;
+        final String comment;
+        final long fingerprint;
+
+        TableState(String schema, String table, String version, String comment, long fingerprint) {
+            this.schema = schema;
+            this.table = table;
+            this.version = version;
+            this.comment = comment;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class SchemaDelta {
+        final List<TableMeta> upserts = new ArrayList<>();
+        final List<String> added = new ArrayList<>();
+        final List<String> changed = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final Map<String, TableState> states = new HashMap<>();
+        int reread;
+    }
+}
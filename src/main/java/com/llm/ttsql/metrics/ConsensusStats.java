@@ -0,0 +1,163 @@
+package com.llm.ttsql.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 多候选投票统计
+ * <ul>
+ *   <li>达成法定票数：规范化后相同的候选达到法定票数，其中提前决出指仍有候选未返回时即得出结果</li>
+ *   <li>按多数决出：全部候选返回仍未达到法定票数，取票数最多（相同时最先返回）的候选</li>
+ *   <li>一致率：胜出答案的票数占有效候选数的比例，反映模型在该类问题上的稳定程度</li>
+ * </ul>
+ * @Version: 1.0
+ **/
+public class ConsensusStats {
+    private final AtomicLong votes = new AtomicLong();
+    private final AtomicLong quorumReached = new AtomicLong();
+    private final AtomicLong decidedEarly = new AtomicLong();
+    private final AtomicLong plurality = new AtomicLong();
+    private final AtomicLong noValidCandidate = new AtomicLong();
+    private final AtomicLong allFailed = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong answered = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong winnerVotes = new AtomicLong();
+    private final AtomicLong validVotes = new AtomicLong();
+    private final AtomicLong distinctAnswers = new AtomicLong();
+    private final AtomicLong decisionNanos = new AtomicLong();
+
+    /**
+     * 记录一次投票的结果
+     *
+     * @param issued      发出的候选数
+     * @param answered    得出结果时已返回SQL的候选数
+     * @param invalid     其中未通过本地校验的候选数
+     * @param failed      得出结果时调用失败的候选数
+     * @param winnerVotes 胜出答案的票数，没有有效候选时为0
+     * @param distinct    有效候选中不同答案的个数
+     * @param quorum      是否达到法定票数
+     * @param nanos       发出候选到得出结果的耗时（纳秒）
+     */
+    public void record(int issued, int answered, int invalid, int failed, int winnerVotes, int distinct,
+                       boolean quorum, long nanos) {
+        votes.incrementAndGet();
+        candidates.addAndGet(issued);
+        this.answered.addAndGet(answered);
+        this.invalid.addAndGet(invalid);
+        this.failed.addAndGet(failed);
+        int outstanding = issued - answered - failed;
+        cancelled.addAndGet(outstanding);
+        if (quorum) {
+            quorumReached.incrementAndGet();
+            if (outstanding > 0) {
+                decidedEarly.incrementAndGet();
+            }
+        } else if (winnerVotes > 0) {
+            plurality.incrementAndGet();
+        } else if (answered > 0) {
+            noValidCandidate.incrementAndGet();
+        } else {
+            allFailed.incrementAndGet();
+        }
+        this.winnerVotes.addAndGet(winnerVotes);
+        validVotes.addAndGet(answered - invalid);
+        distinctAnswers.addAndGet(distinct);
+        decisionNanos.addAndGet(nanos);
+    }
+
+    public long getVoteCount() {
+        return votes.get();
+    }
+
+    public long getQuorumReachedCount() {
+        return quorumReached.get();
+    }
+
+    /**
+     * @return 仍有候选未返回时即达到法定票数的投票数
+     */
+    public long getDecidedEarlyCount() {
+        return decidedEarly.get();
+    }
+
+    /**
+     * @return 未达到法定票数、按多数决出的投票数
+     */
+    public long getPluralityCount() {
+        return plurality.get();
+    }
+
+    /**
+     * @return 候选均未通过本地校验、取最先返回候选的投票数
+     */
+    public long getNoValidCandidateCount() {
+        return noValidCandidate.get();
+    }
+
+    /**
+     * @return 候选全部调用失败、改为常规重试的投票数
+     */
+    public long getAllFailedCount() {
+        return allFailed.get();
+    }
+
+    public long getCandidateCount() {
+        return candidates.get();
+    }
+
+    public long getInvalidCandidateCount() {
+        return invalid.get();
+    }
+
+    public long getFailedCandidateCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return 得出结果后被取消的候选数
+     */
+    public long getCancelledCandidateCount() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return 达到法定票数的投票占比
+     */
+    public double getQuorumRate() {
+        long v = votes.get();
+        return v == 0 ? 0D : (double) quorumReached.get() / v;
+    }
+
+    /**
+     * @return 胜出答案的票数占有效候选数的比例
+     */
+    public double getAgreementRate() {
+        long valid = validVotes.get();
+        return valid == 0 ? 0D : (double) winnerVotes.get() / valid;
+    }
+
+    /**
+     * @return 每次投票中有效候选的平均不同答案数
+     */
+    public double getAvgDistinctAnswers() {
+        long v = votes.get();
+        return v == 0 ? 0D : (double) distinctAnswers.get() / v;
+    }
+
+    /**
+     * @return 每次投票平均返回的候选数（含未通过校验的）
+     */
+    public double getAvgAnsweredCandidates() {
+        long v = votes.get();
+        return v == 0 ? 0D : (double) answered.get() / v;
+    }
+
+    public double getAvgDecisionMillis() {
+        long v = votes.get();
+        return v == 0 ? 0D : (double) decisionNanos.get() / v / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
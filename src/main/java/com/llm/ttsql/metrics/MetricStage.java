@@ -0,0 +1,58 @@
+package com.llm.ttsql.metrics;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 单次SQL生成中各阶段的计时点
+ * @Version: 1.0
+ **/
+public enum MetricStage {
+    /**
+     * 提示词构建
+     */
+    PROMPT_BUILD,
+    /**
+     * 异步任务等待并发许可的时间
+     */
+    QUEUE_WAIT,
+    /**
+     * 等待模型节点准入许可（限流、并发上限）的时间
+     */
+    ADMISSION_WAIT,
+    /**
+     * HTTP往返（流式调用为读取到SQL或流结束为止）
+     */
+    HTTP,
+    /**
+     * 流式调用的首token时间（请求发出到收到第一段输出），主要由服务端预填充决定
+     */
+    FIRST_TOKEN,
+    /**
+     * 流式调用的出SQL时间（请求发出到SQL对应的JSON对象闭合，即调用方拿到结果）；
+     * 未能提前定位SQL、读到流结束的调用为完整生成时间
+     */
+    TIME_TO_SQL,
+    /**
+     * 响应JSON解析
+     */
+    PARSE,
+    /**
+     * 从模型输出中提取SQL
+     */
+    EXTRACTION,
+    /**
+     * 本地SQL校验
+     */
+    VALIDATION,
+    /**
+     * 校验未通过后的一轮修正请求（含重试），不再单独触发{@link MetricsListener#onSuccess}/{@link MetricsListener#onFailure}
+     */
+    REPAIR,
+    /**
+     * 多候选投票：发出候选到得出结果（达到法定票数或全部候选返回）的时间
+     */
+    CANDIDATE_VOTE,
+    /**
+     * 会话上下文：查找会话、取会话已选定的表并拼接历史
+     */
+    SESSION_CONTEXT
+}
@@ -0,0 +1,64 @@
+package com.llm.ttsql.metrics;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: SQL生成过程的指标回调，通过{@link com.llm.ttsql.config.Config#metricsListener(MetricsListener)}注册
+ * <p>回调在调用线程上同步执行，实现需线程安全且避免阻塞；所有方法默认为空实现</p>
+ * @Version: 1.0
+ **/
+public interface MetricsListener {
+
+    /**
+     * 某个阶段执行完毕
+     *
+     * @param stage 阶段
+     * @param nanos 耗时（纳秒）
+     */
+    default void onStage(MetricStage stage, long nanos) {
+    }
+
+    /**
+     * 模型响应中携带了usage信息
+     *
+     * @param promptTokens     提示词token数
+     * @param completionTokens 生成token数
+     */
+    default void onTokenUsage(int promptTokens, int completionTokens) {
+    }
+
+    /**
+     * 一次模型调用失败，即将重试
+     *
+     * @param attempt 第几次重试（从1开始）
+     * @param cause   本次失败原因
+     */
+    default void onRetry(int attempt, Throwable cause) {
+    }
+
+    /**
+     * 模型调用（含重试）成功
+     *
+     * @param nanos   总耗时（纳秒）
+     * @param retries 重试次数
+     */
+    default void onSuccess(long nanos, int retries) {
+    }
+
+    /**
+     * 模型调用（含重试）最终失败
+     *
+     * @param nanos   总耗时（纳秒）
+     * @param retries 重试次数
+     * @param cause   最后一次失败的原因
+     */
+    default void onFailure(long nanos, int retries, Throwable cause) {
+    }
+
+    /**
+     * 调用合并到了进行中的相同请求，未单独调用模型
+     *
+     * @param nanos 等待该请求完成的耗时（纳秒）
+     */
+    default void onCoalesced(long nanos) {
+    }
+}
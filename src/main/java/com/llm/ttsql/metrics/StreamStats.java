@@ -0,0 +1,77 @@
+package com.llm.ttsql.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 流式调用统计
+ * <ul>
+ *   <li>首token时间：请求发出到收到第一段输出</li>
+ *   <li>出SQL时间：请求发出到SQL对应的JSON对象闭合（即调用方拿到结果）</li>
+ *   <li>完整生成时间：仅对读到流结束的调用统计，提前取消的调用无此项</li>
+ * </ul>
+ * <p>这里只保留累计平均值；首token时间与出SQL时间的分布（p50/p99）通过{@link MetricsListener}的
+ * {@link MetricStage#FIRST_TOKEN}与{@link MetricStage#TIME_TO_SQL}阶段报告</p>
+ * @Version: 1.0
+ **/
+public class StreamStats {
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong earlyCancelled = new AtomicLong();
+    private final AtomicLong firstTokenNanos = new AtomicLong();
+    private final AtomicLong timeToSqlNanos = new AtomicLong();
+    private final AtomicLong sqlCount = new AtomicLong();
+    private final AtomicLong completionNanos = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+
+    /**
+     * 记录一次流式调用
+     *
+     * @param firstToken 首token耗时（纳秒），未收到输出时为-1
+     * @param timeToSql  出SQL耗时（纳秒），未定位到SQL时为-1
+     * @param completion 完整生成耗时（纳秒），提前取消时为-1
+     */
+    public void record(long firstToken, long timeToSql, long completion) {
+        streams.incrementAndGet();
+        if (firstToken >= 0) {
+            firstTokenNanos.addAndGet(firstToken);
+        }
+        if (timeToSql >= 0) {
+            timeToSqlNanos.addAndGet(timeToSql);
+            sqlCount.incrementAndGet();
+        }
+        if (completion >= 0) {
+            completionNanos.addAndGet(completion);
+            completedCount.incrementAndGet();
+        } else {
+            earlyCancelled.incrementAndGet();
+        }
+    }
+
+    public long getStreamCount() {
+        return streams.get();
+    }
+
+    /**
+     * @return SQL就绪后提前取消剩余输出的调用数
+     */
+    public long getEarlyCancelledCount() {
+        return earlyCancelled.get();
+    }
+
+    public double getAvgFirstTokenMillis() {
+        return avgMillis(firstTokenNanos.get(), streams.get());
+    }
+
+    public double getAvgTimeToSqlMillis() {
+        return avgMillis(timeToSqlNanos.get(), sqlCount.get());
+    }
+
+    public double getAvgCompletionMillis() {
+        return avgMillis(completionNanos.get(), completedCount.get());
+    }
+
+    private static double avgMillis(long nanos, long count) {
+        return count == 0 ? 0D : (double) nanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
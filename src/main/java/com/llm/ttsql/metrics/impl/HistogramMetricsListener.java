@@ -0,0 +1,186 @@
+package com.llm.ttsql.metrics.impl;
+
+import com.llm.ttsql.exception.LLMHttpException;
+import com.llm.ttsql.metrics.LatencyHistogram;
+import com.llm.ttsql.metrics.MetricStage;
+import com.llm.ttsql.metrics.MetricsListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 默认的内存直方图指标实现
+ * <ul>
+ *   <li>各阶段耗时与调用总耗时的p50/p95/p99</li>
+ *   <li>提示词/生成token数分布（取自响应中的usage）</li>
+ *   <li>调用次数、失败次数、重试次数及按原因分组的失败统计</li>
+ *   <li>合并到进行中相同请求的调用数及其等待时间</li>
+ * </ul>
+ * @Version: 1.0
+ **/
+public class HistogramMetricsListener implements MetricsListener {
+    private final Map<MetricStage, LatencyHistogram> stages = new EnumMap<>(MetricStage.class);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram promptTokens = new LatencyHistogram();
+    private final LatencyHistogram completionTokens = new LatencyHistogram();
+    private final LatencyHistogram coalescedWait = new LatencyHistogram();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final Map<String, LongAdder> failureCauses = new ConcurrentHashMap<>();
+
+    public HistogramMetricsListener() {
+        for (MetricStage stage : MetricStage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public void onStage(MetricStage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    @Override
+    public void onTokenUsage(int promptTokens, int completionTokens) {
+        this.promptTokens.record(promptTokens);
+        this.completionTokens.record(completionTokens);
+    }
+
+    @Override
+    public void onRetry(int attempt, Throwable cause) {
+        retries.increment();
+    }
+
+    @Override
+    public void onSuccess(long nanos, int retries) {
+        successes.increment();
+        latency.record(nanos);
+    }
+
+    @Override
+    public void onFailure(long nanos, int retries, Throwable cause) {
+        failures.increment();
+        latency.record(nanos);
+        failureCauses.computeIfAbsent(describe(cause), k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void onCoalesced(long nanos) {
+        coalescedWait.record(nanos);
+    }
+
+    /**
+     * 失败原因分类：HTTP状态码、网络错误或异常类型
+     */
+    static String describe(Throwable cause) {
+        if (cause instanceof LLMHttpException) {
+            int status = ((LLMHttpException) cause).getStatusCode();
+            return status == 0 ? "网络错误" : "HTTP " + status;
+        }
+        return cause == null ? "未知" : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 该阶段耗时（纳秒）直方图
+     */
+    public LatencyHistogram getStageHistogram(MetricStage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * @return 模型调用（含重试）总耗时（纳秒）直方图
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    public LatencyHistogram getPromptTokens() {
+        return promptTokens;
+    }
+
+    public LatencyHistogram getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public long getSuccessCount() {
+        return successes.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return 合并到进行中相同请求的调用数
+     */
+    public long getCoalescedCount() {
+        return coalescedWait.getCount();
+    }
+
+    /**
+     * @return 合并调用等待时间（纳秒）直方图
+     */
+    public LatencyHistogram getCoalescedWait() {
+        return coalescedWait;
+    }
+
+    /**
+     * @return 失败原因 -> 次数
+     */
+    public Map<String, Long> getFailureCauses() {
+        Map<String, Long> result = new TreeMap<>();
+        failureCauses.forEach((cause, n) -> result.put(cause, n.sum()));
+        return result;
+    }
+
+    /**
+     * @return 可读的指标汇总
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("调用: 成功 %d, 失败 %d, 重试 %d, 合并 %d%n", getSuccessCount(), getFailureCount(),
+                getRetryCount(), getCoalescedCount()));
+        appendLatency(sb, "TOTAL", latency);
+        for (MetricStage stage : MetricStage.values()) {
+            appendLatency(sb, stage.name(), stages.get(stage));
+        }
+        appendLatency(sb, "COALESCED_WAIT", coalescedWait);
+        appendCount(sb, "prompt_tokens", promptTokens);
+        appendCount(sb, "completion_tokens", completionTokens);
+        if (!failureCauses.isEmpty()) {
+            sb.append("失败原因: ").append(getFailureCauses()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    private static void appendLatency(StringBuilder sb, String name, LatencyHistogram h) {
+        if (h.getCount() == 0) {
+            return;
+        }
+        sb.append(String.format("%-18s n=%-8d p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms%n", name, h.getCount(),
+                millis(h.getPercentile(0.5)), millis(h.getPercentile(0.95)),
+                millis(h.getPercentile(0.99)), millis(h.getMax())));
+    }
+
+    private static void appendCount(StringBuilder sb, String name, LatencyHistogram h) {
+        if (h.getCount() == 0) {
+            return;
+        }
+        sb.append(String.format("%-18s n=%-8d p50=%d p95=%d p99=%d max=%d%n", name, h.getCount(),
+                h.getPercentile(0.5), h.getPercentile(0.95), h.getPercentile(0.99), h.getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
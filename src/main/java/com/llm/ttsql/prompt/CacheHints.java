@@ -0,0 +1,40 @@
+package com.llm.ttsql.prompt;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 常见推理服务的前缀缓存提示参数，通过{@link com.llm.ttsql.entity.LLMInfo#setRequestParams(Map)}附加到请求体
+ * <p>各服务只识别自己的参数（OpenAI会拒绝未知参数），须按节点实际的服务类型选择；
+ * vLLM的前缀缓存由服务端启动参数开启，请求中无需提示</p>
+ * @Version: 1.0
+ **/
+public final class CacheHints {
+
+    private CacheHints() {
+    }
+
+    /**
+     * @return llama.cpp server：复用上一次请求的KV缓存
+     */
+    public static Map<String, Object> llamaCpp() {
+        return Collections.singletonMap("cache_prompt", Boolean.TRUE);
+    }
+
+    /**
+     * @param keepAlive 模型及其缓存在内存中保留的时长，如"30m"
+     * @return Ollama：避免空闲卸载模型导致缓存失效
+     */
+    public static Map<String, Object> ollama(String keepAlive) {
+        return Collections.singletonMap("keep_alive", keepAlive);
+    }
+
+    /**
+     * @param cacheKey 缓存路由键，相同键的请求优先路由到持有同一前缀缓存的机器
+     * @return OpenAI：prompt_cache_key
+     */
+    public static Map<String, Object> openAi(String cacheKey) {
+        return Collections.singletonMap("prompt_cache_key", cacheKey);
+    }
+}
@@ -0,0 +1,112 @@
+package com.llm.ttsql.prompt;
+
+import cn.hutool.json.JSONUtil;
+
+import java.util.Map;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: chat completions请求体的JSON写出
+ * <p>字段顺序固定（model、messages、stream、附加参数），字符串转义一次写入预分配的缓冲区；
+ * 不变的system消息可预先转义（{@link #escape(CharSequence)}）并在每次请求中直接复用</p>
+ * @Version: 1.0
+ **/
+public final class ChatRequestBody {
+
+    private ChatRequestBody() {
+    }
+
+    /**
+     * 写出请求体
+     *
+     * @param model         模型名称
+     * @param escapedSystem 已转义的system消息内容，null表示没有system消息
+     * @param user          user消息内容（未转义）
+     * @param stream        是否为流式请求
+     * @param params        附加的顶层参数（可为null）
+     * @return JSON请求体
+     */
+    public static String build(String model, String escapedSystem, CharSequence user, boolean stream,
+                               Map<String, Object> params) {
+        // 固定字段约120字符，预留足够空间避免扩容时复制整个请求体
+        int capacity = 256 + (model == null ? 0 : model.length()) + user.length() + user.length() / 8
+                + (escapedSystem == null ? 0 : escapedSystem.length());
+        StringBuilder sb = new StringBuilder(capacity);
+        sb.append("{\"model\":");
+        if (model == null) {
+            sb.append("null");
+        } else {
+            sb.append('"');
+            escape(model, sb);
+            sb.append('"');
+        }
+        sb.append(",\"messages\":[");
+        if (escapedSystem != null) {
+            sb.append("{\"role\":\"system\",\"content\":\"").append(escapedSystem).append("\"},");
+        }
+        sb.append("{\"role\":\"user\",\"content\":\"");
+        escape(user, sb);
+        sb.append("\"}]");
+        if (stream) {
+            sb.append(",\"stream\":true");
+        }
+        if (params != null) {
+            for (Map.Entry<String, Object> e : params.entrySet()) {
+                sb.append(",\"");
+                escape(e.getKey(), sb);
+                sb.append("\":");
+                appendValue(e.getValue(), sb);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendValue(Object value, StringBuilder sb) {
+        if (value == null || value instanceof Boolean || value instanceof Number) {
+            sb.append(value);
+        } else if (value instanceof CharSequence) {
+            sb.append('"');
+            escape((CharSequence) value, sb);
+            sb.append('"');
+        } else {
+            sb.append(JSONUtil.toJsonStr(value));
+        }
+    }
+
+    /**
+     * @param text 文本
+     * @return JSON字符串转义后的内容（不含两端引号）
+     */
+    public static String escape(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length() + text.length() / 8);
+        escape(text, sb);
+        return sb.toString();
+    }
+
+    private static void escape(CharSequence text, StringBuilder sb) {
+        int from = 0;
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\n') {
+                replacement = "\\n";
+            } else if (c == '\r') {
+                replacement = "\\r";
+            } else if (c == '\t') {
+                replacement = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                replacement = String.format("\\u%04x", (int) c);
+            } else {
+                continue;
+            }
+            sb.append(text, from, i).append(replacement);
+            from = i + 1;
+        }
+        sb.append(text, from, n);
+    }
+}
@@ -0,0 +1,18 @@
+package com.llm.ttsql.prompt;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 提示词在chat请求中的布局
+ * @Version: 1.0
+ **/
+public enum PromptLayout {
+    /**
+     * 模板、表结构与问题拼成一条user消息（问题位于表结构与要求之间）
+     */
+    SINGLE_MESSAGE,
+    /**
+     * 表结构与要求放在system消息中，问题作为最后一条user消息；表按表名排序，
+     * 表结构不变时system消息逐字节一致，vLLM、llama.cpp、Ollama等服务可复用该前缀的KV缓存
+     */
+    PREFIX_CACHED
+}
@@ -0,0 +1,134 @@
+package com.llm.ttsql.prompt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 预编译的提示词模板
+ *
+ * <p>模板语法与 {@link String#format(String, Object...)} 保持兼容，支持 {@code %s}、{@code %n$s}、
+ * {@code %n}、{@code %%}。模板只解析一次，渲染时不再经过 {@link java.util.Formatter}，
+ * 而是把字面量片段与参数一次性拼接到按总长度分配的结果中。</p>
+ *
+ * <p>参数可以是 {@link Collection}，其中每个元素会被依次拼接（用于传入逐表预渲染的表结构片段），
+ * 避免先拼出完整表结构字符串再复制一次。</p>
+ *
+ * @version 1.0
+ */
+public final class PromptTemplate {
+    private final String source;
+    //literals.length == argIndexes.length + 1
+    private final String[] literals;
+    private final int[] argIndexes;
+
+    private PromptTemplate(String source, String[] literals, int[] argIndexes) {
+        this.source = source;
+        this.literals = literals;
+        this.argIndexes = argIndexes;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param template String.format风格的模板
+     * @return 编译后的模板
+     * @throws IllegalArgumentException 模板包含不支持的格式说明符时抛出
+     */
+    public static PromptTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int next = 0;
+        int i = 0;
+        int n = template.length();
+        while (i < n) {
+            char c = template.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            if (i + 1 >= n) {
+                throw new IllegalArgumentException("提示词模板以不完整的格式符结尾");
+            }
+            char d = template.charAt(i + 1);
+            if (d == '%') {
+                literal.append('%');
+                i += 2;
+            } else if (d == 'n') {
+                literal.append(System.lineSeparator());
+                i += 2;
+            } else if (d == 's') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                indexes.add(next++);
+                i += 2;
+            } else if (Character.isDigit(d)) {
+                int j = i + 1;
+                while (j < n && Character.isDigit(template.charAt(j))) {
+                    j++;
+                }
+                if (j + 1 >= n || template.charAt(j) != '$' || template.charAt(j + 1) != 's') {
+                    throw new IllegalArgumentException("提示词模板包含不支持的格式符: " + template.substring(i, Math.min(n, j + 2)));
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                indexes.add(Integer.parseInt(template.substring(i + 1, j)) - 1);
+                i = j + 2;
+            } else {
+                throw new IllegalArgumentException("提示词模板包含不支持的格式符: %" + d);
+            }
+        }
+        literals.add(literal.toString());
+        int[] argIndexes = new int[indexes.size()];
+        for (int k = 0; k < argIndexes.length; k++) {
+            argIndexes[k] = indexes.get(k);
+        }
+        return new PromptTemplate(template, literals.toArray(new String[0]), argIndexes);
+    }
+
+    /**
+     * @return 编译前的模板原文
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param args 模板参数，{@link Collection}类型的参数会被逐元素拼接
+     * @return 渲染结果
+     */
+    public String render(Object... args) {
+        int count = literals.length;
+        for (int index : argIndexes) {
+            Object arg = argument(args, index);
+            count += arg instanceof Collection ? ((Collection<?>) arg).size() : 1;
+        }
+        // String.join对String[]只分配一次结果数组，不经过StringBuilder扩容与toString复制
+        String[] pieces = new String[count];
+        int p = 0;
+        for (int k = 0; k < argIndexes.length; k++) {
+            pieces[p++] = literals[k];
+            Object arg = argument(args, argIndexes[k]);
+            if (arg instanceof Collection) {
+                for (Object item : (Collection<?>) arg) {
+                    pieces[p++] = String.valueOf(item);
+                }
+            } else {
+                pieces[p++] = String.valueOf(arg);
+            }
+        }
+        pieces[p] = literals[literals.length - 1];
+        return String.join("", pieces);
+    }
+
+    private static Object argument(Object[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("提示词模板参数不足，缺少第" + (index + 1) + "个参数");
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,211 @@
+package com.llm.ttsql.prompt;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.retrieval.SchemaTokenizer;
+
+import java.util.*;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 按token预算裁剪写入提示词的表结构
+ * <p>超出预算时按以下顺序逐步降级，每一步都从与问题相关度最低的表开始，一旦满足预算立即停止：</p>
+ * <ol>
+ *   <li>去掉表与列的描述</li>
+ *   <li>只保留与问题相关的列以及主键、外键列（名为id或以_id结尾）</li>
+ *   <li>整表移除，至少保留一张表</li>
+ * </ol>
+ * <p>相关度按问题分词与表名、列名、描述分词的重合数计算；相关度相同时排在后面的表先降级。
+ * 保留下来的表维持原有顺序。</p>
+ * <p>{@link #top(List, String, int)}按同一相关度选取有限数量的表，用于检索无结果时的兜底。</p>
+ * @Version: 1.0
+ **/
+public final class SchemaBudget {
+
+    private SchemaBudget() {
+    }
+
+    /**
+     * 在预算内选取表结构片段
+     *
+     * @param tables    表结构
+     * @param fragments 与tables一一对应的完整片段
+     * @param tokens    与tables一一对应的片段token数
+     * @param renderer  降级时重新渲染使用的渲染器
+     * @param question  用户问题，用于计算相关度
+     * @param budget    表结构部分可用的token数
+     * @return 降级后的片段（按原顺序，可能少于tables）；未超出预算时直接返回fragments
+     */
+    public static List<String> fit(List<TableMeta> tables, List<String> fragments, int[] tokens,
+                                   SchemaRenderer renderer, String question, int budget) {
+        int total = 0;
+        for (int t : tokens) {
+            total += t;
+        }
+        if (total <= budget) {
+            return fragments;
+        }
+        Set<String> terms = terms(question);
+
+        int n = tables.size();
+        String[] text = fragments.toArray(new String[0]);
+        int[] cost = tokens.clone();
+        int[] relevance = new int[n];
+        for (int i = 0; i < n; i++) {
+            relevance[i] = relevance(terms, tables.get(i));
+        }
+        // 降级顺序：相关度低的在前，相同时原位置靠后的在前
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> relevance[a] != relevance[b] ? Integer.compare(relevance[a], relevance[b])
+                : Integer.compare(b, a));
+
+        for (int k = 0; k < n && total > budget; k++) {
+            int i = order[k];
+            String degraded = renderer.render(tables.get(i), false);
+            total += replace(text, cost, i, degraded);
+        }
+        for (int k = 0; k < n && total > budget; k++) {
+            int i = order[k];
+            TableMeta pruned = pruneColumns(tables.get(i), terms);
+            if (pruned != null) {
+                total += replace(text, cost, i, renderer.render(pruned, false));
+            }
+        }
+        for (int k = 0; k < n - 1 && total > budget; k++) {
+            int i = order[k];
+            total -= cost[i];
+            text[i] = null;
+        }
+        List<String> result = new ArrayList<>(n);
+        for (String s : text) {
+            if (s != null) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按与问题的相关度选取前limit张表
+     * <p>相关度相同时原位置靠前的表优先，问题与所有表都不相关时即为前limit张表</p>
+     *
+     * @param tables   表结构
+     * @param question 用户问题
+     * @param limit    最多选取的表数量
+     * @return 按相关度从高到低排列的表；tables不超过limit张时按原顺序返回全部
+     * @throws IllegalArgumentException limit小于1时抛出
+     */
+    public static List<TableMeta> top(List<TableMeta> tables, String question, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("选取的表数量必须大于0");
+        }
+        int n = tables.size();
+        if (n <= limit) {
+            return new ArrayList<>(tables);
+        }
+        Set<String> terms = terms(question);
+        int[] relevance = new int[n];
+        for (int i = 0; i < n; i++) {
+            relevance[i] = relevance(terms, tables.get(i));
+        }
+        // 小顶堆保留相关度最高的limit张，堆顶为当前最差者：相关度低或相同时位置靠后
+        Comparator<Integer> worseFirst = (a, b) -> relevance[a] != relevance[b]
+                ? Integer.compare(relevance[a], relevance[b]) : Integer.compare(b, a);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, worseFirst);
+        for (int i = 0; i < n; i++) {
+            heap.offer(i);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        Integer[] kept = heap.toArray(new Integer[0]);
+        Arrays.sort(kept, worseFirst.reversed());
+        List<TableMeta> result = new ArrayList<>(kept.length);
+        for (int i : kept) {
+            result.add(tables.get(i));
+        }
+        return result;
+    }
+
+    private static Set<String> terms(String question) {
+        Set<String> terms = new HashSet<>();
+        SchemaTokenizer.tokenize(question, terms::add);
+        return terms;
+    }
+
+    private static int relevance(Set<String> terms, TableMeta table) {
+        int relevance = score(terms, table.getTableName()) + score(terms, table.getDescription());
+        if (table.getColumns() != null) {
+            for (ColumnMeta column : table.getColumns()) {
+                relevance += columnScore(terms, column);
+            }
+        }
+        return relevance;
+    }
+
+    /**
+     * @return token数的变化量
+     */
+    private static int replace(String[] text, int[] cost, int i, String fragment) {
+        int tokens = TokenEstimator.estimate(fragment);
+        int delta = tokens - cost[i];
+        text[i] = fragment;
+        cost[i] = tokens;
+        return delta;
+    }
+
+    /**
+     * @return 只含相关列与主键、外键列的副本；没有可去掉的列时返回null
+     */
+    private static TableMeta pruneColumns(TableMeta table, Set<String> terms) {
+        List<ColumnMeta> columns = table.getColumns();
+        if (columns == null || columns.size() <= 1) {
+            return null;
+        }
+        List<ColumnMeta> kept = new ArrayList<>();
+        for (ColumnMeta column : columns) {
+            if (isKey(column.getName()) || columnScore(terms, column) > 0) {
+                kept.add(column);
+            }
+        }
+        if (kept.isEmpty()) {
+            kept.add(columns.get(0));
+        }
+        if (kept.size() == columns.size()) {
+            return null;
+        }
+        TableMeta pruned = new TableMeta();
+        pruned.setTableName(table.getTableName());
+        pruned.setDescription(table.getDescription());
+        pruned.setColumns(kept);
+        return pruned;
+    }
+
+    private static boolean isKey(String name) {
+        if (name == null) {
+            return false;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.equals("id") || lower.endsWith("_id");
+    }
+
+    private static int columnScore(Set<String> terms, ColumnMeta column) {
+        return score(terms, column.getName()) + score(terms, column.getDescription());
+    }
+
+    private static int score(Set<String> terms, String text) {
+        if (terms.isEmpty() || text == null) {
+            return 0;
+        }
+        int[] hits = new int[1];
+        SchemaTokenizer.tokenize(text, token -> {
+            if (terms.contains(token)) {
+                hits[0]++;
+            }
+        });
+        return hits[0];
+    }
+}
@@ -0,0 +1,19 @@
+package com.llm.ttsql.prompt;
+
+import com.llm.ttsql.entity.TableMeta;
+
+/**
+ * 策略模式表结构渲染接口
+ * <p>把单张表渲染为写入提示词的文本片段。实现必须是无状态、线程安全的：
+ * 同一张表的渲染结果会被缓存并在多个请求之间复用。</p>
+ */
+public interface SchemaRenderer {
+    /**
+     * 渲染单张表
+     *
+     * @param table            表结构
+     * @param withDescriptions 是否包含表与列的描述；超出token预算时会以false重新渲染
+     * @return 表结构片段，多个片段直接首尾相接写入提示词
+     */
+    String render(TableMeta table, boolean withDescriptions);
+}
@@ -0,0 +1,45 @@
+package com.llm.ttsql.prompt;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 本地token数估算（不依赖具体模型的分词表）
+ * <p>经验规则：每个汉字及全角字符约1个token，连续的英文/数字约每4个字符1个token，
+ * 其余标点与空白按每2个字符1个token计算。用于批量切分与预算控制，不要求精确。</p>
+ * @Version: 1.0
+ **/
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的token数
+     *
+     * @param text 文本（可为null）
+     * @return 估算的token数
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int word = 0;
+        int other = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                word++;
+                continue;
+            }
+            tokens += (word + 3) / 4;
+            word = 0;
+            if (c >= 0x2E80) {
+                tokens++;
+            } else {
+                other++;
+            }
+        }
+        tokens += (word + 3) / 4;
+        return tokens + (other + 1) / 2;
+    }
+}
@@ -0,0 +1,137 @@
+package com.llm.ttsql.prompt.impl;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.SchemaRenderer;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 类DDL的紧凑表结构格式，每张表一行（以换行开头）
+ * <pre>
+ * t_order(id bigint 主键, user_id bigint 用户id, addr_{province 省份,city 城市} varchar, create_time datetime) -- 订单表
+ * </pre>
+ * <ul>
+ *   <li>相邻、类型相同且前缀相同（第一个下划线及之前的部分）的列合并为一组，前缀与类型只写一次</li>
+ *   <li>描述超过指定长度时截断，描述中的换行替换为空格</li>
+ * </ul>
+ * @Version: 1.0
+ **/
+public class CompactSchemaRenderer implements SchemaRenderer {
+    private final int maxDescriptionLength;
+
+    public CompactSchemaRenderer() {
+        this(0);
+    }
+
+    /**
+     * @param maxDescriptionLength 描述的最大字符数，超出部分截断为“…”；0表示不截断
+     */
+    public CompactSchemaRenderer(int maxDescriptionLength) {
+        if (maxDescriptionLength < 0) {
+            throw new IllegalArgumentException("描述长度不能为负数");
+        }
+        this.maxDescriptionLength = maxDescriptionLength;
+    }
+
+    @Override
+    public String render(TableMeta table, boolean withDescriptions) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append('\n').append(table.getTableName()).append('(');
+        List<ColumnMeta> columns = table.getColumns();
+        if (columns != null) {
+            int i = 0;
+            while (i < columns.size()) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                ColumnMeta column = columns.get(i);
+                int prefix = prefixLength(column.getName());
+                int end = i + 1;
+                while (prefix > 0 && end < columns.size() && samePrefix(columns.get(end), column, prefix)) {
+                    end++;
+                }
+                if (end - i == 1) {
+                    sb.append(column.getName());
+                    appendType(sb, column.getType());
+                    if (withDescriptions) {
+                        appendDescription(sb, column.getDescription());
+                    }
+                } else {
+                    sb.append(column.getName(), 0, prefix).append('{');
+                    for (int j = i; j < end; j++) {
+                        if (j > i) {
+                            sb.append(',');
+                        }
+                        ColumnMeta member = columns.get(j);
+                        sb.append(member.getName(), prefix, member.getName().length());
+                        if (withDescriptions) {
+                            appendDescription(sb, member.getDescription());
+                        }
+                    }
+                    sb.append('}');
+                    appendType(sb, column.getType());
+                }
+                i = end;
+            }
+        }
+        sb.append(')');
+        if (withDescriptions && !isBlank(table.getDescription())) {
+            sb.append(" -- ");
+            appendText(sb, table.getDescription());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 第一个下划线及之前部分的长度，没有下划线或下划线之后为空时返回0
+     */
+    private static int prefixLength(String name) {
+        if (name == null) {
+            return 0;
+        }
+        int underscore = name.indexOf('_');
+        return underscore > 0 && underscore < name.length() - 1 ? underscore + 1 : 0;
+    }
+
+    private static boolean samePrefix(ColumnMeta candidate, ColumnMeta first, int prefix) {
+        String name = candidate.getName();
+        return prefixLength(name) == prefix && name.regionMatches(0, first.getName(), 0, prefix)
+                && Objects.equals(candidate.getType(), first.getType());
+    }
+
+    private static void appendType(StringBuilder sb, String type) {
+        if (!isBlank(type)) {
+            sb.append(' ').append(type);
+        }
+    }
+
+    private void appendDescription(StringBuilder sb, String description) {
+        if (!isBlank(description)) {
+            sb.append(' ');
+            appendText(sb, description);
+        }
+    }
+
+    private void appendText(StringBuilder sb, String text) {
+        String trimmed = text.trim();
+        boolean truncated = maxDescriptionLength > 0 && trimmed.length() > maxDescriptionLength;
+        int end = truncated ? maxDescriptionLength : trimmed.length();
+        if (truncated && Character.isHighSurrogate(trimmed.charAt(end - 1))) {
+            end--;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = trimmed.charAt(i);
+            sb.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        if (truncated) {
+            sb.append('…');
+        }
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
@@ -0,0 +1,36 @@
+package com.llm.ttsql.prompt.impl;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.SchemaRenderer;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 默认的逐列描述格式，即"[表名: xx,表描述: xx\n- 列名: xx, 类型: xx, 描述: xx\n\n]"
+ * @Version: 1.0
+ **/
+public class VerboseSchemaRenderer implements SchemaRenderer {
+    public static final VerboseSchemaRenderer INSTANCE = new VerboseSchemaRenderer();
+
+    @Override
+    public String render(TableMeta table, boolean withDescriptions) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("[表名: ").append(table.getTableName());
+        if (withDescriptions) {
+            sb.append(",表描述: ").append(table.getDescription());
+        }
+        sb.append("\n");
+        if (table.getColumns() != null) {
+            for (ColumnMeta col : table.getColumns()) {
+                sb.append("- 列名: ").append(col.getName())
+                        .append(", 类型: ").append(col.getType());
+                if (withDescriptions) {
+                    sb.append(", 描述: ").append(col.getDescription());
+                }
+                sb.append("\n");
+            }
+        }
+        sb.append("\n]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.llm.ttsql.retrieval;
+
+import com.llm.ttsql.entity.TableMeta;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 策略模式表结构检索接口
+ * <p>根据用户问题从已缓存的表中挑选相关表，避免把整个数据库结构写入提示词</p>
+ */
+public interface SchemaRetriever {
+    /**
+     * 新增或更新一张表的索引
+     */
+    void index(TableMeta table);
+
+    /**
+     * 移除一张表的索引
+     */
+    void remove(String tableName);
+
+    /**
+     * 清空索引
+     */
+    void clear();
+
+    /**
+     * 检索与问题相关的表
+     *
+     * @param question 用户问题
+     * @param topK     按相关度最多选取的表数量
+     * @return 相关表名（按相关度排序，并追加这些表所关联的表），无匹配时返回空列表
+     */
+    List<String> select(String question, int topK);
+
+    /**
+     * 把索引写入表结构快照文件，加载快照时通过{@link #readSnapshot(ByteBuffer)}直接恢复而无需重新分词
+     *
+     * @param out 输出
+     * @return 不支持时返回false，加载快照后逐表重建索引
+     */
+    default boolean writeSnapshot(DataOutput out) throws IOException {
+        return false;
+    }
+
+    /**
+     * 从表结构快照文件恢复索引，替换当前全部内容
+     *
+     * @param in {@link #writeSnapshot(DataOutput)}写入的内容
+     * @return 不支持时返回false
+     */
+    default boolean readSnapshot(ByteBuffer in) {
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package com.llm.ttsql.retrieval;
+
+import java.util.function.Consumer;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表结构与问题的分词器
+ * <ul>
+ *   <li>英文/数字：按非字母数字字符、下划线及驼峰拆分并转小写，如 sys_user → sys、user</li>
+ *   <li>中文：连续汉字按二元组切分，如 登录人数 → 登录、录人、人数；单个汉字保留为一元</li>
+ * </ul>
+ * @Version: 1.0
+ **/
+public final class SchemaTokenizer {
+
+    private SchemaTokenizer() {
+    }
+
+    /**
+     * 对文本分词，每个词元回调一次
+     *
+     * @param text     文本（可为null）
+     * @param consumer 词元回调
+     */
+    public static void tokenize(String text, Consumer<String> consumer) {
+        if (text == null) {
+            return;
+        }
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < n && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    consumer.accept(text.substring(start, i));
+                } else {
+                    for (int j = start; j + 1 < i; j++) {
+                        consumer.accept(text.substring(j, j + 2));
+                    }
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                i++;
+                while (i < n) {
+                    char d = text.charAt(i);
+                    if (!Character.isLetterOrDigit(d) || isCjk(d)
+                            || (Character.isUpperCase(d) && Character.isLowerCase(text.charAt(i - 1)))) {
+                        break;
+                    }
+                    i++;
+                }
+                consumer.accept(text.substring(start, i).toLowerCase());
+            } else {
+                i++;
+            }
+        }
+    }
+
+    public static boolean isCjk(char c) {
+        return c >= '一' && c <= '鿿';
+    }
+}
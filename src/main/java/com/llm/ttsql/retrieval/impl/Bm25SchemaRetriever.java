@@ -0,0 +1,604 @@
+package com.llm.ttsql.retrieval.impl;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.retrieval.SchemaRetriever;
+import com.llm.ttsql.retrieval.SchemaTokenizer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于BM25的本地表结构检索（进程内倒排索引，无网络调用）
+ *
+ * <p>索引内容为表名、列名以及表/列描述，表名与列名的词频按更高权重计算。
+ * 检索时先按BM25得分选取topK张表，再根据 {@code xxx_id} 形式的列名推断并追加其关联的表
+ * （如 sys_log.user_id → sys_user）。</p>
+ *
+ * <p>索引支持增量更新，{@link #index(TableMeta)}/{@link #remove(String)}只触及该表的词条；
+ * 检索只遍历问题中出现的词条对应的倒排表，万级表规模下耗时在亚毫秒级。</p>
+ *
+ * <p>索引可写入表结构快照文件（有序词条字典、定长文档表、倒排表与表名词干字典）。从快照恢复后直接在映射区上检索：
+ * 词条按二分查找定位，倒排表在首次命中时解码；首次增量更新时才把整个索引解码到内存。</p>
+ *
+ * @version 1.0
+ */
+public class Bm25SchemaRetriever implements SchemaRetriever {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int TABLE_NAME_WEIGHT = 3;
+    private static final int COLUMN_NAME_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final Map<String, Posting> postings = new HashMap<>();
+    private final Map<String, Set<String>> tablesByStem = new HashMap<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private Doc[] docs = new Doc[64];
+    private int docCapacity;
+    private int docCount;
+    private long totalLength;
+    //从快照恢复、尚未解码到内存的只读索引，为null时使用上面的内存索引
+    private MappedIndex mapped;
+
+    @Override
+    public void index(TableMeta table) {
+        Map<String, Integer> termFreq = new HashMap<>();
+        SchemaTokenizer.tokenize(table.getTableName(), t -> termFreq.merge(t, TABLE_NAME_WEIGHT, Integer::sum));
+        SchemaTokenizer.tokenize(table.getDescription(), t -> termFreq.merge(t, DESCRIPTION_WEIGHT, Integer::sum));
+        List<String> foreignStems = new ArrayList<>();
+        if (table.getColumns() != null) {
+            for (ColumnMeta col : table.getColumns()) {
+                SchemaTokenizer.tokenize(col.getName(), t -> termFreq.merge(t, COLUMN_NAME_WEIGHT, Integer::sum));
+                SchemaTokenizer.tokenize(col.getDescription(), t -> termFreq.merge(t, DESCRIPTION_WEIGHT, Integer::sum));
+                String stem = foreignStem(col.getName());
+                if (stem != null) {
+                    foreignStems.add(stem);
+                }
+            }
+        }
+        String name = table.getTableName();
+        lock.writeLock().lock();
+        try {
+            materializeLocked();
+            removeLocked(name);
+            int id = freeIds.isEmpty() ? docCapacity++ : freeIds.pop();
+            if (id >= docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+            }
+            int length = 0;
+            String[] terms = new String[termFreq.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> e : termFreq.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new Posting()).add(id, e.getValue());
+                length += e.getValue();
+                terms[i++] = e.getKey();
+            }
+            String[] stems = tableStems(name);
+            for (String stem : stems) {
+                tablesByStem.computeIfAbsent(stem, k -> new HashSet<>()).add(name);
+            }
+            docs[id] = new Doc(name, length, terms, stems, foreignStems.toArray(new String[0]));
+            docIds.put(name, id);
+            docCount++;
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String tableName) {
+        lock.writeLock().lock();
+        try {
+            materializeLocked();
+            removeLocked(tableName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clearLocked() {
+        mapped = null;
+        docIds.clear();
+        postings.clear();
+        tablesByStem.clear();
+        freeIds.clear();
+        docs = new Doc[64];
+        docCapacity = 0;
+        docCount = 0;
+        totalLength = 0;
+    }
+
+    @Override
+    public List<String> select(String question, int topK) {
+        Set<String> queryTerms = new HashSet<>();
+        SchemaTokenizer.tokenize(question, queryTerms::add);
+        lock.readLock().lock();
+        try {
+            if (docCount == 0 || queryTerms.isEmpty()) {
+                return Collections.emptyList();
+            }
+            MappedIndex view = mapped;
+            float avgLength = (float) totalLength / docCount;
+            float[] scores = new float[docCapacity];
+            int[] touched = new int[docCapacity];
+            int touchedCount = 0;
+            for (String term : queryTerms) {
+                Posting posting = view != null ? view.posting(term) : postings.get(term);
+                if (posting == null || posting.size == 0) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (docCount - posting.size + 0.5) / (posting.size + 0.5));
+                for (int i = 0; i < posting.size; i++) {
+                    int doc = posting.docs[i];
+                    int tf = posting.freqs[i];
+                    if (scores[doc] == 0f) {
+                        touched[touchedCount++] = doc;
+                    }
+                    int length = view != null ? view.docLength(doc) : docs[doc].length;
+                    float norm = K1 * (1 - B + B * length / avgLength);
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            if (touchedCount == 0) {
+                return Collections.emptyList();
+            }
+            // 小顶堆选取得分最高的topK
+            PriorityQueue<Integer> heap = new PriorityQueue<>(topK + 1, (a, b) -> Float.compare(scores[a], scores[b]));
+            for (int i = 0; i < touchedCount; i++) {
+                heap.offer(touched[i]);
+                if (heap.size() > topK) {
+                    heap.poll();
+                }
+            }
+            Integer[] ranked = heap.toArray(new Integer[0]);
+            Arrays.sort(ranked, (a, b) -> Float.compare(scores[b], scores[a]));
+            LinkedHashSet<String> result = new LinkedHashSet<>();
+            for (int doc : ranked) {
+                result.add(view != null ? view.docName(doc) : docs[doc].name);
+            }
+            for (int doc : ranked) {
+                for (String stem : view != null ? view.foreignStems(doc) : docs[doc].foreignStems) {
+                    Collection<String> joined = view != null ? view.tablesByStem(stem) : tablesByStem.get(stem);
+                    if (joined != null) {
+                        result.addAll(joined);
+                    }
+                }
+            }
+            return new ArrayList<>(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入格式（偏移相对于写入内容的起点）：
+     * <pre>
+     * 头部：文档槽位数、文档数、总长度、词条数、词条字典偏移、文档表偏移、词干数、词干字典偏移
+     * 词条字典：按词条排序，每项为（词条字符串偏移，倒排表偏移）
+     * 文档表：每个槽位（表名字符串偏移，0表示空槽位；长度；词条编号列表偏移；表名词干列表偏移；外键词干列表偏移）
+     * 词干字典：按词干排序，每项为（词干字符串偏移，文档编号列表偏移）
+     * </pre>
+     */
+    @Override
+    public boolean writeSnapshot(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            if (mapped != null) {
+                // 尚未解码的快照原样写回
+                out.write(mapped.bytes());
+                return true;
+            }
+            SnapshotWriter w = new SnapshotWriter();
+            String[] terms = postings.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            Map<String, Integer> termIndex = new HashMap<>(terms.length * 2);
+            for (int i = 0; i < terms.length; i++) {
+                termIndex.put(terms[i], i);
+            }
+            Map<String, List<Integer>> stemDocs = new TreeMap<>();
+            for (int id = 0; id < docCapacity; id++) {
+                if (docs[id] != null) {
+                    for (String stem : docs[id].stems) {
+                        stemDocs.computeIfAbsent(stem, k -> new ArrayList<>()).add(id);
+                    }
+                }
+            }
+            int headerSize = 40;
+            int termDir = headerSize;
+            int docTable = termDir + terms.length * 8;
+            int stemDir = docTable + docCapacity * 20;
+            w.reserve(stemDir + stemDocs.size() * 8);
+            w.putInt(0, docCapacity).putInt(4, docCount).putLong(8, totalLength)
+                    .putInt(16, terms.length).putInt(20, termDir).putInt(24, docTable)
+                    .putInt(28, stemDocs.size()).putInt(32, stemDir);
+            for (int i = 0; i < terms.length; i++) {
+                Posting posting = postings.get(terms[i]);
+                int postingRef = w.append(posting.size);
+                for (int k = 0; k < posting.size; k++) {
+                    w.append(posting.docs[k]);
+                    w.append(posting.freqs[k]);
+                }
+                w.putInt(termDir + i * 8, w.string(terms[i])).putInt(termDir + i * 8 + 4, postingRef);
+            }
+            for (int id = 0; id < docCapacity; id++) {
+                Doc doc = docs[id];
+                if (doc == null) {
+                    continue;
+                }
+                int termsRef = w.append(doc.terms.length);
+                for (String term : doc.terms) {
+                    w.append(termIndex.get(term));
+                }
+                int pos = docTable + id * 20;
+                w.putInt(pos, w.string(doc.name)).putInt(pos + 4, doc.length).putInt(pos + 8, termsRef)
+                        .putInt(pos + 12, w.strings(doc.stems)).putInt(pos + 16, w.strings(doc.foreignStems));
+            }
+            int i = 0;
+            for (Map.Entry<String, List<Integer>> e : stemDocs.entrySet()) {
+                int idsRef = w.append(e.getValue().size());
+                for (int id : e.getValue()) {
+                    w.append(id);
+                }
+                w.putInt(stemDir + i * 8, w.string(e.getKey())).putInt(stemDir + i * 8 + 4, idsRef);
+                i++;
+            }
+            out.write(w.bytes, 0, w.size);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 恢复后直接在传入的缓冲区上检索，调用方需保证缓冲区在索引被替换前保持有效（如内存映射的快照文件）
+     */
+    @Override
+    public boolean readSnapshot(ByteBuffer in) {
+        MappedIndex restored = new MappedIndex(in.slice());
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+            mapped = restored;
+            docCapacity = restored.buffer.getInt(0);
+            docCount = restored.buffer.getInt(4);
+            totalLength = restored.buffer.getLong(8);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 增量更新前把映射区中的索引完整解码到内存
+     */
+    private void materializeLocked() {
+        MappedIndex view = mapped;
+        if (view == null) {
+            return;
+        }
+        ByteBuffer buf = view.buffer;
+        String[] terms = new String[buf.getInt(16)];
+        int termDir = buf.getInt(20);
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = view.string(buf.getInt(termDir + i * 8));
+            postings.put(terms[i], view.decodePosting(buf.getInt(termDir + i * 8 + 4)));
+        }
+        int docTable = buf.getInt(24);
+        Doc[] restored = new Doc[Math.max(64, docCapacity)];
+        for (int id = 0; id < docCapacity; id++) {
+            int pos = docTable + id * 20;
+            if (buf.getInt(pos) == 0) {
+                freeIds.push(id);
+                continue;
+            }
+            String name = view.string(buf.getInt(pos));
+            int termsRef = buf.getInt(pos + 8);
+            String[] docTerms = new String[buf.getInt(termsRef)];
+            for (int i = 0; i < docTerms.length; i++) {
+                docTerms[i] = terms[buf.getInt(termsRef + 4 + i * 4)];
+            }
+            String[] stems = view.strings(buf.getInt(pos + 12));
+            restored[id] = new Doc(name, buf.getInt(pos + 4), docTerms, stems, view.strings(buf.getInt(pos + 16)));
+            docIds.put(name, id);
+            for (String stem : stems) {
+                tablesByStem.computeIfAbsent(stem, k -> new HashSet<>()).add(name);
+            }
+        }
+        docs = restored;
+        mapped = null;
+    }
+
+    private void removeLocked(String tableName) {
+        Integer id = docIds.remove(tableName);
+        if (id == null) {
+            return;
+        }
+        Doc doc = docs[id];
+        for (String term : doc.terms) {
+            Posting posting = postings.get(term);
+            posting.remove(id);
+            if (posting.size == 0) {
+                postings.remove(term);
+            }
+        }
+        for (String stem : doc.stems) {
+            Set<String> names = tablesByStem.get(stem);
+            names.remove(tableName);
+            if (names.isEmpty()) {
+                tablesByStem.remove(stem);
+            }
+        }
+        docs[id] = null;
+        freeIds.push(id);
+        docCount--;
+        totalLength -= doc.length;
+    }
+
+    /**
+     * 表名可被外键列引用的形式：完整表名、去掉前缀后的最后一段，以及它们的单数形式
+     */
+    private static String[] tableStems(String tableName) {
+        String lower = tableName.toLowerCase();
+        Set<String> stems = new LinkedHashSet<>();
+        stems.add(lower);
+        int idx = lower.lastIndexOf('_');
+        if (idx >= 0 && idx < lower.length() - 1) {
+            stems.add(lower.substring(idx + 1));
+        }
+        for (String stem : stems.toArray(new String[0])) {
+            if (stem.length() > 1 && stem.endsWith("s")) {
+                stems.add(stem.substring(0, stem.length() - 1));
+            }
+        }
+        return stems.toArray(new String[0]);
+    }
+
+    /**
+     * 根据列名推断被引用表：user_id / userId → user，主键id本身返回null
+     */
+    private static String foreignStem(String columnName) {
+        if (columnName == null) {
+            return null;
+        }
+        int n = columnName.length();
+        if (n > 3 && columnName.regionMatches(true, n - 3, "_id", 0, 3)) {
+            return columnName.substring(0, n - 3).toLowerCase();
+        }
+        if (n > 2 && columnName.endsWith("Id")) {
+            return columnName.substring(0, n - 2).toLowerCase();
+        }
+        return null;
+    }
+
+    private static final class Doc {
+        final String name;
+        final int length;
+        final String[] terms;
+        final String[] stems;
+        final String[] foreignStems;
+
+        Doc(String name, int length, String[] terms, String[] stems, String[] foreignStems) {
+            this.name = name;
+            this.length = length;
+            this.terms = terms;
+            this.stems = stems;
+            this.foreignStems = foreignStems;
+        }
+    }
+
+    /**
+     * 倒排表：文档id与加权词频的并行数组
+     */
+    private static final class Posting {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        void remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    size--;
+                    docs[i] = docs[size];
+                    freqs[i] = freqs[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 快照中的只读索引；只使用绝对位置读取，可在读锁下并发访问
+     */
+    private static final class MappedIndex {
+        final ByteBuffer buffer;
+        //已解码的倒排表，只缓存快照中存在的词条，避免任意问题词撑大缓存
+        private final Map<String, Posting> decoded = new ConcurrentHashMap<>();
+
+        MappedIndex(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        Posting posting(String term) {
+            return decoded.computeIfAbsent(term, t -> {
+                int i = search(buffer.getInt(20), buffer.getInt(16), t);
+                return i < 0 ? null : decodePosting(buffer.getInt(buffer.getInt(20) + i * 8 + 4));
+            });
+        }
+
+        Posting decodePosting(int ref) {
+            Posting posting = new Posting();
+            int size = buffer.getInt(ref);
+            posting.docs = new int[Math.max(4, size)];
+            posting.freqs = new int[posting.docs.length];
+            for (int i = 0; i < size; i++) {
+                posting.docs[i] = buffer.getInt(ref + 4 + i * 8);
+                posting.freqs[i] = buffer.getInt(ref + 8 + i * 8);
+            }
+            posting.size = size;
+            return posting;
+        }
+
+        int docLength(int id) {
+            return buffer.getInt(buffer.getInt(24) + id * 20 + 4);
+        }
+
+        String docName(int id) {
+            return string(buffer.getInt(buffer.getInt(24) + id * 20));
+        }
+
+        String[] foreignStems(int id) {
+            return strings(buffer.getInt(buffer.getInt(24) + id * 20 + 16));
+        }
+
+        List<String> tablesByStem(String stem) {
+            int stemDir = buffer.getInt(32);
+            int i = search(stemDir, buffer.getInt(28), stem);
+            if (i < 0) {
+                return null;
+            }
+            int ref = buffer.getInt(stemDir + i * 8 + 4);
+            List<String> names = new ArrayList<>(buffer.getInt(ref));
+            for (int k = 0; k < buffer.getInt(ref); k++) {
+                names.add(docName(buffer.getInt(ref + 4 + k * 4)));
+            }
+            return names;
+        }
+
+        /**
+         * 在按字符串排序的（字符串偏移，值）字典中二分查找
+         */
+        private int search(int dir, int count, String key) {
+            int lo = 0;
+            int hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = string(buffer.getInt(dir + mid * 8)).compareTo(key);
+                if (cmp == 0) {
+                    return mid;
+                }
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return -1;
+        }
+
+        String string(int ref) {
+            byte[] bytes = new byte[buffer.getInt(ref)];
+            buffer.get(ref + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String[] strings(int ref) {
+            String[] values = new String[buffer.getInt(ref)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = string(buffer.getInt(ref + 4 + i * 4));
+            }
+            return values;
+        }
+
+        byte[] bytes() {
+            byte[] bytes = new byte[buffer.capacity()];
+            buffer.get(0, bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * 快照写入缓冲：定长区先预留，变长内容追加在后；字符串去重
+     */
+    private static final class SnapshotWriter {
+        private final Map<String, Integer> strings = new HashMap<>();
+        byte[] bytes = new byte[1 << 16];
+        int size;
+
+        void reserve(int n) {
+            ensure(n);
+            size = n;
+        }
+
+        SnapshotWriter putInt(int pos, int v) {
+            bytes[pos] = (byte) (v >>> 24);
+            bytes[pos + 1] = (byte) (v >>> 16);
+            bytes[pos + 2] = (byte) (v >>> 8);
+            bytes[pos + 3] = (byte) v;
+            return this;
+        }
+
+        SnapshotWriter putLong(int pos, long v) {
+            return putInt(pos, (int) (v >>> 32)).putInt(pos + 4, (int) v);
+        }
+
+        /**
+         * @return 写入位置
+         */
+        int append(int v) {
+            ensure(size + 4);
+            putInt(size, v);
+            size += 4;
+            return size - 4;
+        }
+
+        int string(String s) {
+            Integer ref = strings.get(s);
+            if (ref != null) {
+                return ref;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            int pos = append(utf8.length);
+            ensure(size + utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+            strings.put(s, pos);
+            return pos;
+        }
+
+        int strings(String[] values) {
+            int[] refs = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                refs[i] = string(values[i]);
+            }
+            int pos = append(values.length);
+            for (int ref : refs) {
+                append(ref);
+            }
+            return pos;
+        }
+
+        private void ensure(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, capacity));
+            }
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.llm.ttsql.routing;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.metrics.LatencyHistogram;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 模型节点的准入控制
+ *
+ * <p>通过{@link com.llm.ttsql.entity.LLMInfo#setAdmissionController(AdmissionController)}绑定到节点，
+ * 使用同一{@link com.llm.ttsql.entity.LLMInfo}的所有生成器共享限额。请求发出前须同时满足：</p>
+ * <ol>
+ *   <li>令牌桶：每分钟请求数与每分钟（估算的）提示词token数，桶容量为一分钟的配额</li>
+ *   <li>并发上限：按AIMD自适应调整，请求延迟正常时每轮加1，延迟超过基线的{@link #latencyTolerance(double)}倍
+ *   或收到429/503时按{@link #backoffRatio(double)}收缩；收到429/503后暂停发送{@link #throttleMillis(long)}</li>
+ * </ol>
+ * <p>不满足时进入有界优先级队列，{@link Priority#INTERACTIVE}请求先于{@link Priority#BATCH}请求放行，
+ * 同优先级按到达顺序；队列已满或等待超时时抛出{@link SqlGenerationException}。</p>
+ *
+ * <pre>{@code
+ * llm.setAdmissionController(new AdmissionController()
+ *         .requestsPerMinute(600).tokensPerMinute(400_000).concurrency(8, 1, 64));
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class AdmissionController {
+    private static final double NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+    //延迟基线（最小延迟）每个样本向上回归的比例，避免过期的最小值长期压低基线
+    private static final double BASELINE_DRIFT = 0.01;
+
+    /**
+     * 请求优先级
+     */
+    public enum Priority {
+        /**
+         * 交互式请求（单个问题）
+         */
+        INTERACTIVE,
+        /**
+         * 批量任务
+         */
+        BATCH
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong overloads = new AtomicLong();
+
+    private double requestsPerMinute;
+    private double tokensPerMinute;
+    private int minLimit = 1;
+    private int maxLimit = 64;
+    private double latencyTolerance = 2.0;
+    private double backoffRatio = 0.7;
+    private long throttleNanos = TimeUnit.SECONDS.toNanos(1);
+    private int maxQueueSize = 1000;
+    private long maxQueueWaitNanos = TimeUnit.SECONDS.toNanos(60);
+
+    private double limit = 8;
+    private int inFlight;
+    private double requestTokens;
+    private double promptTokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = lastRefill;
+    private long lastDecrease = lastRefill;
+    private double baselineNanos;
+    private long sequence;
+
+    /**
+     * @param requestsPerMinute 每分钟最多请求数，0表示不限制
+     * @return 当前控制器
+     */
+    public AdmissionController requestsPerMinute(double requestsPerMinute) {
+        if (requestsPerMinute < 0) {
+            throw new IllegalArgumentException("每分钟请求数不能为负数");
+        }
+        lock.lock();
+        try {
+            this.requestsPerMinute = requestsPerMinute;
+            this.requestTokens = requestsPerMinute;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @param tokensPerMinute 每分钟最多提示词token数（按{@link com.llm.ttsql.prompt.TokenEstimator}估算），0表示不限制
+     * @return 当前控制器
+     */
+    public AdmissionController tokensPerMinute(double tokensPerMinute) {
+        if (tokensPerMinute < 0) {
+            throw new IllegalArgumentException("每分钟token数不能为负数");
+        }
+        lock.lock();
+        try {
+            this.tokensPerMinute = tokensPerMinute;
+            this.promptTokens = tokensPerMinute;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @param initial 初始并发上限，默认8
+     * @param min     并发上限的下限，默认1
+     * @param max     并发上限的上限，默认64；min与max相等时为固定并发
+     * @return 当前控制器
+     */
+    public AdmissionController concurrency(int initial, int min, int max) {
+        if (min <= 0 || max < min || initial < min || initial > max) {
+            throw new IllegalArgumentException("并发上限需满足 0 < min <= initial <= max");
+        }
+        lock.lock();
+        try {
+            this.limit = initial;
+            this.minLimit = min;
+            this.maxLimit = max;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @param latencyTolerance 延迟超过基线（近期最小延迟）多少倍时收缩并发上限，默认2
+     * @return 当前控制器
+     */
+    public AdmissionController latencyTolerance(double latencyTolerance) {
+        if (latencyTolerance <= 1) {
+            throw new IllegalArgumentException("延迟容忍倍数必须大于1");
+        }
+        lock.lock();
+        try {
+            this.latencyTolerance = latencyTolerance;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @param backoffRatio 收缩时并发上限乘以的系数，默认0.7
+     * @return 当前控制器
+     */
+    public AdmissionController backoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("收缩系数必须在0与1之间");
+        }
+        lock.lock();
+        try {
+            this.backoffRatio = backoffRatio;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @param throttleMillis 收到429/503后暂停发送的时间（毫秒），默认1000
+     * @return 当前控制器
+     */
+    public AdmissionController throttleMillis(long throttleMillis) {
+        lock.lock();
+        try {
+            this.throttleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, throttleMillis));
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @param maxQueueSize    最多排队的请求数，默认1000
+     * @param maxWaitMillis   单个请求最长排队时间（毫秒），默认60000
+     * @return 当前控制器
+     */
+    public AdmissionController queue(int maxQueueSize, long maxWaitMillis) {
+        if (maxQueueSize < 0 || maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("队列长度不能为负数，等待时间必须大于0");
+        }
+        lock.lock();
+        try {
+            this.maxQueueSize = maxQueueSize;
+            this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * 获取发送许可，须在请求结束后调用{@link #release(long)}、{@link #releaseOverloaded()}
+     * 或{@link #releaseIgnored()}之一归还
+     *
+     * @param tokens   估算的提示词token数
+     * @param priority 优先级
+     * @return 排队等待时间（纳秒）
+     * @throws SqlGenerationException 队列已满、等待超时或等待期间被中断（异步调用取消）时抛出
+     */
+    public long acquire(int tokens, Priority priority) throws SqlGenerationException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (queue.isEmpty() && waitNanos(start, tokens) == 0) {
+                admit(tokens);
+                queueWait.record(0L);
+                return 0L;
+            }
+            if (queue.size() >= maxQueueSize) {
+                rejected.incrementAndGet();
+                throw new SqlGenerationException("模型节点排队请求数已达上限：" + maxQueueSize);
+            }
+            Waiter waiter = new Waiter(priority, sequence++, lock.newCondition());
+            queue.add(waiter);
+            long deadline = start + maxQueueWaitNanos;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    long wait = queue.peek() == waiter ? waitNanos(now, tokens) : Long.MAX_VALUE;
+                    if (wait == 0) {
+                        queue.poll();
+                        admit(tokens);
+                        long waited = now - start;
+                        queueWait.record(waited);
+                        return waited;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        queue.remove(waiter);
+                        rejected.incrementAndGet();
+                        throw new SqlGenerationException("模型节点排队等待超时");
+                    }
+                    waiter.condition.awaitNanos(Math.min(wait, remaining));
+                }
+            } catch (InterruptedException e) {
+                queue.remove(waiter);
+                Thread.currentThread().interrupt();
+                throw new SqlGenerationException("请求已取消", e);
+            } finally {
+                signalHead();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求成功（节点正常响应），按延迟调整并发上限
+     *
+     * @param latencyNanos 请求耗时（不含排队）
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (baselineNanos == 0 || latencyNanos < baselineNanos) {
+                baselineNanos = latencyNanos;
+            } else {
+                baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+            }
+            if (latencyNanos > baselineNanos * latencyTolerance) {
+                decrease(System.nanoTime());
+            } else if (inFlight + 1 >= limit / 2) {
+                // 只在并发被实际用到时增长，避免空闲期间上限无限抬高
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            signalHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 节点返回429/503，收缩并发上限并暂停发送
+     */
+    public void releaseOverloaded() {
+        overloads.incrementAndGet();
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            decrease(now);
+            pausedUntil = Math.max(pausedUntil, now + throttleNanos);
+            signalHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求被取消或因其他原因失败，只归还许可，不影响并发上限
+     */
+    public void releaseIgnored() {
+        lock.lock();
+        try {
+            inFlight--;
+            signalHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 同一轮延迟内的多次过载只收缩一次，避免并发请求同时失败时上限骤降到下限
+     */
+    private void decrease(long now) {
+        if (now - lastDecrease >= baselineNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            lastDecrease = now;
+        }
+    }
+
+    /**
+     * @return 距可以放行还需等待的纳秒数，可立即放行时返回0；只受并发限制时返回Long.MAX_VALUE（等待归还通知）
+     */
+    private long waitNanos(long now, int tokens) {
+        if (inFlight >= Math.max(1, (int) limit)) {
+            return Long.MAX_VALUE;
+        }
+        if (now < pausedUntil) {
+            return pausedUntil - now;
+        }
+        refill(now);
+        long wait = 0;
+        if (requestsPerMinute > 0 && requestTokens < 1) {
+            wait = (long) Math.ceil((1 - requestTokens) * NANOS_PER_MINUTE / requestsPerMinute);
+        }
+        // 超过一分钟配额的大请求在桶满时放行
+        double need = Math.min(tokens, tokensPerMinute);
+        if (tokensPerMinute > 0 && promptTokens < need) {
+            wait = Math.max(wait, (long) Math.ceil((need - promptTokens) * NANOS_PER_MINUTE / tokensPerMinute));
+        }
+        return wait;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) {
+            return;
+        }
+        lastRefill = now;
+        if (requestsPerMinute > 0) {
+            requestTokens = Math.min(requestsPerMinute, requestTokens + elapsed * requestsPerMinute / NANOS_PER_MINUTE);
+        }
+        if (tokensPerMinute > 0) {
+            promptTokens = Math.min(tokensPerMinute, promptTokens + elapsed * tokensPerMinute / NANOS_PER_MINUTE);
+        }
+    }
+
+    private void admit(int tokens) {
+        inFlight++;
+        if (requestsPerMinute > 0) {
+            requestTokens -= 1;
+        }
+        if (tokensPerMinute > 0) {
+            promptTokens -= tokens;
+        }
+        admitted.incrementAndGet();
+    }
+
+    private void signalHead() {
+        Waiter head = queue.peek();
+        if (head != null) {
+            head.condition.signal();
+        }
+    }
+
+    /**
+     * @return 当前并发上限
+     */
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 已放行、尚未归还的请求数
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 当前排队的请求数
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 排队等待时间（纳秒）直方图，立即放行的请求计为0
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    /**
+     * @return 因队列已满或等待超时被拒绝的请求数
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return 节点返回429/503的次数
+     */
+    public long getOverloadCount() {
+        return overloads.get();
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        final Priority priority;
+        final long sequence;
+        final Condition condition;
+
+        Waiter(Priority priority, long sequence, Condition condition) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            int cmp = priority.compareTo(o.priority);
+            return cmp != 0 ? cmp : Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.llm.ttsql.routing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单节点熔断器
+ *
+ * <ul>
+ *   <li>CLOSED：正常放行，连续失败达到阈值后进入OPEN</li>
+ *   <li>OPEN：拒绝请求，冷却时间结束后第一个请求进入HALF_OPEN作为探测</li>
+ *   <li>HALF_OPEN：只放行探测请求，成功则恢复CLOSED，失败则重新OPEN；探测被取消时回到OPEN，下一个请求重新探测</li>
+ * </ul>
+ *
+ * @version 1.0
+ */
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    /**
+     * @param failureThreshold 触发熔断的连续失败次数
+     * @param openMillis       熔断持续时间（毫秒）
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 判断当前是否可以发送请求，冷却结束时由本次调用转为半开探测
+     *
+     * @return 可以发送时返回true
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return false;
+    }
+
+    /**
+     * @return 不改变状态的情况下判断是否可用（用于节点挑选时的预判）
+     */
+    public boolean isAvailable() {
+        State current = state.get();
+        return current == State.CLOSED
+                || (current == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis);
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold)) {
+            openedAt = System.currentTimeMillis();
+            state.set(State.OPEN);
+        }
+    }
+
+    /**
+     * 释放未得出结果的探测（被取消或未通过准入），半开状态回到OPEN；
+     * 不更新熔断时间，冷却已经结束，下一个请求即可重新探测
+     */
+    public void releaseProbe() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+}
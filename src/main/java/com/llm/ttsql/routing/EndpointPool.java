@@ -0,0 +1,131 @@
+package com.llm.ttsql.routing;
+
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.exception.SqlGenerationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型节点池
+ *
+ * <p>按{@link LoadBalanceStrategy}在熔断器允许的节点中挑选目标节点，
+ * 重试或对冲请求时优先避开指定节点。</p>
+ *
+ * @version 1.0
+ */
+public class EndpointPool {
+    private final List<LLMEndpoint> endpoints;
+    private final LoadBalanceStrategy strategy;
+    private final AtomicLong hedgesStarted = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    /**
+     * @param backends         节点配置（至少一个）
+     * @param strategy         负载均衡策略
+     * @param failureThreshold 熔断阈值（连续失败次数）
+     * @param openMillis       熔断持续时间（毫秒）
+     */
+    public EndpointPool(List<LLMInfo> backends, LoadBalanceStrategy strategy, int failureThreshold, long openMillis) {
+        if (backends == null || backends.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个模型节点");
+        }
+        List<LLMEndpoint> list = new ArrayList<>(backends.size());
+        for (LLMInfo info : backends) {
+            list.add(new LLMEndpoint(info, new CircuitBreaker(failureThreshold, openMillis)));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.strategy = strategy;
+    }
+
+    /**
+     * 挑选并占用一个节点，调用结束后须调用{@link LLMEndpoint#end(long, Boolean)}
+     *
+     * @param avoid 优先避开的节点（如上次失败的节点），可为null
+     * @return 选中的节点
+     * @throws SqlGenerationException 所有节点均处于熔断状态时抛出
+     */
+    public LLMEndpoint acquire(LLMEndpoint avoid) throws SqlGenerationException {
+        LLMEndpoint selected = pick(avoid, true);
+        if (selected == null) {
+            throw new SqlGenerationException("所有模型节点均处于熔断状态");
+        }
+        return selected;
+    }
+
+    /**
+     * 挑选另一个可用节点用于对冲请求
+     *
+     * @param exclude 必须排除的节点
+     * @return 选中的节点，没有其他可用节点时返回null
+     */
+    public LLMEndpoint acquireOther(LLMEndpoint exclude) {
+        return pick(exclude, false);
+    }
+
+    private LLMEndpoint pick(LLMEndpoint avoid, boolean allowAvoided) {
+        while (true) {
+            LLMEndpoint best = null;
+            for (LLMEndpoint endpoint : endpoints) {
+                if (endpoint == avoid || !endpoint.getCircuitBreaker().isAvailable()) {
+                    continue;
+                }
+                if (best == null || better(endpoint, best)) {
+                    best = endpoint;
+                }
+            }
+            if (best == null && allowAvoided && avoid != null && avoid.getCircuitBreaker().isAvailable()) {
+                best = avoid;
+            }
+            if (best == null) {
+                return null;
+            }
+            // 冷却结束的节点由第一个请求转为半开探测，其余并发请求重新挑选
+            if (best.getCircuitBreaker().tryAcquire()) {
+                best.begin();
+                return best;
+            }
+        }
+    }
+
+    private boolean better(LLMEndpoint a, LLMEndpoint b) {
+        if (strategy == LoadBalanceStrategy.LOWEST_LATENCY) {
+            int cmp = Double.compare(a.getEwmaNanos(), b.getEwmaNanos());
+            return cmp != 0 ? cmp < 0 : a.getOutstanding() < b.getOutstanding();
+        }
+        int cmp = Integer.compare(a.getOutstanding(), b.getOutstanding());
+        return cmp != 0 ? cmp < 0 : a.getEwmaNanos() < b.getEwmaNanos();
+    }
+
+    /**
+     * 记录一次发出的对冲请求
+     */
+    public void recordHedgeStarted() {
+        hedgesStarted.incrementAndGet();
+    }
+
+    /**
+     * 记录一次对冲请求先于原请求返回有效结果
+     */
+    public void recordHedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+
+    public long getHedgesStarted() {
+        return hedgesStarted.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    public List<LLMEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+}
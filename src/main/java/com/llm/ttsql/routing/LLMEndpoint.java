@@ -0,0 +1,108 @@
+package com.llm.ttsql.routing;
+
+import com.llm.ttsql.entity.LLMInfo;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 模型节点运行时状态：进行中请求数、延迟统计（EWMA与最近样本p95）及熔断器
+ * @Version: 1.0
+ **/
+public class LLMEndpoint {
+    private static final int SAMPLE_SIZE = 128;
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final LLMInfo llmInfo;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final long[] samples = new long[SAMPLE_SIZE];
+    private int sampleCount;
+    private int sampleIndex;
+    private volatile double ewmaNanos;
+
+    public LLMEndpoint(LLMInfo llmInfo, CircuitBreaker circuitBreaker) {
+        this.llmInfo = llmInfo;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public LLMInfo getLlmInfo() {
+        return llmInfo;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    /**
+     * 请求结束
+     *
+     * @param latencyNanos 耗时
+     * @param failure      是否为节点故障（网络错误、5xx、429），被取消的请求传null表示不计入统计；
+     *                     若该请求是半开探测，熔断器回到OPEN以便下一个请求重新探测
+     */
+    public void end(long latencyNanos, Boolean failure) {
+        outstanding.decrementAndGet();
+        if (failure == null) {
+            circuitBreaker.releaseProbe();
+            return;
+        }
+        if (failure) {
+            failures.incrementAndGet();
+            circuitBreaker.onFailure();
+            return;
+        }
+        circuitBreaker.onSuccess();
+        synchronized (samples) {
+            samples[sampleIndex] = latencyNanos;
+            sampleIndex = (sampleIndex + 1) % SAMPLE_SIZE;
+            sampleCount = Math.min(sampleCount + 1, SAMPLE_SIZE);
+            ewmaNanos = ewmaNanos == 0 ? latencyNanos : ewmaNanos + EWMA_ALPHA * (latencyNanos - ewmaNanos);
+        }
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public double getAvgLatencyMillis() {
+        return ewmaNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 最近成功请求延迟的p95（毫秒），样本数不足minSamples时返回-1
+     */
+    public long getP95LatencyMillis(int minSamples) {
+        long[] copy;
+        synchronized (samples) {
+            if (sampleCount < minSamples || sampleCount == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(copy);
+        return TimeUnit.NANOSECONDS.toMillis(copy[(int) Math.ceil(copy.length * 0.95) - 1]);
+    }
+
+    double getEwmaNanos() {
+        return ewmaNanos;
+    }
+}
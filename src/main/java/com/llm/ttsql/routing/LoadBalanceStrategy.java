@@ -0,0 +1,17 @@
+package com.llm.ttsql.routing;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 多节点负载均衡策略
+ * @Version: 1.0
+ **/
+public enum LoadBalanceStrategy {
+    /**
+     * 选择进行中请求数最少的节点，相同时选择平均延迟较低的节点
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * 选择平均延迟（指数加权）最低的节点，相同时选择进行中请求数较少的节点
+     */
+    LOWEST_LATENCY
+}
@@ -0,0 +1,162 @@
+package com.llm.ttsql.session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 一个对话会话：最近几轮的问题与SQL、更早问题的摘要，以及会话首轮选定的表
+ * <p>历史按字符数封顶：超出{@link SessionStore#historyTurns(int)}轮或{@link SessionStore#maxSessionChars(int)}
+ * 字符时，最早的一轮只保留问题并并入摘要，摘要超出{@link SessionStore#maxSummaryChars(int)}时丢弃最早的问题。
+ * 摘要在本地拼接，不额外调用模型。</p>
+ * @Version: 1.0
+ **/
+public final class ConversationSession {
+    private static final String SUMMARY_SEPARATOR = "；";
+    private static final String ELLIPSIS = "…";
+
+    private final String id;
+    private final int historyTurns;
+    private final int maxSummaryChars;
+    private final int maxSessionChars;
+    private final ArrayDeque<Turn> turns;
+    private String summary;
+    //首轮选定的表，null表示尚未选定或使用全部缓存表
+    private String[] tableNames;
+    private int turnCount;
+    private int retainedChars;
+    //最近一次访问时间，由SessionStore在自身的锁内维护
+    long lastAccess;
+
+    ConversationSession(String id, int historyTurns, int maxSummaryChars, int maxSessionChars) {
+        this.id = id;
+        this.historyTurns = historyTurns;
+        this.maxSummaryChars = Math.min(maxSummaryChars, maxSessionChars);
+        this.maxSessionChars = maxSessionChars;
+        this.turns = new ArrayDeque<>(historyTurns + 1);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 记录一轮问答，并按轮数与字符上限把较早的轮次并入摘要
+     */
+    public synchronized void addTurn(String question, String sql) {
+        Turn turn = new Turn(question, sql);
+        turns.addLast(turn);
+        retainedChars += turn.chars();
+        turnCount++;
+        while (turns.size() > historyTurns || retainedChars > maxSessionChars && !turns.isEmpty()) {
+            Turn oldest = turns.removeFirst();
+            retainedChars -= oldest.chars();
+            summarize(oldest.question);
+        }
+    }
+
+    private void summarize(String question) {
+        if (maxSummaryChars == 0) {
+            return;
+        }
+        int before = summary == null ? 0 : summary.length();
+        String text = summary == null ? question : summary + SUMMARY_SEPARATOR + question;
+        if (text.length() > maxSummaryChars) {
+            // 从最早的问题开始丢弃，单个问题超长时截断
+            int cut = text.indexOf(SUMMARY_SEPARATOR, text.length() - maxSummaryChars + ELLIPSIS.length());
+            text = cut >= 0 ? ELLIPSIS + text.substring(cut + SUMMARY_SEPARATOR.length())
+                    : text.substring(text.length() - maxSummaryChars);
+        }
+        summary = text;
+        retainedChars += text.length() - before;
+    }
+
+    /**
+     * 渲染供提示词使用的历史，每项以换行开头
+     *
+     * @return 历史文本，会话尚无问答（或未保留任何历史）时返回null
+     */
+    public synchronized String renderHistory() {
+        if (turns.isEmpty() && summary == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(retainedChars + 32 * (turns.size() + 1));
+        if (summary != null) {
+            sb.append("\n较早的问题：").append(summary);
+        }
+        for (Turn turn : turns) {
+            sb.append("\n问题：").append(turn.question).append("\nSQL：").append(turn.sql);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 会话选定的表名（只读），尚未选定时返回null
+     */
+    public synchronized List<String> getTableNames() {
+        return tableNames == null ? null : Collections.unmodifiableList(Arrays.asList(tableNames));
+    }
+
+    /**
+     * 设置会话使用的表，之后的追问直接复用；null表示重新选择
+     */
+    public synchronized void setTableNames(List<String> names) {
+        tableNames = names == null ? null : names.toArray(new String[0]);
+    }
+
+    /**
+     * @return 仍保留原文的最近几轮（按时间顺序）
+     */
+    public synchronized List<Turn> getTurns() {
+        return new ArrayList<>(turns);
+    }
+
+    /**
+     * @return 较早问题的摘要，没有时返回null
+     */
+    public synchronized String getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return 会话累计的问答轮数（包括已并入摘要的）
+     */
+    public synchronized int getTurnCount() {
+        return turnCount;
+    }
+
+    /**
+     * @return 保留的历史字符数（最近几轮的问题与SQL加上摘要），不超过{@link SessionStore#maxSessionChars(int)}
+     */
+    public synchronized int getRetainedChars() {
+        return retainedChars;
+    }
+
+    /**
+     * 一轮问答
+     */
+    public static final class Turn {
+        private final String question;
+        private final String sql;
+
+        Turn(String question, String sql) {
+            this.question = question;
+            this.sql = sql;
+        }
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        int chars() {
+            return question.length() + sql.length();
+        }
+    }
+}
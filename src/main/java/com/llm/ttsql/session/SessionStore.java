@@ -0,0 +1,189 @@
+package com.llm.ttsql.session;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对话会话存储
+ *
+ * <p>按会话ID保存{@link ConversationSession}，会话数超出上限时淘汰最久未访问的会话（LRU），
+ * 超过空闲时间未访问的会话在下次访问存储时清除（TTL）。每个会话的历史按轮数与字符数封顶，
+ * 因此整体内存约为 会话上限 x 单会话上限。</p>
+ *
+ * <pre>{@code
+ * Config config = new Config().sessionStore(
+ *         new SessionStore(50_000, 30 * 60 * 1000L).historyTurns(3).maxSessionChars(4000));
+ * g.generateSQLInSession("analyst-42", "上个月各产品的销售额");
+ * g.generateSQLInSession("analyst-42", "按部门呢？");
+ * }</pre>
+ *
+ * @version 1.0
+ */
+public class SessionStore {
+    private final int maxSessions;
+    private final long idleTtlMillis;
+    private int historyTurns = 3;
+    private int maxSummaryChars = 500;
+    private int maxSessionChars = 4000;
+    private final LinkedHashMap<String, ConversationSession> sessions;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSessions   最大会话数（超出后按LRU淘汰）
+     * @param idleTtlMillis 会话空闲多久后过期（毫秒），小于等于0表示不过期
+     */
+    public SessionStore(int maxSessions, long idleTtlMillis) {
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("会话数上限必须大于0");
+        }
+        this.maxSessions = maxSessions;
+        this.idleTtlMillis = idleTtlMillis;
+        this.sessions = new LinkedHashMap<String, ConversationSession>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ConversationSession> eldest) {
+                if (size() > SessionStore.this.maxSessions) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param historyTurns 保留原文（问题与SQL）的最近轮数，更早的轮次只保留问题并入摘要
+     */
+    public SessionStore historyTurns(int historyTurns) {
+        if (historyTurns < 0) {
+            throw new IllegalArgumentException("历史轮数不能为负数");
+        }
+        this.historyTurns = historyTurns;
+        return this;
+    }
+
+    /**
+     * @param maxSummaryChars 较早问题摘要的最大字符数，0表示不保留摘要
+     */
+    public SessionStore maxSummaryChars(int maxSummaryChars) {
+        if (maxSummaryChars < 0) {
+            throw new IllegalArgumentException("摘要字符数不能为负数");
+        }
+        this.maxSummaryChars = maxSummaryChars;
+        return this;
+    }
+
+    /**
+     * @param maxSessionChars 单个会话保留的历史最大字符数（最近几轮加摘要）
+     */
+    public SessionStore maxSessionChars(int maxSessionChars) {
+        if (maxSessionChars <= 0) {
+            throw new IllegalArgumentException("会话字符数上限必须大于0");
+        }
+        this.maxSessionChars = maxSessionChars;
+        return this;
+    }
+
+    /**
+     * 获取会话，不存在或已过期时新建；设置项的修改只影响之后新建的会话
+     *
+     * @param id 会话ID
+     * @return 会话
+     */
+    public ConversationSession getOrCreate(String id) {
+        Objects.requireNonNull(id, "会话ID不能为空");
+        long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            purgeExpired(now);
+            ConversationSession session = sessions.get(id);
+            if (session == null) {
+                session = new ConversationSession(id, historyTurns, maxSummaryChars, maxSessionChars);
+                sessions.put(id, session);
+                created.incrementAndGet();
+            }
+            session.lastAccess = now;
+            return session;
+        }
+    }
+
+    /**
+     * @param id 会话ID
+     * @return 会话，不存在或已过期时返回null
+     */
+    public ConversationSession get(String id) {
+        long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            purgeExpired(now);
+            ConversationSession session = sessions.get(id);
+            if (session != null) {
+                session.lastAccess = now;
+            }
+            return session;
+        }
+    }
+
+    /**
+     * 结束会话
+     *
+     * @return 会话是否存在
+     */
+    public boolean remove(String id) {
+        synchronized (sessions) {
+            return sessions.remove(id) != null;
+        }
+    }
+
+    /**
+     * 清除全部会话（不影响统计）
+     */
+    public void clear() {
+        synchronized (sessions) {
+            sessions.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return 因空闲超时清除的会话数
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * @return 因超出会话数上限淘汰的会话数
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * 清除空闲超时的会话；访问顺序下最久未访问的会话在最前，遇到未过期的即可停止。调用方需持有sessions的锁
+     */
+    private void purgeExpired(long now) {
+        if (idleTtlMillis <= 0) {
+            return;
+        }
+        Iterator<ConversationSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastAccess <= idleTtlMillis) {
+                break;
+            }
+            it.remove();
+            expired.incrementAndGet();
+        }
+    }
+}
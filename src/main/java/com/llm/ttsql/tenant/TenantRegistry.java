@@ -0,0 +1,196 @@
+package com.llm.ttsql.tenant;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.cache.SchemaInterner;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 多租户生成器注册表
+ * <p>每个租户一个{@link GenerateSQLWithLLM}，各自持有独立的模型连接配置（{@link LLMInfo}）。
+ * 租户的表结构 = 公共表结构 - 租户排除的表 + 租户自有或改动过的表（覆盖层）。</p>
+ * <p>所有租户通过同一个{@link SchemaInterner}缓存表结构：结构相同的表、列与字符串在全部租户之间只保留一份，
+ * 每个租户额外占用的只是快照中的引用与各自覆盖层中的表。每个租户使用配置的副本，调用方传入的{@link Config}不会被修改；
+ * 未指定租户配置时，副本中的连接池、指标直方图等组件在租户之间仍是同一实例。</p>
+ * <p>典型用法：</p>
+ * <pre>{@code
+ * TenantRegistry registry = new TenantRegistry(config);
+ * registry.setBaseTables(commonTables);
+ * registry.register("tenant-a", llmA, tenantATables, Collections.singleton("t_legacy"));
+ * String sql = registry.get("tenant-a").generateSQL(question);
+ * }</pre>
+ * @Version: 1.0
+ **/
+public class TenantRegistry {
+    private final Config config;
+    private final SchemaInterner interner;
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private volatile List<TableMeta> baseTables = Collections.emptyList();
+
+    public TenantRegistry() {
+        this(new Config());
+    }
+
+    /**
+     * @param config 租户默认使用的配置，注册表保存其副本；未配置驻留池时副本使用新建的驻留池
+     */
+    public TenantRegistry(Config config) {
+        this.config = Objects.requireNonNull(config).copy();
+        if (this.config.getSchemaInterner() == null) {
+            this.config.schemaInterner(new SchemaInterner());
+        }
+        this.interner = this.config.getSchemaInterner();
+    }
+
+    /**
+     * 设置所有租户共用的表结构，已注册的租户随之刷新
+     *
+     * @param tables 公共表结构
+     */
+    public synchronized void setBaseTables(List<TableMeta> tables) {
+        this.baseTables = Collections.unmodifiableList(intern(Objects.requireNonNull(tables)));
+        for (Tenant tenant : tenants.values()) {
+            apply(tenant);
+        }
+    }
+
+    public List<TableMeta> getBaseTables() {
+        return baseTables;
+    }
+
+    /**
+     * 注册只使用公共表结构的租户
+     */
+    public GenerateSQLWithLLM register(String tenantId, LLMInfo llmInfo) {
+        return register(tenantId, llmInfo, config, null, null);
+    }
+
+    /**
+     * 注册租户，使用注册表配置的副本
+     *
+     * @param tenantId 租户标识
+     * @param llmInfo  该租户的模型连接配置
+     * @param overlay  租户自有或与公共结构不同的表，按表名覆盖公共表（可为null）
+     * @param excluded 该租户没有的公共表（可为null）
+     * @return 租户的生成器
+     */
+    public GenerateSQLWithLLM register(String tenantId, LLMInfo llmInfo, List<TableMeta> overlay,
+                                       Collection<String> excluded) {
+        return register(tenantId, llmInfo, config, overlay, excluded);
+    }
+
+    /**
+     * 注册租户，使用租户自己配置的副本；配置中未指定驻留池时副本使用注册表的驻留池
+     *
+     * @throws IllegalArgumentException 租户已存在时抛出
+     */
+    public synchronized GenerateSQLWithLLM register(String tenantId, LLMInfo llmInfo, Config tenantConfig,
+                                                    List<TableMeta> overlay, Collection<String> excluded) {
+        Objects.requireNonNull(tenantId, "租户标识不能为空");
+        if (tenants.containsKey(tenantId)) {
+            throw new IllegalArgumentException("租户已存在: " + tenantId);
+        }
+        Config copy = tenantConfig.copy();
+        if (copy.getSchemaInterner() == null) {
+            copy.schemaInterner(interner);
+        }
+        Tenant tenant = new Tenant(new GenerateSQLWithLLM(llmInfo, null, copy));
+        tenant.overlay = intern(overlay);
+        tenant.excluded = excluded == null ? Collections.emptySet() : new HashSet<>(excluded);
+        apply(tenant);
+        tenants.put(tenantId, tenant);
+        return tenant.generator;
+    }
+
+    /**
+     * 替换租户的覆盖层与排除表
+     *
+     * @throws IllegalArgumentException 租户不存在时抛出
+     */
+    public synchronized void updateOverlay(String tenantId, List<TableMeta> overlay, Collection<String> excluded) {
+        Tenant tenant = tenants.get(tenantId);
+        if (tenant == null) {
+            throw new IllegalArgumentException("租户不存在: " + tenantId);
+        }
+        tenant.overlay = intern(overlay);
+        tenant.excluded = excluded == null ? Collections.emptySet() : new HashSet<>(excluded);
+        apply(tenant);
+    }
+
+    /**
+     * @return 租户的生成器，不存在时返回null
+     */
+    public GenerateSQLWithLLM get(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        return tenant == null ? null : tenant.generator;
+    }
+
+    /**
+     * @return 被移除租户的生成器，不存在时返回null
+     */
+    public synchronized GenerateSQLWithLLM remove(String tenantId) {
+        Tenant tenant = tenants.remove(tenantId);
+        return tenant == null ? null : tenant.generator;
+    }
+
+    public Set<String> getTenantIds() {
+        return Collections.unmodifiableSet(tenants.keySet());
+    }
+
+    public int size() {
+        return tenants.size();
+    }
+
+    public SchemaInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * 注册表只保留驻留后的共享表，调用方传入的副本可以被回收
+     */
+    private List<TableMeta> intern(List<TableMeta> tables) {
+        if (tables == null || tables.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<TableMeta> shared = new ArrayList<>(tables.size());
+        for (TableMeta table : tables) {
+            shared.add(interner.intern(table).getTable());
+        }
+        return shared;
+    }
+
+    /**
+     * 合并公共表与租户覆盖层，整体刷新租户的生成器
+     */
+    private void apply(Tenant tenant) {
+        Map<String, TableMeta> merged = new LinkedHashMap<>();
+        for (TableMeta table : baseTables) {
+            if (!tenant.excluded.contains(table.getTableName())) {
+                merged.put(table.getTableName(), table);
+            }
+        }
+        for (TableMeta table : tenant.overlay) {
+            merged.put(table.getTableName(), table);
+        }
+        if (merged.isEmpty()) {
+            tenant.generator.clearCache();
+        } else {
+            tenant.generator.refreshCache(new ArrayList<>(merged.values()));
+        }
+    }
+
+    private static final class Tenant {
+        final GenerateSQLWithLLM generator;
+        List<TableMeta> overlay;
+        Set<String> excluded;
+
+        Tenant(GenerateSQLWithLLM generator) {
+            this.generator = generator;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.llm.ttsql.transport;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+
+import java.util.Map;
+
+/**
+ * 策略模式大模型HTTP传输接口
+ * <p>实现类需要自行处理连接复用与超时，并在{@link com.llm.ttsql.async.CancellationScope}取消时中止请求</p>
+ */
+public interface LLMTransport {
+    /**
+     * 发送POST请求
+     *
+     * @param url     接口地址
+     * @param headers 请求头
+     * @param body    JSON请求体
+     * @return 响应体
+     * @throws com.llm.ttsql.exception.LLMHttpException 网络错误或响应状态码非2xx时抛出
+     * @throws SqlGenerationException                   其他调用错误
+     */
+    String post(String url, Map<String, String> headers, String body) throws SqlGenerationException;
+
+    /**
+     * 发送POST请求并以server-sent events方式逐个事件读取响应
+     * <p>handler返回false时实现类应立即取消请求，不再读取剩余内容</p>
+     *
+     * @param url     接口地址
+     * @param headers 请求头
+     * @param body    JSON请求体（包含 "stream": true）
+     * @param handler 事件回调
+     * @throws SqlGenerationException 网络错误、状态码非2xx或handler抛出异常时抛出
+     */
+    default void postStream(String url, Map<String, String> headers, String body, StreamHandler handler)
+            throws SqlGenerationException {
+        throw new SqlGenerationException("当前传输实现不支持流式响应: " + getClass().getName());
+    }
+}
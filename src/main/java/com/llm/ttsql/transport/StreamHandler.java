@@ -0,0 +1,18 @@
+package com.llm.ttsql.transport;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+
+/**
+ * 流式响应（server-sent events）处理回调
+ */
+@FunctionalInterface
+public interface StreamHandler {
+    /**
+     * 处理一个事件的data内容（已去除 "data:" 前缀，不包含结束标记 [DONE]）
+     *
+     * @param data 事件数据
+     * @return true继续读取，false立即结束并取消剩余的流
+     * @throws SqlGenerationException 处理失败时抛出，流随之取消
+     */
+    boolean onData(String data) throws SqlGenerationException;
+}
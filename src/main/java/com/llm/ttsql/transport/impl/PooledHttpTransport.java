@@ -0,0 +1,288 @@
+package com.llm.ttsql.transport.impl;
+
+import com.llm.ttsql.async.CancellationScope;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.exception.LLMHttpException;
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.transport.LLMTransport;
+import com.llm.ttsql.transport.StreamHandler;
+import okhttp3.*;
+import okio.BufferedSource;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于OkHttp连接池的默认传输实现
+ *
+ * <ul>
+ *   <li>连接保持（keep-alive）并在请求间复用，空闲超过keepAlive时长的连接被回收</li>
+ *   <li>HTTPS端点通过ALPN协商HTTP/2，多个请求复用同一条连接</li>
+ *   <li>连接超时、读取超时与单次请求的总超时取自{@link Config}</li>
+ *   <li>支持server-sent events流式读取，回调要求结束时立即取消剩余的流</li>
+ *   <li>提供连接池统计：新建连接数、连接获取次数、当前连接数与空闲连接数</li>
+ * </ul>
+ *
+ * <p>相同配置的生成器通过{@link #shared(Config)}共享同一个连接池。</p>
+ *
+ * @version 1.0
+ */
+public class PooledHttpTransport implements LLMTransport {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final Map<String, PooledHttpTransport> SHARED = new ConcurrentHashMap<>();
+
+    private final OkHttpClient client;
+    private final ConnectionPool pool;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+
+    /**
+     * @param connectTimeout     连接超时（毫秒）
+     * @param readTimeout        读取超时（毫秒）
+     * @param maxIdleConnections 连接池最大空闲连接数
+     * @param keepAliveMillis    空闲连接保留时长（毫秒）
+     */
+    public PooledHttpTransport(int connectTimeout, int readTimeout, int maxIdleConnections, long keepAliveMillis) {
+        this(connectTimeout, readTimeout, 0, maxIdleConnections, keepAliveMillis);
+    }
+
+    /**
+     * @param connectTimeout     连接超时（毫秒）
+     * @param readTimeout        读取超时（毫秒）
+     * @param requestTimeout     单次请求的总超时（毫秒），0表示不限制
+     * @param maxIdleConnections 连接池最大空闲连接数
+     * @param keepAliveMillis    空闲连接保留时长（毫秒）
+     */
+    public PooledHttpTransport(int connectTimeout, int readTimeout, int requestTimeout, int maxIdleConnections,
+                               long keepAliveMillis) {
+        this.pool = new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS);
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .callTimeout(requestTimeout, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .socketFactory(new NoDelaySocketFactory())
+                .eventListener(new EventListener() {
+                    @Override
+                    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+                        connectionsCreated.incrementAndGet();
+                    }
+
+                    @Override
+                    public void connectionAcquired(Call call, Connection connection) {
+                        connectionsAcquired.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 获取与配置对应的共享传输实例
+     *
+     * @param config 生成器配置
+     * @return 共享实例
+     */
+    public static PooledHttpTransport shared(Config config) {
+        String key = config.getTimeout() + "/" + config.getReadTimeout() + "/" + config.getRequestTimeout() + "/"
+                + config.getMaxIdleConnections() + "/" + config.getKeepAliveMillis();
+        return SHARED.computeIfAbsent(key, k -> new PooledHttpTransport(config.getTimeout(),
+                config.getReadTimeout(), config.getRequestTimeout(), config.getMaxIdleConnections(),
+                config.getKeepAliveMillis()));
+    }
+
+    @Override
+    public String post(String url, Map<String, String> headers, String body) throws SqlGenerationException {
+        Request.Builder builder = new Request.Builder().url(url).post(RequestBody.create(JSON, body));
+        headers.forEach((name, value) -> {
+            if (value != null) {
+                builder.header(name, value);
+            }
+        });
+        Call call = client.newCall(builder.build());
+        requests.incrementAndGet();
+        // 异步调用被取消时中止请求，阻塞中的读取立即失败
+        CancellationScope scope = CancellationScope.current();
+        AtomicBoolean aborted = new AtomicBoolean();
+        Runnable abort = () -> {
+            aborted.set(true);
+            call.cancel();
+        };
+        if (scope != null) {
+            scope.onCancel(abort);
+        }
+        try (Response response = call.execute()) {
+            ResponseBody responseBody = response.body();
+            String text = responseBody == null ? "" : responseBody.string();
+            if (!response.isSuccessful()) {
+                throw new LLMHttpException(response.code(), "大模型接口返回HTTP " + response.code() + ": " + text);
+            }
+            return text;
+        } catch (IOException e) {
+            throw failure(call, aborted, e);
+        } finally {
+            if (scope != null) {
+                scope.remove(abort);
+            }
+        }
+    }
+
+    @Override
+    public void postStream(String url, Map<String, String> headers, String body, StreamHandler handler)
+            throws SqlGenerationException {
+        Request.Builder builder = new Request.Builder().url(url).post(RequestBody.create(JSON, body))
+                .header("Accept", "text/event-stream");
+        headers.forEach((name, value) -> {
+            if (value != null) {
+                builder.header(name, value);
+            }
+        });
+        Call call = client.newCall(builder.build());
+        requests.incrementAndGet();
+        CancellationScope scope = CancellationScope.current();
+        AtomicBoolean aborted = new AtomicBoolean();
+        Runnable abort = () -> {
+            aborted.set(true);
+            call.cancel();
+        };
+        if (scope != null) {
+            scope.onCancel(abort);
+        }
+        try (Response response = call.execute()) {
+            ResponseBody responseBody = response.body();
+            if (!response.isSuccessful() || responseBody == null) {
+                String text = responseBody == null ? "" : responseBody.string();
+                throw new LLMHttpException(response.code(), "大模型接口返回HTTP " + response.code() + ": " + text);
+            }
+            BufferedSource source = responseBody.source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (!line.startsWith("data:")) {
+                    // 空行为事件分隔，其余字段（event/id/注释）忽略
+                    continue;
+                }
+                String data = line.substring(line.length() > 5 && line.charAt(5) == ' ' ? 6 : 5);
+                if ("[DONE]".equals(data)) {
+                    return;
+                }
+                if (!handler.onData(data)) {
+                    // 已拿到需要的内容，取消剩余的流，连接不再复用
+                    call.cancel();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw failure(call, aborted, e);
+        } catch (SqlGenerationException e) {
+            call.cancel();
+            throw e;
+        } finally {
+            if (scope != null) {
+                scope.remove(abort);
+            }
+        }
+    }
+
+    /**
+     * 区分调用方取消、超过总超时与其他连接错误（总超时到达时OkHttp同样会取消请求）
+     */
+    private static LLMHttpException failure(Call call, AtomicBoolean aborted, IOException e) {
+        if (aborted.get()) {
+            return new LLMHttpException(0, "请求已取消", e);
+        }
+        if (call.isCanceled() && call.timeout().timeoutNanos() > 0) {
+            return new LLMHttpException(0, "大模型http接口请求超时（超过总超时时间）", e);
+        }
+        return new LLMHttpException(0, "大模型http接口连接出错: " + e.getMessage(), e);
+    }
+
+    /**
+     * @return 已发送的请求数
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return 累计新建的TCP连接数
+     */
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    /**
+     * @return 累计获取连接的次数（包括复用），与新建连接数之差即复用次数
+     */
+    public long getConnectionsAcquired() {
+        return connectionsAcquired.get();
+    }
+
+    /**
+     * @return 连接池当前持有的连接数
+     */
+    public int getConnectionCount() {
+        return pool.connectionCount();
+    }
+
+    /**
+     * @return 连接池当前空闲连接数
+     */
+    public int getIdleConnectionCount() {
+        return pool.idleConnectionCount();
+    }
+
+    /**
+     * 关闭所有空闲连接
+     */
+    public void evictAll() {
+        pool.evictAll();
+    }
+
+    /**
+     * 关闭Nagle算法：请求头与请求体分段写出时，避免与服务端延迟ACK叠加出约40ms的停顿
+     */
+    private static final class NoDelaySocketFactory extends SocketFactory {
+        private final SocketFactory delegate = SocketFactory.getDefault();
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return configure(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return configure(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return configure(delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        private static Socket configure(Socket socket) throws IOException {
+            socket.setTcpNoDelay(true);
+            return socket;
+        }
+    }
+}
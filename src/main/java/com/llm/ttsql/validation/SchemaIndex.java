@@ -0,0 +1,149 @@
+package com.llm.ttsql.validation;
+
+import com.llm.ttsql.cache.PersistentMap;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+
+import java.util.*;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 表名 -> 列名集合的哈希索引，供SQL校验按表名与列名做O(1)查找
+ * <p>表名与列名统一按小写存储，查找时不区分大小写</p>
+ * <p>内部为不可变映射，读取无需加锁；{@link #copy()}与原索引共享数据，之后各自的修改只复制被修改的路径。
+ * {@link #readOnlyView()}返回的视图不能修改，供快照对外暴露</p>
+ * @Version: 1.0
+ **/
+public class SchemaIndex {
+    private volatile PersistentMap<Set<String>> columnsByTable;
+    private final SchemaIndex parent;
+    private final boolean readOnly;
+
+    public SchemaIndex() {
+        this(null, PersistentMap.empty(), false);
+    }
+
+    private SchemaIndex(SchemaIndex parent, PersistentMap<Set<String>> columnsByTable, boolean readOnly) {
+        this.parent = parent;
+        this.columnsByTable = columnsByTable;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * 添加或替换表
+     */
+    public void put(TableMeta table) {
+        put(table.getTableName(), columnNames(table));
+    }
+
+    /**
+     * 添加或替换表，列名集合可在多个索引之间共享
+     *
+     * @param columnNames {@link #columnNames(TableMeta)}的结果
+     */
+    public synchronized void put(String tableName, Set<String> columnNames) {
+        checkWritable();
+        columnsByTable = columnsByTable.put(normalize(tableName), columnNames);
+    }
+
+    /**
+     * @return 表的小写列名集合（只读）
+     */
+    public static Set<String> columnNames(TableMeta table) {
+        List<ColumnMeta> columns = table.getColumns();
+        Set<String> names = new HashSet<>(columns == null ? 4 : columns.size() * 2);
+        if (columns != null) {
+            for (ColumnMeta column : columns) {
+                if (column.getName() != null) {
+                    names.add(normalize(column.getName()));
+                }
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * 批量添加、替换或删除表，只复制一次被修改的路径
+     *
+     * @param changes 表名 -> {@link #columnNames(TableMeta)}的结果，值为null表示删除该表
+     */
+    public synchronized void apply(Map<String, Set<String>> changes) {
+        checkWritable();
+        PersistentMap.Builder<Set<String>> builder = columnsByTable.toBuilder();
+        changes.forEach((name, columns) -> {
+            if (columns == null) {
+                builder.remove(normalize(name));
+            } else {
+                builder.put(normalize(name), columns);
+            }
+        });
+        columnsByTable = builder.build();
+    }
+
+    public synchronized void remove(String tableName) {
+        checkWritable();
+        columnsByTable = columnsByTable.remove(normalize(tableName));
+    }
+
+    public synchronized void clear() {
+        checkWritable();
+        columnsByTable = PersistentMap.empty();
+    }
+
+    /**
+     * @param tableName 表名（不区分大小写）
+     * @return 该表的小写列名集合，表不存在时返回null
+     */
+    public Set<String> columns(String tableName) {
+        Set<String> columns = columnsByTable.get(normalize(tableName));
+        return columns == null && parent != null ? parent.columns(tableName) : columns;
+    }
+
+    /**
+     * 在当前索引之上叠加额外的表（如调用方临时传入、未缓存的表），当前索引本身不变
+     *
+     * @param tables 额外的表
+     * @return 叠加后的只读视图
+     */
+    public SchemaIndex overlay(Collection<TableMeta> tables) {
+        SchemaIndex view = new SchemaIndex(this, PersistentMap.empty(), false);
+        for (TableMeta table : tables) {
+            view.put(table);
+        }
+        return view;
+    }
+
+    /**
+     * @return 与当前索引内容相同的独立副本（叠加的表一并展开），之后对副本的修改不影响当前索引
+     */
+    public SchemaIndex copy() {
+        if (parent == null) {
+            return new SchemaIndex(null, columnsByTable, false);
+        }
+        SchemaIndex copy = parent.copy();
+        columnsByTable.forEach(copy::put);
+        return copy;
+    }
+
+    /**
+     * @return 当前索引的只读视图，随当前索引的修改而变化；视图的修改方法抛出UnsupportedOperationException，
+     * {@link #overlay(Collection)}与{@link #copy()}得到的仍是可修改的索引
+     */
+    public SchemaIndex readOnlyView() {
+        return readOnly ? this : new SchemaIndex(this, PersistentMap.empty(), true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("只读索引不能修改");
+        }
+    }
+
+    public static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
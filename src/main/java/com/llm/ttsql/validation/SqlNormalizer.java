@@ -0,0 +1,15 @@
+package com.llm.ttsql.validation;
+
+/**
+ * 策略模式sql规范化接口
+ * <p>多候选投票时用于判断两条SQL是否等价：规范化结果相同即视为同一答案，
+ * 因此只应消除不影响语义的差异（空白、大小写、别名命名等）</p>
+ */
+public interface SqlNormalizer {
+    /**
+     * @param sql          待规范化的SQL
+     * @param dataBaseName 目标数据库类型（如MySql、PostgreSQL、Oracle、SqlServer）
+     * @return 规范化后的文本，仅用于比较
+     */
+    String normalize(String sql, String dataBaseName);
+}
@@ -0,0 +1,15 @@
+package com.llm.ttsql.validation;
+
+/**
+ * 策略模式sql校验接口
+ * <p>在SQL返回给调用方之前执行，失败原因会原样发回模型用于修复，因此应具体指出出错的表或列</p>
+ */
+public interface SqlValidator {
+    /**
+     * @param sql          待校验的SQL
+     * @param schema       表结构索引
+     * @param dataBaseName 目标数据库类型（如MySql、PostgreSQL、Oracle、SqlServer）
+     * @return 校验失败原因，通过时返回null
+     */
+    String validate(String sql, SchemaIndex schema, String dataBaseName);
+}
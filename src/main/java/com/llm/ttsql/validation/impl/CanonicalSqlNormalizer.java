@@ -0,0 +1,204 @@
+package com.llm.ttsql.validation.impl;
+
+import com.llm.ttsql.validation.SqlNormalizer;
+import com.llm.ttsql.validation.impl.SqlLexer.Token;
+
+import java.util.*;
+
+import static com.llm.ttsql.validation.impl.SqlLexer.*;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 基于词法分析的SQL规范化，消除模型多次采样之间常见的无关差异
+ * <ul>
+ *   <li>空白、注释、结尾分号；关键字与标识符大小写（字符串常量保持原样）</li>
+ *   <li>引号标识符与普通标识符视为相同，{@code <>}与{@code !=}视为相同</li>
+ *   <li>可省略的AS、INNER、OUTER、ASC</li>
+ *   <li>表别名与列别名按首次出现的顺序重命名为a1、a2……，别名限定的列随之改写</li>
+ * </ul>
+ * <p>无法完成词法分析（如字符串未闭合）时退化为合并空白并转小写</p>
+ * @Version: 1.0
+ **/
+public class CanonicalSqlNormalizer implements SqlNormalizer {
+    //其后的AS不表示别名的函数，如CAST(x AS INT)
+    private static final Set<String> TYPE_FUNCTIONS = new HashSet<>(Arrays.asList("cast", "try_cast", "convert"));
+
+    @Override
+    public String normalize(String sql, String dataBaseName) {
+        List<Token> tokens;
+        try {
+            tokens = new SqlLexer(sql, dataBaseName).tokenize();
+        } catch (IllegalStateException e) {
+            return sql.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        }
+        int n = tokens.size();
+        while (n > 0 && tokens.get(n - 1).is(";")) {
+            n--;
+        }
+        tokens = tokens.subList(0, n);
+        boolean[] dropped = new boolean[n];
+        Map<String, String> aliases = collectAliases(tokens, dropped);
+
+        StringBuilder sb = new StringBuilder(sql.length());
+        for (int i = 0; i < n; i++) {
+            Token t = tokens.get(i);
+            if (dropped[i]) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            switch (t.type) {
+                case IDENT:
+                case QUOTED:
+                    String alias = i > 0 && tokens.get(i - 1).is(".") ? null : aliases.get(t.text);
+                    sb.append(alias != null ? alias : t.text);
+                    break;
+                case STRING:
+                    sb.append('\'').append(t.text.replace("'", "''")).append('\'');
+                    break;
+                case SYMBOL:
+                    if (t.is("<") && i + 1 < n && tokens.get(i + 1).is(">") && tokens.get(i + 1).pos == t.pos + 1) {
+                        sb.append("! =");
+                        i++;
+                    } else {
+                        sb.append(t.text);
+                    }
+                    break;
+                default:
+                    sb.append(t.text);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 找出别名定义并按出现顺序分配规范名，同时标记可省略的关键字
+     *
+     * @return 原别名 -> 规范名
+     */
+    private static Map<String, String> collectAliases(List<Token> tokens, boolean[] dropped) {
+        Map<String, String> aliases = new LinkedHashMap<>();
+        //括号栈：括号前的函数名，非函数调用为空串
+        Deque<String> parens = new ArrayDeque<>();
+        //FROM/JOIN后的子查询括号：[括号深度, 是否处于FROM的逗号表列表中]
+        Deque<int[]> derived = new ArrayDeque<>();
+        boolean tableContext = false;
+        boolean tableList = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token t = tokens.get(i);
+            if (t.is("(")) {
+                if (tableContext) {
+                    derived.push(new int[]{parens.size(), tableList ? 1 : 0});
+                    tableContext = false;
+                }
+                Token before = token(tokens, i - 1);
+                parens.push(before.type == IDENT ? before.text : "");
+                continue;
+            }
+            if (t.is(")")) {
+                if (!parens.isEmpty()) {
+                    parens.pop();
+                }
+                if (!derived.isEmpty() && derived.peek()[0] == parens.size()) {
+                    tableList = derived.pop()[1] == 1;
+                    i = readAlias(tokens, i, aliases, dropped);
+                    if (tableList && token(tokens, i + 1).is(",")) {
+                        tableContext = true;
+                        i++;
+                    }
+                }
+                continue;
+            }
+            if ((t.is("inner") || t.is("outer")) && token(tokens, i + 1).is("join")
+                    || t.is("outer") && token(tokens, i + 1).is("apply") || t.is("asc")) {
+                dropped[i] = true;
+                continue;
+            }
+            if (t.is("from") && !TYPE_FUNCTIONS.contains(parens.peek()) || t.is("join")) {
+                tableContext = true;
+                tableList = t.text.equals("from");
+                continue;
+            }
+            if (tableContext) {
+                if (t.is("lateral") || t.is("only")) {
+                    continue;
+                }
+                if (isName(t)) {
+                    int end = i;
+                    while (token(tokens, end + 1).is(".") && isAnyName(token(tokens, end + 2))) {
+                        end += 2;
+                    }
+                    i = token(tokens, end + 1).is("(") ? end : readAlias(tokens, end, aliases, dropped);
+                    tableContext = false;
+                    if (tableList && token(tokens, i + 1).is(",")) {
+                        tableContext = true;
+                        i++;
+                    }
+                    continue;
+                }
+                tableContext = false;
+            }
+            if (t.is("as") && isAnyName(token(tokens, i + 1)) && !TYPE_FUNCTIONS.contains(parens.peek())) {
+                // 列别名；公用表表达式的 name AS ( 不在此列
+                dropped[i] = true;
+                define(aliases, tokens.get(++i).text);
+            } else if (isName(t) && endsExpression(token(tokens, i - 1)) && !token(tokens, i + 1).is(".")
+                    && !token(tokens, i + 1).is("(")) {
+                // 省略AS的列别名
+                define(aliases, t.text);
+            }
+        }
+        return aliases;
+    }
+
+    /**
+     * 读取表或子查询之后可选的别名，返回最后消费的位置
+     */
+    private static int readAlias(List<Token> tokens, int i, Map<String, String> aliases, boolean[] dropped) {
+        Token next = token(tokens, i + 1);
+        if (next.is("as") && isAnyName(token(tokens, i + 2))) {
+            dropped[i + 1] = true;
+            i += 2;
+        } else if (isName(next)) {
+            i += 1;
+        } else {
+            return i;
+        }
+        define(aliases, tokens.get(i).text);
+        return i;
+    }
+
+    private static void define(Map<String, String> aliases, String alias) {
+        aliases.putIfAbsent(alias, "a" + (aliases.size() + 1));
+    }
+
+    private static boolean endsExpression(Token t) {
+        switch (t.type) {
+            case QUOTED:
+            case STRING:
+            case NUMBER:
+                return true;
+            case IDENT:
+                return !LocalSqlValidator.KEYWORDS.contains(t.text) || t.is("end") || t.is("null");
+            case SYMBOL:
+                return t.text.equals(")");
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isName(Token t) {
+        return t.type == QUOTED || t.type == IDENT && !LocalSqlValidator.KEYWORDS.contains(t.text);
+    }
+
+    private static boolean isAnyName(Token t) {
+        return t.type == IDENT || t.type == QUOTED;
+    }
+
+    private static Token token(List<Token> tokens, int i) {
+        return i >= 0 && i < tokens.size() ? tokens.get(i) : NONE;
+    }
+
+    private static final Token NONE = new Token(SYMBOL, "", -1);
+}
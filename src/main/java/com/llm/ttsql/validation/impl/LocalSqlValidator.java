@@ -0,0 +1,425 @@
+package com.llm.ttsql.validation.impl;
+
+import com.llm.ttsql.validation.SchemaIndex;
+import com.llm.ttsql.validation.SqlValidator;
+import com.llm.ttsql.validation.impl.SqlLexer.Token;
+
+import java.util.*;
+
+import static com.llm.ttsql.validation.impl.SqlLexer.*;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 基于表结构索引的本地SQL校验
+ * <p>校验内容：</p>
+ * <ol>
+ *   <li>只包含一条语句，且为SELECT查询（允许WITH公用表表达式），不含INSERT/UPDATE/DELETE/DDL/INTO等</li>
+ *   <li>FROM/JOIN引用的表均存在（公用表表达式与子查询别名除外）</li>
+ *   <li>“别名.列”形式的列存在于对应表中</li>
+ *   <li>未限定的列至少存在于语句引用的某张表中；引用了子查询或公用表表达式时跳过此项</li>
+ * </ol>
+ * <p>只做词法级分析，不构建语法树；无法确定的写法一律放行，避免误报</p>
+ * @Version: 1.0
+ **/
+public class LocalSqlValidator implements SqlValidator {
+    //单次最多报告的问题数
+    private static final int MAX_ERRORS = 5;
+
+    static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "select", "from", "where", "and", "or", "not", "in", "is", "null", "like", "ilike", "between",
+            "exists", "case", "when", "then", "else", "end", "as", "on", "using", "join", "left", "right",
+            "inner", "outer", "full", "cross", "natural", "straight_join", "group", "by", "order", "having",
+            "limit", "offset", "union", "all", "distinct", "distinctrow", "intersect", "except", "minus", "asc",
+            "desc", "with", "recursive", "over", "partition", "rows", "range", "groups", "preceding", "following",
+            "unbounded", "current", "row", "interval", "true", "false", "unknown", "fetch", "first", "next",
+            "only", "top", "percent", "ties", "escape", "separator", "div", "mod", "xor", "regexp", "rlike",
+            "similar", "to", "binary", "collate", "nulls", "last", "any", "some", "within", "filter", "window",
+            "lateral", "materialized", "for", "both", "leading", "trailing", "at", "zone", "rollup", "cube",
+            "grouping", "sets", "qualify", "pivot", "unpivot", "connect", "start", "prior", "nocycle", "siblings",
+            "year", "quarter", "month", "week", "day", "hour", "minute", "second", "microsecond",
+            "year_month", "day_hour", "day_minute", "day_second", "hour_minute", "hour_second", "minute_second",
+            "date", "time", "timestamp", "datetime", "char", "varchar", "varchar2", "nvarchar", "signed",
+            "unsigned", "decimal", "numeric", "number", "int", "integer", "bigint", "smallint", "tinyint",
+            "float", "double", "precision", "real", "text", "boolean", "json",
+            "current_date", "current_time", "current_timestamp", "current_user", "localtime", "localtimestamp",
+            "sysdate", "systimestamp", "rownum", "rowid", "level", "dual"));
+
+    /**
+     * 紧跟“(”时不表示函数调用的关键字
+     */
+    private static final Set<String> STRUCTURAL = new HashSet<>(Arrays.asList(
+            "select", "from", "where", "and", "or", "not", "in", "exists", "as", "on", "using", "join",
+            "union", "all", "any", "some", "when", "then", "else", "over", "filter", "within", "lateral",
+            "by", "having", "intersect", "except", "minus", "with", "is", "between", "like", "case"));
+
+    private static final Set<String> FORBIDDEN = new HashSet<>(Arrays.asList(
+            "insert", "update", "delete", "drop", "alter", "create", "truncate", "merge", "grant", "revoke",
+            "into", "call", "exec", "execute", "rename", "load", "handler", "lock", "unlock", "commit",
+            "rollback", "replace", "upsert"));
+
+    /**
+     * 可以结束一个表达式的关键字，其后紧跟的标识符视为省略AS的别名
+     */
+    private static final Set<String> EXPRESSION_END_KEYWORDS = new HashSet<>(Arrays.asList(
+            "end", "null", "true", "false"));
+
+    @Override
+    public String validate(String sql, SchemaIndex schema, String dataBaseName) {
+        if (sql == null || sql.trim().isEmpty()) {
+            return "SQL为空";
+        }
+        List<Token> tokens;
+        try {
+            tokens = new SqlLexer(sql, dataBaseName).tokenize();
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+        int n = tokens.size();
+        while (n > 0 && tokens.get(n - 1).is(";")) {
+            n--;
+        }
+        if (n == 0) {
+            return "SQL为空";
+        }
+        return new Analysis(tokens.subList(0, n), schema).run();
+    }
+
+    private static boolean isName(Token t) {
+        return t.type == QUOTED || t.type == IDENT && !KEYWORDS.contains(t.text);
+    }
+
+    /**
+     * 单条语句的分析过程
+     */
+    private static final class Analysis {
+        private final List<Token> tokens;
+        private final SchemaIndex schema;
+        //括号栈：true表示函数调用的括号
+        private final Deque<Boolean> parens = new ArrayDeque<>();
+        //FROM/JOIN后的子查询括号：[括号深度, 是否处于FROM的逗号表列表中]
+        private final Deque<int[]> derived = new ArrayDeque<>();
+        //公用表表达式、子查询别名等列未知的虚拟表
+        private final Set<String> virtualTables = new HashSet<>();
+        //别名 -> 表名（虚拟表为null）
+        private final Map<String, String> aliases = new HashMap<>();
+        //SELECT列表等处定义的列别名
+        private final Set<String> columnAliases = new HashSet<>();
+        private final List<Token> tableRefs = new ArrayList<>();
+        //限定列：[限定符, 列名]
+        private final List<Token[]> qualifiedRefs = new ArrayList<>();
+        private final List<Token> columnRefs = new ArrayList<>();
+        private final Set<String> errors = new LinkedHashSet<>();
+
+        Analysis(List<Token> tokens, SchemaIndex schema) {
+            this.tokens = tokens;
+            this.schema = schema;
+        }
+
+        String run() {
+            String statementError = checkStatement();
+            if (statementError != null) {
+                return statementError;
+            }
+            scan();
+            resolve();
+            return errors.isEmpty() ? null : String.join("；", errors);
+        }
+
+        /**
+         * 单条SELECT语句、不含写操作
+         */
+        private String checkStatement() {
+            int first = 0;
+            while (first < tokens.size() && tokens.get(first).is("(")) {
+                first++;
+            }
+            if (first >= tokens.size() || !tokens.get(first).is("select") && !tokens.get(first).is("with")) {
+                return "只允许SELECT查询语句";
+            }
+            for (int i = 0; i < tokens.size(); i++) {
+                Token t = tokens.get(i);
+                if (t.is(";")) {
+                    return "只允许一条SQL语句";
+                }
+                if (t.type == IDENT && FORBIDDEN.contains(t.text) && !next(i).is("(") && !prev(i).is(".")) {
+                    return "只允许SELECT查询语句，不能包含" + t.text.toUpperCase(Locale.ROOT);
+                }
+            }
+            return null;
+        }
+
+        private void scan() {
+            boolean tableContext = false;
+            boolean tableList = false;
+            for (int i = 0; i < tokens.size(); i++) {
+                Token t = tokens.get(i);
+                if (t.is("(")) {
+                    Token before = prev(i);
+                    boolean function = before.type == QUOTED
+                            || before.type == IDENT && !STRUCTURAL.contains(before.text);
+                    if (tableContext) {
+                        // FROM/JOIN后的子查询或表函数，闭合后读取别名
+                        derived.push(new int[]{parens.size(), tableList ? 1 : 0});
+                        tableContext = false;
+                    }
+                    parens.push(function);
+                    continue;
+                }
+                if (t.is(")")) {
+                    if (!parens.isEmpty()) {
+                        parens.pop();
+                    }
+                    if (!derived.isEmpty() && derived.peek()[0] == parens.size()) {
+                        tableList = derived.pop()[1] == 1;
+                        i = readAlias(i, null);
+                        if (tableList && next(i).is(",")) {
+                            tableContext = true;
+                            i++;
+                        }
+                    }
+                    continue;
+                }
+                if (t.is("from") && !inFunction() && !isDistinctFrom(i) || t.is("join")) {
+                    tableContext = true;
+                    tableList = t.text.equals("from");
+                    continue;
+                }
+                if (t.is("as") && (next(i).is("(") || next(i).is("not") || next(i).is("materialized"))) {
+                    registerCte(i);
+                    continue;
+                }
+                if (tableContext) {
+                    if (t.is("lateral") || t.is("only")) {
+                        continue;
+                    }
+                    if (isName(t) || t.is("dual")) {
+                        int end = nameEnd(i);
+                        if (next(end).is("(")) {
+                            // 表函数，如generate_series(...)
+                            i = end;
+                            continue;
+                        }
+                        tableRefs.add(tokens.get(end));
+                        i = readAlias(end, tokens.get(end).text);
+                        tableContext = false;
+                        if (tableList && next(i).is(",")) {
+                            tableContext = true;
+                            i++;
+                        }
+                        continue;
+                    }
+                    tableContext = false;
+                }
+                if (isName(t)) {
+                    i = readName(i);
+                }
+            }
+        }
+
+        /**
+         * x IS [NOT] DISTINCT FROM y 中的FROM
+         */
+        private boolean isDistinctFrom(int i) {
+            return prev(i).is("distinct") && (prev(i - 1).is("is") || prev(i - 1).is("not"));
+        }
+
+        /**
+         * @return 点号连接的名称（如schema.table）最后一段的位置
+         */
+        private int nameEnd(int i) {
+            int end = i;
+            while (next(end).is(".") && isAnyName(next(end + 1))) {
+                end += 2;
+            }
+            return end;
+        }
+
+        /**
+         * 读取可选的别名（AS alias 或直接跟随的标识符），返回最后消费的位置
+         *
+         * @param table 别名对应的表名，子查询为null
+         */
+        private int readAlias(int i, String table) {
+            Token n = next(i);
+            if (n.is("as") && isAnyName(next(i + 1))) {
+                i += 2;
+            } else if (isName(n)) {
+                i += 1;
+            } else {
+                return i;
+            }
+            String alias = tokens.get(i).text;
+            aliases.put(alias, table);
+            if (table == null) {
+                virtualTables.add(alias);
+            }
+            if (next(i).is("(")) {
+                // 子查询别名后的列名列表
+                int j = i + 2;
+                while (j < tokens.size() && !tokens.get(j).is(")")) {
+                    if (isAnyName(tokens.get(j))) {
+                        columnAliases.add(tokens.get(j).text);
+                    }
+                    j++;
+                }
+                i = j;
+            }
+            return i;
+        }
+
+        /**
+         * 公用表表达式：name [(col, ...)] AS (...)
+         */
+        private void registerCte(int asIndex) {
+            int j = asIndex - 1;
+            if (j >= 0 && tokens.get(j).is(")")) {
+                int depth = 0;
+                for (; j >= 0; j--) {
+                    Token t = tokens.get(j);
+                    if (t.is(")")) {
+                        depth++;
+                    } else if (t.is("(") && --depth == 0) {
+                        break;
+                    } else if (depth == 1 && isAnyName(t)) {
+                        columnAliases.add(t.text);
+                    }
+                }
+                j--;
+            }
+            if (j >= 0 && isAnyName(tokens.get(j))) {
+                virtualTables.add(tokens.get(j).text);
+            }
+        }
+
+        /**
+         * 处理表达式中的标识符：函数名、限定列、别名或未限定列
+         */
+        private int readName(int i) {
+            Token t = tokens.get(i);
+            Token before = prev(i);
+            if (before.is("::") || before.is(".") || before.is("over")
+                    || before.is("using") && inFunction()) {
+                // 类型转换、窗口名、CONVERT(x USING charset)中的字符集
+                return i;
+            }
+            if (next(i).is(".")) {
+                int end = i;
+                while (next(end).is(".") && (isAnyName(next(end + 1)) || next(end + 1).is("*"))) {
+                    end += 2;
+                }
+                if (end == i || next(end).is("(")) {
+                    return end;
+                }
+                Token last = tokens.get(end);
+                Token qualifier = tokens.get(end - 2);
+                qualifiedRefs.add(new Token[]{qualifier, last.is("*") ? null : last});
+                return end;
+            }
+            if (next(i).is("(")) {
+                return i;
+            }
+            if (before.is("as")) {
+                columnAliases.add(t.text);
+                return i;
+            }
+            if (endsExpression(before)) {
+                // 省略AS的别名
+                columnAliases.add(t.text);
+                return i;
+            }
+            columnRefs.add(t);
+            return i;
+        }
+
+        private void resolve() {
+            Set<String> referenced = new LinkedHashSet<>();
+            // 引用了子查询、公用表表达式或不存在的表时，无法判断未限定列属于哪张表
+            boolean unknownColumns = !virtualTables.isEmpty();
+            for (Token table : tableRefs) {
+                if (virtualTables.contains(table.text) || table.text.equals("dual")) {
+                    continue;
+                }
+                if (schema.columns(table.text) == null) {
+                    error("表 " + table.text + " 不存在");
+                    unknownColumns = true;
+                } else {
+                    referenced.add(table.text);
+                }
+            }
+            for (Token[] ref : qualifiedRefs) {
+                String qualifier = ref[0].text;
+                String table = aliases.containsKey(qualifier) ? aliases.get(qualifier) : qualifier;
+                if (table == null || virtualTables.contains(table)) {
+                    continue;
+                }
+                Set<String> columns = schema.columns(table);
+                if (columns == null) {
+                    if (!aliases.containsKey(qualifier)) {
+                        error("未知的表或别名 " + qualifier);
+                    }
+                } else if (ref[1] != null && !columns.contains(ref[1].text)) {
+                    error("表 " + table + " 中不存在列 " + ref[1].text);
+                }
+            }
+            if (unknownColumns) {
+                return;
+            }
+            for (Token column : columnRefs) {
+                String name = column.text;
+                if (columnAliases.contains(name) || aliases.containsKey(name) || referenced.contains(name)) {
+                    continue;
+                }
+                boolean found = false;
+                for (String table : referenced) {
+                    if (schema.columns(table).contains(name)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    error(referenced.isEmpty() ? "列 " + name + " 不存在"
+                            : "列 " + name + " 不存在于表 " + String.join("、", referenced) + " 中");
+                }
+            }
+        }
+
+        private void error(String message) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(message);
+            }
+        }
+
+        private boolean inFunction() {
+            return !parens.isEmpty() && parens.peek();
+        }
+
+        private boolean endsExpression(Token t) {
+            switch (t.type) {
+                case QUOTED:
+                case STRING:
+                case NUMBER:
+                    return true;
+                case IDENT:
+                    return !KEYWORDS.contains(t.text) || EXPRESSION_END_KEYWORDS.contains(t.text);
+                case SYMBOL:
+                    return t.text.equals(")");
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean isAnyName(Token t) {
+            return t.type == IDENT || t.type == QUOTED;
+        }
+
+        private Token prev(int i) {
+            return i > 0 && i - 1 < tokens.size() ? tokens.get(i - 1) : NONE;
+        }
+
+        private Token next(int i) {
+            return i + 1 < tokens.size() ? tokens.get(i + 1) : NONE;
+        }
+    }
+
+    private static final Token NONE = new Token(SYMBOL, "", -1);
+}
@@ -0,0 +1,186 @@
+package com.llm.ttsql.validation.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @program: Text2SQLForLLM
+ * @Description: 轻量SQL词法分析，按数据库方言处理引号、注释与字符串转义
+ * <ul>
+ *   <li>MySQL：反引号为标识符，双引号为字符串，支持#注释与反斜杠转义</li>
+ *   <li>SQL Server：方括号与双引号为标识符</li>
+ *   <li>其他（PostgreSQL、Oracle等）：双引号为标识符</li>
+ * </ul>
+ * @Version: 1.0
+ **/
+final class SqlLexer {
+    static final int IDENT = 0;
+    static final int QUOTED = 1;
+    static final int STRING = 2;
+    static final int NUMBER = 3;
+    static final int SYMBOL = 4;
+    static final int PARAM = 5;
+
+    /**
+     * 词法单元；标识符的text为小写形式，符号的text为符号本身
+     */
+    static final class Token {
+        final int type;
+        final String text;
+        final int pos;
+
+        Token(int type, String text, int pos) {
+            this.type = type;
+            this.text = text;
+            this.pos = pos;
+        }
+
+        boolean is(String symbolOrWord) {
+            return (type == SYMBOL || type == IDENT) && text.equals(symbolOrWord);
+        }
+    }
+
+    private final String sql;
+    private final boolean mysql;
+    private final boolean sqlServer;
+    private int pos;
+
+    SqlLexer(String sql, String dataBaseName) {
+        this.sql = sql;
+        String db = dataBaseName == null ? "" : dataBaseName.toLowerCase(Locale.ROOT).replace(" ", "");
+        this.mysql = db.contains("mysql") || db.contains("mariadb") || db.contains("tidb")
+                || db.contains("doris") || db.contains("starrocks");
+        this.sqlServer = db.contains("sqlserver") || db.contains("mssql");
+    }
+
+    /**
+     * @return 词法单元列表
+     * @throws IllegalStateException 字符串、引号标识符或注释未闭合时抛出，消息即失败原因
+     */
+    List<Token> tokenize() {
+        List<Token> tokens = new ArrayList<>(Math.max(16, sql.length() / 4));
+        int n = sql.length();
+        while (pos < n) {
+            char c = sql.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '-' && peek(1) == '-' || mysql && c == '#') {
+                while (pos < n && sql.charAt(pos) != '\n') {
+                    pos++;
+                }
+            } else if (c == '/' && peek(1) == '*') {
+                int close = sql.indexOf("*/", pos + 2);
+                if (close < 0) {
+                    throw new IllegalStateException("注释未闭合");
+                }
+                pos = close + 2;
+            } else if (c == '\'') {
+                tokens.add(new Token(STRING, quoted('\'', mysql), pos));
+            } else if (c == '"') {
+                int start = pos;
+                String text = quoted('"', mysql);
+                tokens.add(mysql ? new Token(STRING, text, start) : new Token(QUOTED, lower(text), start));
+            } else if (c == '`' || sqlServer && c == '[') {
+                int start = pos;
+                tokens.add(new Token(QUOTED, lower(quoted(c == '[' ? ']' : '`', false)), start));
+            } else if (isDigit(c) || c == '.' && isDigit(peek(1))) {
+                int start = pos;
+                while (pos < n && (Character.isLetterOrDigit(sql.charAt(pos)) || sql.charAt(pos) == '.'
+                        || sql.charAt(pos) == '_')) {
+                    pos++;
+                }
+                tokens.add(new Token(NUMBER, sql.substring(start, pos), start));
+            } else if (isIdentStart(c)) {
+                int start = pos;
+                pos = identEnd(pos);
+                tokens.add(new Token(IDENT, lower(sql.substring(start, pos)), start));
+            } else if (c == '@' || c == '?' || c == '$' && isDigit(peek(1))) {
+                int start = pos++;
+                while (pos < n && (sql.charAt(pos) == '@' || isIdentPart(sql.charAt(pos)))) {
+                    pos++;
+                }
+                tokens.add(new Token(PARAM, sql.substring(start, pos), start));
+            } else if (c == ':' && peek(1) == ':') {
+                tokens.add(new Token(SYMBOL, "::", pos));
+                pos += 2;
+            } else if (c == ':' && isIdentStart(peek(1))) {
+                int start = pos;
+                pos = identEnd(pos + 1);
+                tokens.add(new Token(PARAM, sql.substring(start, pos), start));
+            } else {
+                tokens.add(new Token(SYMBOL, String.valueOf(c), pos));
+                pos++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 读取引号包围的内容，pos指向起始引号；连续两个结束引号表示引号本身
+     */
+    private String quoted(char close, boolean backslashEscape) {
+        int start = pos;
+        StringBuilder sb = null;
+        int from = ++pos;
+        int n = sql.length();
+        while (pos < n) {
+            char c = sql.charAt(pos);
+            if (backslashEscape && c == '\\' && pos + 1 < n) {
+                sb = append(sb, from, pos).append(sql.charAt(pos + 1));
+                pos += 2;
+                from = pos;
+            } else if (c == close) {
+                if (pos + 1 < n && sql.charAt(pos + 1) == close) {
+                    sb = append(sb, from, pos + 1);
+                    pos += 2;
+                    from = pos;
+                } else {
+                    String text = sb == null ? sql.substring(from, pos) : append(sb, from, pos).toString();
+                    pos++;
+                    return text;
+                }
+            } else {
+                pos++;
+            }
+        }
+        throw new IllegalStateException((close == '\'' || mysql && close == '"' ? "字符串未闭合，起始位置："
+                : "引号标识符未闭合，起始位置：") + start);
+    }
+
+    private StringBuilder append(StringBuilder sb, int from, int to) {
+        if (sb == null) {
+            sb = new StringBuilder();
+        }
+        return sb.append(sql, from, to);
+    }
+
+    private int identEnd(int from) {
+        int end = from;
+        while (end < sql.length() && isIdentPart(sql.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private char peek(int offset) {
+        int i = pos + offset;
+        return i < sql.length() ? sql.charAt(i) : '\0';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentStart(char c) {
+        return c == '_' || Character.isLetter(c);
+    }
+
+    private static boolean isIdentPart(char c) {
+        return c == '_' || c == '$' || Character.isLetterOrDigit(c);
+    }
+
+    private static String lower(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+}
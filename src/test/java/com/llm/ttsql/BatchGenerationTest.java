@@ -0,0 +1,149 @@
+package com.llm.ttsql;
+
+import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.BatchSqlResult;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.PromptConfig;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.TokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量生成：一次请求携带一份表结构，按token预算切分，缺失或无效的条目单独调用兜底
+ */
+class BatchGenerationTest {
+    private static final List<String> QUESTIONS = Arrays.asList("订单总数", "今天的订单数", "订单金额合计");
+
+    @Test
+    void answersAllQuestionsInOneRequest() throws Exception {
+        String reply = batch("{\"id\": 1, \"sql\": \"SELECT COUNT(*) FROM t_order\"}",
+                "{\"id\": 3, \"sql\": \"SELECT SUM(amount) FROM t_order\"}",
+                "{\"id\": 2, \"sql\": \"SELECT COUNT(*) FROM t_order WHERE dt = CURDATE()\"}");
+        try (ScriptedChatServer server = new ScriptedChatServer(reply)) {
+            List<BatchSqlResult> results = generator(server, new Config()).generateSQLBatch(QUESTIONS);
+
+            assertEquals(1, server.requestCount());
+            assertSql(results, "SELECT COUNT(*) FROM t_order", "SELECT COUNT(*) FROM t_order WHERE dt = CURDATE()",
+                    "SELECT SUM(amount) FROM t_order");
+            String prompt = prompt(server.requests().get(0));
+            assertEquals(prompt.indexOf("t_order("), prompt.lastIndexOf("t_order("), "表结构只出现一次");
+            assertTrue(prompt.contains("1. 订单总数") && prompt.contains("3. 订单金额合计"), prompt);
+        }
+    }
+
+    @Test
+    void missingAndInvalidItemsFallBackToSingleCalls() throws Exception {
+        String reply = batch("{\"id\": 1, \"sql\": \"SELECT COUNT(*) FROM t_order\"}",
+                "{\"id\": 3, \"sql\": \"DELETE FROM t_order\"}");
+        try (ScriptedChatServer server = new ScriptedChatServer(reply, single("SELECT 2"), single("SELECT 3"))) {
+            List<BatchSqlResult> results = generator(server, new Config()).generateSQLBatch(QUESTIONS);
+
+            assertEquals(3, server.requestCount());
+            assertSql(results, "SELECT COUNT(*) FROM t_order", "SELECT 2", "SELECT 3");
+            assertTrue(prompt(server.requests().get(1)).contains("今天的订单数"));
+            assertTrue(prompt(server.requests().get(2)).contains("订单金额合计"));
+        }
+    }
+
+    @Test
+    void unparseableReplyFallsBackForEveryQuestion() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer("抱歉，无法回答", single("SELECT 1"))) {
+            List<BatchSqlResult> results = generator(server, new Config()).generateSQLBatch(QUESTIONS);
+            assertEquals(4, server.requestCount());
+            assertSql(results, "SELECT 1", "SELECT 1", "SELECT 1");
+        }
+    }
+
+    @Test
+    void singleFailureDoesNotAffectOthers() throws Exception {
+        String reply = batch("{\"id\": 1, \"sql\": \"SELECT 1\"}", "{\"id\": 3, \"sql\": \"SELECT 3\"}");
+        try (ScriptedChatServer server = new ScriptedChatServer(reply, "没有SQL")) {
+            List<BatchSqlResult> results = generator(server, new Config().maxRetries(0))
+                    .generateSQLBatch(QUESTIONS);
+
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertNull(results.get(1).getSql());
+            assertNotNull(results.get(1).getError());
+            assertEquals("今天的订单数", results.get(1).getQuestion());
+            assertEquals("SELECT 3", results.get(2).getSql());
+        }
+    }
+
+    @Test
+    void splitsByTokenBudget() throws Exception {
+        String first = batch("{\"id\": 1, \"sql\": \"SELECT 1\"}", "{\"id\": 2, \"sql\": \"SELECT 2\"}");
+        try (ScriptedChatServer server = new ScriptedChatServer(first, single("SELECT 3"))) {
+            TableMeta table = table();
+            GenerateSQLWithLLM probe = new GenerateSQLWithLLM(server.llmInfo(), Collections.singletonList(table));
+            int schemaTokens = TokenEstimator.estimate(PromptConfig.getSysTemBatchPrompt())
+                    + TokenEstimator.estimate(probe.getSchemaSnapshot().fragment(probe.getSchemaSnapshot().get("t_order")));
+            int perQuestion = TokenEstimator.estimate("订单金额合计") + 200;
+            // 每批恰好容纳两个问题，第三个问题单独成批并直接单条调用
+            Config config = new Config().batchTokenBudget(schemaTokens + 2 * perQuestion + perQuestion / 2);
+
+            List<BatchSqlResult> results = generator(server, config).generateSQLBatch(QUESTIONS);
+
+            assertEquals(2, server.requestCount());
+            assertSql(results, "SELECT 1", "SELECT 2", "SELECT 3");
+            assertFalse(prompt(server.requests().get(0)).contains("订单金额合计"));
+        }
+    }
+
+    @Test
+    void rejectsEmptyInput() {
+        GenerateSQLWithLLM generator = new GenerateSQLWithLLM(new LLMInfo());
+        assertThrows(IllegalArgumentException.class, () -> generator.generateSQLBatch(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> generator.generateSQLBatch(QUESTIONS));
+    }
+
+    private static void assertSql(List<BatchSqlResult> results, String... expected) {
+        assertEquals(expected.length, results.size());
+        for (int i = 0; i < expected.length; i++) {
+            BatchSqlResult result = results.get(i);
+            assertTrue(result.isSuccess(), () -> String.valueOf(result.getError()));
+            assertEquals(QUESTIONS.get(i), result.getQuestion());
+            assertEquals(expected[i], result.getSql());
+        }
+    }
+
+    private static GenerateSQLWithLLM generator(ScriptedChatServer server, Config config) {
+        return new GenerateSQLWithLLM(server.llmInfo(), Collections.singletonList(table()), config);
+    }
+
+    private static String prompt(String request) {
+        return JSONUtil.parseObj(request).getJSONArray("messages").toString();
+    }
+
+    private static String batch(String... items) {
+        return "```json\n[" + String.join(",\n", items) + "]\n```";
+    }
+
+    private static String single(String sql) {
+        return "```json\n{\"sql\": \"" + sql + "\"}\n```";
+    }
+
+    private static TableMeta table() {
+        TableMeta table = new TableMeta();
+        table.setTableName("t_order");
+        table.setDescription("订单表");
+        List<ColumnMeta> columns = new ArrayList<>();
+        for (String name : new String[]{"id", "amount", "dt"}) {
+            ColumnMeta column = new ColumnMeta();
+            column.setName(name);
+            column.setType("bigint");
+            columns.add(column);
+        }
+        table.setColumns(columns);
+        return table;
+    }
+}
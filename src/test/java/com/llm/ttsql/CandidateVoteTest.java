@@ -0,0 +1,100 @@
+package com.llm.ttsql;
+
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.metrics.ConsensusStats;
+import com.llm.ttsql.validation.impl.LocalSqlValidator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多候选投票：法定票数提前决出、平票时取最先返回的答案、未通过校验的候选不参与投票
+ */
+class CandidateVoteTest {
+    private static final String A = answer("SELECT u.id FROM t_a AS u");
+    private static final String A_REWRITE = answer("select x.ID from T_A x;");
+    private static final String B = answer("SELECT id FROM t_b");
+    private static final String MISSING = answer("SELECT id FROM t_missing");
+
+    @Test
+    void quorumDecidesBeforeStragglers() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(A, A_REWRITE, B).latency(B, 2000)) {
+            GenerateSQLWithLLM generator = generator(server, new Config().candidates(3, 2));
+
+            long start = System.nanoTime();
+            String sql = generator.generateSQL("a的id");
+            assertTrue(System.nanoTime() - start < 1_500_000_000L, "未等待落后的候选");
+            // 返回最先到达的原文，而不是规范化结果
+            assertTrue(sql.equals("SELECT u.id FROM t_a AS u") || sql.equals("select x.ID from T_A x;"), sql);
+
+            ConsensusStats stats = generator.getConsensusStats();
+            assertEquals(1, stats.getQuorumReachedCount());
+            assertEquals(0, stats.getPluralityCount());
+        }
+    }
+
+    @Test
+    void tieGoesToEarliestAnswer() throws Exception {
+        // 2:2平票且未达到法定票数3，先返回的B胜出，与在脚本中的位置无关
+        try (ScriptedChatServer server = new ScriptedChatServer(A, B, A, B).latency(A, 300)) {
+            GenerateSQLWithLLM generator = generator(server, new Config().candidates(4, 3));
+            assertEquals("SELECT id FROM t_b", generator.generateSQL("b的id"));
+            assertEquals(1, generator.getConsensusStats().getPluralityCount());
+        }
+        try (ScriptedChatServer server = new ScriptedChatServer(A, B, A, B).latency(B, 300)) {
+            GenerateSQLWithLLM generator = generator(server, new Config().candidates(4, 3));
+            assertEquals("SELECT u.id FROM t_a AS u", generator.generateSQL("a的id"));
+        }
+    }
+
+    @Test
+    void pluralityWinsWithoutQuorum() throws Exception {
+        // B先返回，但A的两种写法规范化后相同，共2票多于B的1票
+        try (ScriptedChatServer server = new ScriptedChatServer(A, A_REWRITE, B).latency(A, 200)
+                .latency(A_REWRITE, 300)) {
+            GenerateSQLWithLLM generator = generator(server, new Config().candidates(3, 3));
+            assertEquals("SELECT u.id FROM t_a AS u", generator.generateSQL("a的id"));
+            ConsensusStats stats = generator.getConsensusStats();
+            assertEquals(1, stats.getPluralityCount());
+            assertEquals(0, stats.getQuorumReachedCount());
+        }
+    }
+
+    @Test
+    void invalidCandidatesDoNotVote() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(MISSING, MISSING, B).latency(B, 200)) {
+            GenerateSQLWithLLM generator = generator(server,
+                    new Config().candidates(3, 2).sqlValidator(new LocalSqlValidator()));
+            assertEquals("SELECT id FROM t_b", generator.generateSQL("b的id"));
+            ConsensusStats stats = generator.getConsensusStats();
+            assertEquals(2, stats.getInvalidCandidateCount());
+            assertEquals(1, stats.getPluralityCount());
+        }
+    }
+
+    private static GenerateSQLWithLLM generator(ScriptedChatServer server, Config config) {
+        return new GenerateSQLWithLLM(server.llmInfo(), Arrays.asList(table("t_a"), table("t_b")), config);
+    }
+
+    private static String answer(String sql) {
+        return "```json\n{\"sql\": \"" + sql + "\"}\n```";
+    }
+
+    private static TableMeta table(String name) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        ColumnMeta column = new ColumnMeta();
+        column.setName("id");
+        column.setType("bigint");
+        List<ColumnMeta> columns = new ArrayList<>(Collections.singletonList(column));
+        table.setColumns(columns);
+        return table;
+    }
+}
@@ -0,0 +1,45 @@
+package com.llm.ttsql;
+
+import com.llm.ttsql.config.Config;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相同请求合并默认关闭，开启后同时进行中的相同问题只调用一次模型
+ */
+class CoalescingTest {
+    private static final String RESPONSE = "```json\n{\"sql\": \"SELECT COUNT(*) FROM sys_log\"}\n```";
+
+    @Test
+    void identicalConcurrentCallsAreNotCoalescedByDefault() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(RESPONSE).latency(300)) {
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(server.llmInfo(), ValidationRepairTest.tables(),
+                    new Config());
+            assertNull(generator.getSingleFlight());
+            runConcurrently(generator);
+            assertEquals(2, server.requestCount());
+        }
+    }
+
+    @Test
+    void identicalConcurrentCallsShareOneModelCallWhenEnabled() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(RESPONSE).latency(300)) {
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(server.llmInfo(), ValidationRepairTest.tables(),
+                    new Config().coalesceRequests(true));
+            runConcurrently(generator);
+            assertEquals(1, server.requestCount());
+            assertEquals(1, generator.getSingleFlight().getCoalescedCount());
+        }
+    }
+
+    private static void runConcurrently(GenerateSQLWithLLM generator) throws Exception {
+        CompletableFuture<String> first = generator.generateSQLAsync("登录次数");
+        CompletableFuture<String> second = generator.generateSQLAsync("登录次数");
+        assertEquals("SELECT COUNT(*) FROM sys_log", first.get(5, TimeUnit.SECONDS));
+        assertEquals("SELECT COUNT(*) FROM sys_log", second.get(5, TimeUnit.SECONDS));
+    }
+}
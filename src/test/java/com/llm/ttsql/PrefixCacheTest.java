@@ -0,0 +1,80 @@
+package com.llm.ttsql;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.PromptLayout;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 前缀缓存布局：不同问题的system消息逐字节一致，问题位于最后一条user消息末尾
+ */
+class PrefixCacheTest {
+    private static final String ANSWER = "```json\n{\"sql\": \"SELECT COUNT(*) FROM sys_log\"}\n```";
+
+    @Test
+    void systemMessageIsByteIdenticalAcrossQuestions() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(ANSWER)) {
+            List<TableMeta> tables = Arrays.asList(table("sys_user", "id", "name"), table("sys_log", "id", "user_id"));
+            Config config = new Config().promptLayout(PromptLayout.PREFIX_CACHED);
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(server.llmInfo(), tables, config);
+
+            generator.generateSQL("今天的登录次数");
+            generator.generateSQL("每个用户的操作次数");
+            // 调用方按不同顺序传入同一组表，system消息仍按表名排序
+            List<TableMeta> reversed = new ArrayList<>(generator.getSchemaSnapshot().getTables());
+            Collections.reverse(reversed);
+            generator.generateSQL("用户总数", reversed);
+
+            List<String> requests = server.requests();
+            assertEquals(3, requests.size());
+            byte[] system = message(requests.get(0), 0, "system").getBytes(StandardCharsets.UTF_8);
+            assertTrue(system.length > 0);
+            assertArrayEquals(system, message(requests.get(1), 0, "system").getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(system, message(requests.get(2), 0, "system").getBytes(StandardCharsets.UTF_8));
+            assertFalse(new String(system, StandardCharsets.UTF_8).contains("登录次数"));
+
+            assertQuestionLast(requests.get(0), "今天的登录次数");
+            assertQuestionLast(requests.get(1), "每个用户的操作次数");
+            assertQuestionLast(requests.get(2), "用户总数");
+        }
+    }
+
+    private static void assertQuestionLast(String request, String question) {
+        JSONArray messages = JSONUtil.parseObj(request).getJSONArray("messages");
+        assertEquals(2, messages.size());
+        String user = message(request, 1, "user");
+        assertTrue(user.trim().endsWith(question), user);
+    }
+
+    private static String message(String request, int index, String role) {
+        JSONObject message = JSONUtil.parseObj(request).getJSONArray("messages").getJSONObject(index);
+        assertEquals(role, message.getStr("role"));
+        return message.getStr("content");
+    }
+
+    private static TableMeta table(String name, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(column);
+            meta.setType("bigint");
+            list.add(meta);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
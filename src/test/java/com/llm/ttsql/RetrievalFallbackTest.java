@@ -0,0 +1,66 @@
+package com.llm.ttsql;
+
+import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 启用检索后问题与任何表都不匹配时，至多发送topK张表而不是全部缓存表
+ */
+class RetrievalFallbackTest {
+    private static final Pattern TABLE_NAME = Pattern.compile("t_table\\d+");
+    private static final String ANSWER = "```json\n{\"sql\": \"SELECT 1\"}\n```";
+
+    @Test
+    void unmatchedQuestionSendsBoundedTables() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(ANSWER, ANSWER)) {
+            List<TableMeta> tables = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                tables.add(table("t_table" + i));
+            }
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(server.llmInfo(), tables,
+                    new Config().retrievalTopK(3));
+
+            generator.generateSQL("今天天气怎么样");
+            assertEquals(3, tableCount(server.requests().get(0)));
+
+            // 有匹配时仍按检索结果发送
+            generator.generateSQL("table42的记录数");
+            String prompt = server.requests().get(1);
+            assertEquals(1, tableCount(prompt));
+            assertTrue(prompt.contains("t_table42"));
+        }
+    }
+
+    private static int tableCount(String request) {
+        String messages = JSONUtil.parseObj(request).getJSONArray("messages").toString();
+        Set<String> names = new HashSet<>();
+        Matcher m = TABLE_NAME.matcher(messages);
+        while (m.find()) {
+            names.add(m.group());
+        }
+        return names.size();
+    }
+
+    private static TableMeta table(String name) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        ColumnMeta column = new ColumnMeta();
+        column.setName("id");
+        column.setType("bigint");
+        table.setColumns(Collections.singletonList(column));
+        return table;
+    }
+}
@@ -0,0 +1,130 @@
+package com.llm.ttsql;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.llm.ttsql.entity.LLMInfo;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 测试用的OpenAI兼容chat completions桩服务：按顺序返回预设的模型输出，用完后重复最后一条；
+ * 请求体带 "stream": true 时以server-sent events逐段返回
+ */
+class ScriptedChatServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> contents;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private int next;
+    private volatile long latencyMillis;
+    private final Map<String, Long> contentLatency = new ConcurrentHashMap<>();
+
+    ScriptedChatServer(String... contents) throws IOException {
+        this.contents = Arrays.asList(contents);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            requests.add(body);
+            String content = nextContent();
+            long delay = latencyMillis + contentLatency.getOrDefault(content, 0L);
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            boolean stream = JSONUtil.parseObj(body).getBool("stream", false);
+            byte[] response = (stream ? events(content) : completion(content)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", stream ? "text/event-stream" : "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @param latencyMillis 每个请求的模拟延迟（毫秒）
+     */
+    ScriptedChatServer latency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @param content       预设的模型输出
+     * @param latencyMillis 返回该输出时额外的模拟延迟（毫秒），使并发请求的完成顺序可控
+     */
+    ScriptedChatServer latency(String content, long latencyMillis) {
+        contentLatency.put(content, latencyMillis);
+        return this;
+    }
+
+    private synchronized String nextContent() {
+        return contents.get(Math.min(next++, contents.size() - 1));
+    }
+
+    private static String completion(String content) {
+        JSONObject message = new JSONObject().set("role", "assistant").set("content", content);
+        JSONObject choice = new JSONObject().set("index", 0).set("message", message).set("finish_reason", "stop");
+        return new JSONObject().set("choices", Collections.singletonList(choice)).toString();
+    }
+
+    /**
+     * 每8个字符一个事件
+     */
+    private static String events(String content) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < content.length(); i += 8) {
+            JSONObject delta = new JSONObject().set("content", content.substring(i, Math.min(content.length(), i + 8)));
+            JSONObject choice = new JSONObject().set("index", 0).set("delta", delta);
+            sb.append("data: ").append(new JSONObject().set("choices", Collections.singletonList(choice))).append("\n\n");
+        }
+        return sb.append("data: [DONE]\n\n").toString();
+    }
+
+    LLMInfo llmInfo() {
+        LLMInfo llm = new LLMInfo();
+        llm.setApiKey("Bearer test");
+        llm.setModel("stub");
+        llm.setChatEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+        return llm;
+    }
+
+    /**
+     * @return 收到的请求数
+     */
+    int requestCount() {
+        return requests.size();
+    }
+
+    List<String> requests() {
+        return new ArrayList<>(requests);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
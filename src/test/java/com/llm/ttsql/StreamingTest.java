@@ -0,0 +1,34 @@
+package com.llm.ttsql;
+
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.metrics.MetricStage;
+import com.llm.ttsql.metrics.impl.HistogramMetricsListener;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式模式：与非流式提取相同的SQL，出SQL时间按阶段报告
+ */
+class StreamingTest {
+    private static final String RESPONSE = "```sql\n{\"sql\": \"SELECT 1\"}\n```\n"
+            + "```json\n{\"sql\": \"SELECT COUNT(*) FROM sys_log WHERE op_type = 3\"}\n```\n以上SQL统计登录次数。";
+
+    @Test
+    void streamingPicksSameSqlAndReportsTimeToSql() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(RESPONSE)) {
+            HistogramMetricsListener metrics = new HistogramMetricsListener();
+            GenerateSQLWithLLM plain = new GenerateSQLWithLLM(server.llmInfo(), ValidationRepairTest.tables(),
+                    new Config());
+            GenerateSQLWithLLM streaming = new GenerateSQLWithLLM(server.llmInfo(), ValidationRepairTest.tables(),
+                    new Config().streaming(true).metricsListener(metrics));
+
+            String expected = plain.generateSQL("登录次数");
+            assertEquals("SELECT COUNT(*) FROM sys_log WHERE op_type = 3", expected);
+            assertEquals(expected, streaming.generateSQL("登录次数"));
+            assertEquals(1, metrics.getStageHistogram(MetricStage.TIME_TO_SQL).getCount());
+            assertEquals(1, metrics.getStageHistogram(MetricStage.FIRST_TOKEN).getCount());
+            assertEquals(1, streaming.getStreamStats().getEarlyCancelledCount());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.llm.ttsql;
+
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.metrics.MetricStage;
+import com.llm.ttsql.metrics.impl.HistogramMetricsListener;
+import com.llm.ttsql.validation.impl.LocalSqlValidator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地校验与修正：修正请求单独计时，成功只计一次
+ */
+class ValidationRepairTest {
+    private static final String WRONG = "```json\n{\"sql\": \"SELECT COUNT(*) FROM sys_login\"}\n```";
+    private static final String FIXED = "```json\n{\"sql\": \"SELECT COUNT(*) FROM sys_log WHERE op_type = 3\"}\n```";
+
+    @Test
+    void repairedRequestCountsOneSuccess() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(WRONG, FIXED)) {
+            HistogramMetricsListener metrics = new HistogramMetricsListener();
+            Config config = new Config().sqlValidator(new LocalSqlValidator()).maxRepairRounds(1)
+                    .metricsListener(metrics);
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(server.llmInfo(), tables(), config);
+
+            assertEquals("SELECT COUNT(*) FROM sys_log WHERE op_type = 3", generator.generateSQL("登录次数"));
+            assertEquals(2, server.requestCount());
+            assertEquals(1, metrics.getSuccessCount());
+            assertEquals(1, metrics.getLatencyHistogram().getCount());
+            assertEquals(0, metrics.getFailureCount());
+            assertEquals(1, metrics.getStageHistogram(MetricStage.REPAIR).getCount());
+            assertEquals(2, metrics.getStageHistogram(MetricStage.HTTP).getCount());
+        }
+    }
+
+    @Test
+    void validSqlSkipsRepair() throws Exception {
+        try (ScriptedChatServer server = new ScriptedChatServer(FIXED)) {
+            HistogramMetricsListener metrics = new HistogramMetricsListener();
+            Config config = new Config().sqlValidator(new LocalSqlValidator()).metricsListener(metrics);
+            GenerateSQLWithLLM generator = new GenerateSQLWithLLM(server.llmInfo(), tables(), config);
+
+            generator.generateSQL("登录次数");
+            assertEquals(1, server.requestCount());
+            assertEquals(1, metrics.getSuccessCount());
+            assertEquals(0, metrics.getStageHistogram(MetricStage.REPAIR).getCount());
+        }
+    }
+
+    static List<TableMeta> tables() {
+        TableMeta log = new TableMeta();
+        log.setTableName("sys_log");
+        log.setDescription("系统日志表");
+        List<ColumnMeta> columns = new ArrayList<>();
+        columns.add(column("id", "bigint", "主键"));
+        columns.add(column("user_id", "bigint", "用户ID"));
+        columns.add(column("op_type", "int", "操作类型，3为登录"));
+        log.setColumns(columns);
+        return Collections.singletonList(log);
+    }
+
+    private static ColumnMeta column(String name, String type, String description) {
+        ColumnMeta column = new ColumnMeta();
+        column.setName(name);
+        column.setType(type);
+        column.setDescription(description);
+        return column;
+    }
+}
@@ -0,0 +1,111 @@
+package com.llm.ttsql.async;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并发上限与排队：排队中的任务不占用线程
+ */
+class AsyncSqlExecutorTest {
+
+    @Test
+    void queuedCallsDoNotHoldThreads() throws Exception {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            threads.incrementAndGet();
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            AsyncSqlExecutor executor = new AsyncSqlExecutor(pool, 2);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String result = "sql-" + i;
+                futures.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new SqlGenerationException("请求已取消", e);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return result;
+                }));
+            }
+            assertEquals(2, executor.getInFlight());
+            assertEquals(48, executor.getQueueLength());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (running.get() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(2, running.get());
+            assertTrue(threads.get() <= 2, "排队任务占用了线程: " + threads.get());
+
+            // 取消排队中的任务立即出队
+            assertTrue(futures.get(10).cancel(true));
+            assertEquals(47, executor.getQueueLength());
+
+            release.countDown();
+            for (int i = 0; i < futures.size(); i++) {
+                if (i != 10) {
+                    assertEquals("sql-" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+                }
+            }
+            assertTrue(futures.get(10).isCancelled());
+            assertTrue(maxRunning.get() <= 2, "同时执行的任务超过并发上限: " + maxRunning.get());
+            // Future完成后工作线程才归还许可
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (executor.getInFlight() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, executor.getInFlight());
+            assertEquals(0, executor.getQueueLength());
+            assertTrue(threads.get() <= 2, "线程数超过并发上限: " + threads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancelInterruptsRunningCallAndFreesPermit() throws Exception {
+        AsyncSqlExecutor executor = new AsyncSqlExecutor(null, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> blocked = executor.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                throw new SqlGenerationException("请求已取消", e);
+            }
+            return "never";
+        });
+        CompletableFuture<String> next = executor.submit(() -> "next");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getQueueLength());
+        assertTrue(blocked.cancel(true));
+        assertEquals("next", next.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectedSubmitFailsAndPassesPermitOn() throws Exception {
+        AsyncSqlExecutor executor = new AsyncSqlExecutor(r -> {
+            throw new RejectedExecutionException("closed");
+        }, 1);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> executor.submit(() -> "sql").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SqlGenerationException.class, e.getCause());
+        assertEquals(0, executor.getInFlight());
+    }
+}
@@ -0,0 +1,78 @@
+package com.llm.ttsql.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 问题句式解析：相对日期、绝对日期、数字与引号内的文字
+ */
+class QuestionShapeTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+
+    @Test
+    void relativeDatesResolveAgainstToday() {
+        QuestionShape thisMonth = QuestionShape.parse("本月登录人数", TODAY);
+        QuestionShape lastMonth = QuestionShape.parse("上月登录人数", TODAY);
+        QuestionShape lastYear = QuestionShape.parse("去年登录人数", TODAY);
+
+        assertSlot(thisMonth, QuestionShape.MONTH, "本月", LocalDate.of(2026, 10, 1));
+        assertSlot(lastMonth, QuestionShape.MONTH, "上月", LocalDate.of(2026, 9, 1));
+        assertSlot(lastYear, QuestionShape.YEAR, "去年", LocalDate.of(2025, 1, 1));
+        assertEquals(thisMonth.key, lastMonth.key);
+        assertNotEquals(thisMonth.key, lastYear.key);
+    }
+
+    @Test
+    void lastMonthCrossesYearBoundary() {
+        QuestionShape shape = QuestionShape.parse("上个月登录人数", LocalDate.of(2026, 1, 15));
+        assertSlot(shape, QuestionShape.MONTH, "上个月", LocalDate.of(2025, 12, 1));
+    }
+
+    @Test
+    void absoluteDatesShareShapeWithRelativeOnes() {
+        QuestionShape month = QuestionShape.parse("2026年3月登录人数", TODAY);
+        assertSlot(month, QuestionShape.MONTH, "2026-03-01", LocalDate.of(2026, 3, 1));
+        assertEquals(QuestionShape.parse("本月登录人数", TODAY).key, month.key);
+
+        assertSlot(QuestionShape.parse("2026-03-05登录人数", TODAY), QuestionShape.DAY, "2026-03-05",
+                LocalDate.of(2026, 3, 5));
+        assertSlot(QuestionShape.parse("3月5日登录人数", TODAY), QuestionShape.DAY, "2026-03-05",
+                LocalDate.of(2026, 3, 5));
+        assertSlot(QuestionShape.parse("2025年度登录人数", TODAY), QuestionShape.YEAR, "2025-01-01",
+                LocalDate.of(2025, 1, 1));
+    }
+
+    @Test
+    void invalidDateStaysInShape() {
+        QuestionShape shape = QuestionShape.parse("13月登录人数", TODAY);
+        assertTrue(shape.slots.isEmpty());
+        assertTrue(shape.key.contains("13月"));
+    }
+
+    @Test
+    void quotedTextAndNumbersBecomeSlots() {
+        QuestionShape shape = QuestionShape.parse("用户“张三”消费前10的订单", TODAY);
+        assertEquals(2, shape.slots.size());
+        assertEquals(QuestionShape.TEXT, shape.slots.get(0).kind);
+        assertEquals("张三", shape.slots.get(0).raw);
+        assertEquals(QuestionShape.NUMBER, shape.slots.get(1).kind);
+        assertEquals("10", shape.slots.get(1).raw);
+        assertEquals(shape.key, QuestionShape.parse("用户'李四'消费前20的订单", TODAY).key);
+    }
+
+    @Test
+    void keyIgnoresTrailingPunctuation() {
+        assertEquals(QuestionShape.parse("本月登录人数？", TODAY).key, QuestionShape.parse("本月登录人数", TODAY).key);
+    }
+
+    private static void assertSlot(QuestionShape shape, int kind, String raw, LocalDate date) {
+        assertEquals(1, shape.slots.size());
+        QuestionShape.Slot slot = shape.slots.get(0);
+        assertEquals(kind, slot.kind);
+        assertEquals(raw, slot.raw);
+        assertEquals(date, slot.date);
+    }
+}
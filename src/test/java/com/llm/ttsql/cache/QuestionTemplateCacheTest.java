@@ -0,0 +1,86 @@
+package com.llm.ttsql.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 问题模板缓存：确认次数、冲突替换与按表失效
+ */
+class QuestionTemplateCacheTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-10-18T04:00:00Z"), ZoneOffset.UTC);
+    private static final String MODEL = "gpt";
+    private static final String DB = "MySQL";
+    private static final String RANGE = "SELECT COUNT(*) FROM sys_log WHERE create_time >= '2026-10-01' AND create_time < '2026-11-01'";
+    private static final String MONTH_FN = "SELECT COUNT(*) FROM sys_log WHERE YEAR(create_time) = 2026 AND MONTH(create_time) = 10";
+
+    @Test
+    void templateUsedOnlyAfterTwoConfirmations() {
+        QuestionTemplateCache cache = new QuestionTemplateCache(10).clock(CLOCK);
+        assertEquals(2, cache.getMinConfirmations());
+
+        learn(cache, "本月登录人数", RANGE);
+        assertNull(cache.get("上月登录人数", 1L, MODEL, DB));
+        learn(cache, "本月登录人数", RANGE);
+        assertEquals(1, cache.getConfirmationCount());
+        assertEquals("SELECT COUNT(*) FROM sys_log WHERE create_time >= '2026-09-01' AND create_time < '2026-10-01'",
+                cache.get("上月登录人数", 1L, MODEL, DB));
+        assertNull(cache.get("上月登录人数", 2L, MODEL, DB));
+        assertNull(cache.get("上月登录人数", 1L, "other", DB));
+    }
+
+    @Test
+    void conflictingAnswerReplacesTemplate() {
+        QuestionTemplateCache cache = new QuestionTemplateCache(10).clock(CLOCK);
+        learn(cache, "本月登录人数", RANGE);
+        learn(cache, "本月登录人数", RANGE);
+        assertNotNull(cache.get("上月登录人数", 1L, MODEL, DB));
+
+        learn(cache, "本月登录人数", MONTH_FN);
+        assertEquals(1, cache.getConflictCount());
+        assertEquals(1, cache.size());
+        assertNull(cache.get("上月登录人数", 1L, MODEL, DB));
+
+        learn(cache, "本月登录人数", MONTH_FN);
+        assertEquals("SELECT COUNT(*) FROM sys_log WHERE YEAR(create_time) = 2026 AND MONTH(create_time) = 9",
+                cache.get("上月登录人数", 1L, MODEL, DB));
+    }
+
+    @Test
+    void ambiguousAnswerIsNotLearned() {
+        QuestionTemplateCache cache = new QuestionTemplateCache(10).clock(CLOCK).minConfirmations(1);
+        learn(cache, "前3名用户", "SELECT * FROM t_user WHERE level = 3 ORDER BY score DESC LIMIT 3");
+        assertEquals(1, cache.getUnlearnableCount());
+        assertEquals(0, cache.size());
+        assertNull(cache.get("前5名用户", 1L, MODEL, DB));
+    }
+
+    @Test
+    void invalidateTablesRemovesOnlyAffectedTemplates() {
+        QuestionTemplateCache cache = new QuestionTemplateCache(10).clock(CLOCK).minConfirmations(1);
+        learn(cache, "本月登录人数", RANGE);
+        cache.learn("前10名用户", "SELECT * FROM t_user ORDER BY score DESC LIMIT 10", 1L, MODEL, DB,
+                Collections.singletonList("t_user"));
+        assertEquals(2, cache.size());
+
+        assertEquals(1, cache.invalidateTables(Collections.singleton("sys_log")));
+        assertEquals(1, cache.size());
+        assertNull(cache.get("上月登录人数", 1L, MODEL, DB));
+        assertEquals("SELECT * FROM t_user ORDER BY score DESC LIMIT 20", cache.get("前20名用户", 1L, MODEL, DB));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    void rejectsNonPositiveConfirmations() {
+        assertThrows(IllegalArgumentException.class, () -> new QuestionTemplateCache(10).minConfirmations(0));
+    }
+
+    private static void learn(QuestionTemplateCache cache, String question, String sql) {
+        cache.learn(question, sql, 1L, MODEL, DB, Collections.singletonList("sys_log"));
+    }
+}
@@ -0,0 +1,189 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.retrieval.SchemaRetriever;
+import com.llm.ttsql.retrieval.impl.Bm25SchemaRetriever;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量表结构变更：整组发布、净变化事件、检索索引与结果缓存的同步
+ */
+class SchemaDeltaTest {
+
+    @Test
+    void appliesOpsInOrderAsOneVersion() {
+        Fixture f = new Fixture();
+        long version = f.generator.getSchemaSnapshot().getVersion();
+
+        SchemaChangeEvent event = f.generator.applySchemaDelta(new SchemaDelta()
+                .upsert(table("t_refund", "id", "amount"))
+                .upsert(table("t_order", "id", "amount", "status"))
+                .rename("t_cust", "t_customer")
+                .remove("t_tmp"));
+
+        assertEquals(version, event.getPreviousVersion());
+        assertEquals(version + 1, event.getVersion());
+        assertEquals(version + 1, f.generator.getSchemaSnapshot().getVersion());
+        assertEquals(Collections.singleton("t_refund"), event.getAdded());
+        assertEquals(Collections.singleton("t_order"), event.getUpdated());
+        assertEquals(Collections.singleton("t_tmp"), event.getRemoved());
+        assertEquals(Collections.singletonMap("t_cust", "t_customer"), event.getRenamed());
+        assertEquals(Collections.singletonList(event), f.events);
+
+        SchemaSnapshot snapshot = f.generator.getSchemaSnapshot();
+        assertNull(snapshot.get("t_cust"));
+        assertNull(snapshot.get("t_tmp"));
+        assertEquals(3, snapshot.get("t_order").getColumns().size());
+        assertEquals(Arrays.asList("id", "name"), columnNames(snapshot.get("t_customer")));
+        assertTrue(snapshot.getIndex().columns("t_customer").contains("name"));
+        assertNull(snapshot.getIndex().columns("t_cust"));
+    }
+
+    @Test
+    void reportsNetChangeOnly() {
+        Fixture f = new Fixture();
+
+        // 新增后删除、改名后改回、结构未变化的替换都没有净变化
+        SchemaChangeEvent event = f.generator.applySchemaDelta(new SchemaDelta()
+                .upsert(table("t_new", "id"))
+                .remove("t_new")
+                .rename("t_cust", "t_x")
+                .rename("t_x", "t_cust")
+                .upsert(table("t_order", "id", "amount")));
+        assertTrue(event.isEmpty(), event.toString());
+        assertTrue(f.events.isEmpty());
+
+        // 删除后重新新增记为更新
+        event = f.generator.applySchemaDelta(new SchemaDelta()
+                .remove("t_order")
+                .upsert(table("t_order", "id", "total")));
+        assertEquals(Collections.singleton("t_order"), event.getUpdated());
+        assertTrue(event.getAdded().isEmpty() && event.getRemoved().isEmpty());
+
+        // 改名后改结构：只记一次改名，新表名计入更新
+        event = f.generator.applySchemaDelta(new SchemaDelta()
+                .rename("t_cust", "t_customer")
+                .upsert(table("t_customer", "id", "name", "level")));
+        assertEquals(Collections.singletonMap("t_cust", "t_customer"), event.getRenamed());
+        assertEquals(Collections.singleton("t_customer"), event.getUpdated());
+        assertTrue(event.getAdded().isEmpty() && event.getRemoved().isEmpty());
+
+        // 连续改名只记最终结果
+        event = f.generator.applySchemaDelta(new SchemaDelta()
+                .rename("t_customer", "t_c1")
+                .rename("t_c1", "t_c2"));
+        assertEquals(Collections.singletonMap("t_customer", "t_c2"), event.getRenamed());
+        assertTrue(event.getUpdated().isEmpty());
+    }
+
+    @Test
+    void invalidRenameRejectsWholeGroup() {
+        Fixture f = new Fixture();
+        SchemaSnapshot before = f.generator.getSchemaSnapshot();
+
+        assertThrows(IllegalArgumentException.class, () -> f.generator.applySchemaDelta(new SchemaDelta()
+                .upsert(table("t_refund", "id"))
+                .rename("t_missing", "t_other")));
+        assertThrows(IllegalArgumentException.class, () -> f.generator.applySchemaDelta(new SchemaDelta()
+                .remove("t_tmp")
+                .rename("t_cust", "t_order")));
+
+        assertSame(before, f.generator.getSchemaSnapshot());
+        assertNotNull(f.generator.getSchemaSnapshot().get("t_tmp"));
+        assertNull(f.generator.getSchemaSnapshot().get("t_refund"));
+        assertTrue(f.events.isEmpty());
+        assertEquals(1, f.retriever.select("tmp", 5).size());
+        assertTrue(f.retriever.select("refund", 5).isEmpty());
+    }
+
+    @Test
+    void retrieverFollowsDelta() {
+        Fixture f = new Fixture();
+        f.generator.applySchemaDelta(new SchemaDelta()
+                .upsert(table("t_refund", "id", "reason"))
+                .rename("t_cust", "t_customer")
+                .remove("t_tmp"));
+
+        assertEquals(Collections.singletonList("t_refund"), f.retriever.select("reason", 5));
+        assertEquals(Collections.singletonList("t_customer"), f.retriever.select("customer", 5));
+        assertTrue(f.retriever.select("cust", 5).isEmpty());
+        assertTrue(f.retriever.select("tmp", 5).isEmpty());
+    }
+
+    @Test
+    void invalidatesOnlyAffectedResponses() {
+        Fixture f = new Fixture();
+        SqlResultCache cache = f.cache;
+        cache.put("order", "SELECT 1 FROM t_order", Collections.singletonList("t_order"));
+        cache.put("cust", "SELECT 1 FROM t_cust", Collections.singletonList("t_cust"));
+        cache.put("tmp", "SELECT 1 FROM t_tmp", Collections.singletonList("t_tmp"));
+        cache.put("join", "SELECT 1 FROM t_order JOIN t_tmp", Arrays.asList("t_order", "t_tmp"));
+
+        // 新增表不影响已有结果，结构未变化的替换也不影响
+        f.generator.applySchemaDelta(new SchemaDelta()
+                .upsert(table("t_refund", "id"))
+                .upsert(table("t_order", "id", "amount")));
+        assertEquals(4, cache.size());
+
+        f.generator.applySchemaDelta(new SchemaDelta().rename("t_cust", "t_customer").remove("t_tmp"));
+        assertEquals("SELECT 1 FROM t_order", cache.get("order"));
+        assertNull(cache.get("cust"));
+        assertNull(cache.get("tmp"));
+        assertNull(cache.get("join"));
+    }
+
+    private static List<String> columnNames(TableMeta table) {
+        List<String> names = new ArrayList<>();
+        for (ColumnMeta column : table.getColumns()) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+
+    private static TableMeta table(String name, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(column);
+            meta.setType("int");
+            list.add(meta);
+        }
+        table.setColumns(list);
+        return table;
+    }
+
+    /**
+     * 缓存t_order、t_cust、t_tmp三张表，启用检索与结果缓存，记录初始化之后的变更事件
+     */
+    private static final class Fixture {
+        final Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        final SqlResultCache cache = new SqlResultCache(100, 0);
+        final List<SchemaChangeEvent> events = new ArrayList<>();
+        final GenerateSQLWithLLM generator;
+
+        Fixture() {
+            Config config = new Config().retrievalTopK(5).responseCache(cache);
+            generator = new GenerateSQLWithLLM(new LLMInfo(), Arrays.asList(table("t_order", "id", "amount"),
+                    table("t_cust", "id", "name"), table("t_tmp", "id")), config) {
+                @Override
+                protected SchemaRetriever createSchemaRetriever() {
+                    return retriever;
+                }
+            };
+            generator.addSchemaChangeListener(events::add);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表结构驻留池：结构相同的表共享同一对象，不再被引用的表被回收后移出池
+ */
+class SchemaInternerTest {
+
+    @Test
+    void identicalTablesShareOneInstance() {
+        SchemaInterner interner = new SchemaInterner();
+        SchemaInterner.SharedTable a = interner.intern(table("t_user", "id", "name"));
+        SchemaInterner.SharedTable b = interner.intern(table("t_user", "id", "name"));
+        SchemaInterner.SharedTable other = interner.intern(table("t_admin", "id", "name"));
+
+        assertSame(a, b);
+        assertNotSame(a.getTable(), other.getTable());
+        assertSame(a.getTable().getColumns(), other.getTable().getColumns());
+        assertEquals(2, interner.getTableCount());
+        assertThrows(UnsupportedOperationException.class, () -> a.getTable().setDescription("x"));
+    }
+
+    @Test
+    void unreferencedTablesAreEvicted() throws InterruptedException {
+        SchemaInterner interner = new SchemaInterner();
+        SchemaSnapshot.Builder builder = SchemaSnapshot.empty().toBuilder(interner);
+        builder.put(table("t_kept", "id"));
+        SchemaSnapshot snapshot = builder.build();
+        for (int i = 0; i < 100; i++) {
+            interner.intern(table("t_tmp_" + i, "id", "c" + i));
+        }
+
+        awaitCount(interner::getTableCount, 1);
+        awaitCount(interner::getColumnCount, 1);
+        assertSame(snapshot.get("t_kept"), interner.intern(table("t_kept", "id")).getTable());
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (count.getAsInt() > expected && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(expected, count.getAsInt());
+    }
+
+    private static TableMeta table(String name, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(column);
+            meta.setType("bigint");
+            list.add(meta);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
@@ -0,0 +1,158 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.prompt.impl.CompactSchemaRenderer;
+import com.llm.ttsql.prompt.impl.VerboseSchemaRenderer;
+import com.llm.ttsql.retrieval.impl.Bm25SchemaRetriever;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 快照文件的写入与映射加载、按需解码、校验和与格式版本检查
+ */
+class SchemaSnapshotFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripPreservesTablesFragmentsAndFingerprints() throws IOException {
+        SchemaSnapshot original = snapshot();
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, original, null);
+
+        SchemaSnapshotFile mapped = SchemaSnapshotFile.open(file);
+        assertEquals(2, mapped.getTableCount());
+        assertEquals(original.getVersion(), mapped.getSchemaVersion());
+        SchemaSnapshot loaded = mapped.toSnapshot(7, VerboseSchemaRenderer.INSTANCE);
+        assertEquals(7, loaded.getVersion());
+        assertEquals(2, loaded.size());
+
+        for (TableMeta table : original.getTables()) {
+            TableMeta restored = loaded.get(table.getTableName());
+            assertNotNull(restored);
+            assertEquals(table.getDescription(), restored.getDescription());
+            assertEquals(table.getColumns().size(), restored.getColumns().size());
+            assertEquals(original.fingerprint(table), loaded.fingerprint(restored));
+            assertEquals(original.fingerprint(table), SchemaFingerprint.of(restored));
+            assertEquals(original.fragment(table), loaded.fragment(restored));
+            assertEquals(original.fragmentTokens(table), loaded.fragmentTokens(restored));
+            assertEquals(original.getIndex().columns(table.getTableName()),
+                    loaded.getIndex().columns(table.getTableName()));
+        }
+        assertNull(loaded.get("t_order").getColumns().get(1).getDescription());
+    }
+
+    @Test
+    void tablesAreDecodedOnFirstAccess() throws IOException {
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, snapshot(), null);
+        SchemaSnapshot loaded = SchemaSnapshotFile.open(file).toSnapshot(1, VerboseSchemaRenderer.INSTANCE);
+
+        SchemaSnapshotFile.MappedTableMeta user = (SchemaSnapshotFile.MappedTableMeta) loaded.get("t_user");
+        SchemaSnapshotFile.MappedTableMeta order = (SchemaSnapshotFile.MappedTableMeta) loaded.get("t_order");
+        assertFalse(user.isDecoded());
+        assertFalse(order.isDecoded());
+
+        // 片段直接取自文件，不需要解码表
+        assertFalse(loaded.fragment(user).isEmpty());
+        assertFalse(user.isDecoded());
+
+        assertEquals(3, user.getColumns().size());
+        assertTrue(user.isDecoded());
+        assertFalse(order.isDecoded());
+        assertThrows(UnsupportedOperationException.class, () -> user.setDescription("x"));
+        assertThrows(UnsupportedOperationException.class, () -> user.getColumns().clear());
+    }
+
+    @Test
+    void changedRendererRerendersFragments() throws IOException {
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, snapshot(), null);
+        CompactSchemaRenderer compact = new CompactSchemaRenderer();
+        SchemaSnapshot loaded = SchemaSnapshotFile.open(file).toSnapshot(1, compact);
+
+        TableMeta user = loaded.get("t_user");
+        assertEquals(compact.render(user, true), loaded.fragment(user));
+    }
+
+    @Test
+    void restoresRetrieverIndex() throws IOException {
+        SchemaSnapshot original = snapshot();
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        original.getTables().forEach(retriever::index);
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, original, retriever);
+
+        Bm25SchemaRetriever restored = new Bm25SchemaRetriever();
+        assertTrue(SchemaSnapshotFile.open(file).restoreRetriever(restored));
+        assertEquals(retriever.select("订单金额", 1), restored.select("订单金额", 1));
+    }
+
+    @Test
+    void flippedByteFailsChecksum() throws IOException {
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, snapshot(), null);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] ^= 0x01;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> SchemaSnapshotFile.open(file));
+        assertTrue(e.getMessage().contains("校验失败"), e.getMessage());
+    }
+
+    @Test
+    void otherFormatVersionIsRejected() throws IOException {
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, snapshot(), null);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, SchemaSnapshotFile.FORMAT_VERSION + 1);
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> SchemaSnapshotFile.open(file));
+        assertTrue(e.getMessage().contains("格式版本不兼容"), e.getMessage());
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path file = dir.resolve("schema.snap");
+        SchemaSnapshotFile.write(file, snapshot(), null);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+
+        assertThrows(IOException.class, () -> SchemaSnapshotFile.open(file));
+    }
+
+    private static SchemaSnapshot snapshot() {
+        SchemaSnapshot.Builder builder = SchemaSnapshot.empty().toBuilder();
+        builder.put(table("t_user", "用户表", "id", "name", "create_time"));
+        builder.put(table("t_order", "订单表", "id", "amount"));
+        return builder.build();
+    }
+
+    private static TableMeta table(String name, String description, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        table.setDescription(description);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            ColumnMeta column = new ColumnMeta();
+            column.setName(columns[i]);
+            column.setType("varchar(32)");
+            column.setDescription(i == 1 ? null : columns[i] + "字段");
+            list.add(column);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
@@ -0,0 +1,96 @@
+package com.llm.ttsql.cache;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.validation.SchemaIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 快照保存表的副本，调用方原地修改后再次写入能识别为变更
+ */
+class SchemaSnapshotTest {
+
+    @Test
+    void storesCopyOfCallerTable() {
+        TableMeta table = table("t_order", "id", "amount");
+        SchemaSnapshot.Builder builder = SchemaSnapshot.empty().toBuilder();
+        builder.put(table);
+        SchemaSnapshot snapshot = builder.build();
+
+        TableMeta stored = snapshot.get("t_order");
+        assertNotSame(table, stored);
+        assertFalse(snapshot.contains(table));
+        assertTrue(snapshot.contains(stored));
+        assertThrows(UnsupportedOperationException.class, () -> stored.getColumns().add(new ColumnMeta()));
+
+        long fingerprint = snapshot.fingerprint(stored);
+        table.getColumns().add(column("status"));
+        assertEquals(fingerprint, snapshot.fingerprint(stored));
+        assertEquals(2, stored.getColumns().size());
+        assertFalse(snapshot.getIndex().columns("t_order").contains("status"));
+    }
+
+    @Test
+    void indexIsReadOnly() {
+        SchemaSnapshot.Builder builder = SchemaSnapshot.empty().toBuilder();
+        builder.put(table("t_order", "id"));
+        SchemaIndex index = builder.build().getIndex();
+
+        assertTrue(index.isReadOnly());
+        assertThrows(UnsupportedOperationException.class, () -> index.remove("t_order"));
+        assertThrows(UnsupportedOperationException.class, () -> index.put(table("t_user", "id")));
+        assertThrows(UnsupportedOperationException.class, index::clear);
+
+        SchemaIndex overlay = index.overlay(Collections.singletonList(table("t_user", "id")));
+        assertNotNull(overlay.columns("t_user"));
+        assertNotNull(overlay.columns("t_order"));
+        assertNull(index.columns("t_user"));
+    }
+
+    @Test
+    void inPlaceMutationIsPublishedAsUpdate() {
+        GenerateSQLWithLLM generator = new GenerateSQLWithLLM(new LLMInfo());
+        List<SchemaChangeEvent> events = new ArrayList<>();
+        generator.addSchemaChangeListener(events::add);
+
+        TableMeta table = table("t_order", "id", "amount");
+        generator.cacheTableMeta(table);
+        table.getColumns().add(column("status"));
+        generator.cacheTableMeta(table);
+
+        assertEquals(2, events.size());
+        assertEquals(Collections.singleton("t_order"), events.get(0).getAdded());
+        assertEquals(Collections.singleton("t_order"), events.get(1).getUpdated());
+        assertTrue(generator.getSchemaSnapshot().getIndex().columns("t_order").contains("status"));
+
+        // 结构未变化时再次写入不产生变更
+        generator.cacheTableMeta(table);
+        assertEquals(2, events.size());
+    }
+
+    private static TableMeta table(String name, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            list.add(column(column));
+        }
+        table.setColumns(list);
+        return table;
+    }
+
+    private static ColumnMeta column(String name) {
+        ColumnMeta column = new ColumnMeta();
+        column.setName(name);
+        column.setType("int");
+        return column;
+    }
+}
@@ -0,0 +1,38 @@
+package com.llm.ttsql.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存键的问题规范化
+ */
+class SqlResultCacheTest {
+
+    @Test
+    void normalizesWhitespaceAndTrailingPunctuation() {
+        assertEquals("本月 登录人数", SqlResultCache.normalizeQuestion("  本月　 登录人数？ "));
+        assertEquals(key("本月登录人数"), key("本月登录人数。"));
+    }
+
+    @Test
+    void keepsCaseSensitiveLiteralsApart() {
+        assertNotEquals(key("name = 'ABC' 的用户数"), key("name = 'abc' 的用户数"));
+        assertNotEquals(key("Orders表的行数"), key("orders表的行数"));
+    }
+
+    @Test
+    void cachedSqlIsNotReturnedForDifferentCase() {
+        SqlResultCache cache = new SqlResultCache(10, 0);
+        cache.put(key("用户名为'ABC'的用户"), "SELECT * FROM t_user WHERE name = 'ABC'",
+                Collections.singletonList("t_user"));
+        assertNull(cache.get(key("用户名为'abc'的用户")));
+        assertEquals("SELECT * FROM t_user WHERE name = 'ABC'", cache.get(key("用户名为'ABC'的用户 ")));
+    }
+
+    private static String key(String question) {
+        return SqlResultCache.buildKey(question, 1L, "model", "MySQL", null);
+    }
+}
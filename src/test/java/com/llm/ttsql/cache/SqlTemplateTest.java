@@ -0,0 +1,80 @@
+package com.llm.ttsql.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 从SQL学习模板、约束槽位与代入渲染
+ */
+class SqlTemplateTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+
+    @Test
+    void learnsDateRangeAndRendersOtherMonth() {
+        SqlTemplate template = SqlTemplate.learn(
+                "SELECT COUNT(*) FROM sys_log WHERE create_time >= '2026-10-01' AND create_time < '2026-11-01'",
+                slots("本月登录人数"));
+        assertNotNull(template);
+        assertEquals(2, template.holeCount());
+        assertEquals("SELECT COUNT(*) FROM sys_log WHERE create_time >= '2026-09-01' AND create_time < '2026-10-01'",
+                template.render(slots("上月登录人数")));
+        assertEquals("SELECT COUNT(*) FROM sys_log WHERE create_time >= '2026-03-01' AND create_time < '2026-04-01'",
+                template.render(slots("2026年3月登录人数")));
+    }
+
+    @Test
+    void learnsNumbersInDateContext() {
+        SqlTemplate template = SqlTemplate.learn(
+                "SELECT COUNT(*) FROM sys_log WHERE YEAR(create_time) = 2026 AND MONTH(create_time) = 10",
+                slots("本月登录人数"));
+        assertNotNull(template);
+        assertEquals("SELECT COUNT(*) FROM sys_log WHERE YEAR(create_time) = 2025 AND MONTH(create_time) = 12",
+                template.render(slots("2025年12月登录人数")));
+    }
+
+    @Test
+    void rejectsDateNumberOutsideDateContext() {
+        assertNull(SqlTemplate.learn("SELECT * FROM sys_log WHERE status = 3", slots("3月登录记录")));
+        assertNull(SqlTemplate.learn("SELECT * FROM sys_log ORDER BY id DESC LIMIT 3", slots("3月登录记录")));
+        String dated = "WHERE log_date >= 20260301";
+        assertTrue(SqlTemplate.dateContext(dated, dated.indexOf('2')));
+        String status = "WHERE create_time > 0 AND status = 3";
+        assertFalse(SqlTemplate.dateContext(status, status.indexOf('3')));
+    }
+
+    @Test
+    void rejectsSlotValueAppearingTwice() {
+        assertNull(SqlTemplate.learn("SELECT * FROM t_user WHERE level = 3 ORDER BY score DESC LIMIT 3",
+                slots("前3名用户")));
+        assertNull(SqlTemplate.learn("SELECT * FROM t_order WHERE buyer = '张三' OR seller = '张三'",
+                slots("“张三”的订单")));
+    }
+
+    @Test
+    void quotedTextIsEscapedOnRender() {
+        SqlTemplate template = SqlTemplate.learn("SELECT * FROM t_order WHERE buyer = 'Smith'", slots("“Smith”的订单"));
+        assertNotNull(template);
+        assertEquals("SELECT * FROM t_order WHERE buyer = 'O''Neil'", template.render(slots("“O'Neil”的订单")));
+        assertNull(template.render(slots("“a\\b”的订单")));
+    }
+
+    @Test
+    void unboundSlotBecomesConstraint() {
+        SqlTemplate template = SqlTemplate.learn(
+                "SELECT COUNT(*) FROM sys_log WHERE create_time >= DATE_FORMAT(CURDATE(), '%Y-%m-01')",
+                slots("本月登录人数"));
+        assertNotNull(template);
+        assertEquals(0, template.holeCount());
+        assertTrue(template.accepts(slots("本月登录人数")));
+        assertFalse(template.accepts(slots("上月登录人数")));
+        assertFalse(template.accepts(slots("2026年10月登录人数")));
+    }
+
+    private static List<QuestionShape.Slot> slots(String question) {
+        return QuestionShape.parse(question, TODAY).slots;
+    }
+}
@@ -0,0 +1,86 @@
+package com.llm.ttsql.extractor.impl;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量定位与常规提取选择同一个代码块
+ */
+class IncrementalSqlExtractorTest {
+    private static final DefaultSqlExtractor DEFAULT = new DefaultSqlExtractor();
+
+    @Test
+    void completesAsSoonAsObjectCloses() throws SqlGenerationException {
+        IncrementalSqlExtractor incremental = new IncrementalSqlExtractor();
+        assertFalse(incremental.append("```js"));
+        assertFalse(incremental.append("on\n{\"sql\": \"SELECT '}' FROM t\""));
+        assertTrue(incremental.append("}\n```\n后面的解释不再读取"));
+        assertEquals("SELECT '}' FROM t", DEFAULT.extract(incremental.getBlock()));
+    }
+
+    @Test
+    void bracesInsideSingleQuotedStringsAreIgnored() throws SqlGenerationException {
+        String response = "```json\n{'sql': 'SELECT \"}\" AS a FROM t', 'note': '{'}\n```\n解释";
+        IncrementalSqlExtractor incremental = feed(response);
+        assertTrue(incremental.isComplete());
+        assertEquals("SELECT \"}\" AS a FROM t", DEFAULT.extract(incremental.getBlock()));
+        assertEquals("SELECT \"}\" AS a FROM t", new ScanningSqlExtractor().extract(incremental.getBlock()));
+        assertSameAsDefault(response);
+    }
+
+    @Test
+    void apostropheInsideDoubleQuotedStringIsPlainText() throws SqlGenerationException {
+        assertSameAsDefault("```json\n{\"sql\": \"SELECT 'it''s' FROM t\", \"x\": \"}\"}\n```");
+    }
+
+    @Test
+    void prefersJsonBlockOverEarlierSqlBlock() throws SqlGenerationException {
+        String response = "示例：\n```sql\n{\"sql\": \"SELECT 1\"}\n```\n答案：\n```json\n{\"sql\": \"SELECT 2\"}\n```";
+        assertEquals("SELECT 2", DEFAULT.extract(response));
+        assertSameAsDefault(response);
+    }
+
+    @Test
+    void sqlBlockOnlyIsExtractedAfterStreamEnds() throws SqlGenerationException {
+        String response = "```sql\n{\"sql\": \"SELECT 1\"}\n```";
+        IncrementalSqlExtractor incremental = feed(response);
+        assertFalse(incremental.isComplete());
+        assertEquals("SELECT 1", DEFAULT.extract(incremental.getContent()));
+    }
+
+    @Test
+    void jsonBlockInsideThinkIsChosenLikeDefault() throws SqlGenerationException {
+        String response = "<think>先写一个草稿```json\n{\"sql\": \"SELECT 1\"}\n```</think>\n```json\n{\"sql\": \"SELECT 2\"}\n```";
+        assertSameAsDefault(response);
+    }
+
+    @Test
+    void nonObjectJsonBlockFallsBackToFullExtraction() {
+        String response = "```json\n[1]\n```\n```json\n{\"sql\": \"SELECT 2\"}\n```";
+        IncrementalSqlExtractor incremental = feed(response);
+        assertFalse(incremental.isComplete());
+        assertThrows(SqlGenerationException.class, () -> DEFAULT.extract(incremental.getContent()));
+        assertThrows(SqlGenerationException.class, () -> DEFAULT.extract(response));
+    }
+
+    /**
+     * 逐字符输入，增量定位完成时提取结果须与对完整响应的常规提取一致
+     */
+    private static void assertSameAsDefault(String response) throws SqlGenerationException {
+        IncrementalSqlExtractor incremental = feed(response);
+        assertTrue(incremental.isComplete());
+        assertEquals(DEFAULT.extract(response), DEFAULT.extract(incremental.getBlock()));
+    }
+
+    private static IncrementalSqlExtractor feed(String response) {
+        IncrementalSqlExtractor incremental = new IncrementalSqlExtractor();
+        for (int i = 0; i < response.length(); i++) {
+            if (incremental.append(response.substring(i, i + 1))) {
+                break;
+            }
+        }
+        return incremental;
+    }
+}
@@ -0,0 +1,85 @@
+package com.llm.ttsql.extractor.impl;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.extractor.SqlExtractor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 单遍扫描提取与默认提取对同一输入的结果，以及危险关键字检查的已知差异
+ */
+class ScanningSqlExtractorTest {
+    private static final SqlExtractor DEFAULT = new DefaultSqlExtractor();
+    private static final SqlExtractor SCANNING = new ScanningSqlExtractor();
+
+    @Test
+    void escapedQuotes() throws SqlGenerationException {
+        assertBoth("SELECT * FROM t WHERE name = \"a\\\"b\" AND c = 'd'",
+                "```json\n{\"sql\": \"SELECT * FROM t WHERE name = \\\"a\\\\\\\"b\\\" AND c = 'd'\"}\n```");
+    }
+
+    @Test
+    void unicodeEscapes() throws SqlGenerationException {
+        assertBoth("SELECT '中文' FROM t\nWHERE a = 1", "```json\n{\"sql\": \"SELECT '\\u4e2d\\u6587' FROM t\\nWHERE a = 1\"}\n```");
+    }
+
+    @Test
+    void nestedObjectsAreSkipped() throws SqlGenerationException {
+        assertBoth("SELECT 1", "```json\n{\"meta\": {\"sql\": \"SELECT 0\", \"a\": [1, {\"b\": \"}\"}]}, \"sql\": \"SELECT 1\"}\n```");
+    }
+
+    @Test
+    void singleQuotedJson() throws SqlGenerationException {
+        assertBoth("SELECT \"x\" FROM t", "```json\n{'sql': 'SELECT \"x\" FROM t'}\n```");
+    }
+
+    @Test
+    void sqlBlockFallbackAndJsonPreference() throws SqlGenerationException {
+        assertBoth("SELECT 2", "说明\n```sql\n{\"sql\": \"SELECT 2\"}\n```");
+        assertBoth("SELECT 3", "```sql\n{\"sql\": \"SELECT 2\"}\n```\n```json\n{\"sql\": \"SELECT 3\"}\n```");
+    }
+
+    @Test
+    void thinkPrefixIsIgnored() throws SqlGenerationException {
+        assertBoth("SELECT 4", "<think>需要统计{数量}</think>\n```json\n{\"sql\": \"SELECT 4\"}\n```");
+    }
+
+    @Test
+    void malformedInputFailsInBoth() {
+        assertBothFail("没有代码块");
+        assertBothFail("```json\n[1, 2]\n```");
+        assertBothFail("```json\n{\"query\": \"SELECT 1\"}\n```");
+    }
+
+    @Test
+    void dangerousKeywordsOnSingleLine() throws SqlGenerationException {
+        assertBothFail("```json\n{\"sql\": \"DROP TABLE t\"}\n```");
+        assertBothFail("```json\n{\"sql\": \"SELECT 1; delete from t\"}\n```");
+        // 字符串字面量中的单词同样计入
+        assertBothFail("```json\n{\"sql\": \"SELECT * FROM t WHERE op = 'update'\"}\n```");
+        // 关键字作为标识符的一部分不算
+        assertBoth("SELECT update_time FROM t_insert", "```json\n{\"sql\": \"SELECT update_time FROM t_insert\"}\n```");
+    }
+
+    @Test
+    void scanningIsStricterOnMultiLineAndAdjacentCjk() throws SqlGenerationException {
+        String multiLine = "```json\n{\"sql\": \"SELECT 1 FROM t;\\nDELETE FROM t\"}\n```";
+        assertEquals("SELECT 1 FROM t;\nDELETE FROM t", DEFAULT.extract(multiLine));
+        assertThrows(SqlGenerationException.class, () -> SCANNING.extract(multiLine));
+
+        String adjacent = "```json\n{\"sql\": \"SELECT 1 FROM t WHERE a = '删除DELETE'\"}\n```";
+        assertNotNull(DEFAULT.extract(adjacent));
+        assertThrows(SqlGenerationException.class, () -> SCANNING.extract(adjacent));
+    }
+
+    private static void assertBoth(String expected, String input) throws SqlGenerationException {
+        assertEquals(expected, DEFAULT.extract(input), "DefaultSqlExtractor");
+        assertEquals(expected, SCANNING.extract(input), "ScanningSqlExtractor");
+    }
+
+    private static void assertBothFail(String input) {
+        assertThrows(SqlGenerationException.class, () -> DEFAULT.extract(input), "DefaultSqlExtractor");
+        assertThrows(SqlGenerationException.class, () -> SCANNING.extract(input), "ScanningSqlExtractor");
+    }
+}
@@ -0,0 +1,118 @@
+package com.llm.ttsql.loader.impl;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import com.llm.ttsql.loader.SchemaRefreshResult;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用内嵌H2验证批量加载、注释映射与增量刷新
+ */
+class JdbcSchemaLoaderTest {
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:loader" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        execute("CREATE TABLE SYS_USER (ID BIGINT PRIMARY KEY, NAME VARCHAR(64), DEPT_ID BIGINT)",
+                "COMMENT ON TABLE SYS_USER IS '系统用户表'",
+                "COMMENT ON COLUMN SYS_USER.ID IS '用户ID'",
+                "COMMENT ON COLUMN SYS_USER.NAME IS '用户名'",
+                "CREATE TABLE SYS_DEPT (ID BIGINT PRIMARY KEY, NAME VARCHAR(32))",
+                "COMMENT ON TABLE SYS_DEPT IS '部门表'",
+                "CREATE TABLE SYS_LOG (ID BIGINT PRIMARY KEY, USER_ID BIGINT, OP_TYPE INT)",
+                "CREATE VIEW V_USER AS SELECT ID, NAME FROM SYS_USER");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        execute("SHUTDOWN");
+        keepAlive.close();
+    }
+
+    @Test
+    void loadReadsTablesColumnsAndComments() throws SQLException {
+        Map<String, TableMeta> tables = byName(new JdbcSchemaLoader(dataSource).load());
+        assertEquals(4, tables.size());
+
+        TableMeta user = tables.get("SYS_USER");
+        assertEquals("系统用户表", user.getDescription());
+        List<ColumnMeta> columns = user.getColumns();
+        assertEquals(3, columns.size());
+        assertEquals("ID", columns.get(0).getName());
+        assertEquals("用户ID", columns.get(0).getDescription());
+        assertEquals("NAME", columns.get(1).getName());
+        assertEquals("CHARACTER VARYING(64)", columns.get(1).getType());
+        assertEquals("用户名", columns.get(1).getDescription());
+        assertEquals("", columns.get(2).getDescription());
+
+        assertEquals("部门表", tables.get("SYS_DEPT").getDescription());
+        assertEquals("", tables.get("SYS_LOG").getDescription());
+        assertTrue(tables.containsKey("V_USER"));
+    }
+
+    @Test
+    void loadWithoutViews() throws SQLException {
+        Map<String, TableMeta> tables = byName(new JdbcSchemaLoader(dataSource).includeViews(false).load());
+        assertEquals(3, tables.size());
+        assertFalse(tables.containsKey("V_USER"));
+    }
+
+    @Test
+    void refreshReportsAddedChangedAndRemoved() throws SQLException {
+        JdbcSchemaLoader loader = new JdbcSchemaLoader(dataSource).includeViews(false);
+        GenerateSQLWithLLM generator = new GenerateSQLWithLLM(new LLMInfo(), loader.load());
+
+        SchemaRefreshResult unchanged = loader.refresh(generator);
+        assertTrue(unchanged.isEmpty(), unchanged.toString());
+
+        execute("ALTER TABLE SYS_DEPT ADD COLUMN PARENT_ID BIGINT",
+                "DROP TABLE SYS_LOG",
+                "CREATE TABLE SYS_ROLE (ID BIGINT PRIMARY KEY, ROLE_NAME VARCHAR(32))",
+                "COMMENT ON TABLE SYS_ROLE IS '角色表'",
+                "INSERT INTO SYS_USER VALUES (1, 'admin', 1)");
+        SchemaRefreshResult result = loader.refresh(generator);
+        assertEquals(Collections.singletonList("SYS_ROLE"), result.getAdded());
+        assertEquals(Collections.singletonList("SYS_DEPT"), result.getChanged());
+        assertEquals(Collections.singletonList("SYS_LOG"), result.getRemoved());
+
+        Map<String, TableMeta> tables = byName(generator.getSchemaSnapshot().getTables());
+        assertEquals(3, tables.size());
+        assertEquals("角色表", tables.get("SYS_ROLE").getDescription());
+        assertEquals(3, tables.get("SYS_DEPT").getColumns().size());
+        assertFalse(tables.containsKey("SYS_LOG"));
+
+        assertTrue(loader.refresh(generator).isEmpty());
+    }
+
+    private void execute(String... sqls) throws SQLException {
+        try (Statement st = keepAlive.createStatement()) {
+            for (String sql : sqls) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    private static Map<String, TableMeta> byName(List<TableMeta> tables) {
+        return tables.stream().collect(Collectors.toMap(TableMeta::getTableName, Function.identity()));
+    }
+}
@@ -0,0 +1,66 @@
+package com.llm.ttsql.prompt;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按相关度选取有限数量的表（检索无结果时的兜底）
+ */
+class SchemaBudgetTest {
+
+    @Test
+    void topPicksMostRelevantTables() {
+        List<TableMeta> tables = Arrays.asList(table("sys_user", "name"), table("t_order", "amount"),
+                table("t_refund", "amount", "reason"), table("sys_log", "login_time"));
+
+        assertEquals(names(Arrays.asList(tables.get(2), tables.get(1))),
+                names(SchemaBudget.top(tables, "reason amount", 2)));
+        assertEquals(names(Arrays.asList(tables.get(3))), names(SchemaBudget.top(tables, "login", 1)));
+    }
+
+    @Test
+    void unrelatedQuestionKeepsLeadingTables() {
+        List<TableMeta> tables = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tables.add(table("t_" + i, "id"));
+        }
+        List<TableMeta> top = SchemaBudget.top(tables, "天气怎么样", 3);
+        assertEquals(Arrays.asList("t_0", "t_1", "t_2"), names(top));
+    }
+
+    @Test
+    void fewerTablesThanLimitReturnsAll() {
+        List<TableMeta> tables = Arrays.asList(table("a", "id"), table("b", "id"));
+        assertEquals(Arrays.asList("a", "b"), names(SchemaBudget.top(tables, "b", 5)));
+        assertThrows(IllegalArgumentException.class, () -> SchemaBudget.top(tables, "b", 0));
+    }
+
+    private static List<String> names(List<TableMeta> tables) {
+        List<String> names = new ArrayList<>();
+        for (TableMeta table : tables) {
+            names.add(table.getTableName());
+        }
+        return names;
+    }
+
+    private static TableMeta table(String name, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(column);
+            meta.setType("bigint");
+            list.add(meta);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
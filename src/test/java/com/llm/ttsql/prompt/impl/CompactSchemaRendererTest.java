@@ -0,0 +1,110 @@
+package com.llm.ttsql.prompt.impl;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 紧凑表结构格式：同前缀同类型的相邻列合并，描述截断与换行处理
+ */
+class CompactSchemaRendererTest {
+    private final CompactSchemaRenderer renderer = new CompactSchemaRenderer();
+
+    @Test
+    void groupsAdjacentColumnsWithSamePrefixAndType() {
+        TableMeta table = table("t_order", "订单表",
+                "id", "bigint", "主键",
+                "user_id", "bigint", "用户id",
+                "addr_province", "varchar", "省份",
+                "addr_city", "varchar", "城市",
+                "create_time", "datetime", null);
+        assertEquals("\nt_order(id bigint 主键, user_id bigint 用户id, addr_{province 省份,city 城市} varchar, "
+                + "create_time datetime) -- 订单表", renderer.render(table, true));
+        assertEquals("\nt_order(id bigint, user_id bigint, addr_{province,city} varchar, create_time datetime)",
+                renderer.render(table, false));
+    }
+
+    @Test
+    void differentTypeOrPrefixBreaksGroup() {
+        TableMeta table = table("t", null,
+                "addr_province", "varchar", null,
+                "addr_zip", "int", null,
+                "addr_city", "varchar", null,
+                "address_line", "varchar", null,
+                "addrx_a", "varchar", null);
+        assertEquals("\nt(addr_province varchar, addr_zip int, addr_city varchar, address_line varchar, addrx_a varchar)",
+                renderer.render(table, false));
+    }
+
+    @Test
+    void onlyAdjacentColumnsAreGrouped() {
+        TableMeta table = table("t", null,
+                "amt_paid", "decimal", null,
+                "amt_refund", "decimal", null,
+                "status", "int", null,
+                "amt_fee", "decimal", null);
+        assertEquals("\nt(amt_{paid,refund} decimal, status int, amt_fee decimal)", renderer.render(table, false));
+    }
+
+    @Test
+    void namesWithoutUsablePrefixAreNotGrouped() {
+        TableMeta table = table("t", null,
+                "_a", "int", null,
+                "_b", "int", null,
+                "x_", "int", null,
+                "x_", "int", null,
+                "plain", "int", null);
+        assertEquals("\nt(_a int, _b int, x_ int, x_ int, plain int)", renderer.render(table, false));
+    }
+
+    @Test
+    void groupsColumnsWithoutType() {
+        TableMeta table = table("t", null, "ext_a", null, null, "ext_b", null, null);
+        assertEquals("\nt(ext_{a,b})", renderer.render(table, false));
+    }
+
+    @Test
+    void truncatesDescriptionsAndFlattensNewlines() {
+        CompactSchemaRenderer truncating = new CompactSchemaRenderer(4);
+        TableMeta table = table("t", " 很长的表描述\n第二行 ",
+                "id", "int", "第一行\r\n第二行");
+        assertEquals("\nt(id int 第一行 …) -- 很长的表…", truncating.render(table, true));
+        assertEquals("\nt(id int 第一行  第二行) -- 很长的表描述 第二行", renderer.render(table, true));
+
+        // 不截断在代理对中间
+        TableMeta emoji = table("t", "ab😀c", "id", "int", null);
+        assertEquals("\nt(id int) -- ab…", new CompactSchemaRenderer(3).render(emoji, true));
+        assertThrows(IllegalArgumentException.class, () -> new CompactSchemaRenderer(-1));
+    }
+
+    @Test
+    void tableWithoutColumns() {
+        TableMeta table = new TableMeta();
+        table.setTableName("t_empty");
+        assertEquals("\nt_empty()", renderer.render(table, true));
+    }
+
+    /**
+     * @param columns 依次为列名、类型、描述
+     */
+    private static TableMeta table(String name, String description, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        table.setDescription(description);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (int i = 0; i < columns.length; i += 3) {
+            ColumnMeta column = new ColumnMeta();
+            column.setName(columns[i]);
+            column.setType(columns[i + 1]);
+            column.setDescription(columns[i + 2]);
+            list.add(column);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
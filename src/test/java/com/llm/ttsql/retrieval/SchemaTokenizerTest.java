@@ -0,0 +1,56 @@
+package com.llm.ttsql.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分词：下划线与驼峰拆分、中文二元组切分、中英混排
+ */
+class SchemaTokenizerTest {
+
+    @Test
+    void splitsSnakeCaseAndLowercases() {
+        assertEquals(Arrays.asList("sys", "user"), tokens("sys_user"));
+        assertEquals(Arrays.asList("order", "item", "id"), tokens("ORDER_ITEM_ID"));
+        assertEquals(Arrays.asList("t", "order", "2024"), tokens("t_order__2024"));
+    }
+
+    @Test
+    void splitsCamelCase() {
+        assertEquals(Arrays.asList("user", "id"), tokens("userId"));
+        assertEquals(Arrays.asList("create", "time"), tokens("createTime"));
+        // 连续大写不拆分
+        assertEquals(Collections.singletonList("sql"), tokens("SQL"));
+    }
+
+    @Test
+    void cjkRunsBecomeBigrams() {
+        assertEquals(Arrays.asList("登录", "录人", "人数"), tokens("登录人数"));
+        assertEquals(Collections.singletonList("表"), tokens("表"));
+        assertEquals(Arrays.asList("每个", "用户", "的", "订单"), tokens("每个，用户；的 订单"));
+    }
+
+    @Test
+    void mixedCjkAndLatin() {
+        assertEquals(Arrays.asList("今天", "sys", "log", "的", "条数"), tokens("今天sys_log的 条数"));
+        assertEquals(Arrays.asList("top", "10", "用户"), tokens("top 10用户"));
+    }
+
+    @Test
+    void nullAndPunctuationYieldNothing() {
+        assertTrue(tokens(null).isEmpty());
+        assertTrue(tokens(" _,.;()").isEmpty());
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        SchemaTokenizer.tokenize(text, tokens::add);
+        return tokens;
+    }
+}
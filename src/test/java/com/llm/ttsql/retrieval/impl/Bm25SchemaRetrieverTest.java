@@ -0,0 +1,136 @@
+package com.llm.ttsql.retrieval.impl;
+
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.TableMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BM25检索：得分排序、关联表追加，以及增量索引与删除后的一致性
+ */
+class Bm25SchemaRetrieverTest {
+
+    @Test
+    void ranksByBm25Score() {
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        retriever.index(table("sys_user", "用户表", "id", "name", "dept"));
+        retriever.index(table("sys_dept", "部门表", "id", "name"));
+        retriever.index(table("t_order", "订单表", "id", "amount", "status"));
+
+        // 表名命中权重高于列名与描述
+        assertEquals("sys_dept", retriever.select("dept", 1).get(0));
+        assertEquals(Collections.singletonList("t_order"), retriever.select("订单金额 amount", 1));
+        // 命中词越多得分越高
+        List<String> ranked = retriever.select("用户 name dept", 3);
+        assertEquals("sys_user", ranked.get(0));
+        assertTrue(ranked.containsAll(Arrays.asList("sys_user", "sys_dept")));
+        assertFalse(ranked.contains("t_order"));
+    }
+
+    @Test
+    void rareTermsOutweighCommonOnes() {
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        for (int i = 0; i < 5; i++) {
+            retriever.index(table("t_common" + i, null, "id", "status"));
+        }
+        retriever.index(table("t_refund", null, "id", "status", "reason"));
+        // status出现在所有表中，idf低；reason只出现一次，决定排序
+        assertEquals("t_refund", retriever.select("status reason", 1).get(0));
+    }
+
+    @Test
+    void tokenizesCjkQuestionsAgainstDescriptions() {
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        retriever.index(table("sys_log", "登录日志", "id", "user_id", "login_time"));
+        retriever.index(table("t_order", "订单表", "id", "amount"));
+
+        assertEquals("sys_log", retriever.select("今天的登录人数", 1).get(0));
+        assertEquals("sys_log", retriever.select("loginTime最近的记录", 1).get(0));
+    }
+
+    @Test
+    void appendsTablesReferencedByForeignKeyColumns() {
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        retriever.index(table("sys_users", "用户表", "id", "name"));
+        retriever.index(table("sys_log", "登录日志", "id", "user_id"));
+
+        assertEquals(Arrays.asList("sys_log", "sys_users"), retriever.select("登录日志", 1));
+    }
+
+    @Test
+    void noMatchReturnsEmpty() {
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        assertTrue(retriever.select("订单", 3).isEmpty());
+        retriever.index(table("t_order", "订单表", "id"));
+        assertTrue(retriever.select("天气怎么样", 3).isEmpty());
+        assertTrue(retriever.select("", 3).isEmpty());
+    }
+
+    @Test
+    void removeAndReindexStayConsistent() {
+        Bm25SchemaRetriever retriever = new Bm25SchemaRetriever();
+        retriever.index(table("t_order", "订单表", "id", "amount"));
+        retriever.index(table("t_refund", "退款表", "id", "amount", "reason"));
+
+        retriever.remove("t_refund");
+        assertEquals(Collections.singletonList("t_order"), retriever.select("amount reason", 5));
+        assertTrue(retriever.select("退款", 5).isEmpty());
+        // 删除不存在的表不影响索引
+        retriever.remove("t_missing");
+        assertEquals(Collections.singletonList("t_order"), retriever.select("amount", 5));
+
+        // 重新索引同名表只保留新内容，复用空出的槽位
+        retriever.index(table("t_order", "订单表", "id", "total"));
+        assertTrue(retriever.select("amount", 5).isEmpty());
+        assertEquals(Collections.singletonList("t_order"), retriever.select("total", 5));
+        retriever.index(table("t_refund", "退款表", "id", "reason"));
+        assertEquals(Collections.singletonList("t_refund"), retriever.select("退款 reason", 5));
+
+        retriever.clear();
+        assertTrue(retriever.select("订单 退款", 5).isEmpty());
+    }
+
+    @Test
+    void manyUpdatesMatchFreshIndex() {
+        Bm25SchemaRetriever incremental = new Bm25SchemaRetriever();
+        for (int i = 0; i < 50; i++) {
+            incremental.index(table("t_" + i, null, "id", "col" + i, "shared"));
+        }
+        for (int i = 0; i < 50; i += 2) {
+            incremental.remove("t_" + i);
+        }
+        Bm25SchemaRetriever fresh = new Bm25SchemaRetriever();
+        for (int i = 1; i < 50; i += 2) {
+            fresh.index(table("t_" + i, null, "id", "col" + i, "shared"));
+        }
+        // 得分相同的表之间顺序取决于槽位，按集合比较
+        for (String question : Arrays.asList("col7", "col8", "col3 col5 col9", "shared")) {
+            assertEquals(new HashSet<>(fresh.select(question, 50)), new HashSet<>(incremental.select(question, 50)),
+                    question);
+        }
+        assertEquals(25, incremental.select("shared", 50).size());
+        assertEquals("t_7", incremental.select("col7 shared", 5).get(0));
+    }
+
+    private static TableMeta table(String name, String description, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        table.setDescription(description);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(column);
+            meta.setType("bigint");
+            list.add(meta);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
@@ -0,0 +1,165 @@
+package com.llm.ttsql.routing;
+
+import com.llm.ttsql.exception.SqlGenerationException;
+import com.llm.ttsql.routing.AdmissionController.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 准入控制：AIMD并发上限、过载暂停、优先级排队与队列上限
+ */
+class AdmissionControllerTest {
+    private static final long BASELINE = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void additiveIncreaseWhileConcurrencyIsUsed() throws Exception {
+        AdmissionController controller = new AdmissionController().concurrency(4, 1, 5);
+        for (int i = 0; i < 4; i++) {
+            controller.acquire(0, Priority.INTERACTIVE);
+        }
+        controller.release(BASELINE);
+        assertEquals(4.25, controller.getLimit(), 1e-9);
+        for (int i = 0; i < 3; i++) {
+            controller.release(BASELINE);
+        }
+        assertTrue(controller.getLimit() > 4.25);
+
+        // 空闲时（在途请求远低于上限）不增长
+        double limit = controller.getLimit();
+        controller.acquire(0, Priority.INTERACTIVE);
+        controller.release(BASELINE);
+        assertEquals(limit, controller.getLimit(), 1e-9);
+
+        // 不超过上限
+        for (int round = 0; round < 50; round++) {
+            int n = (int) controller.getLimit();
+            for (int i = 0; i < n; i++) {
+                controller.acquire(0, Priority.INTERACTIVE);
+            }
+            for (int i = 0; i < n; i++) {
+                controller.release(BASELINE);
+            }
+        }
+        assertEquals(5, controller.getLimit(), 1e-9);
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    void multiplicativeDecreaseOncePerBaseline() throws Exception {
+        AdmissionController controller = new AdmissionController().concurrency(8, 2, 16).backoffRatio(0.5)
+                .latencyTolerance(2);
+        controller.acquire(0, Priority.INTERACTIVE);
+        controller.release(BASELINE);
+        double limit = controller.getLimit();
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(BASELINE) + 20);
+
+        controller.acquire(0, Priority.INTERACTIVE);
+        controller.acquire(0, Priority.INTERACTIVE);
+        controller.release(BASELINE * 5);
+        assertEquals(limit * 0.5, controller.getLimit(), 1e-9);
+        // 同一轮延迟内的第二次变慢不再收缩
+        controller.release(BASELINE * 5);
+        assertEquals(limit * 0.5, controller.getLimit(), 1e-9);
+    }
+
+    @Test
+    void overloadShrinksToFloorAndPauses() throws Exception {
+        AdmissionController controller = new AdmissionController().concurrency(8, 2, 16).backoffRatio(0.5)
+                .throttleMillis(0);
+        // 尚无延迟基线，每次过载都收缩
+        for (int i = 0; i < 5; i++) {
+            controller.acquire(0, Priority.INTERACTIVE);
+            controller.releaseOverloaded();
+        }
+        assertEquals(2, controller.getLimit(), 1e-9);
+        assertEquals(5, controller.getOverloadCount());
+
+        controller.throttleMillis(200);
+        controller.acquire(0, Priority.INTERACTIVE);
+        controller.releaseOverloaded();
+        long waited = controller.acquire(0, Priority.INTERACTIVE);
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(150), "waited " + waited);
+        controller.releaseIgnored();
+        assertEquals(2, controller.getLimit(), 1e-9);
+    }
+
+    @Test
+    void interactiveRequestsOvertakeQueuedBatch() throws Exception {
+        AdmissionController controller = new AdmissionController().concurrency(1, 1, 1);
+        controller.acquire(0, Priority.INTERACTIVE);
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Thread batch1 = waiter(controller, Priority.BATCH, "batch1", order);
+        awaitQueueDepth(controller, 1);
+        Thread batch2 = waiter(controller, Priority.BATCH, "batch2", order);
+        awaitQueueDepth(controller, 2);
+        Thread interactive = waiter(controller, Priority.INTERACTIVE, "interactive", order);
+        awaitQueueDepth(controller, 3);
+
+        controller.releaseIgnored();
+        for (Thread t : new Thread[]{batch1, batch2, interactive}) {
+            t.join(5000);
+            assertFalse(t.isAlive());
+        }
+        assertEquals(List.of("interactive", "batch1", "batch2"), order);
+        assertEquals(0, controller.getInFlight());
+        assertEquals(4, controller.getAdmittedCount());
+    }
+
+    @Test
+    void fullQueueAndTimeoutReject() throws Exception {
+        AdmissionController controller = new AdmissionController().concurrency(1, 1, 1).queue(1, 100);
+        controller.acquire(0, Priority.INTERACTIVE);
+
+        Thread queued = new Thread(() -> assertThrows(SqlGenerationException.class,
+                () -> controller.acquire(0, Priority.BATCH)));
+        queued.start();
+        awaitQueueDepth(controller, 1);
+        SqlGenerationException full = assertThrows(SqlGenerationException.class,
+                () -> controller.acquire(0, Priority.INTERACTIVE));
+        assertTrue(full.getMessage().contains("上限"));
+
+        queued.join(5000);
+        assertFalse(queued.isAlive());
+        assertEquals(0, controller.getQueueDepth());
+        assertEquals(2, controller.getRejectedCount());
+        assertEquals(1, controller.getInFlight());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        AdmissionController controller = new AdmissionController();
+        assertThrows(IllegalArgumentException.class, () -> controller.concurrency(0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> controller.concurrency(5, 1, 4));
+        assertThrows(IllegalArgumentException.class, () -> controller.latencyTolerance(1));
+        assertThrows(IllegalArgumentException.class, () -> controller.backoffRatio(1));
+        assertThrows(IllegalArgumentException.class, () -> controller.queue(-1, 100));
+    }
+
+    private static Thread waiter(AdmissionController controller, Priority priority, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                controller.acquire(0, priority);
+                order.add(name);
+                controller.releaseIgnored();
+            } catch (SqlGenerationException e) {
+                order.add(name + ":" + e.getMessage());
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueueDepth(AdmissionController controller, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (controller.getQueueDepth() < depth) {
+            assertTrue(System.nanoTime() < deadline, "queue depth " + controller.getQueueDepth());
+            Thread.sleep(1);
+        }
+    }
+}
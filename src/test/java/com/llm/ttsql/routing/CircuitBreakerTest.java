@@ -0,0 +1,82 @@
+package com.llm.ttsql.routing;
+
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.exception.SqlGenerationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器状态转换，重点是半开探测被取消后节点能够恢复
+ */
+class CircuitBreakerTest {
+    private static final long OPEN_MILLIS = 50;
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, OPEN_MILLIS);
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.isAvailable());
+    }
+
+    @Test
+    void cancelledHalfOpenProbeReturnsToOpenAndRecovers() throws Exception {
+        EndpointPool pool = singleNodePool();
+        LLMEndpoint endpoint = pool.getEndpoints().get(0);
+        CircuitBreaker breaker = endpoint.getCircuitBreaker();
+
+        pool.acquire(null).end(0L, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(SqlGenerationException.class, () -> pool.acquire(null));
+
+        Thread.sleep(OPEN_MILLIS + 10);
+        LLMEndpoint probe = pool.acquire(null);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 探测期间其他请求不放行
+        assertThrows(SqlGenerationException.class, () -> pool.acquire(null));
+
+        // 探测被取消（如对冲或投票中落败的一方），不应一直停留在半开状态
+        probe.end(0L, null);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(0, endpoint.getOutstanding());
+
+        // 冷却已结束，下一个请求立即重新探测，成功后恢复
+        LLMEndpoint retry = pool.acquire(null);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        retry.end(1_000_000L, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertSame(endpoint, pool.acquire(null));
+    }
+
+    @Test
+    void failedHalfOpenProbeReopens() throws Exception {
+        EndpointPool pool = singleNodePool();
+        CircuitBreaker breaker = pool.getEndpoints().get(0).getCircuitBreaker();
+
+        pool.acquire(null).end(0L, true);
+        Thread.sleep(OPEN_MILLIS + 10);
+        pool.acquire(null).end(0L, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(SqlGenerationException.class, () -> pool.acquire(null));
+    }
+
+    @Test
+    void cancelledRequestDoesNotAffectClosedBreaker() throws Exception {
+        EndpointPool pool = singleNodePool();
+        pool.acquire(null).end(0L, null);
+        assertEquals(CircuitBreaker.State.CLOSED, pool.getEndpoints().get(0).getCircuitBreaker().getState());
+        assertEquals(0, pool.getEndpoints().get(0).getFailureCount());
+    }
+
+    private static EndpointPool singleNodePool() {
+        LLMInfo info = new LLMInfo();
+        info.setChatEndpoint("http://localhost:1/v1/chat/completions");
+        return new EndpointPool(Collections.singletonList(info), LoadBalanceStrategy.LEAST_OUTSTANDING, 1, OPEN_MILLIS);
+    }
+}
@@ -0,0 +1,117 @@
+package com.llm.ttsql.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 会话存储：LRU淘汰、空闲过期，以及单会话历史的轮数与字符上限
+ */
+class SessionStoreTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        SessionStore store = new SessionStore(2, 0);
+        ConversationSession a = store.getOrCreate("a");
+        store.getOrCreate("b");
+        // 访问a后，b成为最久未访问的会话
+        assertSame(a, store.get("a"));
+        store.getOrCreate("c");
+
+        assertEquals(2, store.size());
+        assertNull(store.get("b"));
+        assertSame(a, store.get("a"));
+        assertNotNull(store.get("c"));
+        assertEquals(1, store.getEvictionCount());
+        assertEquals(3, store.getCreatedCount());
+
+        // 被淘汰的会话再次访问时重新创建，不带旧历史
+        a.addTurn("q", "SELECT 1");
+        store.getOrCreate("b");
+        store.getOrCreate("c");
+        assertNotSame(a, store.getOrCreate("a"));
+        assertEquals(3, store.getEvictionCount());
+    }
+
+    @Test
+    void expiresIdleSessions() throws Exception {
+        SessionStore store = new SessionStore(10, 300);
+        ConversationSession idle = store.getOrCreate("idle");
+        store.getOrCreate("active");
+        Thread.sleep(200);
+        store.get("active");
+        Thread.sleep(200);
+
+        // idle空闲已超过TTL，active在200ms前刚被访问
+        assertNull(store.get("idle"));
+        assertNotNull(store.get("active"));
+        assertEquals(1, store.getExpiredCount());
+        assertNotSame(idle, store.getOrCreate("idle"));
+        assertEquals(0, store.getEvictionCount());
+    }
+
+    @Test
+    void nonPositiveTtlNeverExpires() throws Exception {
+        SessionStore store = new SessionStore(10, 0);
+        ConversationSession session = store.getOrCreate("s");
+        Thread.sleep(20);
+        assertSame(session, store.get("s"));
+        assertEquals(0, store.getExpiredCount());
+    }
+
+    @Test
+    void removeAndClear() {
+        SessionStore store = new SessionStore(10, 0);
+        store.getOrCreate("a");
+        store.getOrCreate("b");
+        assertTrue(store.remove("a"));
+        assertFalse(store.remove("a"));
+        assertNull(store.get("a"));
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(2, store.getCreatedCount());
+        assertThrows(NullPointerException.class, () -> store.getOrCreate(null));
+    }
+
+    @Test
+    void settingsApplyToNewSessionsOnly() {
+        SessionStore store = new SessionStore(10, 0).historyTurns(1);
+        ConversationSession before = store.getOrCreate("before");
+        store.historyTurns(3);
+        ConversationSession after = store.getOrCreate("after");
+        for (int i = 0; i < 3; i++) {
+            before.addTurn("q" + i, "SELECT " + i);
+            after.addTurn("q" + i, "SELECT " + i);
+        }
+        assertEquals(1, before.getTurns().size());
+        assertEquals(3, after.getTurns().size());
+    }
+
+    @Test
+    void historyIsBoundedByTurnsAndChars() {
+        ConversationSession session = new SessionStore(10, 0).historyTurns(2).maxSummaryChars(12)
+                .maxSessionChars(40).getOrCreate("s");
+        assertNull(session.renderHistory());
+
+        session.addTurn("各部门人数", "SELECT 1");
+        session.addTurn("按月份呢", "SELECT 2");
+        session.addTurn("只看销售部", "SELECT 3");
+        assertEquals(3, session.getTurnCount());
+        List<ConversationSession.Turn> turns = session.getTurns();
+        assertEquals(Arrays.asList("按月份呢", "只看销售部"),
+                Arrays.asList(turns.get(0).getQuestion(), turns.get(1).getQuestion()));
+        assertEquals("各部门人数", session.getSummary());
+
+        for (int i = 0; i < 20; i++) {
+            session.addTurn("第" + i + "个追问", "SELECT " + i + " FROM t_order");
+            assertTrue(session.getRetainedChars() <= 40, "retained " + session.getRetainedChars());
+            assertTrue(session.getSummary().length() <= 12, session.getSummary());
+        }
+        String history = session.renderHistory();
+        assertTrue(history.contains("第19个追问"), history);
+        assertTrue(history.startsWith("\n较早的问题：…"), history);
+    }
+}
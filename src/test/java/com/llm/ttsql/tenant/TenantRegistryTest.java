@@ -0,0 +1,73 @@
+package com.llm.ttsql.tenant;
+
+import com.llm.ttsql.GenerateSQLWithLLM;
+import com.llm.ttsql.cache.SchemaInterner;
+import com.llm.ttsql.config.Config;
+import com.llm.ttsql.entity.ColumnMeta;
+import com.llm.ttsql.entity.LLMInfo;
+import com.llm.ttsql.entity.TableMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多租户注册表：公共表与覆盖层合并，调用方的配置不被修改
+ */
+class TenantRegistryTest {
+
+    @Test
+    void callerConfigIsNotModified() {
+        Config shared = new Config();
+        TenantRegistry registry = new TenantRegistry(shared);
+        assertNull(shared.getSchemaInterner());
+        assertNotNull(registry.getInterner());
+
+        Config own = new Config().maxRetries(3);
+        registry.register("a", new LLMInfo());
+        registry.register("b", new LLMInfo(), own, null, null);
+        assertNull(own.getSchemaInterner());
+        assertEquals(3, own.getMaxRetries());
+    }
+
+    @Test
+    void tenantsShareInternedBaseTables() {
+        TenantRegistry registry = new TenantRegistry();
+        registry.setBaseTables(Arrays.asList(table("t_user", "id"), table("t_legacy", "id")));
+        GenerateSQLWithLLM a = registry.register("a", new LLMInfo());
+        GenerateSQLWithLLM b = registry.register("b", new LLMInfo(),
+                Collections.singletonList(table("t_user", "id", "tenant_id")), Collections.singleton("t_legacy"));
+
+        assertEquals(2, a.getSchemaSnapshot().size());
+        assertEquals(1, b.getSchemaSnapshot().size());
+        assertEquals(2, b.getSchemaSnapshot().get("t_user").getColumns().size());
+        assertSame(a.getSchemaSnapshot().get("t_legacy"), registry.getBaseTables().get(1));
+        SchemaInterner interner = registry.getInterner();
+        assertSame(a.getSchemaSnapshot().get("t_user"), interner.intern(table("t_user", "id")).getTable());
+    }
+
+    @Test
+    void duplicateTenantIsRejected() {
+        TenantRegistry registry = new TenantRegistry();
+        registry.register("a", new LLMInfo());
+        assertThrows(IllegalArgumentException.class, () -> registry.register("a", new LLMInfo()));
+    }
+
+    private static TableMeta table(String name, String... columns) {
+        TableMeta table = new TableMeta();
+        table.setTableName(name);
+        List<ColumnMeta> list = new ArrayList<>();
+        for (String column : columns) {
+            ColumnMeta meta = new ColumnMeta();
+            meta.setName(column);
+            meta.setType("bigint");
+            list.add(meta);
+        }
+        table.setColumns(list);
+        return table;
+    }
+}
@@ -0,0 +1,154 @@
+package com.llm.ttsql.transport.impl;
+
+import com.llm.ttsql.exception.LLMHttpException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 连接池复用与超时，使用本地桩服务
+ */
+class PooledHttpTransportTest {
+    private static final Map<String, String> HEADERS = Collections.singletonMap("Authorization", "Bearer test");
+
+    private HttpServer server;
+    private ServerSocket hangingServer;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (hangingServer != null) {
+            hangingServer.close();
+        }
+    }
+
+    @Test
+    void sequentialCallsReuseOneConnection() throws Exception {
+        String url = startServer(200, "{\"ok\":true}");
+        PooledHttpTransport transport = new PooledHttpTransport(2000, 2000, 5, 60_000);
+        int calls = 10;
+        for (int i = 0; i < calls; i++) {
+            assertEquals("{\"ok\":true}", transport.post(url, HEADERS, "{\"n\":" + i + "}"));
+        }
+        assertEquals(calls, transport.getRequestCount());
+        assertEquals(1, transport.getConnectionsCreated());
+        assertEquals(calls, transport.getConnectionsAcquired());
+        assertEquals(1, transport.getIdleConnectionCount());
+    }
+
+    @Test
+    void errorStatusCarriesStatusCode() throws Exception {
+        String url = startServer(503, "busy");
+        PooledHttpTransport transport = new PooledHttpTransport(2000, 2000, 5, 60_000);
+        LLMHttpException e = assertThrows(LLMHttpException.class, () -> transport.post(url, HEADERS, "{}"));
+        assertEquals(503, e.getStatusCode());
+    }
+
+    @Test
+    void readTimeoutAgainstHangingServer() throws Exception {
+        String url = startHangingServer();
+        int readTimeout = 300;
+        PooledHttpTransport transport = new PooledHttpTransport(2000, readTimeout, 5, 60_000);
+        long start = System.nanoTime();
+        LLMHttpException e = assertThrows(LLMHttpException.class, () -> transport.post(url, HEADERS, "{}"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(0, e.getStatusCode());
+        assertTrue(elapsedMillis >= readTimeout, "超时前返回: " + elapsedMillis + "ms");
+        assertTrue(elapsedMillis < readTimeout * 10L, "读取超时未生效: " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void requestTimeoutBoundsSlowStream() throws Exception {
+        String url = startTricklingServer(100);
+        int requestTimeout = 500;
+        PooledHttpTransport transport = new PooledHttpTransport(2000, 2000, requestTimeout, 5, 60_000);
+        AtomicInteger events = new AtomicInteger();
+        long start = System.nanoTime();
+        LLMHttpException e = assertThrows(LLMHttpException.class,
+                () -> transport.postStream(url, HEADERS, "{}", data -> events.incrementAndGet() > 0));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // 每次读取都在读取超时之内，只有总超时能结束请求
+        assertTrue(events.get() > 0);
+        assertTrue(e.getMessage().contains("超时"), e.getMessage());
+        assertTrue(elapsedMillis >= requestTimeout, "超时前返回: " + elapsedMillis + "ms");
+        assertTrue(elapsedMillis < requestTimeout * 6L, "总超时未生效: " + elapsedMillis + "ms");
+    }
+
+    private String startServer(int status, String body) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext("/v1/chat/completions", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    /**
+     * 以固定间隔持续输出SSE事件，不会结束
+     */
+    private String startTricklingServer(long intervalMillis) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 200; i++) {
+                    out.write("data: {}\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    Thread.sleep(intervalMillis);
+                }
+            } catch (IOException | InterruptedException e) {
+                // 客户端已断开
+            }
+        });
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    /**
+     * 接受连接、读取请求但从不响应
+     */
+    private String startHangingServer() throws IOException {
+        hangingServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = hangingServer.accept();
+                    socket.getInputStream().read(new byte[8192]);
+                }
+            } catch (IOException e) {
+                // 服务关闭
+            }
+        }, "hanging-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return "http://127.0.0.1:" + hangingServer.getLocalPort() + "/v1/chat/completions";
+    }
+}
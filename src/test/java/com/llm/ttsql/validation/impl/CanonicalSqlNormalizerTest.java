@@ -0,0 +1,77 @@
+package com.llm.ttsql.validation.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL规范化：等价写法得到相同结果，语义不同的SQL保持区分
+ */
+class CanonicalSqlNormalizerTest {
+    private final CanonicalSqlNormalizer normalizer = new CanonicalSqlNormalizer();
+
+    @Test
+    void ignoresWhitespaceCommentsCaseAndSemicolon() {
+        assertEquivalent("SELECT id FROM t_order WHERE status = 1",
+                "select  id\n  from T_ORDER -- 订单\n where STATUS=1 ;");
+        assertEquivalent("SELECT id FROM t_order", "/* 注释 */ SELECT id FROM t_order;;");
+    }
+
+    @Test
+    void quotedIdentifiersAndInequality() {
+        assertEquivalent("SELECT id FROM t_order WHERE a <> 1", "SELECT `id` FROM `t_order` WHERE a != 1");
+        assertEquivalent("SELECT \"id\" FROM t_order", "SELECT id FROM t_order", "PostgreSQL");
+    }
+
+    @Test
+    void dropsOptionalKeywords() {
+        assertEquivalent("SELECT o.id FROM t_order o INNER JOIN t_user u ON o.user_id = u.id ORDER BY o.id ASC",
+                "SELECT o.id FROM t_order o JOIN t_user u ON o.user_id = u.id ORDER BY o.id");
+        assertEquivalent("SELECT * FROM a LEFT OUTER JOIN b ON a.id = b.id",
+                "SELECT * FROM a LEFT JOIN b ON a.id = b.id");
+    }
+
+    @Test
+    void renamesAliasesByAppearance() {
+        assertEquivalent("SELECT o.id, u.name FROM t_order AS o JOIN t_user AS u ON o.user_id = u.id",
+                "SELECT x.id, y.name FROM t_order x JOIN t_user y ON x.user_id = y.id");
+        assertEquivalent("SELECT COUNT(*) AS total FROM t_order", "SELECT COUNT(*) cnt FROM t_order");
+        // 限定名中的列名不改写，子查询列别名须同名才视为相同
+        assertEquivalent("SELECT s.n FROM (SELECT COUNT(*) AS n FROM t_order) AS s",
+                "SELECT q.n FROM (SELECT COUNT(*) n FROM t_order) q");
+    }
+
+    @Test
+    void keepsCastTypesAndQualifiedColumns() {
+        String sql = normalizer.normalize("SELECT CAST(amount AS DECIMAL) FROM t_order", "MySql");
+        assertTrue(sql.contains("as decimal"), sql);
+        // 列名与别名同名时，只替换别名，不替换限定后的列名
+        assertEquivalent("SELECT t.t FROM x AS t", "SELECT y.t FROM x y");
+    }
+
+    @Test
+    void distinguishesDifferentQueries() {
+        assertDifferent("SELECT id FROM t_order WHERE status = 1", "SELECT id FROM t_order WHERE status = 2");
+        assertDifferent("SELECT id FROM t_order ORDER BY id", "SELECT id FROM t_order ORDER BY id DESC");
+        assertDifferent("SELECT * FROM a LEFT JOIN b ON a.id = b.id", "SELECT * FROM a JOIN b ON a.id = b.id");
+        // 字符串常量保持原样
+        assertDifferent("SELECT id FROM t_user WHERE name = 'Tom'", "SELECT id FROM t_user WHERE name = 'tom'");
+    }
+
+    @Test
+    void unterminatedStringFallsBackToWhitespaceAndCase() {
+        assertEquals("select 'abc from t", normalizer.normalize("SELECT  'abc\nFROM t", "MySql"));
+    }
+
+    private void assertEquivalent(String a, String b) {
+        assertEquivalent(a, b, "MySql");
+    }
+
+    private void assertEquivalent(String a, String b, String db) {
+        assertEquals(normalizer.normalize(a, db), normalizer.normalize(b, db));
+    }
+
+    private void assertDifferent(String a, String b) {
+        assertNotEquals(normalizer.normalize(a, "MySql"), normalizer.normalize(b, "MySql"));
+    }
+}